@@ -1,9 +1,12 @@
 package please.change.me.simulator.common;
 
+import nablarch.core.dataformat.DataRecord;
 import nablarch.core.dataformat.DataRecordFormatter;
 import nablarch.core.dataformat.DataRecordFormatterSupport;
 import nablarch.core.dataformat.FormatterFactory;
 import nablarch.core.dataformat.InvalidDataFormatException;
+import nablarch.core.dataformat.LayoutDefinition;
+import nablarch.core.dataformat.LayoutFileParser;
 import nablarch.core.util.FilePathSetting;
 import nablarch.fw.messaging.FwHeader;
 import nablarch.fw.messaging.MessageSenderSettings;
@@ -16,15 +19,23 @@ import nablarch.fw.messaging.realtime.http.client.HttpMessagingClient;
 import nablarch.fw.web.HttpResponse;
 import nablarch.test.core.reader.DataType;
 import please.change.me.messaging.DummyFwHeaderDefinition;
+import please.change.me.simulator.common.concurrent.ConcurrentLazyCache;
+import please.change.me.simulator.common.concurrent.ConcurrentLazyCache.CachingValueFactory;
+import please.change.me.simulator.common.concurrent.CyclicIterator;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 
 /**
@@ -32,6 +43,15 @@ import java.util.Map.Entry;
  * <p>
  * 取引単体用Excelフォーマットのファイルを、シミュレータ用のデータとして読み込む。<br>
  * </p>
+ * <p>
+ * {@link #setPrecompiledResponse(boolean)}にtrueを設定した場合は、応答電文(HTTP、MOM)の初回取得時に、
+ * リクエストIDに対応する全ての応答電文を送信可能な状態のテンプレートに変換してキャッシュする。
+ * 以降の取得では、テンプレートを順に選択するだけで、ヘッダのコピー、ステータスコードの解析及びバイト列の結合は行わない。
+ * </p>
+ * <p>
+ * フォーマット定義ファイルは、ファイル毎に初回の使用時に解析したレイアウト定義をキャッシュし、以降はフォーマッタの生成のみを行う。
+ * また、同期送信の要求電文の本文は、Excelから取得した本文(繰り返し読み出される各行)毎に、初回の解析結果をキャッシュする。
+ * </p>
  *
  * @author Masaya Seko
  * @since 1.4.2
@@ -41,9 +61,42 @@ public class MessageReadSupport {
     /** 要求電文のデータフォーマット定義ファイル名パターン */
     private static final String REQUEST_MESSAGE_FORMAT_FILE_NAME_PATTERN = "%s" + "_SEND";
 
+    /** 解析済みのレイアウト定義(フォーマット定義ファイル毎) */
+    private static final ConcurrentMap<File, LayoutDefinition> LAYOUT_DEFINITIONS = new ConcurrentHashMap<>();
+
+    /**
+     * 解析済みの同期送信の要求電文の本文。
+     * キーはExcelから取得した本文のバイト列であり、インスタンスの同一性で識別する。
+     * (Excelの各行のバイト列は{@link SendSyncSupportWrapper}にキャッシュされ、繰り返し同じインスタンスが返却されるため)
+     */
+    private final ConcurrentMap<byte[], Map<String, ?>> syncMessageBodies = new ConcurrentHashMap<>();
+
     /** {@link SendSyncSupportWrapper}実装クラス */
     private SendSyncSupportWrapper support;
 
+    /** 応答電文のテンプレートを使用するか否か */
+    private boolean precompiledResponse;
+
+    /** HTTP用応答電文のテンプレート(リクエストID毎) */
+    private final ConcurrentLazyCache<String, CyclicIterator<HttpResponseTemplate>> httpResponseTemplates
+            = new ConcurrentLazyCache<>(
+                    key -> new CachingValueFactory<String, CyclicIterator<HttpResponseTemplate>>(key) {
+                        @Override
+                        protected CyclicIterator<HttpResponseTemplate> getValueOf(String requestId) {
+                            return new CyclicIterator<>(createHttpResponseTemplates(requestId));
+                        }
+                    });
+
+    /** MOM用応答電文のテンプレート(リクエストID毎。ヘッダと本文を結合したバイト列) */
+    private final ConcurrentLazyCache<String, CyclicIterator<byte[]>> momResponseTemplates
+            = new ConcurrentLazyCache<>(
+                    key -> new CachingValueFactory<String, CyclicIterator<byte[]>>(key) {
+                        @Override
+                        protected CyclicIterator<byte[]> getValueOf(String requestId) {
+                            return new CyclicIterator<>(createMomResponseTemplates(requestId));
+                        }
+                    });
+
     /**
      * コンストラクタ。
      */
@@ -51,6 +104,23 @@ public class MessageReadSupport {
         this.support = SendSyncSupportWrapperConcurrent.getInstance();
     }
 
+    /**
+     * 応答電文のテンプレートを使用するか否かを設定する。
+     * <p>
+     * trueを設定した場合、応答電文はリクエストID毎のテンプレートから取得する。
+     * テンプレートはリクエストIDに対応するヘッダと本文を、それぞれのExcelの記述順に組み合わせたものであり、
+     * 応答電文の内容と返却順序はテンプレートを使用しない場合と同じである。
+     * ただし、読み出し位置は本インスタンスのテンプレート毎に管理されるため、
+     * {@link SendSyncSupportWrapper#reset()}の影響を受けない。
+     * </p>
+     * デフォルトはfalse。
+     *
+     * @param precompiledResponse テンプレートを使用する場合はtrue
+     */
+    public void setPrecompiledResponse(boolean precompiledResponse) {
+        this.precompiledResponse = precompiledResponse;
+    }
+
     /**
      * 同期送信(MessageSender用)の要求電文をファイルから取得する。
      *
@@ -74,20 +144,40 @@ public class MessageReadSupport {
         //必ず付与される何番目のレコードか？を表す値を除去する。
         headerRecord.remove("DataFileFragment:firstFieldKey");
 
+        //要求電文用のオブジェクトを生成する。
+        SyncMessage requestSyncMessage = new SyncMessage(requestId);
+        requestSyncMessage.addDataRecord(getSyncMessageBody(requestId, responseMessageBinary));
+        requestSyncMessage.setHeaderRecord(headerRecord);
+        return requestSyncMessage;
+    }
+
+    /**
+     * 同期送信の要求電文の本文を解析する。
+     * <p>
+     * 解析結果はExcelから取得した本文毎にキャッシュし、同じ本文は再度解析しない。
+     * 解析結果は複数の要求電文で共有するため、変更不可とする。
+     * </p>
+     *
+     * @param requestId リクエストID
+     * @param bodyBytes Excelから取得した本文
+     * @return 解析結果
+     */
+    private Map<String, ?> getSyncMessageBody(String requestId, byte[] bodyBytes) {
+        Map<String, ?> body = syncMessageBodies.get(bodyBytes);
+        if (body != null) {
+            return body;
+        }
         String formatName = String.format(REQUEST_MESSAGE_FORMAT_FILE_NAME_PATTERN, requestId);
         SimpleDataConvertResult convertResult;
         try {
-            convertResult = parseData(formatName, new ByteArrayInputStream(responseMessageBinary));
+            convertResult = parseData(formatName, new ByteArrayInputStream(bodyBytes));
         } catch (IOException e) {
             //到達しない。
             throw new RuntimeException(e);
         }
-
-        //要求電文用のオブジェクトを生成する。
-        SyncMessage requestSyncMessage = new SyncMessage(requestId);
-        requestSyncMessage.addDataRecord(convertResult.getResultMap());
-        requestSyncMessage.setHeaderRecord(headerRecord);
-        return requestSyncMessage;
+        body = Collections.unmodifiableMap(convertResult.getResultMap());
+        Map<String, ?> current = syncMessageBodies.putIfAbsent(bodyBytes, body);
+        return current != null ? current : body;
     }
 
     /**
@@ -138,6 +228,10 @@ public class MessageReadSupport {
      * @return HTTPResponse 応答に使用するHTTPResponse
      */
     public HttpResponse getResponseForHttp(String requestId) {
+        if (precompiledResponse) {
+            return httpResponseTemplates.get(requestId).next().toResponse();
+        }
+
         byte[] bodyBytes = null;
         Map<String, Object> rawHeaderRecord = null;
 
@@ -149,18 +243,8 @@ public class MessageReadSupport {
         rawHeaderRecord = support.getResponseMessageByRequestId(DataType.RESPONSE_HEADER_MESSAGES, requestId);
 
         Map<String, Object> headerRecord = new HashMap<>(rawHeaderRecord);
-
-        //ステータスコードをヘッダから読み取る(ヘッダから取得できなかった場合の初期として200を設定している)
-        Integer statusCode = Integer.valueOf(200);
-        String statusCodeString = (String) headerRecord.get(HttpMessagingClient.SYNCMESSAGE_STATUS_CODE);
-        if (isNumber(statusCodeString)) {
-            statusCode = Integer.parseInt(statusCodeString);
-        }
-
-        //「ヘッダから何番目のレコードか？を表す値」と、「ステータスコード用の値」を除去する。
-        //(除去しない場合、HTTPヘッダに不要な情報が設定される)
-        headerRecord.remove("DataFileFragment:firstFieldKey");
-        headerRecord.remove(HttpMessagingClient.SYNCMESSAGE_STATUS_CODE);
+        int statusCode = getStatusCode(headerRecord);
+        removeHttpControlFields(headerRecord);
 
         //応答を生成する。
         HttpResponse httpResponse = new HttpResponse();
@@ -180,31 +264,141 @@ public class MessageReadSupport {
      * @return 応答電文
      */
     public ResponseMessage getMessageForMom(String requestId, ReceivedMessage receivedMessage) {
-        byte[] headerBytes = null;
-        byte[] bodyBytes = null;
+        byte[] responseBinary;
+        if (precompiledResponse) {
+            responseBinary = momResponseTemplates.get(requestId).next();
+        } else {
+            // Excelファイルから応答電文の本文を取得する
+            byte[] bodyBytes = support.getResponseMessageBinaryByRequestId(DataType.RESPONSE_BODY_MESSAGES, requestId);
+
+            // Excelファイルから応答電文のヘッダを取得する
+            byte[] headerBytes = support.getResponseMessageBinaryByRequestId(DataType.RESPONSE_HEADER_MESSAGES,
+                                                                             requestId);
+
+            // ヘッダと本文のバイナリからバイト列を生成する
+            responseBinary = join(headerBytes, bodyBytes);
+        }
 
-        // Excelファイルから応答電文の本文を取得する
-        bodyBytes = support.getResponseMessageBinaryByRequestId(DataType.RESPONSE_BODY_MESSAGES, requestId);
+        //応答電文を生成する。
+        RequestMessage req = new RequestMessage(null, receivedMessage);
+        ResponseMessage reply = req.reply();
+        reply.setFwHeaderDefinition(new DummyFwHeaderDefinition());
+        reply.getBodyStream().write(responseBinary, 0, responseBinary.length);
 
-        // Excelファイルから応答電文のヘッダを取得する
-        headerBytes = support.getResponseMessageBinaryByRequestId(DataType.RESPONSE_HEADER_MESSAGES, requestId);
+        return reply;
+    }
+
+    /**
+     * HTTP用応答電文のテンプレートを生成する。
+     *
+     * @param requestId リクエストID
+     * @return テンプレート(返却順)
+     */
+    private List<HttpResponseTemplate> createHttpResponseTemplates(String requestId) {
+        List<DataRecord> headers = support.getResponseMessagesByRequestId(DataType.RESPONSE_HEADER_MESSAGES,
+                                                                          requestId);
+        List<byte[]> bodies = support.getResponseMessageBinariesByRequestId(DataType.RESPONSE_BODY_MESSAGES,
+                                                                            requestId);
+        int size = cycleLength(headers.size(), bodies.size());
+        List<HttpResponseTemplate> templates = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            templates.add(new HttpResponseTemplate(elementAt(headers, i), elementAt(bodies, i)));
+        }
+        return templates;
+    }
+
+    /**
+     * MOM用応答電文のテンプレート(ヘッダと本文を結合したバイト列)を生成する。
+     *
+     * @param requestId リクエストID
+     * @return テンプレート(返却順)
+     */
+    private List<byte[]> createMomResponseTemplates(String requestId) {
+        List<byte[]> headers = support.getResponseMessageBinariesByRequestId(DataType.RESPONSE_HEADER_MESSAGES,
+                                                                             requestId);
+        List<byte[]> bodies = support.getResponseMessageBinariesByRequestId(DataType.RESPONSE_BODY_MESSAGES,
+                                                                            requestId);
+        int size = cycleLength(headers.size(), bodies.size());
+        List<byte[]> templates = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            templates.add(join(elementAt(headers, i), elementAt(bodies, i)));
+        }
+        return templates;
+    }
+
+    /**
+     * ヘッダと本文を繰り返し読み出した場合に、組み合わせが一巡するまでの件数を算出する。
+     * (ヘッダと本文の件数の最小公倍数。件数が0の場合は1件として扱う)
+     *
+     * @param headerCount ヘッダの件数
+     * @param bodyCount 本文の件数
+     * @return 組み合わせが一巡するまでの件数
+     */
+    private static int cycleLength(int headerCount, int bodyCount) {
+        int a = Math.max(headerCount, 1);
+        int b = Math.max(bodyCount, 1);
+        int x = a;
+        int y = b;
+        while (y != 0) {
+            int r = x % y;
+            x = y;
+            y = r;
+        }
+        return a / x * b;
+    }
 
-        // ヘッダと本文のバイナリからバイト列を生成する
+    /**
+     * 繰り返し読み出した場合に、指定された回数目に読み出される要素を取得する。
+     *
+     * @param list 要素のリスト
+     * @param index 回数(0始まり)
+     * @param <T> 要素の型
+     * @return 要素(リストが空の場合はnull)
+     */
+    private static <T> T elementAt(List<T> list, int index) {
+        return list.isEmpty() ? null : list.get(index % list.size());
+    }
+
+    /**
+     * ヘッダと本文のバイナリを結合する。
+     *
+     * @param headerBytes ヘッダ(存在しない場合はnull)
+     * @param bodyBytes 本文
+     * @return 結合したバイト列
+     */
+    private static byte[] join(byte[] headerBytes, byte[] bodyBytes) {
         int bufferSize = (headerBytes != null ? headerBytes.length : 0) + bodyBytes.length;
         ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
         if (headerBytes != null) {
             buffer.put(headerBytes);
         }
         buffer.put(bodyBytes);
-        byte[] responseBinary = buffer.array();
+        return buffer.array();
+    }
 
-        //応答電文を生成する。
-        RequestMessage req = new RequestMessage(null, receivedMessage);
-        ResponseMessage reply = req.reply();
-        reply.setFwHeaderDefinition(new DummyFwHeaderDefinition());
-        reply.getBodyStream().write(responseBinary, 0, responseBinary.length);
+    /**
+     * ステータスコードをヘッダから読み取る。
+     *
+     * @param headerRecord ヘッダ
+     * @return ステータスコード(ヘッダから取得できなかった場合は200)
+     */
+    private static int getStatusCode(Map<String, Object> headerRecord) {
+        String statusCodeString = (String) headerRecord.get(HttpMessagingClient.SYNCMESSAGE_STATUS_CODE);
+        if (isNumber(statusCodeString)) {
+            return Integer.parseInt(statusCodeString);
+        }
+        return 200;
+    }
 
-        return reply;
+    /**
+     * 「ヘッダから何番目のレコードか？を表す値」と、「ステータスコード用の値」を除去する。
+     * (除去しない場合、HTTPヘッダに不要な情報が設定される)
+     *
+     * @param headerRecord ヘッダ
+     */
+    private static void removeHttpControlFields(Map<String, Object> headerRecord) {
+        headerRecord.remove("DataFileFragment:firstFieldKey");
+        headerRecord.remove(HttpMessagingClient.SYNCMESSAGE_STATUS_CODE);
     }
 
     /**
@@ -213,7 +407,7 @@ public class MessageReadSupport {
      * @param val 検証対象
      * @return trueの場合、変換可能
      */
-    private boolean isNumber(String val) {
+    private static boolean isNumber(String val) {
         try {
             Integer.parseInt(val);
             return true;
@@ -225,6 +419,10 @@ public class MessageReadSupport {
     /**
      * 構造化データのストリームからMapを生成する。
      * 変換前の構造化データ形式はフォーマット定義ファイルにて指定される。
+     * <p>
+     * フォーマット定義ファイルのレイアウト定義は、初回の解析結果を再利用する。
+     * フォーマッタの初期化時にレイアウト定義が更新されるため、同じレイアウト定義を使用する解析は直列に行う。
+     * </p>
      *
      * @param formatName フォーマット定義ファイル
      * @param in 変換対象データ読み込み用ストリーム
@@ -233,39 +431,43 @@ public class MessageReadSupport {
      * @throws IOException 読み込みに伴うIO処理で問題が発生した場合。
      */
     public static SimpleDataConvertResult parseData(String formatName, InputStream in) throws InvalidDataFormatException, IOException {
-        // フォーマッタ取得
-        DataRecordFormatter formatter = getFormatter(formatName);
-
-        // データを解析
-        formatter.setInputStream(in);
-        formatter.initialize();
-        Map<String, ?> resultMap = formatter.readRecord();
-        formatter.close();
-
-        return createResult(formatter)
-                .setResultMap(resultMap);
+        LayoutDefinition definition = getLayoutDefinition(formatName);
+        synchronized (definition) {
+            // フォーマッタ生成
+            DataRecordFormatter formatter = FormatterFactory
+                    .getInstance()
+                    .createFormatter(definition);
+            formatter.setDefinition(definition);
+
+            // データを解析
+            formatter.setInputStream(in);
+            formatter.initialize();
+            Map<String, ?> resultMap = formatter.readRecord();
+            formatter.close();
+
+            return createResult(formatter)
+                    .setResultMap(resultMap);
+        }
     }
 
     /**
-     * フォーマット名に対応したフォーマッタを取得する。
+     * フォーマット名に対応したレイアウト定義を取得する。
+     * <p>
+     * フォーマット定義ファイルは論理パスから都度解決するため、論理パスの設定が変更された場合は、
+     * 変更後のフォーマット定義ファイルを解析する。
+     * </p>
      *
      * @param formatName フォーマット名
-     * @return フォーマッタ
+     * @return レイアウト定義
      */
-    private static DataRecordFormatter getFormatter(String formatName) {
+    private static LayoutDefinition getLayoutDefinition(String formatName) {
         // フォーマットファイルを論理パスから取得
         File formatFile = FilePathSetting
                 .getInstance()
                 .getFileWithoutCreate("format", formatName);
 
-        // フォーマッタを生成・初期化
-        DataRecordFormatter formatter = FormatterFactory
-                .getInstance()
-                .createFormatter(formatFile);
-
-        formatter.initialize();
-
-        return formatter;
+        return LAYOUT_DEFINITIONS.computeIfAbsent(formatFile,
+                file -> new LayoutFileParser(file.getPath()).parse());
     }
 
     /**
@@ -287,4 +489,54 @@ public class MessageReadSupport {
 
         return result;
     }
+
+    /**
+     * 送信可能な状態に変換したHTTP用応答電文のテンプレート。
+     * 本クラスは不変であり、複数スレッドで共有できる。
+     */
+    private static final class HttpResponseTemplate {
+
+        /** ステータスコード */
+        private final int statusCode;
+
+        /** HTTPヘッダ(制御用の値を除去済み) */
+        private final List<Entry<String, String>> headers;
+
+        /** 本文 */
+        private final byte[] bodyBytes;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param rawHeaderRecord Excelから取得したヘッダ
+         * @param bodyBytes Excelから取得した本文
+         */
+        HttpResponseTemplate(Map<String, Object> rawHeaderRecord, byte[] bodyBytes) {
+            Map<String, Object> headerRecord = new HashMap<>(rawHeaderRecord);
+            this.statusCode = getStatusCode(headerRecord);
+            removeHttpControlFields(headerRecord);
+            List<Entry<String, String>> headerList = new ArrayList<>(headerRecord.size());
+            for (Entry<String, Object> entry : headerRecord.entrySet()) {
+                headerList.add(Map.entry(entry.getKey(), entry.getValue().toString()));
+            }
+            this.headers = Collections.unmodifiableList(headerList);
+            this.bodyBytes = bodyBytes;
+        }
+
+        /**
+         * テンプレートから応答を生成する。
+         * 本文はコピーせずに、テンプレートのバイト列から読み込む。
+         *
+         * @return 応答に使用するHTTPResponse
+         */
+        HttpResponse toResponse() {
+            HttpResponse httpResponse = new HttpResponse();
+            for (Entry<String, String> header : headers) {
+                httpResponse.setHeader(header.getKey(), header.getValue());
+            }
+            httpResponse.setStatusCode(statusCode);
+            httpResponse.setBodyStream(new ByteArrayInputStream(bodyBytes));
+            return httpResponse;
+        }
+    }
 }
@@ -3,6 +3,8 @@ package please.change.me.simulator.common;
 import nablarch.core.dataformat.DataRecord;
 import nablarch.test.core.reader.DataType;
 
+import java.util.List;
+
 /**
  * {@link nablarch.test.core.messaging.SendSyncSupport}をラップするクラス。<br>
  * <p>
@@ -42,6 +44,24 @@ public interface SendSyncSupportWrapper {
      */
     byte[] getResponseMessageBinaryByRequestId(DataType dataType, String requestId);
 
+    /**
+     * リクエストIDに紐付くメッセージを全件取得する。
+     * 読み出し位置には影響しない。
+     * @param dataType データタイプ
+     * @param requestId リクエストID
+     * @return 応答電文レコード（Excelの記述順）
+     */
+    List<DataRecord> getResponseMessagesByRequestId(DataType dataType, String requestId);
+
+    /**
+     * リクエストIDに紐付くメッセージのバイナリを全件取得する。
+     * 読み出し位置には影響しない。
+     * @param dataType データタイプ
+     * @param requestId リクエストID
+     * @return メッセージ（Excelの記述順）
+     */
+    List<byte[]> getResponseMessageBinariesByRequestId(DataType dataType, String requestId);
+
     /**
      * 読み出し位置をリセットする。
      */
@@ -68,6 +68,18 @@ public final class SendSyncSupportWrapperConcurrent implements SendSyncSupportWr
         return itr.next();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public List<DataRecord> getResponseMessagesByRequestId(DataType dataType, String requestId) {
+        return records.get(new CacheKey(dataType, requestId)).getContents();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<byte[]> getResponseMessageBinariesByRequestId(DataType dataType, String requestId) {
+        return bytesMap.get(new CacheKey(dataType, requestId)).getContents();
+    }
+
     /**
      * ファクトリの基底クラス
      *
@@ -61,6 +61,16 @@ public class CyclicIterator<T> implements Iterator<T> {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * 内包するオブジェクトを取得する。
+     * 読み出し位置には影響しない。
+     *
+     * @return 内包するオブジェクト（変更不可）
+     */
+    public List<T> getContents() {
+        return contents;
+    }
+
     /**
      * カウントをリセットする。
      * 再度、Listの先頭から読み出しが開始する。
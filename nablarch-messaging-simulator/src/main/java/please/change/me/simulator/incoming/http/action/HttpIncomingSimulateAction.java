@@ -18,6 +18,16 @@ public class HttpIncomingSimulateAction implements Handler<HttpRequest, HttpResp
     /** サポートクラス */
     private final MessageReadSupport messageReadSupport = new MessageReadSupport();
 
+    /**
+     * 応答電文のテンプレートを使用するか否かを設定する。
+     * 詳細は{@link MessageReadSupport#setPrecompiledResponse(boolean)}を参照。
+     *
+     * @param precompiledResponse テンプレートを使用する場合はtrue
+     */
+    public void setPrecompiledResponse(boolean precompiledResponse) {
+        messageReadSupport.setPrecompiledResponse(precompiledResponse);
+    }
+
     /** {@inheritDoc} */
     @Override
     public HttpResponse handle(HttpRequest request, ExecutionContext context) {
@@ -19,6 +19,16 @@ public class MomIncomingSimulateAction implements Handler<ReceivedMessage, Respo
     /** サポートクラス */
     private final MessageReadSupport messageReadSupport = new MessageReadSupport();
 
+    /**
+     * 応答電文のテンプレートを使用するか否かを設定する。
+     * 詳細は{@link MessageReadSupport#setPrecompiledResponse(boolean)}を参照。
+     *
+     * @param precompiledResponse テンプレートを使用する場合はtrue
+     */
+    public void setPrecompiledResponse(boolean precompiledResponse) {
+        messageReadSupport.setPrecompiledResponse(precompiledResponse);
+    }
+
     /** {@inheritDoc} */
     @Override
     public ResponseMessage handle(ReceivedMessage message, ExecutionContext context) {
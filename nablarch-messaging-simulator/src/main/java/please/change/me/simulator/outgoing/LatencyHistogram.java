@@ -0,0 +1,160 @@
+package please.change.me.simulator.outgoing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 応答時間の分布を記録するヒストグラム。
+ * <p/>
+ * HdrHistogramと同様に、値を2のべき乗毎の区間に分け、各区間を同じ数の小区間に分割して件数を記録する。
+ * 記録する値の相対誤差は1/128以下となり、記録件数に関わらず使用するメモリは一定である。
+ * パーセンタイル値は、該当する小区間の上限値(記録された最大値を超える場合は最大値)を返却する。
+ * <p/>
+ * 記録はロックを使用せずに行うため、複数スレッドから並行して記録できる。
+ * 記録中に集計値を取得した場合、集計値に並行して記録された値が含まれるか否かは不定である。
+ */
+public final class LatencyHistogram {
+
+    /** 小区間のビット数 */
+    private static final int SUB_BUCKET_BITS = 8;
+
+    /** 最初の区間の小区間数(0から{@value}未満の値は、値毎に記録する) */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** 2番目以降の区間の小区間数 */
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+    /** 小区間の総数(long型の最大値まで記録できる数) */
+    private static final int BUCKET_COUNT = indexOf(Long.MAX_VALUE) + 1;
+
+    /** 小区間毎の記録件数 */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /** 記録件数 */
+    private final AtomicLong totalCount = new AtomicLong();
+
+    /** 記録した値の合計 */
+    private final AtomicLong totalValue = new AtomicLong();
+
+    /** 記録した値の最大値 */
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * 値を記録する。
+     *
+     * @param value 値(負の値は0として記録する)
+     */
+    public void record(long value) {
+        long v = Math.max(value, 0);
+        counts.incrementAndGet(indexOf(v));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(v);
+        maxValue.accumulateAndGet(v, Math::max);
+    }
+
+    /**
+     * 他のヒストグラムに記録された値を、本ヒストグラムに加算する。
+     * <p/>
+     * 加算中に他のヒストグラムに並行して記録された値が加算されるか否かは不定である。
+     *
+     * @param other 加算するヒストグラム
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        totalValue.addAndGet(other.totalValue.get());
+        maxValue.accumulateAndGet(other.maxValue.get(), Math::max);
+    }
+
+    /**
+     * 記録件数を取得する。
+     *
+     * @return 記録件数
+     */
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * 記録した値の最大値を取得する。
+     *
+     * @return 最大値(記録していない場合は0)
+     */
+    public long getMaxValue() {
+        return maxValue.get();
+    }
+
+    /**
+     * 記録した値の平均値を取得する。
+     *
+     * @return 平均値(記録していない場合は0)
+     */
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalValue.get() / count;
+    }
+
+    /**
+     * パーセンタイル値を取得する。
+     *
+     * @param percentile パーセンタイル(0から100)
+     * @return パーセンタイル値(記録していない場合は0)
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= rank) {
+                return Math.min(highestValueOf(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    /**
+     * 値を記録する小区間のインデックスを算出する。
+     *
+     * @param value 値(0以上)
+     * @return 小区間のインデックス
+     */
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS + 1;
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT
+                + (int) ((value >>> shift) - SUB_BUCKET_HALF_COUNT);
+    }
+
+    /**
+     * 小区間に記録される値の上限値を算出する。
+     *
+     * @param index 小区間のインデックス
+     * @return 上限値
+     */
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = offset % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        long highest = ((subBucket + 1) << shift) - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+}
@@ -0,0 +1,303 @@
+package please.change.me.simulator.outgoing;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * リクエストID毎に送信の応答時間及びエラー件数を記録し、集計結果を出力するクラス。
+ * <p/>
+ * 応答時間は{@link LatencyHistogram}にマイクロ秒で記録する(エラーとなった送信も、エラーとなるまでの時間を記録する)。
+ * 集計結果は、送信開始からの累計と、報告間隔毎(報告間隔を指定した場合のみ)の2種類を出力する。
+ * 出力先は以下のとおり。
+ * <ul>
+ * <li>ログ(リクエストID毎及び全リクエストIDの合計を1行ずつ出力する)</li>
+ * <li>CSVファイル(出力先ファイルを指定した場合のみ。報告毎に追記する)</li>
+ * </ul>
+ * CSVファイルの項目は、{@link #CSV_HEADER}のとおり。
+ * 種別は、報告間隔毎の集計結果の場合は「INTERVAL」、累計の場合は「TOTAL」とする。
+ * 全リクエストIDの合計行のリクエストIDは「ALL」とする。
+ * <p/>
+ * 記録はロックを使用せずに行うため、複数スレッドから並行して記録できる。
+ * 報告間隔毎の集計は、報告時に集計対象を新しい集計期間に切り替えて行う。
+ * 記録中のスレッドは集計期間毎の記録中の数に計上し、報告時は切り替え前の集計期間への記録が完了するまで待ち合わせるため
+ * (HdrHistogramのRecorderと同様のダブルバッファ)、切り替えと並行して記録された値は、
+ * 切り替え前または後のいずれか一方の報告間隔に必ず含まれる。
+ */
+public final class LatencyRecorder {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(LatencyRecorder.class);
+
+    /** CSVファイルのヘッダ */
+    static final String CSV_HEADER =
+            "type,elapsed_ms,request_id,count,errors,throughput,mean_us,p50_us,p90_us,p99_us,p99.9_us,max_us";
+
+    /** 全リクエストIDの合計行のリクエストID */
+    private static final String ALL_REQUEST_ID = "ALL";
+
+    /** リクエストID毎の集計 */
+    private final ConcurrentMap<String, RequestLatency> latencies = new ConcurrentHashMap<>();
+
+    /** 記録開始時刻(ナノ秒) */
+    private final long startNanos = System.nanoTime();
+
+    /** 前回の報告時刻(ナノ秒) */
+    private long lastReportNanos = startNanos;
+
+    /** CSVファイルの出力先(出力しない場合はnull) */
+    private final Writer csvWriter;
+
+    /** 報告間隔毎の集計結果を出力するスレッド(出力しない場合はnull) */
+    private final ScheduledExecutorService reporter;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param intervalSeconds 報告間隔(秒。0以下の場合は、累計のみを{@link #close()}時に出力する)
+     * @param csvFile CSVファイルの出力先(出力しない場合はnull)
+     */
+    public LatencyRecorder(long intervalSeconds, File csvFile) {
+        csvWriter = csvFile == null ? null : openCsv(csvFile);
+        if (intervalSeconds <= 0) {
+            reporter = null;
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "latency-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::reportInterval, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 送信の応答時間を記録する。
+     *
+     * @param requestId リクエストID
+     * @param latencyMicros 応答時間(マイクロ秒)
+     * @param error 送信がエラーとなった場合はtrue
+     */
+    public void record(String requestId, long latencyMicros, boolean error) {
+        RequestLatency latency = latencies.get(requestId);
+        if (latency == null) {
+            latency = latencies.computeIfAbsent(requestId, key -> new RequestLatency());
+        }
+        latency.total.record(latencyMicros, error);
+
+        // 記録中に計上した後に、集計期間が切り替わっていないことを確認する。
+        // (切り替わっていた場合は報告時の待ち合わせの対象とならないため、切り替え後の集計期間に記録し直す)
+        Window window;
+        while (true) {
+            window = latency.interval.get();
+            window.writers.incrementAndGet();
+            if (latency.interval.get() == window) {
+                break;
+            }
+            window.writers.decrementAndGet();
+        }
+        try {
+            window.record(latencyMicros, error);
+        } finally {
+            window.writers.decrementAndGet();
+        }
+    }
+
+    /**
+     * 記録を終了し、累計の集計結果を出力する。
+     */
+    public void close() {
+        if (reporter != null) {
+            reporter.shutdown();
+            try {
+                reporter.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        report("TOTAL", startNanos, System.nanoTime(), false);
+        if (csvWriter != null) {
+            try {
+                csvWriter.close();
+            } catch (IOException e) {
+                LOGGER.logWarn("failed to close latency report.", e);
+            }
+        }
+    }
+
+    /**
+     * 報告間隔毎の集計結果を出力する。
+     */
+    void reportInterval() {
+        long now = System.nanoTime();
+        report("INTERVAL", lastReportNanos, now, true);
+        lastReportNanos = now;
+    }
+
+    /**
+     * 集計結果を出力する。
+     *
+     * @param type 種別
+     * @param fromNanos 集計期間の開始時刻(ナノ秒)
+     * @param toNanos 集計期間の終了時刻(ナノ秒)
+     * @param interval 報告間隔毎の集計結果を出力する場合はtrue
+     */
+    private synchronized void report(String type, long fromNanos, long toNanos, boolean interval) {
+        Map<String, Window> windows = new TreeMap<>();
+        for (Map.Entry<String, RequestLatency> entry : latencies.entrySet()) {
+            RequestLatency latency = entry.getValue();
+            windows.put(entry.getKey(), interval ? latency.interval.getAndSet(new Window()) : latency.total);
+        }
+        if (interval) {
+            // 切り替え前の集計期間への記録が完了するまで待ち合わせる。
+            for (Window window : windows.values()) {
+                while (window.writers.get() != 0) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+        Window all = new Window();
+        for (Window window : windows.values()) {
+            all.add(window);
+        }
+        windows.put(ALL_REQUEST_ID, all);
+
+        double seconds = Math.max(toNanos - fromNanos, 1) / 1e9;
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(toNanos - startNanos);
+        StringBuilder csv = new StringBuilder();
+        for (Map.Entry<String, Window> entry : windows.entrySet()) {
+            Window window = entry.getValue();
+            LatencyHistogram histogram = window.histogram;
+            long count = histogram.getTotalCount();
+            long[] values = {
+                    histogram.getValueAtPercentile(50),
+                    histogram.getValueAtPercentile(90),
+                    histogram.getValueAtPercentile(99),
+                    histogram.getValueAtPercentile(99.9),
+                    histogram.getMaxValue()
+            };
+            String throughput = String.format("%.1f", count / seconds);
+            String mean = String.format("%.1f", histogram.getMean());
+            LOGGER.logInfo("latency " + type.toLowerCase() + ". elapsed_ms=[" + elapsedMillis
+                    + "], request_id=[" + entry.getKey() + "], count=[" + count
+                    + "], errors=[" + window.errors.sum() + "], throughput=[" + throughput
+                    + "], mean_us=[" + mean + "], p50_us=[" + values[0] + "], p90_us=[" + values[1]
+                    + "], p99_us=[" + values[2] + "], p99.9_us=[" + values[3] + "], max_us=[" + values[4] + "].");
+            csv.append(type).append(',').append(elapsedMillis).append(',').append(entry.getKey())
+               .append(',').append(count).append(',').append(window.errors.sum())
+               .append(',').append(throughput).append(',').append(mean);
+            for (long value : values) {
+                csv.append(',').append(value);
+            }
+            csv.append(System.lineSeparator());
+        }
+        writeCsv(csv.toString());
+    }
+
+    /**
+     * CSVファイルを作成し、ヘッダを出力する。
+     *
+     * @param csvFile CSVファイル
+     * @return CSVファイルの出力先
+     */
+    private static Writer openCsv(File csvFile) {
+        File dir = csvFile.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IllegalStateException("failed to create directory. directory = [" + dir + ']');
+        }
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(csvFile), StandardCharsets.UTF_8));
+            writer.write(CSV_HEADER + System.lineSeparator());
+            return writer;
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to open latency report. file = [" + csvFile + ']', e);
+        }
+    }
+
+    /**
+     * CSVファイルに出力する。
+     * <p/>
+     * 出力に失敗した場合は、送信を継続するため警告ログを出力するのみとする。
+     *
+     * @param rows 出力する行
+     */
+    private void writeCsv(String rows) {
+        if (csvWriter == null) {
+            return;
+        }
+        try {
+            csvWriter.write(rows);
+            csvWriter.flush();
+        } catch (IOException e) {
+            LOGGER.logWarn("failed to write latency report.", e);
+        }
+    }
+
+    /**
+     * 集計期間の応答時間及びエラー件数。
+     */
+    private static final class Window {
+
+        /** 応答時間(マイクロ秒) */
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        /** エラー件数 */
+        private final LongAdder errors = new LongAdder();
+
+        /** 記録中のスレッドの数(報告間隔毎の集計の切り替え時に、記録の完了を待ち合わせるために使用する) */
+        private final AtomicLong writers = new AtomicLong();
+
+        /**
+         * 応答時間を記録する。
+         *
+         * @param latencyMicros 応答時間(マイクロ秒)
+         * @param error エラーとなった場合はtrue
+         */
+        private void record(long latencyMicros, boolean error) {
+            histogram.record(latencyMicros);
+            if (error) {
+                errors.increment();
+            }
+        }
+
+        /**
+         * 他の集計期間の応答時間及びエラー件数を加算する。
+         *
+         * @param other 加算する集計期間
+         */
+        private void add(Window other) {
+            histogram.add(other.histogram);
+            errors.add(other.errors.sum());
+        }
+    }
+
+    /**
+     * リクエストID毎の累計及び報告間隔毎の集計。
+     */
+    private static final class RequestLatency {
+
+        /** 累計 */
+        private final Window total = new Window();
+
+        /** 報告間隔毎の集計 */
+        private final AtomicReference<Window> interval = new AtomicReference<>(new Window());
+    }
+}
@@ -0,0 +1,295 @@
+package please.change.me.simulator.outgoing;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 送信結果の概要(トレース)をログに出力するクラス。
+ * <p/>
+ * 出力方法は{@link Mode}で指定する。
+ * {@link Mode#SAMPLED}及び{@link Mode#FAILURE}の場合、送信スレッドは事前に確保したリングバッファの要素に
+ * 送信結果の項目を設定するのみとし、文字列の組み立て及びログ出力はバックグラウンドのスレッドで行う。
+ * これにより、送信スレッドでのオブジェクトの生成及びログ出力の待ち合わせをなくし、
+ * 高い送信レートでもログ出力が送信のボトルネックとならないようにする。
+ * <p/>
+ * バックグラウンドのスレッドは、リングバッファが空の場合は一定時間待機し、リングバッファが半分埋まった時点で再開する。
+ * リングバッファに空きがない場合(ログ出力が追いつかない場合)は、送信を遅延させないためトレースを破棄し、
+ * 破棄した件数を{@link #close()}時にログに出力する。
+ * <p/>
+ * 本クラスはスレッドセーフであり、複数の送信スレッドから並行して使用できる。
+ */
+public final class MessageTracer {
+
+    /**
+     * トレースの出力方法。
+     */
+    public enum Mode {
+        /** 送受信メッセージの全項目を送信スレッドで出力する(デバッグ用。本クラスでは何も出力しない) */
+        FULL,
+        /** 一定件数毎に1件及び送信に失敗した全件のトレースを出力する */
+        SAMPLED,
+        /** 送信に失敗したトレースのみを出力する */
+        FAILURE,
+        /** 出力しない */
+        NONE
+    }
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(MessageTracer.class);
+
+    /** リングバッファにトレースがない場合に、バックグラウンドのスレッドが待機する時間(ナノ秒) */
+    private static final long FLUSH_INTERVAL_NANOS = 100_000_000L;
+
+    /** 出力方法 */
+    private final Mode mode;
+
+    /** 出力間隔(件数) */
+    private final long sampleInterval;
+
+    /** 送信件数(出力対象とするか否かの判定に使用する) */
+    private final AtomicLong sendCount = new AtomicLong();
+
+    /** リングバッファ */
+    private final Slot[] slots;
+
+    /** リングバッファのインデックスを算出するマスク */
+    private final int mask;
+
+    /** 次に書き込む位置 */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** 次に読み出す位置(バックグラウンドのスレッドのみが更新する) */
+    private volatile long head;
+
+    /** 破棄したトレースの件数 */
+    private final LongAdder dropped = new LongAdder();
+
+    /** 終了要求の有無 */
+    private volatile boolean closed;
+
+    /** トレースの出力先 */
+    private final Consumer<String> output;
+
+    /** ログを出力するバックグラウンドのスレッド(ログを出力しない場合はnull) */
+    private final Thread flusher;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param mode 出力方法
+     * @param sampleInterval 出力間隔(件数。{@link Mode#SAMPLED}の場合のみ使用する)
+     * @param bufferSize リングバッファの要素数(2のべき乗に切り上げる)
+     */
+    public MessageTracer(Mode mode, long sampleInterval, int bufferSize) {
+        this(mode, sampleInterval, bufferSize, LOGGER::logInfo);
+    }
+
+    /**
+     * トレースの出力先を指定するコンストラクタ。
+     *
+     * @param mode 出力方法
+     * @param sampleInterval 出力間隔(件数。{@link Mode#SAMPLED}の場合のみ使用する)
+     * @param bufferSize リングバッファの要素数(2のべき乗に切り上げる)
+     * @param output トレースの出力先(バックグラウンドのスレッドから呼び出される)
+     */
+    MessageTracer(Mode mode, long sampleInterval, int bufferSize, Consumer<String> output) {
+        if (sampleInterval <= 0 || bufferSize <= 0) {
+            throw new IllegalArgumentException("sample interval and buffer size must be greater than 0."
+                    + " sample interval = [" + sampleInterval + "], buffer size = [" + bufferSize + ']');
+        }
+        this.mode = mode;
+        this.sampleInterval = sampleInterval;
+        this.output = output;
+        if (mode != Mode.SAMPLED && mode != Mode.FAILURE) {
+            slots = new Slot[0];
+            mask = 0;
+            flusher = null;
+            return;
+        }
+        int capacity = Integer.highestOneBit(Math.max(bufferSize - 1, 1)) << 1;
+        slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        mask = capacity - 1;
+        flusher = new Thread(this::flushLoop, "message-tracer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 送受信メッセージの全項目を出力するか否か。
+     *
+     * @return 出力方法が{@link Mode#FULL}の場合はtrue
+     */
+    public boolean isFullDump() {
+        return mode == Mode.FULL;
+    }
+
+    /**
+     * バックグラウンドのスレッドでトレースを出力するか否か。
+     *
+     * @return 出力方法が{@link Mode#SAMPLED}または{@link Mode#FAILURE}の場合はtrue
+     */
+    boolean isBackgroundFlushing() {
+        return flusher != null;
+    }
+
+    /**
+     * リングバッファに空きがなく、破棄したトレースの件数を取得する。
+     *
+     * @return 破棄したトレースの件数
+     */
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 送信結果のトレースを記録する。
+     * <p/>
+     * 出力対象外の場合は何もしない。
+     *
+     * @param requestId リクエストID
+     * @param synchronous 同期応答送信の場合はtrue
+     * @param latencyMicros 応答時間(マイクロ秒)
+     * @param error 送信がエラーとなった場合はtrue
+     */
+    public void trace(String requestId, boolean synchronous, long latencyMicros, boolean error) {
+        if (flusher == null) {
+            return;
+        }
+        long count = sendCount.incrementAndGet();
+        if (!error && (mode == Mode.FAILURE || count % sampleInterval != 0)) {
+            return;
+        }
+
+        long position;
+        do {
+            position = tail.get();
+            if (position - head >= slots.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(position, position + 1));
+
+        Slot slot = slots[(int) position & mask];
+        slot.sendCount = count;
+        slot.timeMillis = System.currentTimeMillis();
+        slot.threadName = Thread.currentThread().getName();
+        slot.requestId = requestId;
+        slot.synchronous = synchronous;
+        slot.latencyMicros = latencyMicros;
+        slot.error = error;
+        slot.published = position;
+        if (position - head == slots.length / 2) {
+            // リングバッファが半分埋まった時点で、待機中のバックグラウンドのスレッドに出力を促す。
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    /**
+     * リングバッファに残ったトレースを出力し、バックグラウンドのスレッドを終了する。
+     */
+    public void close() {
+        if (flusher == null) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.sum() > 0) {
+            LOGGER.logWarn("message trace dropped because the trace buffer was full. dropped=[" + dropped.sum()
+                    + "], buffer_size=[" + slots.length + "].");
+        }
+    }
+
+    /**
+     * 終了要求があるまで、リングバッファのトレースを出力する。
+     */
+    private void flushLoop() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        StringBuilder sb = new StringBuilder(256);
+        while (true) {
+            boolean closing = closed;
+            while (flush(format, sb)) {
+                // 書き込みが完了していないトレースに到達するまで出力する。
+            }
+            if (closing && head == tail.get()) {
+                return;
+            }
+            LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+        }
+    }
+
+    /**
+     * リングバッファの先頭のトレースを出力する。
+     *
+     * @param format 送信日時のフォーマット
+     * @param sb 出力内容の組み立てに使用するバッファ
+     * @return 出力した場合はtrue(リングバッファが空、または先頭のトレースの書き込みが完了していない場合はfalse)
+     */
+    private boolean flush(SimpleDateFormat format, StringBuilder sb) {
+        long position = head;
+        Slot slot = slots[(int) position & mask];
+        if (slot.published != position) {
+            return false;
+        }
+        sb.setLength(0);
+        sb.append("MESSAGE TRACE send_count=[").append(slot.sendCount)
+          .append("], time=[").append(format.format(new Date(slot.timeMillis)))
+          .append("], thread_name=[").append(slot.threadName)
+          .append("], request_id=[").append(slot.requestId)
+          .append("], synchronous=[").append(slot.synchronous)
+          .append("], status=[").append(slot.error ? "ERROR" : "OK")
+          .append("], latency_us=[").append(slot.latencyMicros).append("].");
+        slot.threadName = null;
+        slot.requestId = null;
+        head = position + 1;
+        output.accept(sb.toString());
+        return true;
+    }
+
+    /**
+     * リングバッファの要素。
+     * <p/>
+     * 送信スレッドは{@link #published}以外の項目を設定した後、最後に{@link #published}に書き込み位置を設定する。
+     * バックグラウンドのスレッドは、{@link #published}が読み出し位置と一致する場合のみ他の項目を読み出す。
+     */
+    private static final class Slot {
+
+        /** 書き込みが完了した位置(未書き込みの場合は-1) */
+        private volatile long published = -1;
+
+        /** 送信件数 */
+        private long sendCount;
+
+        /** 送信結果の記録日時 */
+        private long timeMillis;
+
+        /** スレッド名 */
+        private String threadName;
+
+        /** リクエストID */
+        private String requestId;
+
+        /** 同期応答送信の場合はtrue */
+        private boolean synchronous;
+
+        /** 応答時間(マイクロ秒) */
+        private long latencyMicros;
+
+        /** 送信がエラーとなった場合はtrue */
+        private boolean error;
+    }
+}
@@ -0,0 +1,84 @@
+package please.change.me.simulator.outgoing;
+
+/**
+ * オープンループ送信の送信予定時刻を算出するクラス。
+ * <p/>
+ * 送信レート(件/秒)は、送信開始から立ち上げ時間が経過するまで開始時レートから目標レートまで線形に変化し、
+ * 以降は目標レートで一定とする。
+ * n件目(0始まり)の送信予定時刻は、送信開始からの累積送信件数がnとなる時刻とする。
+ * 送信予定時刻は、応答を待つスレッドの状況に関係なく送信開始時刻と送信件数のみで決まるため、
+ * 送信先の応答が遅延しても送信レートは変化しない。
+ * <p/>
+ * 本クラスは不変であり、スレッドセーフである。
+ */
+public final class SendSchedule {
+
+    /** 1秒あたりのナノ秒 */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /** 開始時レート(件/秒) */
+    private final double initialRate;
+
+    /** 目標レート(件/秒) */
+    private final double targetRate;
+
+    /** 立ち上げ時間(秒) */
+    private final double rampUpSeconds;
+
+    /** 立ち上げ時間中の送信件数 */
+    private final double rampUpCount;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param initialRate 開始時レート(件/秒。0以上)
+     * @param targetRate 目標レート(件/秒。0より大きい値)
+     * @param rampUpSeconds 立ち上げ時間(秒。0の場合は開始時から目標レートで送信する)
+     */
+    public SendSchedule(double initialRate, double targetRate, double rampUpSeconds) {
+        if (targetRate <= 0) {
+            throw new IllegalArgumentException("target rate must be greater than 0. target rate = [" + targetRate + ']');
+        }
+        if (initialRate < 0 || rampUpSeconds < 0) {
+            throw new IllegalArgumentException("initial rate and ramp-up seconds must not be negative."
+                    + " initial rate = [" + initialRate + "], ramp-up seconds = [" + rampUpSeconds + ']');
+        }
+        this.initialRate = initialRate;
+        this.targetRate = targetRate;
+        this.rampUpSeconds = rampUpSeconds;
+        this.rampUpCount = (initialRate + targetRate) * rampUpSeconds / 2;
+    }
+
+    /**
+     * 送信予定時刻を算出する。
+     *
+     * @param sequence 送信の順序(0始まり)
+     * @return 送信開始からの経過時間(ナノ秒)
+     */
+    public long offsetNanos(long sequence) {
+        double seconds;
+        if (sequence >= rampUpCount) {
+            seconds = rampUpSeconds + (sequence - rampUpCount) / targetRate;
+        } else {
+            // 累積送信件数 n = r0 * t + (r1 - r0) * t^2 / (2T) を t について解く。
+            double a = (targetRate - initialRate) / (2 * rampUpSeconds);
+            if (a == 0) {
+                seconds = sequence / initialRate;
+            } else {
+                seconds = (-initialRate + Math.sqrt(initialRate * initialRate + 4 * a * sequence)) / (2 * a);
+            }
+        }
+        return (long) (seconds * NANOS_PER_SECOND);
+    }
+
+    /**
+     * 文字列表現を返却する。
+     *
+     * @return 開始時レート、目標レート及び立ち上げ時間
+     */
+    @Override
+    public String toString() {
+        return "initial_rate=[" + initialRate + "], target_rate=[" + targetRate
+                + "], ramp_up_seconds=[" + rampUpSeconds + ']';
+    }
+}
@@ -10,6 +10,7 @@ import nablarch.fw.ExecutionContext;
 import nablarch.fw.Result;
 import nablarch.fw.Result.Success;
 import nablarch.fw.action.FileBatchActionBase;
+import nablarch.fw.launcher.CommandLine;
 import nablarch.fw.messaging.MessageSender;
 import nablarch.fw.messaging.MessagingContext;
 import nablarch.fw.messaging.SendingMessage;
@@ -17,12 +18,54 @@ import nablarch.fw.messaging.SyncMessage;
 import nablarch.fw.reader.FileDataReader;
 import please.change.me.simulator.common.MessageReadSupport;
 import please.change.me.simulator.outgoing.CyclicDataReader;
+import please.change.me.simulator.outgoing.LatencyHistogram;
+import please.change.me.simulator.outgoing.LatencyRecorder;
+import please.change.me.simulator.outgoing.MessageTracer;
+import please.change.me.simulator.outgoing.SendSchedule;
 
+import java.io.File;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * メッセージ送信シミュレータアクション。
+ * <p/>
+ * 通常は、各スレッドが送信先の応答を待ってから次の要求を送信する(クローズドループ)。
+ * この場合、送信レートは送信先の応答時間に依存する。
+ * <p/>
+ * 設定ファイルの「open-loop.target-rate」に0より大きい値を設定した場合は、オープンループで送信する。
+ * オープンループでは、{@link SendSchedule}で算出した送信予定時刻に要求を送信専用のスレッドに渡し、応答を待たずに次の要求を送信する。
+ * これにより、送信先の応答時間に関わらず、設定された送信レート(及び立ち上げ)で負荷をかけることができる。
+ * 送信専用のスレッドは、実行環境が仮想スレッドをサポートする場合(Java 21以降)は仮想スレッドとし、
+ * それ以外の場合はスレッドプールのスレッドとする。
+ * 同時に応答を待つ要求の数が「open-loop.max-in-flight」に達した場合は、応答を待つ要求が減るまで送信を待ち合わせる。
+ * <p/>
+ * オープンループの応答時間は、実際の送信時刻ではなく送信予定時刻から計測する(coordinated omissionの補正)。
+ * 送信が予定より遅れた場合も、その遅れを応答時間に含めるため、送信先の処理が滞った場合の影響を過小評価しない。
+ * 送信完了後に、実際の送信時刻から計測した応答時間(サービス時間)のパーセンタイル値も併せてログに出力する。
+ * <p/>
+ * オープンループの同期応答送信は送信専用のスレッドで行うため、スレッドに紐付く{@link MessagingContext}は使用できない。
+ * このため、{@link MessageSender}のクライアント(HTTP等)で送信する要求のみを対象とする。
+ * 応答不要送信は応答を待たないため、オープンループでも送信予定時刻にリクエストスレッドで送信する。
+ * <p/>
+ * 送信の応答時間及びエラー件数は、{@link LatencyRecorder}でリクエストID毎に記録する
+ * (応答不要送信は、送信要求の完了までの時間を記録する)。
+ * クローズドループの応答時間は、送信メッセージの組み立て及びログ出力を含めずに、送信の呼び出しのみを計測する。
+ * 集計結果は、設定ファイルの「latency-report.interval-seconds」の間隔毎及び送信完了後にログに出力する。
+ * 「latency-report.dir」を設定した場合は、同じ内容をCSVファイルにも出力する。
+ * <p/>
+ * 送受信メッセージのログは、設定ファイルの「message-trace.mode」で出力方法を切り替える({@link MessageTracer.Mode})。
+ * 「FULL」(デフォルト)の場合は、送受信メッセージの全項目を送信スレッドで出力する。
+ * 全項目の文字列を送信毎に組み立てるため、高い送信レートではログ出力がボトルネックとなる。
+ * 負荷をかける場合は「SAMPLED」または「FAILURE」とし、送信結果の概要のみを{@link MessageTracer}でバックグラウンドに出力する。
  *
  * @author Ryo TANAKA
  * @since 1.4.2
@@ -38,12 +81,98 @@ public class OutgoingSimulatorAction  extends FileBatchActionBase<DataRecord>
     /** Excelからデータを読み取るクラス。 */
     private final MessageReadSupport messageReadSupport = new MessageReadSupport();
 
+    /** オープンループの送信予定時刻(クローズドループの場合はnull) */
+    private SendSchedule sendSchedule;
+
+    /** オープンループの送信開始時刻(ナノ秒) */
+    private long sendStartNanos;
+
+    /** オープンループの送信件数 */
+    private final AtomicLong sendSequence = new AtomicLong();
+
+    /** オープンループで同時に応答を待つ要求の数の上限 */
+    private int maxInFlight;
+
+    /** オープンループで同時に応答を待つ要求の数を制限するセマフォ */
+    private Semaphore inFlight;
+
+    /** オープンループの同期応答送信を行うスレッド */
+    private ExecutorService sendExecutor;
+
+    /** 送信の応答時間を記録するクラス */
+    private LatencyRecorder latencyRecorder;
+
+    /** 送信結果のトレースを出力するクラス */
+    private MessageTracer messageTracer;
+
+    /** オープンループの実際の送信時刻から計測した応答時間(マイクロ秒) */
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 応答時間の記録及び送信結果のトレースの出力を開始する。
+     * オープンループで送信する場合は、送信予定時刻の算出及び送信専用のスレッドを準備する。
+     */
+    @Override
+    protected void initialize(CommandLine command, ExecutionContext context) {
+        latencyRecorder = new LatencyRecorder((long) getDoubleOrElse("latency-report.interval-seconds", 0),
+                                              getLatencyReportFile());
+        String traceMode = SystemRepository.getString("message-trace.mode");
+        messageTracer = new MessageTracer(
+                traceMode == null || traceMode.isEmpty() ? MessageTracer.Mode.FULL
+                                                         : MessageTracer.Mode.valueOf(traceMode.toUpperCase()),
+                (long) getDoubleOrElse("message-trace.sample-interval", 1000),
+                (int) getDoubleOrElse("message-trace.buffer-size", 8192));
+        double targetRate = getDoubleOrElse("open-loop.target-rate", 0);
+        if (targetRate <= 0) {
+            return;
+        }
+        sendSchedule = new SendSchedule(getDoubleOrElse("open-loop.initial-rate", targetRate), targetRate,
+                                        getDoubleOrElse("open-loop.ramp-up-seconds", 0));
+        maxInFlight = (int) getDoubleOrElse("open-loop.max-in-flight", 10000);
+        inFlight = new Semaphore(maxInFlight);
+        sendExecutor = newSendExecutor();
+        LOGGER.logInfo("open loop send. " + sendSchedule + ", max_in_flight=[" + maxInFlight + "].");
+        sendStartNanos = System.nanoTime();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * オープンループで送信した場合は、応答を待つ全ての要求の完了を待ち合わせ、実際の送信レート及びサービス時間をログに出力する。
+     * その後、応答時間の累計及びバックグラウンドに残った送信結果のトレースを出力する。
+     */
+    @Override
+    protected void terminate(Result result, ExecutionContext context) {
+        if (sendExecutor != null) {
+            inFlight.acquireUninterruptibly(maxInFlight);
+            sendExecutor.shutdown();
+            long elapsedNanos = System.nanoTime() - sendStartNanos;
+            long sent = sendSequence.get();
+            LOGGER.logInfo("open loop send completed. sent=[" + sent
+                    + "], elapsed_ms=[" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos)
+                    + "], actual_rate=[" + String.format("%.1f", sent * 1e9 / Math.max(elapsedNanos, 1)) + "]. "
+                    + "service_time_us " + summarize(serviceTime) + '.');
+        }
+        if (latencyRecorder != null) {
+            latencyRecorder.close();
+        }
+        if (messageTracer != null) {
+            messageTracer.close();
+        }
+    }
+
 
     /** {@inheritDoc} */
     public Result doData(DataRecord record, ExecutionContext context) {
         Result result = null;
-        String synchronous = record.getString("synchronous");
-        if (synchronous.toUpperCase().equals("TRUE")) {
+        boolean synchronous = "TRUE".equalsIgnoreCase(record.getString("synchronous"));
+        if (sendSchedule != null) {
+            // オープンループ送信
+            return openLoopSend(record, context, synchronous);
+        }
+        if (synchronous) {
             // 同期応答メッセージ送信
             result = synchronousSend(record, context);
         } else {
@@ -54,6 +183,81 @@ public class OutgoingSimulatorAction  extends FileBatchActionBase<DataRecord>
     }
 
 
+    /**
+     * オープンループ送信。
+     * <p/>
+     * 送信予定時刻まで待機した後、同期応答送信の場合は送信専用のスレッドで送信し、応答を待たずに復帰する。
+     *
+     * @param record データレコード
+     * @param context コンテキスト
+     * @param synchronous 同期応答送信の場合はtrue
+     * @return 処理結果
+     */
+    Result openLoopSend(DataRecord record, ExecutionContext context, boolean synchronous) {
+        long intendedNanos = sendStartNanos + sendSchedule.offsetNanos(sendSequence.getAndIncrement());
+        long waitNanos;
+        while ((waitNanos = intendedNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(waitNanos);
+        }
+        if (!synchronous) {
+            return asynchronousSend(record, true, intendedNanos);
+        }
+
+        inFlight.acquireUninterruptibly();
+        try {
+            sendExecutor.execute(() -> {
+                try {
+                    synchronousSend(record, true, intendedNanos);
+                } catch (RuntimeException e) {
+                    LOGGER.logWarn("open loop send failed. request_id=[" + record.getString("requestId") + "].", e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        return new Success();
+    }
+
+    /**
+     * 送信の応答時間を記録し、送信結果のトレースを出力する。
+     * <p/>
+     * 応答時間は、オープンループの場合は送信予定時刻から、クローズドループの場合は送信開始時刻から計測する。
+     * オープンループの同期応答送信の場合は、送信開始時刻から計測した応答時間をサービス時間として併せて記録する。
+     * 応答時間の記録を開始していない場合({@link #initialize(CommandLine, ExecutionContext)}前)は、何もしない。
+     *
+     * @param requestId リクエストID
+     * @param synchronous 同期応答送信の場合はtrue
+     * @param scheduled オープンループの送信の場合はtrue
+     * @param intendedNanos 送信予定時刻(ナノ秒。オープンループの送信の場合のみ使用する)
+     * @param startNanos 送信開始時刻(ナノ秒)
+     * @param error 送信がエラーとなった場合はtrue
+     */
+    private void recordLatency(String requestId, boolean synchronous, boolean scheduled, long intendedNanos,
+            long startNanos, boolean error) {
+        long endNanos = System.nanoTime();
+        if (scheduled && synchronous) {
+            serviceTime.record(TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos));
+        }
+        if (latencyRecorder == null) {
+            return;
+        }
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(endNanos - (scheduled ? intendedNanos : startNanos));
+        latencyRecorder.record(requestId, latencyMicros, error);
+        messageTracer.trace(requestId, synchronous, latencyMicros, error);
+    }
+
+    /**
+     * 送受信メッセージの全項目をログに出力するか否か。
+     *
+     * @return 出力方法が「FULL」(初期化前を含む)で、INFOレベルのログが有効な場合はtrue
+     */
+    private boolean isFullDumpEnabled() {
+        return (messageTracer == null || messageTracer.isFullDump()) && LOGGER.isInfoEnabled();
+    }
+
     /**
      * 同期応答送信。
      * @param record データレコード
@@ -61,12 +265,27 @@ public class OutgoingSimulatorAction  extends FileBatchActionBase<DataRecord>
      * @return 処理結果
      */
     public Result synchronousSend(DataRecord record, ExecutionContext context) {
+        return synchronousSend(record, false, 0);
+    }
+
+    /**
+     * 同期応答送信。
+     * <p/>
+     * 応答時間は、送信メッセージの組み立て及びログ出力を含めずに、{@link MessageSender#sendSync(SyncMessage)}の
+     * 呼び出しのみを計測する。(オープンループの場合は、送信予定時刻から応答受信までを計測する)
+     *
+     * @param record データレコード
+     * @param scheduled オープンループの送信の場合はtrue
+     * @param intendedNanos 送信予定時刻(ナノ秒。オープンループの送信の場合のみ使用する)
+     * @return 処理結果
+     */
+    private Result synchronousSend(DataRecord record, boolean scheduled, long intendedNanos) {
         String sendMessageRequestId = record.getString("requestId");
         
         SyncMessage syncMessage = messageReadSupport.getSyncMessage(sendMessageRequestId);
 
         //送信内容のログを出力する
-        if (LOGGER.isInfoEnabled()) {
+        if (isFullDumpEnabled()) {
             StringBuilder sb = new StringBuilder();
             sb.append("SENT MESSAGE(in synchronousSend) ");
             sb.append("thread_name=[" + Thread.currentThread().getName() + "]. ");
@@ -78,10 +297,18 @@ public class OutgoingSimulatorAction  extends FileBatchActionBase<DataRecord>
             LOGGER.logInfo(sb.toString());
         }
 
-        SyncMessage receiveSyncMessage = MessageSender.sendSync(syncMessage);
+        long startNanos = System.nanoTime();
+        boolean error = true;
+        SyncMessage receiveSyncMessage;
+        try {
+            receiveSyncMessage = MessageSender.sendSync(syncMessage);
+            error = false;
+        } finally {
+            recordLatency(sendMessageRequestId, true, scheduled, intendedNanos, startNanos, error);
+        }
         
         //受信内容のログを出力する
-        if (LOGGER.isInfoEnabled()) {
+        if (isFullDumpEnabled()) {
             StringBuilder sb = new StringBuilder();
             sb.append("RECEIVED MESSAGE(in synchronousSend) ");
             sb.append("thread_name=[" + Thread.currentThread().getName() + "]. ");
@@ -103,11 +330,26 @@ public class OutgoingSimulatorAction  extends FileBatchActionBase<DataRecord>
      * @return 処理結果
      */
     public Result asynchronousSend(DataRecord record, ExecutionContext context) {
+        return asynchronousSend(record, false, 0);
+    }
+
+    /**
+     * 応答不要送信。
+     * <p/>
+     * 応答時間は、送信メッセージの組み立て及びログ出力を含めずに、{@link MessagingContext#send(SendingMessage)}の
+     * 呼び出しのみを計測する。(オープンループの場合は、送信予定時刻から送信要求の完了までを計測する)
+     *
+     * @param record データレコード
+     * @param scheduled オープンループの送信の場合はtrue
+     * @param intendedNanos 送信予定時刻(ナノ秒。オープンループの送信の場合のみ使用する)
+     * @return 処理結果
+     */
+    private Result asynchronousSend(DataRecord record, boolean scheduled, long intendedNanos) {
         String sendMessageRequestId = record.getString("requestId");
 
         SendingMessage message = messageReadSupport.getSendingMessage(sendMessageRequestId);
         //送信内容のログを出力する
-        if (LOGGER.isInfoEnabled()) {
+        if (isFullDumpEnabled()) {
             StringBuilder sb = new StringBuilder();
             sb.append("SENT MESSAGE(in asynchronousSend) ");
             sb.append("thread_name=[" + Thread.currentThread().getName() + "]. ");
@@ -116,7 +358,14 @@ public class OutgoingSimulatorAction  extends FileBatchActionBase<DataRecord>
         }
 
         MessagingContext ctx = MessagingContext.getInstance();
-        ctx.send(message);
+        long startNanos = System.nanoTime();
+        boolean error = true;
+        try {
+            ctx.send(message);
+            error = false;
+        } finally {
+            recordLatency(sendMessageRequestId, false, scheduled, intendedNanos, startNanos, error);
+        }
         return new Success();
     }
 
@@ -155,6 +404,69 @@ public class OutgoingSimulatorAction  extends FileBatchActionBase<DataRecord>
         return new CyclicDataReader(dataRecords, sendCount);
     }
 
+    /**
+     * オープンループの同期応答送信を行うスレッドを生成する。
+     * <p/>
+     * 実行環境が仮想スレッドをサポートする場合は、要求毎に仮想スレッドを生成する。
+     * サポートしない場合は、必要に応じてスレッドを生成するスレッドプールを使用する。
+     * (同時に実行する数は、同時に応答を待つ要求の数の上限で制限する)
+     *
+     * @return 同期応答送信を行うスレッド
+     */
+    private static ExecutorService newSendExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "open-loop-sender");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * 応答時間のパーセンタイル値を文字列に変換する。
+     *
+     * @param histogram 応答時間
+     * @return パーセンタイル値の文字列表現
+     */
+    private static String summarize(LatencyHistogram histogram) {
+        return "count=[" + histogram.getTotalCount()
+                + "], p50=[" + histogram.getValueAtPercentile(50)
+                + "], p90=[" + histogram.getValueAtPercentile(90)
+                + "], p99=[" + histogram.getValueAtPercentile(99)
+                + "], p99.9=[" + histogram.getValueAtPercentile(99.9)
+                + "], max=[" + histogram.getMaxValue() + ']';
+    }
+
+    /**
+     * 応答時間の集計結果を出力するCSVファイルを取得する。
+     * <p/>
+     * ファイル名は「latency_実行日時(yyyyMMddHHmmss).csv」とする。
+     *
+     * @return CSVファイル(「latency-report.dir」が設定されていない場合はnull)
+     */
+    private static File getLatencyReportFile() {
+        String dir = SystemRepository.getString("latency-report.dir");
+        if (dir == null || dir.isEmpty()) {
+            return null;
+        }
+        return new File(dir, "latency_" + new SimpleDateFormat("yyyyMMddHHmmss").format(new Date()) + ".csv");
+    }
+
+    /**
+     * 設定値を数値で取得する。
+     *
+     * @param key 設定値のキー
+     * @param alternative 設定されていない場合に使用する代替値
+     * @return 設定値
+     */
+    private static double getDoubleOrElse(String key, double alternative) {
+        String value = SystemRepository.getString(key);
+        return value == null || value.isEmpty() ? alternative : Double.parseDouble(value);
+    }
+
     /**
      * 送信回数を取得する。
      * 送信回数をセッションスコープから取得する。この値はプログラム引数から引き継がれる。
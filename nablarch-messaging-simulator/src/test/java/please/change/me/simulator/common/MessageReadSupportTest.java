@@ -1,7 +1,10 @@
 package please.change.me.simulator.common;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -158,6 +161,31 @@ public class MessageReadSupportTest {
 
     }
 
+    /**
+     * 正常系のテスト。
+     * 同じ行の要求電文の本文は、初回の解析結果が再利用され、変更できないことを確認する。
+     */
+    @Test
+    public void testGetSyncMessageCachedBody() {
+        loadConfig("outgoing-simulator-component-configuration.xml", "unit-test.xml");
+
+        SyncMessage first = messageReadSupport.getSyncMessage("RM11AC0316");
+        SyncMessage second = messageReadSupport.getSyncMessage("RM11AC0316");
+        SyncMessage third = messageReadSupport.getSyncMessage("RM11AC0316");
+        assertThat((String) first.getDataRecord().get("a"), is("あ"));
+        assertThat((String) second.getDataRecord().get("a"), is("い"));
+        assertThat(third.getDataRecord(), is(sameInstance(first.getDataRecord())));
+
+        // ヘッダは要求電文毎に生成される
+        assertThat(third.getHeaderRecord(), is(not(sameInstance(first.getHeaderRecord()))));
+        try {
+            third.getDataRecord().put("a", "う");
+            fail("UnsupportedOperationException must be thrown.");
+        } catch (UnsupportedOperationException e) {
+            assertThat((String) first.getDataRecord().get("a"), is("あ"));
+        }
+    }
+
     /**
      * 正常系のテスト。
      * 1行だけ記述されている二つのExcelファイルを交互に読み込む。
@@ -823,4 +851,66 @@ public class MessageReadSupportTest {
         actualString = new String(responseMessage.getBodyBytes(), "MS932");
         assertThat(actualString, is(expectString2.toString()));
     }
+
+    /**
+     * 正常系のテスト。
+     * 応答電文のテンプレートを使用する場合も、2行だけテストデータが記述されたExcelについて、
+     * 1行目、2行目、1行目、2行目の順でステータスコード、ヘッダ及び本文が返ってくる事を確認する。
+     */
+    @Test
+    public void testGetResponseForHttpPrecompiled() {
+        loadConfig("incoming-http-simulator-component-configuration.xml", "unit-test.xml");
+
+        MessageReadSupport precompiled = new MessageReadSupport();
+        precompiled.setPrecompiledResponse(true);
+
+        for (int i = 0; i < 2; i++) {
+            HttpResponse responseForHttp = precompiled.getResponseForHttp("RM11AC0313");
+            assertThat(responseForHttp.getStatusCode(), is(202));
+            assertThat(responseForHttp.getBodyString(), is("<?xml version=\"1.0\"?><response><failureCode></failureCode><userInfoId>HTTPメッセージングのレスポンスのテスト1</userInfoId><dataKbn>0</dataKbn></response>"));
+            assertThat(responseForHttp.getHeaderMap().get("Content-Type"), is("application/xml;charset=Shift-JIS"));
+
+            responseForHttp = precompiled.getResponseForHttp("RM11AC0313");
+            assertThat(responseForHttp.getStatusCode(), is(400));
+            assertThat(responseForHttp.getBodyString(), is("<?xml version=\"1.0\"?><response><failureCode></failureCode><userInfoId>HTTPメッセージングのレスポンスのテスト2</userInfoId><dataKbn>0</dataKbn></response>"));
+            assertThat(responseForHttp.getHeaderMap().get("Content-Type"), is("application/xml;charset=Shift-JIS"));
+        }
+    }
+
+    /**
+     * 正常系のテスト。
+     * 応答電文のテンプレートを使用する場合も、2行だけテストデータが記述されたExcelについて、
+     * 1行目、2行目、1行目、2行目の順でヘッダと本文を結合した値が返ってくる事を確認する。
+     * また、フレームワーク制御ヘッダ部分が記載されていない場合は、本文のみが返ってくる事を確認する。
+     * @throws Exception 例外
+     */
+    @Test
+    public void testGetMessageForMomPrecompiled() throws Exception {
+        loadConfig("incoming-mom-simulator-component-configuration.xml", "unit-test.xml");
+
+        MessageReadSupport precompiled = new MessageReadSupport();
+        precompiled.setPrecompiledResponse(true);
+
+        String expectString1 = "RM11AC0201           200                          \r\n"
+                + "0あ　　　　0                   200                           \r\n";
+        String expectString2 = "RM11AC0201           201                          \r\n"
+                + "0い　　　　0                   200                           \r\n";
+
+        //ダミーの受信メッセージ
+        ReceivedMessage receivedMessage = new ReceivedMessage(new byte[0]);
+        receivedMessage.setMessageId("ID");
+        receivedMessage.setReplyTo("RESPONSE");
+
+        for (int i = 0; i < 2; i++) {
+            ResponseMessage responseMessage = precompiled.getMessageForMom("RM11AC0314", receivedMessage);
+            assertThat(new String(responseMessage.getBodyBytes(), "MS932"), is(expectString1));
+
+            responseMessage = precompiled.getMessageForMom("RM11AC0314", receivedMessage);
+            assertThat(new String(responseMessage.getBodyBytes(), "MS932"), is(expectString2));
+        }
+
+        ResponseMessage responseMessage = precompiled.getMessageForMom("RM11AC0308", receivedMessage);
+        assertThat(new String(responseMessage.getBodyBytes(), "MS932"),
+                   is("0あ　　　　0                   200                           \r\n"));
+    }
 }
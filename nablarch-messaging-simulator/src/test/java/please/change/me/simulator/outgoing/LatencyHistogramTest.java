@@ -0,0 +1,61 @@
+package please.change.me.simulator.outgoing;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * {@link LatencyHistogram}のテスト。
+ */
+public class LatencyHistogramTest {
+
+    /** 小さい値は値毎に記録され、パーセンタイル値が正確に算出されること。 */
+    @Test
+    public void testSmallValues() {
+        LatencyHistogram target = new LatencyHistogram();
+        assertThat(target.getValueAtPercentile(50), is(0L));
+        for (int i = 1; i <= 100; i++) {
+            target.record(i);
+        }
+        assertThat(target.getTotalCount(), is(100L));
+        assertThat(target.getMaxValue(), is(100L));
+        assertThat(target.getMean(), is(50.5));
+        assertThat(target.getValueAtPercentile(50), is(50L));
+        assertThat(target.getValueAtPercentile(99), is(99L));
+        assertThat(target.getValueAtPercentile(100), is(100L));
+    }
+
+    /** 大きい値のパーセンタイル値は、相対誤差1/128以内で算出されること。 */
+    @Test
+    public void testLargeValues() {
+        LatencyHistogram target = new LatencyHistogram();
+        for (long i = 1; i <= 100000; i++) {
+            target.record(i * 1000);
+        }
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            double expected = percentile * 1000 * 1000;
+            long actual = target.getValueAtPercentile(percentile);
+            assertThat((double) actual, closeTo(expected, expected / 128));
+        }
+        assertThat(target.getValueAtPercentile(100), is(100000000L));
+        assertThat(target.getValueAtPercentile(100), lessThanOrEqualTo(target.getMaxValue()));
+    }
+
+    /** 他のヒストグラムの値を加算できること。 */
+    @Test
+    public void testAdd() {
+        LatencyHistogram target = new LatencyHistogram();
+        LatencyHistogram other = new LatencyHistogram();
+        target.record(10);
+        other.record(20);
+        other.record(30);
+        target.add(other);
+        assertThat(target.getTotalCount(), is(3L));
+        assertThat(target.getMaxValue(), is(30L));
+        assertThat(target.getMean(), is(20.0));
+        assertThat(target.getValueAtPercentile(50), is(20L));
+    }
+}
@@ -0,0 +1,104 @@
+package please.change.me.simulator.outgoing;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link LatencyRecorder}のテスト。
+ */
+public class LatencyRecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** リクエストID毎及び全リクエストIDの合計の累計が、CSVファイルに出力されること。 */
+    @Test
+    public void testTotalReport() throws Exception {
+        File csv = new File(folder.getRoot(), "report/latency.csv");
+        LatencyRecorder target = new LatencyRecorder(0, csv);
+        target.record("RM11AC0101", 100, false);
+        target.record("RM11AC0101", 200, false);
+        target.record("RM11AC0101", 300, true);
+        target.record("RM11AC0102", 1000, false);
+        target.close();
+
+        List<String> lines = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+        assertThat(lines.size(), is(4));
+        assertThat(lines.get(0), is(LatencyRecorder.CSV_HEADER));
+        assertThat(columns(lines.get(1)), is("TOTAL,ALL,4,1,400.0,200,1000,1000,1000,1000"));
+        assertThat(columns(lines.get(2)), is("TOTAL,RM11AC0101,3,1,200.0,200,300,300,300,300"));
+        assertThat(columns(lines.get(3)), is("TOTAL,RM11AC0102,1,0,1000.0,1000,1000,1000,1000,1000"));
+    }
+
+    /**
+     * 報告間隔毎の集計の切り替えと並行して記録した場合。
+     * <p/>
+     * 記録した全ての値が、いずれかの報告間隔に含まれること。
+     */
+    @Test
+    public void testIntervalReportWhileRecording() throws Exception {
+        File csv = new File(folder.getRoot(), "latency.csv");
+        LatencyRecorder target = new LatencyRecorder(0, csv);
+        int threadCount = 4;
+        int recordCount = 50000;
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            String requestId = "RM11AC010" + (i % 2);
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < recordCount; j++) {
+                    target.record(requestId, j % 1000, false);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                target.reportInterval();
+            }
+            thread.join();
+        }
+        target.reportInterval();
+        target.close();
+
+        long intervalCount = 0;
+        long totalCount = 0;
+        for (String line : Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8)) {
+            String[] columns = line.split(",");
+            if (columns[2].equals("ALL")) {
+                if (columns[0].equals("INTERVAL")) {
+                    intervalCount += Long.parseLong(columns[3]);
+                } else {
+                    totalCount += Long.parseLong(columns[3]);
+                }
+            }
+        }
+        assertThat(totalCount, is((long) threadCount * recordCount));
+        assertThat(intervalCount, is(totalCount));
+    }
+
+    /**
+     * 経過時間及びスループットを除いた項目を取得する(実行時間に依存するため)。
+     *
+     * @param line CSVファイルの行
+     * @return 種別、リクエストID、件数、エラー件数、平均値及びパーセンタイル値
+     */
+    private static String columns(String line) {
+        String[] columns = line.split(",");
+        StringBuilder sb = new StringBuilder(columns[0]);
+        for (int i = 2; i < columns.length; i++) {
+            if (i != 5) {
+                sb.append(',').append(columns[i]);
+            }
+        }
+        return sb.toString();
+    }
+}
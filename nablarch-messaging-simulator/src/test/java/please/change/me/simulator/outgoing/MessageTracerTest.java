@@ -0,0 +1,151 @@
+package please.change.me.simulator.outgoing;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link MessageTracer}のテスト。
+ */
+public class MessageTracerTest {
+
+    /** トレースから送信件数を抽出するパターン */
+    private static final Pattern SEND_COUNT = Pattern.compile("send_count=\\[(\\d+)]");
+
+    /** 出力されたトレース */
+    private final List<String> outputs = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * 出力方法が「SAMPLED」の場合。
+     * <p/>
+     * 出力間隔毎に1件と、送信に失敗した全件のトレースが出力されること。
+     */
+    @Test
+    public void testSampled() {
+        MessageTracer target = new MessageTracer(MessageTracer.Mode.SAMPLED, 3, 16, outputs::add);
+        assertThat(target.isBackgroundFlushing(), is(true));
+        for (int i = 1; i <= 10; i++) {
+            target.trace("RM11AC0101", true, i * 100, i == 5);
+        }
+        target.close();
+
+        assertThat(sendCounts(), is(Arrays.asList(3L, 5L, 6L, 9L)));
+        assertThat(outputs.get(0), containsString("request_id=[RM11AC0101], synchronous=[true], status=[OK]"
+                + ", latency_us=[300]."));
+        assertThat(outputs.get(1), containsString("status=[ERROR], latency_us=[500]."));
+    }
+
+    /**
+     * 出力方法が「FAILURE」の場合。
+     * <p/>
+     * 送信に失敗したトレースのみが出力されること。
+     */
+    @Test
+    public void testFailure() {
+        MessageTracer target = new MessageTracer(MessageTracer.Mode.FAILURE, 3, 16, outputs::add);
+        assertThat(target.isBackgroundFlushing(), is(true));
+        for (int i = 1; i <= 10; i++) {
+            target.trace("RM11AC0101", false, 100, i == 2 || i == 7);
+        }
+        target.close();
+
+        assertThat(sendCounts(), is(Arrays.asList(2L, 7L)));
+    }
+
+    /**
+     * 出力方法が「FULL」及び「NONE」の場合。
+     * <p/>
+     * バックグラウンドのスレッドは起動されず、トレースは出力されないこと。
+     */
+    @Test
+    public void testFullAndNone() {
+        for (MessageTracer.Mode mode : Arrays.asList(MessageTracer.Mode.FULL, MessageTracer.Mode.NONE)) {
+            MessageTracer target = new MessageTracer(mode, 1, 16, outputs::add);
+            assertThat(target.isBackgroundFlushing(), is(false));
+            assertThat(target.isFullDump(), is(mode == MessageTracer.Mode.FULL));
+            target.trace("RM11AC0101", true, 100, true);
+            target.close();
+        }
+        assertThat(outputs.isEmpty(), is(true));
+    }
+
+    /**
+     * リングバッファに空きがない場合。
+     * <p/>
+     * 送信スレッドは待ち合わせずにトレースを破棄し、破棄した件数が計上されること。
+     */
+    @Test
+    public void testBufferFull() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MessageTracer target = new MessageTracer(MessageTracer.Mode.FAILURE, 1, 4, trace -> {
+            outputs.add(trace);
+            flushing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // 1件目の出力中にバックグラウンドのスレッドを止め、リングバッファ(4件)を超えるトレースを記録する。
+        target.trace("RM11AC0101", true, 100, true);
+        assertThat(flushing.await(10, TimeUnit.SECONDS), is(true));
+        for (int i = 0; i < 10; i++) {
+            target.trace("RM11AC0101", true, 100, true);
+        }
+        assertThat(target.getDroppedCount(), is(6L));
+
+        release.countDown();
+        target.close();
+        assertThat(sendCounts(), is(Arrays.asList(1L, 2L, 3L, 4L, 5L)));
+        assertThat(target.getDroppedCount(), is(6L));
+    }
+
+    /**
+     * 終了時にリングバッファにトレースが残っている場合。
+     * <p/>
+     * バックグラウンドのスレッドの終了前に、全てのトレースが記録順に出力されること。
+     */
+    @Test
+    public void testCloseDrainsBuffer() {
+        MessageTracer target = new MessageTracer(MessageTracer.Mode.FAILURE, 1, 1024, outputs::add);
+        List<Long> expected = new ArrayList<>();
+        for (long i = 1; i <= 500; i++) {
+            target.trace("RM11AC0101", true, 100, true);
+            expected.add(i);
+        }
+        target.close();
+
+        assertThat(sendCounts(), is(expected));
+        assertThat(target.getDroppedCount(), is(0L));
+    }
+
+    /**
+     * 出力されたトレースの送信件数を、出力順に取得する。
+     *
+     * @return 送信件数
+     */
+    private List<Long> sendCounts() {
+        List<Long> counts = new ArrayList<>();
+        synchronized (outputs) {
+            for (String output : outputs) {
+                Matcher matcher = SEND_COUNT.matcher(output);
+                assertThat(output, matcher.find(), is(true));
+                counts.add(Long.parseLong(matcher.group(1)));
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,39 @@
+package please.change.me.simulator.outgoing;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link SendSchedule}のテスト。
+ */
+public class SendScheduleTest {
+
+    /** 立ち上げ時間がない場合、目標レートの間隔で送信すること。 */
+    @Test
+    public void testConstantRate() {
+        SendSchedule target = new SendSchedule(100, 100, 0);
+        assertThat(target.offsetNanos(0), is(0L));
+        assertThat(target.offsetNanos(1), is(10000000L));
+        assertThat(target.offsetNanos(250), is(2500000000L));
+    }
+
+    /** 立ち上げ時間中は送信レートが線形に変化し、以降は目標レートで送信すること。 */
+    @Test
+    public void testRampUp() {
+        // 0件/秒から10秒かけて100件/秒まで上げる(立ち上げ時間中の送信件数は500件)
+        SendSchedule target = new SendSchedule(0, 100, 10);
+        assertThat(target.offsetNanos(0), is(0L));
+        assertThat(target.offsetNanos(5), is(1000000000L));     // n = 5 * t^2
+        assertThat(target.offsetNanos(125), is(5000000000L));
+        assertThat(target.offsetNanos(500), is(10000000000L));
+        assertThat(target.offsetNanos(600), is(11000000000L));
+    }
+
+    /** 目標レートが0以下の場合、例外が送出されること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTargetRate() {
+        new SendSchedule(0, 0, 10);
+    }
+}
@@ -0,0 +1,159 @@
+package please.change.me.statistics.action;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nablarch.core.util.FileUtil;
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+import please.change.me.statistics.aggregate.RollupResultHolder;
+import please.change.me.statistics.benchmark.AccessLogGenerator;
+import please.change.me.statistics.benchmark.BenchmarkRepository;
+
+/**
+ * {@link OnlineAccessLogParseAction}の解析処理及び集計結果CSVの出力までのベンチマーク。
+ * <p/>
+ * {@link AccessLogGenerator}で生成した複数のアクセスログを対象に、以下を計測する。
+ * <ul>
+ * <li>parse: {@link AccessLogParseExecutor}によるアクセスログの解析(リクエスト情報の抽出)のみ</li>
+ * <li>
+ * summarize: 解析、集計セルへの集計、集計単位毎の集計結果の導出及び集計結果CSVの出力まで
+ * ({@link OnlineAccessLogParseAction}で直接集計する場合と同じ処理。ファイルのコピーは含まない)<br/>
+ * 集計セル数の上限を指定した場合は、集計セルの一時ファイルへの退避及びマージも含む。
+ * </li>
+ * </ul>
+ * バッチアクションは起動せずに、アクションと同じクラスを直接使用するため、本クラスはアクションと同じパッケージに配置する。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class OnlineAccessLogParseBenchmark {
+
+    /** 集計結果CSVの格納先ディレクトリの論理名 */
+    private static final String SUMMARY_DIR = "requestInfoSummary.dir";
+
+    /** 集計セルの一時ファイルの格納先ディレクトリの論理名 */
+    private static final String SPILL_DIR = "aggregateSpill.dir";
+
+    /** アクセスログの行数(全ファイルの合計) */
+    @Param({"1000000", "10000000", "100000000"})
+    private long lineCount;
+
+    /** リクエストIDの種類数 */
+    @Param({"20", "1000"})
+    private int requestIdCardinality;
+
+    /** アクセスログのファイル数 */
+    @Param({"4"})
+    private int fileCount;
+
+    /** アクセスログを並列に解析するスレッド数 */
+    @Param({"1", "4"})
+    private int parallelism;
+
+    /** メモリ上に保持する集計セル数の上限(0の場合は上限なし) */
+    @Param({"0", "10000"})
+    private int aggregateCellLimit;
+
+    /** 解析対象のアクセスログ */
+    private List<AccessLogSource> sources;
+
+    /** オンラインアクセスログ解析処理の設定値 */
+    private OnlineStatisticsDefinition definition;
+
+    /** 集計結果CSVの格納先ディレクトリ */
+    private File summaryDir;
+
+    /** 集計セルの一時ファイルの格納先ディレクトリ */
+    private File spillDir;
+
+    /**
+     * アクセスログを生成し(生成済みの場合は再利用する)、解析処理の設定値を生成する。
+     *
+     * @throws IOException 集計結果CSVの格納先ディレクトリの生成に失敗した場合
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        AccessLogGenerator generator = new AccessLogGenerator(lineCount, requestIdCardinality);
+        File directory = generator.generateAccessLogs(fileCount);
+        sources = new ArrayList<>();
+        for (String name : AccessLogGenerator.listFileNames(directory)) {
+            sources.add(AccessLogSource.of(new File(directory, name)));
+        }
+
+        summaryDir = Files.createTempDirectory("summary").toFile();
+        spillDir = Files.createTempDirectory("spill").toFile();
+        Map<String, String> basePaths = new HashMap<>();
+        basePaths.put(SUMMARY_DIR, "file:" + summaryDir.getAbsolutePath());
+        basePaths.put(SPILL_DIR, "file:" + spillDir.getAbsolutePath());
+        BenchmarkRepository.load(basePaths);
+
+        definition = generator.createDefinition();
+        definition.setAccessLogParseParallelism(parallelism);
+        definition.setThresholdExecutionTime(1000);
+        definition.setRequestInfoSummaryBaseName(SUMMARY_DIR);
+        definition.setRequestInfoSummaryFormatName("requestInfoAggregate");
+        definition.setAggregateCellLimit(aggregateCellLimit);
+        definition.setAggregateSpillBaseName(SPILL_DIR);
+    }
+
+    /** 出力した集計結果CSV及び集計セルの一時ファイルの格納先ディレクトリを削除する。 */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (File directory : new File[] {summaryDir, spillDir}) {
+            for (File file : FileUtil.listFiles(directory.getAbsolutePath(), "*")) {
+                FileUtil.deleteFile(file);
+            }
+            FileUtil.deleteFile(directory);
+        }
+    }
+
+    /**
+     * アクセスログの解析のみを計測する。
+     *
+     * @return 抽出したリクエストの処理時間の合計(最適化による処理の除去を防ぐため)
+     */
+    @Benchmark
+    public long parse() {
+        long[] total = new long[1];
+        new AccessLogParseExecutor(definition).parse(sources,
+                requestInfo -> total[0] += requestInfo.getExecutionTime());
+        return total[0];
+    }
+
+    /**
+     * アクセスログの解析から集計結果CSVの出力までを計測する。
+     *
+     * @return 集計セル(最適化による処理の除去を防ぐため)
+     */
+    @Benchmark
+    public RollupResultHolder summarize() {
+        RequestInfoSummary summary = new RequestInfoSummary(definition);
+        RollupResultHolder cells = summary.createRollupHolder();
+        new AccessLogParseExecutor(definition).parse(sources, requestInfo -> summary.add(cells, requestInfo));
+        summary.write(cells);
+        return cells;
+    }
+}
@@ -0,0 +1,240 @@
+package please.change.me.statistics.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+
+/**
+ * ベンチマーク用のアクセスログ及びリクエスト情報CSVを生成するクラス。
+ * <p/>
+ * 1リクエストあたり7行(開始ログ、終了ログ及び終了ログの詳細5行)のアクセスログを、指定された行数に達するまで生成する。
+ * リクエストIDは「REQ1」～「REQ + 種類数」から選択し、処理時間は実際のアクセスログに近い裾の長い分布とする。
+ * 生成する内容は行数、リクエストIDの種類数及びファイル数のみで決まる。(乱数のシードも固定)
+ * <p/>
+ * 1億行のアクセスログは数GBとなり生成にも時間がかかるため、生成したファイルはデータディレクトリ
+ * (システムプロパティ「benchmark.dataDir」。省略時は一時ディレクトリ配下)に保存し、同じ条件のベンチマークで再利用する。
+ * 不要になった場合は、データディレクトリを削除すること。
+ */
+public final class AccessLogGenerator {
+
+    /** 1リクエストあたりのアクセスログの行数 */
+    public static final int LINES_PER_REQUEST = 7;
+
+    /** 生成が完了したことを表すファイルの名前 */
+    private static final String COMPLETE_MARKER = ".complete";
+
+    /** 行数 */
+    private final long lineCount;
+
+    /** リクエストIDの種類数 */
+    private final int requestIdCardinality;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param lineCount 行数(リクエスト情報CSVの場合はレコード数)
+     * @param requestIdCardinality リクエストIDの種類数
+     */
+    public AccessLogGenerator(long lineCount, int requestIdCardinality) {
+        this.lineCount = lineCount;
+        this.requestIdCardinality = requestIdCardinality;
+    }
+
+    /**
+     * 生成するリクエストIDの一覧を取得する。
+     *
+     * @return リクエストIDの一覧
+     */
+    public List<String> getRequestIds() {
+        List<String> requestIds = new ArrayList<>(requestIdCardinality);
+        for (int i = 1; i <= requestIdCardinality; i++) {
+            requestIds.add("REQ" + i);
+        }
+        return requestIds;
+    }
+
+    /**
+     * 生成したアクセスログを解析するための設定値を生成する。
+     * <p/>
+     * 生成する全てのリクエストIDを集計対象とする。
+     *
+     * @return オンラインアクセスログ解析処理の設定値
+     */
+    public OnlineStatisticsDefinition createDefinition() {
+        OnlineStatisticsDefinition definition = new OnlineStatisticsDefinition();
+        definition.setEndLogPattern("@@@@ END @@@@");
+        definition.setIncludeRequestIdList(getRequestIds());
+        definition.setFindRequestIdPattern("rid = \\[([^\\]]+)\\]");
+        definition.setFindProcessNamePattern("process_name = \\[([A-Z0-9]+)\\]");
+        definition.setFindStatusCodePattern("status_code = \\[([0-9]+)\\]");
+        definition.setFindExecutionTimePattern("execution_time = \\[([0-9]+)\\]");
+        definition.setLogOutputDateTimeStartPosition(0);
+        definition.setLogOutputDateTimeEndPosition(23);
+        definition.setLogOutputDateTimeFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        definition.setAccessLogEncoding("UTF-8");
+        return definition;
+    }
+
+    /**
+     * アクセスログを生成する。(生成済みの場合は再利用する)
+     * <p/>
+     * 行数をファイル数で分割し、ファイル毎に1日分(2012年9月1日から1日ずつ)のアクセスログとする。
+     * ファイル名は「access_連番.log」とする。
+     *
+     * @param fileCount ファイル数
+     * @return アクセスログの格納ディレクトリ
+     */
+    public File generateAccessLogs(int fileCount) {
+        File directory = dataDirectory("access", fileCount);
+        if (new File(directory, COMPLETE_MARKER).exists()) {
+            return directory;
+        }
+        long requestsPerFile = (lineCount / LINES_PER_REQUEST + fileCount - 1) / fileCount;
+        Random random = new Random(lineCount ^ requestIdCardinality);
+        for (int file = 0; file < fileCount; file++) {
+            File accessLog = new File(directory, String.format("access_%03d.log", file + 1));
+            try (BufferedWriter writer = Files.newBufferedWriter(accessLog.toPath(), StandardCharsets.UTF_8)) {
+                for (long i = 0; i < requestsPerFile; i++) {
+                    writeRequest(writer, random, file + 1, i);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to generate access log. file = [" + accessLog + ']', e);
+            }
+        }
+        markComplete(directory);
+        return directory;
+    }
+
+    /**
+     * 1リクエスト分のアクセスログを出力する。
+     *
+     * @param writer 出力先
+     * @param random 乱数
+     * @param day 日
+     * @param sequence リクエストの連番
+     * @throws IOException 出力に失敗した場合
+     */
+    private void writeRequest(BufferedWriter writer, Random random, int day, long sequence) throws IOException {
+        String time = String.format("2012-09-%02d %02d:%02d:%02d.%03d", day,
+                random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1000));
+        String requestId = "REQ" + (random.nextInt(requestIdCardinality) + 1);
+        String processName = "P" + random.nextInt(4);
+        writer.write(time + " -INFO- ACC [" + sequence + "] process_name = [" + processName
+                + "] @@@@ BEGIN @@@@ rid = [" + requestId + "] uid = [2000000001]"
+                + " url = [http://localhost/action/" + requestId + "]\n");
+        writer.write(time + " -INFO- ACC [" + sequence + "] process_name = [" + processName
+                + "] @@@@ END @@@@ rid = [" + requestId + "] uid = [2000000001]"
+                + " url = [http://localhost/action/" + requestId + "] status_code = [" + statusCode(random) + ']'
+                + " content_path = [servlet:///" + requestId + ".jsp]\n");
+        writer.write("\tstart_time     = [" + time + "]\n");
+        writer.write("\tend_time       = [" + time + "]\n");
+        writer.write("\texecution_time = [" + executionTime(random) + "]\n");
+        writer.write("\tmax_memory     = [1908932608]\n");
+        writer.write("\tfree_memory    = [1350842488]\n");
+    }
+
+    /**
+     * リクエスト情報CSVを生成する。(生成済みの場合は再利用する)
+     * <p/>
+     * 行数をファイル数で分割し、ファイル毎に1日分(2012年9月1日から1日ずつ)のリクエスト情報とする。
+     * ファイル名は「REQUEST_INFO_yyyyMMdd.csv」とする。
+     *
+     * @param fileCount ファイル数
+     * @return リクエスト情報CSVの格納ディレクトリ
+     */
+    public File generateRequestInfoFiles(int fileCount) {
+        File directory = dataDirectory("requestInfo", fileCount);
+        if (new File(directory, COMPLETE_MARKER).exists()) {
+            return directory;
+        }
+        long recordsPerFile = (lineCount + fileCount - 1) / fileCount;
+        Random random = new Random(lineCount ^ requestIdCardinality);
+        for (int file = 0; file < fileCount; file++) {
+            File requestInfo = new File(directory, String.format("REQUEST_INFO_201209%02d.csv", file + 1));
+            try (BufferedWriter writer = Files.newBufferedWriter(requestInfo.toPath(), StandardCharsets.UTF_8)) {
+                for (long i = 0; i < recordsPerFile; i++) {
+                    writer.write("2012,9," + (file + 1) + ',' + random.nextInt(24)
+                            + ",P" + random.nextInt(4)
+                            + ",REQ" + (random.nextInt(requestIdCardinality) + 1)
+                            + ',' + executionTime(random)
+                            + ',' + statusCode(random) + '\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to generate request info. file = [" + requestInfo + ']', e);
+            }
+        }
+        markComplete(directory);
+        return directory;
+    }
+
+    /**
+     * ディレクトリ内のファイル名を、名前順に取得する。(生成完了を表すファイルを除く)
+     *
+     * @param directory ディレクトリ
+     * @return ファイル名
+     */
+    public static List<String> listFileNames(File directory) {
+        String[] names = directory.list((dir, name) -> !name.equals(COMPLETE_MARKER));
+        Arrays.sort(names);
+        return Arrays.asList(names);
+    }
+
+    /**
+     * 処理時間を生成する。
+     *
+     * @param random 乱数
+     * @return 処理時間
+     */
+    private static int executionTime(Random random) {
+        // 実際のアクセスログに近い、裾の長い分布にする。
+        return (int) Math.min(600000, Math.exp(random.nextGaussian() + 5));
+    }
+
+    /**
+     * ステータスコードを生成する。(大半が200となる)
+     *
+     * @param random 乱数
+     * @return ステータスコード
+     */
+    private static int statusCode(Random random) {
+        int value = random.nextInt(100);
+        return value < 90 ? 200 : value < 95 ? 302 : value < 99 ? 404 : 500;
+    }
+
+    /**
+     * 生成条件毎のデータディレクトリを取得する。(存在しない場合は生成する)
+     *
+     * @param kind 生成するファイルの種類
+     * @param fileCount ファイル数
+     * @return データディレクトリ
+     */
+    private File dataDirectory(String kind, int fileCount) {
+        File base = new File(System.getProperty("benchmark.dataDir",
+                new File(System.getProperty("java.io.tmpdir"), "statistics-benchmark").getPath()));
+        File directory = new File(base, kind + '-' + lineCount + '-' + requestIdCardinality + '-' + fileCount);
+        directory.mkdirs();
+        return directory;
+    }
+
+    /**
+     * 生成が完了したことを記録する。
+     *
+     * @param directory データディレクトリ
+     */
+    private static void markComplete(File directory) {
+        try {
+            Files.createFile(new File(directory, COMPLETE_MARKER).toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to create marker file. directory = [" + directory + ']', e);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package please.change.me.statistics.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+import please.change.me.statistics.parser.AccessLogLineMatcher;
+import please.change.me.statistics.parser.RequestIdFilter;
+
+/**
+ * アクセスログの行の解析({@link AccessLogLineMatcher}、{@link RequestIdFilter})のベンチマーク。
+ * <p/>
+ * 生成した行を繰り返し使用して、合計{@link #lineCount}行の終了ログの判定と項目の抽出を計測する。
+ * 比較対象は、従来の解析方法(リストによるリクエストIDの判定と、項目毎の正規表現による抽出)とする。
+ * ファイルの読み込み及び日時の解析は含まない。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AccessLogLineMatcherBenchmark {
+
+    /** 生成する行の件数(この件数の行を繰り返し使用する) */
+    private static final int DISTINCT_LINE_COUNT = 70000;
+
+    /** 解析する行数 */
+    @Param({"10000000"})
+    private int lineCount;
+
+    /** 抽出対象のリクエストIDの件数 */
+    @Param({"10", "500"})
+    private int includeRequestIdCount;
+
+    /** 生成した行 */
+    private String[] lines;
+
+    /** 設定値 */
+    private OnlineStatisticsDefinition definition;
+
+    /** 抽出対象のリクエストIDのリスト */
+    private List<String> includeRequestIdList;
+
+    /** 行の解析オブジェクト */
+    private AccessLogLineMatcher lineMatcher;
+
+    /** 抽出対象のリクエストIDの判定オブジェクト */
+    private RequestIdFilter requestIdFilter;
+
+    /** 行を生成する。 */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(lineCount);
+        List<String> generated = new ArrayList<>(DISTINCT_LINE_COUNT);
+        for (int i = 0; generated.size() < DISTINCT_LINE_COUNT; i++) {
+            String requestId = "RW" + (1000 + random.nextInt(1000)) + "AC01";
+            String head = "2012-09-10 16:58:02.505 -INFO- ACC [" + i + "] process_name = [P"
+                    + random.nextInt(4) + "] ";
+            generated.add(head + "@@@@ BEGIN @@@@ rid = [" + requestId + "] uid = [2000000001]");
+            generated.add(head + "@@@@ END @@@@ rid = [" + requestId + "] uid = [2000000001]"
+                    + " url = [http://localhost/action/" + requestId + "] status_code = [200]"
+                    + " content_path = [servlet:///" + requestId + ".jsp]");
+            generated.add("\tstart_time     = [2012-09-10 16:58:02.505]");
+            generated.add("\tend_time       = [2012-09-10 16:58:02.605]");
+            generated.add("\texecution_time = [" + random.nextInt(3000) + "]");
+            generated.add("\tmax_memory     = [1908932608]");
+            generated.add("\tfree_memory    = [1350842488]");
+        }
+        lines = generated.toArray(new String[0]);
+
+        includeRequestIdList = new ArrayList<>(includeRequestIdCount);
+        for (int i = 0; i < includeRequestIdCount; i++) {
+            includeRequestIdList.add("RW" + (1000 + i * 1000 / includeRequestIdCount) + "AC01");
+        }
+        definition = new OnlineStatisticsDefinition();
+        definition.setEndLogPattern("@@@@ END @@@@");
+        definition.setIncludeRequestIdList(includeRequestIdList);
+        definition.setFindRequestIdPattern("rid = \\[([^\\]]+)\\]");
+        definition.setFindProcessNamePattern("process_name = \\[([A-Z0-9]+)\\]");
+        definition.setFindStatusCodePattern("status_code = \\[([0-9]+)\\]");
+        definition.setFindExecutionTimePattern("execution_time = \\[([0-9]+)\\]");
+        definition.setAccessLogEncoding("UTF-8");
+        lineMatcher = definition.getLineMatcher();
+        requestIdFilter = definition.getRequestIdFilter();
+    }
+
+    /**
+     * 従来の解析方法(リストによるリクエストIDの判定と、項目毎の正規表現による抽出)の計測。
+     *
+     * @return 抽出した処理時間の合計
+     */
+    @Benchmark
+    public long regexPerField() {
+        long total = 0;
+        boolean pending = false;
+        for (int i = 0; i < lineCount; i++) {
+            String line = lines[i % lines.length];
+            if (pending) {
+                String executionTime = find(definition.getFindExecutionTimePattern(), line);
+                if (executionTime != null) {
+                    total += Integer.parseInt(executionTime);
+                    pending = false;
+                }
+                continue;
+            }
+            if (!definition.getEndLogPattern().matcher(line).find()) {
+                continue;
+            }
+            String requestId = find(definition.getFindRequestIdPattern(), line);
+            if (!includeRequestIdList.contains(requestId)) {
+                continue;
+            }
+            String processName = find(definition.getFindProcessNamePattern(), line);
+            String statusCode = find(definition.getFindStatusCodePattern(), line);
+            total += processName.length() + Integer.parseInt(statusCode);
+            pending = find(definition.getFindExecutionTimePattern(), line) == null;
+        }
+        return total;
+    }
+
+    /**
+     * {@link AccessLogLineMatcher}及び{@link RequestIdFilter}による解析の計測。
+     *
+     * @return 抽出した処理時間の合計
+     */
+    @Benchmark
+    public long lineMatcher() {
+        long total = 0;
+        boolean pending = false;
+        for (int i = 0; i < lineCount; i++) {
+            String line = lines[i % lines.length];
+            if (pending) {
+                String executionTime = lineMatcher.findExecutionTime(line);
+                if (executionTime != null) {
+                    total += Integer.parseInt(executionTime);
+                    pending = false;
+                }
+                continue;
+            }
+            if (!lineMatcher.isEndLog(line)) {
+                continue;
+            }
+            AccessLogLineMatcher.Fields fields = lineMatcher.extract(line);
+            if (!requestIdFilter.accept(fields.getRequestId())) {
+                continue;
+            }
+            total += fields.getProcessName().length() + Integer.parseInt(fields.getStatusCode());
+            pending = fields.getExecutionTime() == null;
+        }
+        return total;
+    }
+
+    /**
+     * 正規表現で値を抽出する。
+     *
+     * @param pattern 正規表現
+     * @param line 行
+     * @return 抽出した値(抽出できない場合はnull)
+     */
+    private static String find(Pattern pattern, String line) {
+        Matcher matcher = pattern.matcher(line);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+}
@@ -0,0 +1,115 @@
+package please.change.me.statistics.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+import please.change.me.statistics.parser.AccessLogParser;
+import please.change.me.statistics.parser.MappedAccessLogParserFactory;
+import please.change.me.statistics.parser.RegexAccessLogParser;
+
+/**
+ * アクセスログ解析処理({@link RegexAccessLogParser}、{@link please.change.me.statistics.parser.MappedAccessLogParser})
+ * のベンチマーク。
+ * <p/>
+ * {@link AccessLogGenerator}で生成したアクセスログ1ファイルの解析を計測する。
+ * スループット(ops/s)に加えて、1秒あたりに解析したサイズ(megabytes、MB/s)を出力する。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AccessLogParserBenchmark {
+
+    /** アクセスログの行数 */
+    @Param({"1000000", "10000000", "100000000"})
+    private long lineCount;
+
+    /** リクエストIDの種類数 */
+    @Param({"20"})
+    private int requestIdCardinality;
+
+    /** アクセスログ */
+    private File accessLog;
+
+    /** 正規表現で解析するパーサ */
+    private AccessLogParser regexParser;
+
+    /** メモリにマッピングして解析するパーサ */
+    private AccessLogParser mappedParser;
+
+    /**
+     * 解析したサイズを計数する補助カウンタ。
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+
+        /** 解析したサイズ(MB) */
+        public double megabytes;
+    }
+
+    /** アクセスログを生成する。(生成済みの場合は再利用する) */
+    @Setup(Level.Trial)
+    public void setUp() {
+        AccessLogGenerator generator = new AccessLogGenerator(lineCount, requestIdCardinality);
+        File directory = generator.generateAccessLogs(1);
+        accessLog = new File(directory, AccessLogGenerator.listFileNames(directory).get(0));
+
+        OnlineStatisticsDefinition definition = generator.createDefinition();
+        regexParser = new RegexAccessLogParser(definition);
+        mappedParser = new MappedAccessLogParserFactory().create(definition);
+    }
+
+    /**
+     * {@link RegexAccessLogParser}(1行ずつ読み込み、正規表現で解析)の計測。
+     *
+     * @param counters 補助カウンタ
+     * @return 抽出したリクエストの処理時間の合計
+     */
+    @Benchmark
+    public long regexParser(Counters counters) {
+        return parse(regexParser, counters);
+    }
+
+    /**
+     * {@link please.change.me.statistics.parser.MappedAccessLogParser}(メモリにマッピングし、バイト列のまま解析)の計測。
+     *
+     * @param counters 補助カウンタ
+     * @return 抽出したリクエストの処理時間の合計
+     */
+    @Benchmark
+    public long mappedParser(Counters counters) {
+        return parse(mappedParser, counters);
+    }
+
+    /**
+     * アクセスログを解析する。
+     *
+     * @param parser パーサ
+     * @param counters 補助カウンタ
+     * @return 抽出したリクエストの処理時間の合計(最適化による処理の除去を防ぐため)
+     */
+    private long parse(AccessLogParser parser, Counters counters) {
+        long[] total = new long[1];
+        parser.parse(accessLog, requestInfo -> total[0] += requestInfo.getExecutionTime());
+        counters.megabytes += accessLog.length() / (1024.0 * 1024.0);
+        return total[0];
+    }
+}
@@ -0,0 +1,108 @@
+package please.change.me.statistics.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import please.change.me.statistics.aggregate.Aggregator;
+import please.change.me.statistics.aggregate.HistogramAggregator;
+import please.change.me.statistics.aggregate.IntArrayAggregator;
+import please.change.me.statistics.aggregate.ListAggregator;
+
+/**
+ * 正確な中央値を算出する集計オブジェクト({@link ListAggregator}、{@link IntArrayAggregator})及び
+ * 近似値を算出する集計オブジェクト({@link HistogramAggregator})のベンチマーク。
+ * <p/>
+ * 処理時間の追加から、集計結果CSVの1行分の値(平均、中央値、最大値、90/95/99パーセンタイル値)の算出までを計測する。
+ * 50,000,000件の{@link ListAggregator}は数GBのヒープを使用するため、十分なヒープを割り当てて実行すること。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class AggregatorBenchmark {
+
+    /** 処理時間の件数 */
+    @Param({"1000000", "10000000", "50000000"})
+    private int sampleCount;
+
+    /** 処理時間の上限(ミリ秒) */
+    @Param({"600000"})
+    private int maxExecutionTime;
+
+    /** 処理時間 */
+    private int[] executionTimes;
+
+    /** 処理時間を生成する。 */
+    @Setup(Level.Trial)
+    public void setUp() {
+        executionTimes = new int[sampleCount];
+        Random random = new Random(sampleCount);
+        for (int i = 0; i < sampleCount; i++) {
+            // 実際のアクセスログに近い、裾の長い分布にする。
+            executionTimes[i] = (int) Math.min(maxExecutionTime, Math.exp(random.nextGaussian() + 5));
+        }
+    }
+
+    /**
+     * {@link ListAggregator}(処理時間をList&lt;Integer&gt;で保持)の計測。
+     *
+     * @return 算出結果
+     */
+    @Benchmark
+    public long listAggregator() {
+        return aggregate(new ListAggregator());
+    }
+
+    /**
+     * {@link IntArrayAggregator}(処理時間をint配列で保持)の計測。
+     *
+     * @return 算出結果
+     */
+    @Benchmark
+    public long intArrayAggregator() {
+        return aggregate(new IntArrayAggregator());
+    }
+
+    /**
+     * {@link HistogramAggregator}(処理時間をヒストグラムで保持)の計測。
+     *
+     * @return 算出結果
+     */
+    @Benchmark
+    public long histogramAggregator() {
+        return aggregate(new HistogramAggregator(7));
+    }
+
+    /**
+     * 全ての処理時間を集計し、集計結果CSVの1行分の値を算出する。
+     *
+     * @param aggregator 集計オブジェクト
+     * @return 算出結果(最適化による処理の除去を防ぐため)
+     */
+    private long aggregate(Aggregator aggregator) {
+        for (int executionTime : executionTimes) {
+            aggregator.addRequestData(executionTime, executionTime > 1000);
+        }
+        return (long) aggregator.getAverageTime()
+                + aggregator.getMedianTime()
+                + aggregator.getMaxExecutionTime()
+                + aggregator.getPercentileTime(90)
+                + aggregator.getPercentileTime(95)
+                + aggregator.getPercentileTime(99);
+    }
+}
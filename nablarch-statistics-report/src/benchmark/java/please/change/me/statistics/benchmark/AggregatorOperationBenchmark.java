@@ -0,0 +1,143 @@
+package please.change.me.statistics.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import please.change.me.statistics.aggregate.Aggregator;
+import please.change.me.statistics.aggregate.AggregatorFactory;
+import please.change.me.statistics.aggregate.HistogramAggregatorFactory;
+import please.change.me.statistics.aggregate.IntArrayAggregatorFactory;
+import please.change.me.statistics.aggregate.ListAggregatorFactory;
+
+/**
+ * 集計オブジェクトの操作({@link Aggregator#addRequestData(int, boolean, int)}、{@link Aggregator#getMedianTime()})
+ * を個別に計測するベンチマーク。
+ * <p/>
+ * {@link AggregatorBenchmark}が追加から算出までをまとめて計測するのに対し、
+ * 本ベンチマークでは1件の追加あたりの時間と、中央値の算出(ソート等)のみの時間を計測する。
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class AggregatorOperationBenchmark {
+
+    /** 1回の呼び出しで追加する処理時間の件数 */
+    private static final int BATCH_SIZE = 1024;
+
+    /** 集計オブジェクトの種類 */
+    @Param({"intArray", "list", "histogram"})
+    private String aggregatorType;
+
+    /** 1つの集計オブジェクトに追加する処理時間の件数 */
+    @Param({"1000000", "10000000"})
+    private int sampleCount;
+
+    /** 処理時間 */
+    private int[] executionTimes;
+
+    /** 集計オブジェクトのファクトリ */
+    private AggregatorFactory factory;
+
+    /** 追加先の集計オブジェクト */
+    private Aggregator target;
+
+    /** 次に追加する処理時間の位置 */
+    private int position;
+
+    /** 処理時間及び集計オブジェクトのファクトリを生成する。 */
+    @Setup(Level.Trial)
+    public void setUp() {
+        executionTimes = new int[sampleCount];
+        Random random = new Random(sampleCount);
+        for (int i = 0; i < sampleCount; i++) {
+            // 実際のアクセスログに近い、裾の長い分布にする。
+            executionTimes[i] = (int) Math.min(600000, Math.exp(random.nextGaussian() + 5));
+        }
+        if ("intArray".equals(aggregatorType)) {
+            factory = new IntArrayAggregatorFactory();
+        } else if ("list".equals(aggregatorType)) {
+            factory = new ListAggregatorFactory();
+        } else {
+            HistogramAggregatorFactory histogram = new HistogramAggregatorFactory();
+            histogram.setPrecisionBits(7);
+            factory = histogram;
+        }
+        target = factory.create();
+    }
+
+    /**
+     * 中央値の算出対象の集計オブジェクトを保持するクラス。
+     */
+    @State(Scope.Thread)
+    public static class Filled {
+
+        /** 中央値の算出対象の集計オブジェクト */
+        private Aggregator aggregator;
+
+        /**
+         * 中央値の算出対象の集計オブジェクトを、呼び出し毎に生成する。
+         * <p/>
+         * 算出結果をキャッシュする(ソート済みの状態を保持する)実装があるため、呼び出し毎に処理時間を追加し直す。
+         *
+         * @param benchmark 処理時間及び集計オブジェクトのファクトリを保持するベンチマーク
+         */
+        @Setup(Level.Invocation)
+        public void fill(AggregatorOperationBenchmark benchmark) {
+            aggregator = benchmark.factory.create();
+            for (int executionTime : benchmark.executionTimes) {
+                aggregator.addRequestData(executionTime, executionTime > 1000, 200);
+            }
+        }
+    }
+
+    /**
+     * {@link Aggregator#addRequestData(int, boolean, int)}の計測。
+     * <p/>
+     * 処理時間を件数分追加する毎に、集計オブジェクトを生成し直す。(集計単位1つ分の件数を上限とするため)
+     *
+     * @return 追加先の集計オブジェクト
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Aggregator addRequestData() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (position == executionTimes.length) {
+                target = factory.create();
+                position = 0;
+            }
+            int executionTime = executionTimes[position++];
+            target.addRequestData(executionTime, executionTime > 1000, 200);
+        }
+        return target;
+    }
+
+    /**
+     * {@link Aggregator#getMedianTime()}の計測。
+     *
+     * @param filled 中央値の算出対象の集計オブジェクト
+     * @return 中央値
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int getMedianTime(Filled filled) {
+        return filled.aggregator.getMedianTime();
+    }
+}
@@ -0,0 +1,44 @@
+package please.change.me.statistics.benchmark;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import nablarch.core.date.BasicSystemTimeProvider;
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.FilePathSetting;
+
+/**
+ * ベンチマークで使用するコンポーネントを{@link SystemRepository}に登録するクラス。
+ * <p/>
+ * バッチアクションを起動せずに、ファイルの入出力を行うクラスを計測するために使用する。
+ * 以下のコンポーネントを登録する。
+ * <ul>
+ * <li>filePathSetting(フォーマット定義ファイルのディレクトリ「format」と、指定されたディレクトリ)</li>
+ * <li>systemTimeProvider(実際のシステム日時)</li>
+ * </ul>
+ */
+public final class BenchmarkRepository {
+
+    /** 隠蔽コンストラクタ。 */
+    private BenchmarkRepository() {
+    }
+
+    /**
+     * コンポーネントを登録する。
+     *
+     * @param basePathSettings ディレクトリの論理名と、ディレクトリのパス(「file:」から始まる形式)
+     */
+    public static void load(Map<String, String> basePathSettings) {
+        Map<String, String> basePaths = new HashMap<>(basePathSettings);
+        basePaths.put("format", "classpath:format");
+        FilePathSetting filePathSetting = new FilePathSetting();
+        filePathSetting.setBasePathSettings(basePaths);
+        filePathSetting.setFileExtensions(Collections.singletonMap("format", "fmt"));
+
+        Map<String, Object> components = new HashMap<>();
+        components.put("filePathSetting", filePathSetting);
+        components.put("systemTimeProvider", new BasicSystemTimeProvider());
+        SystemRepository.load(() -> components);
+    }
+}
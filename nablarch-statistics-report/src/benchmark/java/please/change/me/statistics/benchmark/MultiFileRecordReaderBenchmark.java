@@ -0,0 +1,92 @@
+package please.change.me.statistics.benchmark;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nablarch.core.dataformat.DataRecord;
+import nablarch.fw.ExecutionContext;
+import please.change.me.statistics.reader.MultiFileRecordReader;
+
+/**
+ * {@link MultiFileRecordReader}(リクエスト情報CSVの読み込み)のスループットのベンチマーク。
+ * <p/>
+ * {@link AccessLogGenerator}で生成した複数のリクエスト情報CSVを、全て読み込むまでの時間を計測する。
+ * 並列読み込みを行わない場合(parallelism=1)と、ファイル毎に並列に読み込む場合を比較できる。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MultiFileRecordReaderBenchmark {
+
+    /** リクエスト情報CSVのディレクトリの論理名 */
+    private static final String REQUEST_INFO_DIR = "requestInfo.dir";
+
+    /** リクエスト情報の件数(全ファイルの合計行数) */
+    @Param({"1000000", "10000000", "100000000"})
+    private long lineCount;
+
+    /** リクエストIDの種類数 */
+    @Param({"100"})
+    private int requestIdCardinality;
+
+    /** リクエスト情報CSVのファイル数 */
+    @Param({"8"})
+    private int fileCount;
+
+    /** 並列に読み込むスレッド数 */
+    @Param({"1", "4"})
+    private int parallelism;
+
+    /** リクエスト情報CSVのファイル名 */
+    private List<String> fileNames;
+
+    /** リクエスト情報CSVを生成する。(生成済みの場合は再利用する) */
+    @Setup(Level.Trial)
+    public void setUp() {
+        File directory = new AccessLogGenerator(lineCount, requestIdCardinality).generateRequestInfoFiles(fileCount);
+        fileNames = AccessLogGenerator.listFileNames(directory);
+        BenchmarkRepository.load(Collections.singletonMap(REQUEST_INFO_DIR, "file:" + directory.getAbsolutePath()));
+    }
+
+    /**
+     * 全てのリクエスト情報CSVを読み込む。
+     *
+     * @return 読み込んだレコードの処理時間の合計(最適化による処理の除去を防ぐため)
+     */
+    @Benchmark
+    public long read() {
+        MultiFileRecordReader reader = new MultiFileRecordReader();
+        reader.setLayoutFile("format", "requestInfo");
+        reader.setFileList(REQUEST_INFO_DIR, fileNames);
+        reader.setParallelism(parallelism);
+        ExecutionContext ctx = new ExecutionContext();
+        long total = 0;
+        try {
+            while (reader.hasNext(ctx)) {
+                DataRecord record = reader.read(ctx);
+                total += record.getBigDecimal("executeTime").longValue();
+            }
+        } finally {
+            reader.close(ctx);
+        }
+        return total;
+    }
+}
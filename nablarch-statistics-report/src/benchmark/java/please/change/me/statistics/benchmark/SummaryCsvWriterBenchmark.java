@@ -0,0 +1,198 @@
+package please.change.me.statistics.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import please.change.me.statistics.action.AggregateUnit;
+import please.change.me.statistics.aggregate.AggregateKey;
+import please.change.me.statistics.aggregate.Aggregator;
+import please.change.me.statistics.aggregate.IntArrayAggregator;
+import please.change.me.statistics.aggregate.SummaryCsvWriter;
+
+/**
+ * 集計結果CSVの出力({@link SummaryCsvWriter})のベンチマーク。
+ * <p/>
+ * プロセス名毎の日単位及び時間単位の集計結果CSVに、合計{@link #rowCount}行の出力を計測する。
+ * 比較対象は、従来の出力方法(1行毎に項目名をキーとするMapを生成し、ファイル名を連結して出力先を検索し、
+ * 値を文字列に変換してWriterに出力する)とする。
+ * 従来の{@link nablarch.common.io.FileRecordWriterHolder}はリポジトリの初期化が必要なため、同等の処理で代替する。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SummaryCsvWriterBenchmark {
+
+    /** 集計結果CSVのフォーマット定義ファイル */
+    private static final File LAYOUT_FILE = new File("src/main/resources/format/requestInfoAggregate.fmt");
+
+    /** 集計結果CSVの項目名(フォーマット定義ファイルの項目順) */
+    private static final String[] FIELD_NAMES = {"requestId", "aggregateUnitValue", "processName", "requestCount",
+            "thresholdOverCount", "average", "median", "max"};
+
+    /** プロセス名 */
+    private static final String[] PROCESS_NAMES = {"P1", "P2", "P3", "P4"};
+
+    /** 出力する行数 */
+    @Param({"1000000"})
+    private int rowCount;
+
+    /** 出力する集計単位 */
+    private AggregateKey[] keys;
+
+    /** 出力する集計オブジェクト(集計単位と同じ位置) */
+    private Aggregator[] aggregators;
+
+    /** 出力先ディレクトリ */
+    private File directory;
+
+    /** 集計単位を生成する。(プロセス名、集計単位、リクエストID、集計単位値の順) */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(rowCount);
+        Aggregator[] distinctAggregators = new Aggregator[1000];
+        for (int i = 0; i < distinctAggregators.length; i++) {
+            distinctAggregators[i] = new IntArrayAggregator();
+            for (int j = random.nextInt(50); j >= 0; j--) {
+                int executionTime = random.nextInt(5000);
+                distinctAggregators[i].addRequestData(executionTime, executionTime > 3000);
+            }
+            // 中央値の算出に伴うソートは計測対象外とする。
+            distinctAggregators[i].getMedianTime();
+        }
+
+        List<AggregateKey> keyList = new ArrayList<>(rowCount);
+        int rowsPerRequestId = PROCESS_NAMES.length * (31 + 24);
+        int requestIdCount = (rowCount + rowsPerRequestId - 1) / rowsPerRequestId;
+        outer:
+        for (String processName : PROCESS_NAMES) {
+            for (AggregateUnit unit : Arrays.asList(AggregateUnit.DAY, AggregateUnit.HOUR)) {
+                for (int i = 0; i < requestIdCount; i++) {
+                    String requestId = "RW" + (100000 + i) + "AC01";
+                    int first = unit == AggregateUnit.DAY ? 1 : 0;
+                    int last = unit == AggregateUnit.DAY ? 31 : 23;
+                    for (int value = first; value <= last; value++) {
+                        if (keyList.size() == rowCount) {
+                            break outer;
+                        }
+                        keyList.add(new AggregateKey(requestId, processName, unit, value));
+                    }
+                }
+            }
+        }
+        keys = keyList.toArray(new AggregateKey[0]);
+        aggregators = new Aggregator[keys.length];
+        for (int i = 0; i < aggregators.length; i++) {
+            aggregators[i] = distinctAggregators[random.nextInt(distinctAggregators.length)];
+        }
+        directory = Files.createTempDirectory("summary").toFile();
+    }
+
+    /** 出力先ディレクトリを削除する。 */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * 従来の出力方法(1行毎のMapの生成、ファイル名による出力先の検索、値の文字列への変換)の計測。
+     *
+     * @throws IOException 出力に失敗した場合
+     */
+    @Benchmark
+    public void recordMap() throws IOException {
+        Map<String, Writer> writers = new HashMap<>();
+        try {
+            for (String processName : PROCESS_NAMES) {
+                for (String prefix : Arrays.asList("DAY_", "HOUR_")) {
+                    String fileName = "REQUEST_INFO_SUMMARY_" + prefix + processName + ".csv";
+                    writers.put(fileName, new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(new File(directory, fileName)), "ms932")));
+                }
+            }
+            for (int i = 0; i < keys.length; i++) {
+                AggregateKey key = keys[i];
+                Aggregator aggregator = aggregators[i];
+                Map<String, Object> data = new HashMap<>();
+                data.put("requestId", key.getRequestId());
+                data.put("aggregateUnitValue", key.getAggregateUnitValue());
+                data.put("processName", key.getProcessName());
+                data.put("requestCount", aggregator.getRequestCount());
+                data.put("thresholdOverCount", aggregator.getThresholdOverCount());
+                data.put("average", aggregator.getAverageTime());
+                data.put("median", aggregator.getMedianTime());
+                data.put("max", aggregator.getMaxExecutionTime());
+                String prefix = key.getAggregateUnit() == AggregateUnit.DAY ? "DAY_" : "HOUR_";
+                Writer writer = writers.get("REQUEST_INFO_SUMMARY_" + prefix + key.getProcessName() + ".csv");
+                for (int j = 0; j < FIELD_NAMES.length; j++) {
+                    if (j != 0) {
+                        writer.write(',');
+                    }
+                    writer.write('"');
+                    writer.write(String.valueOf(data.get(FIELD_NAMES[j])).replace("\"", "\"\""));
+                    writer.write('"');
+                }
+                writer.write("\r\n");
+            }
+        } finally {
+            for (Writer writer : writers.values()) {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * {@link SummaryCsvWriter}による出力の計測。
+     *
+     * @throws IOException 出力に失敗した場合
+     */
+    @Benchmark
+    public void summaryCsvWriter() throws IOException {
+        Map<String, String> title = new HashMap<>();
+        try (SummaryCsvWriter writer = new SummaryCsvWriter(LAYOUT_FILE)) {
+            for (String processName : PROCESS_NAMES) {
+                writer.open(processName, AggregateUnit.DAY,
+                        new File(directory, "REQUEST_INFO_SUMMARY_DAY_" + processName + ".csv"), title);
+                writer.open(processName, AggregateUnit.HOUR,
+                        new File(directory, "REQUEST_INFO_SUMMARY_HOUR_" + processName + ".csv"), title);
+            }
+            for (int i = 0; i < keys.length; i++) {
+                writer.write(keys[i], aggregators[i]);
+            }
+        }
+    }
+}
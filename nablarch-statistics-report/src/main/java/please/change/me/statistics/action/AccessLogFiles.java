@@ -0,0 +1,49 @@
+package please.change.me.statistics.action;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import nablarch.core.util.FileUtil;
+
+/**
+ * アクセスログファイルの一覧を取得するユーティリティクラス。
+ */
+final class AccessLogFiles {
+
+    /** 隠蔽コンストラクタ。 */
+    private AccessLogFiles() {
+    }
+
+    /**
+     * 指定されたディレクトリ配下から、アクセスログ名に一致するファイルを抽出する。
+     * <p/>
+     * 抽出されたファイルは、古い順(ローテーションされたファイルが先)にソートし返却する。
+     *
+     * @param dir ディレクトリ
+     * @param fileNamePattern アクセスログのファイル名パターン
+     * @return ファイル一覧
+     */
+    static File[] list(String dir, String fileNamePattern) {
+        File[] files = FileUtil.listFiles(dir, fileNamePattern);
+        List<File> fileList = new ArrayList<>();
+        for (File file : files) {
+            if (file.isFile()) {
+                fileList.add(file);
+            }
+        }
+
+        // 最終更新日時でソートする。
+        fileList.sort((o1, o2) -> {
+            String name1 = o1.getName();
+            String name2 = o2.getName();
+            if (name1.length() == name2.length()) {
+                return name1.compareTo(name2);
+            } else {
+                // 短いファイル名は最新ファイルとして、判断する。
+                return name2.length() - name1.length();
+            }
+        });
+        return fileList.toArray(new File[fileList.size()]);
+    }
+}
@@ -0,0 +1,231 @@
+package please.change.me.statistics.action;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+import please.change.me.statistics.aggregate.RequestInfo;
+import please.change.me.statistics.parser.AccessLogParseCounters;
+import please.change.me.statistics.parser.AccessLogParser;
+
+/**
+ * 複数のアクセスログを解析し、抽出したリクエスト情報をアクセスログの順に通知するクラス。
+ * <p/>
+ * {@link OnlineStatisticsDefinition#setAccessLogParseParallelism(int)}に2以上を設定した場合は、
+ * アクセスログ毎に専用のワーカスレッドで解析する。
+ * 解析オブジェクト及び展開用の入力ストリームはアクセスログ毎に生成するため、ワーカスレッド間で共有されることはない。
+ * <p/>
+ * ワーカスレッドが抽出したリクエスト情報は、アクセスログ毎の上限付きのキューを介して呼び出し元のスレッドで通知する。
+ * 通知の順序は並列に解析しない場合と同じ(先のアクセスログの全てのリクエスト情報の後に、次のアクセスログのリクエスト情報)となる。
+ * キューが上限に達した場合、ワーカスレッドは呼び出し元のスレッドがリクエスト情報を取り出すまで待機する。
+ * <p/>
+ * 解析件数の計上先を指定した場合は、全ての解析オブジェクトの解析件数と、解析を完了したアクセスログのサイズを計上する。
+ */
+final class AccessLogParseExecutor {
+
+    /** ロガー */
+    private static final Logger LOG = LoggerManager.get(AccessLogParseExecutor.class);
+
+    /** ワーカスレッドからまとめてキューに追加するリクエスト情報の件数 */
+    private static final int CHUNK_SIZE = 1024;
+
+    /** アクセスログ毎のキューの上限(チャンク数) */
+    private static final int QUEUE_CAPACITY = 64;
+
+    /** アクセスログの終端を表すチャンク */
+    private static final List<RequestInfo> END_OF_FILE = Collections.emptyList();
+
+    /** オンラインアクセスログ解析処理の設定値 */
+    private final OnlineStatisticsDefinition logParseDefinition;
+
+    /** 解析件数の計上先(計上しない場合はnull) */
+    private final AccessLogParseCounters counters;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     */
+    AccessLogParseExecutor(OnlineStatisticsDefinition logParseDefinition) {
+        this(logParseDefinition, null);
+    }
+
+    /**
+     * 解析件数の計上先を指定するコンストラクタ。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     * @param counters 解析件数の計上先(計上しない場合はnull)
+     */
+    AccessLogParseExecutor(OnlineStatisticsDefinition logParseDefinition, AccessLogParseCounters counters) {
+        this.logParseDefinition = logParseDefinition;
+        this.counters = counters;
+    }
+
+    /**
+     * 解析オブジェクトを生成する。
+     *
+     * @return 解析オブジェクト
+     */
+    private AccessLogParser createParser() {
+        AccessLogParser parser = logParseDefinition.getAccessLogParserFactory().create(logParseDefinition);
+        if (counters != null) {
+            parser.setCounters(counters);
+        }
+        return parser;
+    }
+
+    /**
+     * 1つのアクセスログを解析し、解析を完了したアクセスログのサイズを計上する。
+     *
+     * @param parser 解析オブジェクト
+     * @param source 解析対象のアクセスログ
+     * @param consumer 抽出したリクエスト情報の通知先
+     */
+    private void parse(AccessLogParser parser, AccessLogSource source, Consumer<RequestInfo> consumer) {
+        source.parse(parser, logParseDefinition.getAccessLogDecompressors(), consumer);
+        if (counters != null) {
+            counters.addBytes(source.length());
+        }
+    }
+
+    /**
+     * アクセスログを解析し、抽出したリクエスト情報をアクセスログの順に通知する。
+     *
+     * @param sources 解析対象のアクセスログ(古い順)
+     * @param consumer 抽出したリクエスト情報の通知先(呼び出し元のスレッドで呼び出される)
+     * @throws please.change.me.statistics.exception.LogParseException 解析に失敗した場合
+     */
+    void parse(List<AccessLogSource> sources, Consumer<RequestInfo> consumer) {
+        int parallelism = Math.min(logParseDefinition.getAccessLogParseParallelism(), sources.size());
+        if (parallelism <= 1) {
+            AccessLogParser parser = createParser();
+            for (AccessLogSource source : sources) {
+                parse(parser, source, consumer);
+            }
+            return;
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "AccessLogParseExecutor-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // ワーカスレッドはアクセスログの順に解析を開始するため、呼び出し元が待機中のアクセスログは必ず解析中となる。
+            List<ParseTask> tasks = new ArrayList<>(sources.size());
+            for (AccessLogSource source : sources) {
+                ParseTask task = new ParseTask(source);
+                tasks.add(task);
+                workers.execute(task);
+            }
+            for (ParseTask task : tasks) {
+                task.drainTo(consumer);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * 1つのアクセスログをワーカスレッドで解析するタスク。
+     */
+    private final class ParseTask implements Runnable {
+
+        /** 解析対象のアクセスログ */
+        private final AccessLogSource source;
+
+        /** 抽出したリクエスト情報のキュー */
+        private final BlockingQueue<List<RequestInfo>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        /** 解析中に発生した例外 */
+        private volatile RuntimeException failure;
+
+        /** キューに追加していないリクエスト情報 */
+        private List<RequestInfo> chunk = new ArrayList<>(CHUNK_SIZE);
+
+        /**
+         * コンストラクタ。
+         *
+         * @param source 解析対象のアクセスログ
+         */
+        private ParseTask(AccessLogSource source) {
+            this.source = source;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void run() {
+            try {
+                parse(createParser(), source, this::add);
+                if (!chunk.isEmpty()) {
+                    queue.put(chunk);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOG.logWarn("failed to parse the access log file. file = [" + source.getFile().getAbsolutePath() + ']',
+                        e);
+                failure = e;
+            }
+            try {
+                queue.put(END_OF_FILE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * 抽出したリクエスト情報を追加する。
+         * <p/>
+         * {@link #CHUNK_SIZE}件毎にキューに追加する。
+         *
+         * @param requestInfo リクエスト情報
+         * @throws IllegalStateException キューへの追加の待機中に割り込まれた場合
+         */
+        private void add(RequestInfo requestInfo) {
+            chunk.add(requestInfo);
+            if (chunk.size() < CHUNK_SIZE) {
+                return;
+            }
+            try {
+                queue.put(chunk);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for the queue.", e);
+            }
+            chunk = new ArrayList<>(CHUNK_SIZE);
+        }
+
+        /**
+         * アクセスログの終端まで、キューからリクエスト情報を取り出して通知する。
+         *
+         * @param consumer 抽出したリクエスト情報の通知先
+         * @throws RuntimeException 解析中に例外が発生した場合
+         */
+        private void drainTo(Consumer<RequestInfo> consumer) {
+            try {
+                List<RequestInfo> requestInfos;
+                while ((requestInfos = queue.take()) != END_OF_FILE) {
+                    requestInfos.forEach(consumer);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for the parse result.", e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package please.change.me.statistics.action;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.Consumer;
+
+import nablarch.core.util.FileUtil;
+import please.change.me.statistics.aggregate.RequestInfo;
+import please.change.me.statistics.exception.LogParseException;
+import please.change.me.statistics.parser.AccessLogDecompressor;
+import please.change.me.statistics.parser.AccessLogParser;
+import please.change.me.statistics.parser.AccessLogSnapshot;
+
+/**
+ * 解析対象のアクセスログ(ファイルまたはスナップショット)を表すクラス。
+ * <p/>
+ * ファイル名の拡張子が{@link AccessLogDecompressor#getSuffix()}に一致するファイルは、展開しながら解析する。
+ */
+final class AccessLogSource {
+
+    /** アクセスログのファイル */
+    private final File file;
+
+    /** アクセスログのスナップショット(ファイルを直接解析する場合はnull) */
+    private final AccessLogSnapshot snapshot;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param file アクセスログのファイル
+     * @param snapshot アクセスログのスナップショット(ファイルを直接解析する場合はnull)
+     */
+    private AccessLogSource(File file, AccessLogSnapshot snapshot) {
+        this.file = file;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * ファイルを直接解析するアクセスログを生成する。
+     *
+     * @param file アクセスログのファイル
+     * @return 解析対象のアクセスログ
+     */
+    static AccessLogSource of(File file) {
+        return new AccessLogSource(file, null);
+    }
+
+    /**
+     * スナップショットを解析するアクセスログを生成する。
+     *
+     * @param snapshot アクセスログのスナップショット
+     * @return 解析対象のアクセスログ
+     */
+    static AccessLogSource of(AccessLogSnapshot snapshot) {
+        return new AccessLogSource(snapshot.getFile(), snapshot);
+    }
+
+    /**
+     * ファイル名の拡張子に対応する展開オブジェクトを取得する。
+     *
+     * @param file アクセスログのファイル
+     * @param decompressors 展開オブジェクト
+     * @return 展開オブジェクト(圧縮されたファイルではない場合はnull)
+     */
+    static AccessLogDecompressor findDecompressor(File file, List<AccessLogDecompressor> decompressors) {
+        for (AccessLogDecompressor decompressor : decompressors) {
+            if (file.getName().endsWith(decompressor.getSuffix())) {
+                return decompressor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * アクセスログのファイルを取得する。
+     *
+     * @return アクセスログのファイル
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * 解析対象のサイズを取得する。
+     *
+     * @return 解析対象のサイズ(スナップショットの場合はスナップショットのサイズ、圧縮されたファイルの場合は圧縮後のサイズ)
+     */
+    long length() {
+        return snapshot != null ? snapshot.getSize() : file.length();
+    }
+
+    /**
+     * アクセスログを解析する。
+     *
+     * @param parser 解析オブジェクト
+     * @param decompressors 展開オブジェクト
+     * @param consumer 抽出したリクエスト情報の通知先
+     * @throws LogParseException 解析に失敗した場合
+     */
+    void parse(AccessLogParser parser, List<AccessLogDecompressor> decompressors, Consumer<RequestInfo> consumer) {
+        if (snapshot != null) {
+            parser.parse(snapshot, consumer);
+            return;
+        }
+        AccessLogDecompressor decompressor = findDecompressor(file, decompressors);
+        if (decompressor == null) {
+            parser.parse(file, consumer);
+            return;
+        }
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            in = decompressor.decompress(in);
+        } catch (IOException e) {
+            FileUtil.closeQuietly(in);
+            throw new LogParseException("failed to read access log file. file = [" + file.getAbsolutePath() + ']', e);
+        }
+        parser.parse(in, file, consumer);
+    }
+}
@@ -0,0 +1,236 @@
+package please.change.me.statistics.action;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.FilePathSetting;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Result;
+import nablarch.fw.action.NoInputDataBatchAction;
+import nablarch.fw.launcher.CommandLine;
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+import please.change.me.statistics.aggregate.AggregateResultHolder;
+import please.change.me.statistics.aggregate.RequestInfo;
+import please.change.me.statistics.parser.AccessLogTailer;
+
+/**
+ * 出力中の画面オンラインアクセスログを追跡し、リアルタイムに集計する常駐型のバッチアクションクラス。
+ * <p/>
+ * 本クラスでは、{@link OnlineStatisticsDefinition#setTailPollInterval(long)}の間隔でアクセスログに追記された終了ログを読み込み、
+ * 当日分のリクエスト情報を時間及び分単位で集計する。
+ * 集計結果は、{@link OnlineStatisticsDefinition#setTailFlushInterval(long)}の間隔で、
+ * {@link RequestInfoAggregateAction}と同じ形式の時間集計結果CSV及び分集計結果CSV(集計単位値は「時 * 100 + 分」)に出力する。
+ * これにより、閾値を超えたリクエスト数などを、翌日の集計処理を待たずに確認できる。
+ * <p/>
+ * アクセスログの解析規則は{@link OnlineAccessLogParseAction}と同じであり、{@link OnlineStatisticsDefinition}の設定値を使用する。
+ * アクセスログのローテーションへの対応は、{@link AccessLogTailer}を参照。
+ * <p/>
+ * 集計結果CSVの出力に合わせて、アクセスログの読み込み位置と集計結果をチェックポイントとして
+ * {@link OnlineStatisticsDefinition#setAggregateStateBaseName(String)}のディレクトリに保存する。
+ * 再起動した場合は、チェックポイントから集計を再開する。
+ * <p/>
+ * 以下のいずれかの場合に、集計結果CSV及びチェックポイントを出力して終了する。
+ * <ul>
+ * <li>{@link OnlineStatisticsDefinition#setTailStopFile(String)}の停止ファイルが作成された場合</li>
+ * <li>{@link OnlineStatisticsDefinition#setTailMaxDuration(long)}の時間が経過した場合</li>
+ * <li>スレッドが割り込まれた場合</li>
+ * </ul>
+ * <p/>
+ * ログ出力日時が集計中の日付より新しいリクエスト情報を読み込んだ場合は、集計結果を破棄して新しい日付の集計を開始する。
+ * (集計中の日付より古いリクエスト情報は集計しない)
+ */
+public class AccessLogTailAction extends NoInputDataBatchAction {
+
+    /** ロガー */
+    private static final Logger LOG = LoggerManager.get(AccessLogTailAction.class);
+
+    /** オンラインアクセスログ解析処理の設定値を{@link SystemRepository}から取得するためのキー値 */
+    private static final String PARSE_DEFINITION_KEY = "onlineAccessLogParseDefinition";
+
+    /** チェックポイントのファイル名 */
+    private static final String CHECKPOINT_FILE_NAME = "ACCESS_LOG_TAIL_CHECKPOINT.bin";
+
+    /** オンラインアクセスログ解析処理の設定値 */
+    private OnlineStatisticsDefinition logParseDefinition;
+
+    /** リクエスト情報の集計処理 */
+    private RequestInfoSummary summary;
+
+    /** アクセスログの追跡オブジェクト */
+    private AccessLogTailer tailer;
+
+    /** 集計結果 */
+    private AggregateResultHolder aggregateResultHolder;
+
+    /** 集計対象日(yyyyMMdd形式、未確定の場合は0) */
+    private int date;
+
+    /** 集計済みの最新のログ出力日時(0時からの経過分) */
+    private int latestMinuteOfDay = -1;
+
+    /** チェックポイントのファイル */
+    private File checkpointFile;
+
+    /** 集計オブジェクトの実装クラス名 */
+    private String aggregatorName;
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * チェックポイントが存在する場合は、アクセスログの読み込み位置と集計結果を復元する。
+     */
+    @Override
+    protected void initialize(CommandLine command, ExecutionContext context) {
+        logParseDefinition = SystemRepository.get(PARSE_DEFINITION_KEY);
+        summary = new RequestInfoSummary(logParseDefinition, logParseDefinition.getTailSummaryBaseName());
+        tailer = new AccessLogTailer(logParseDefinition);
+        aggregateResultHolder = summary.createResultHolder();
+        aggregatorName = logParseDefinition.getAggregatorFactory().create().getClass().getName();
+        checkpointFile = new File(
+                FilePathSetting.getInstance().getBaseDirectory(logParseDefinition.getAggregateStateBaseName()),
+                CHECKPOINT_FILE_NAME);
+        restoreCheckpoint();
+    }
+
+    /**
+     * チェックポイントを復元する。
+     * <p/>
+     * チェックポイントが読み込めない場合や、集計オブジェクトの実装クラスが異なる場合は、アクセスログを先頭から読み込む。
+     */
+    private void restoreCheckpoint() {
+        if (!checkpointFile.exists()) {
+            return;
+        }
+        try {
+            AccessLogTailCheckpoint checkpoint = AccessLogTailCheckpoint.read(
+                    checkpointFile, aggregatorName, logParseDefinition.getAggregatorFactory());
+            if (checkpoint == null) {
+                LOG.logWarn("aggregator was changed. checkpoint is ignored. file = [" + checkpointFile + ']');
+                return;
+            }
+            tailer.restore(checkpoint.getPositions());
+            aggregateResultHolder = checkpoint.getHolder();
+            date = checkpoint.getDate();
+        } catch (IOException | RuntimeException e) {
+            LOG.logWarn("failed to read the checkpoint file. checkpoint is ignored. file = [" + checkpointFile + ']', e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 停止条件を満たすまで、アクセスログの読み込みと集計結果CSVの出力を繰り返す。
+     */
+    @Override
+    public Result handle(ExecutionContext ctx) {
+        long start = System.currentTimeMillis();
+        long lastFlush = start;
+        while (true) {
+            tailer.poll(AccessLogFiles.list(logParseDefinition.getAccessLogDir(),
+                    logParseDefinition.getAccessLogFileNamePattern()), this::add);
+
+            long now = System.currentTimeMillis();
+            boolean stop = isStopRequested(start, now);
+            if (stop || now - lastFlush >= logParseDefinition.getTailFlushInterval()) {
+                flush();
+                lastFlush = now;
+            }
+            if (stop) {
+                return new Result.Success();
+            }
+            try {
+                Thread.sleep(logParseDefinition.getTailPollInterval());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush();
+                return new Result.Success();
+            }
+        }
+    }
+
+    /**
+     * リクエスト情報を集計する。
+     * <p/>
+     * 保持期間外となった分単位の集計結果は破棄する。
+     *
+     * @param requestInfo リクエスト情報
+     */
+    private void add(RequestInfo requestInfo) {
+        int requestDate = requestInfo.getYear() * 10000 + requestInfo.getMonth() * 100 + requestInfo.getDay();
+        if (requestDate < date) {
+            return;
+        }
+        if (requestDate > date) {
+            // 日付が変わった場合は、前日までの集計結果を破棄する。
+            aggregateResultHolder = summary.createResultHolder();
+            date = requestDate;
+            latestMinuteOfDay = -1;
+        }
+        summary.addHourAndMinute(aggregateResultHolder, requestInfo);
+
+        int minuteOfDay = requestInfo.getHour() * 60 + requestInfo.getMinute();
+        if (minuteOfDay > latestMinuteOfDay) {
+            latestMinuteOfDay = minuteOfDay;
+            int oldest = minuteOfDay - logParseDefinition.getTailMinuteRetention();
+            aggregateResultHolder.removeIf(key -> key.getAggregateUnit() == AggregateUnit.MINUTE
+                    && toMinuteOfDay(key.getAggregateUnitValue()) <= oldest);
+        }
+    }
+
+    /**
+     * 分単位の集計基準値(時 * 100 + 分)を、0時からの経過分に変換する。
+     *
+     * @param unitValue 分単位の集計基準値
+     * @return 0時からの経過分
+     */
+    private static int toMinuteOfDay(int unitValue) {
+        return unitValue / 100 * 60 + unitValue % 100;
+    }
+
+    /**
+     * 停止条件を満たすか否か。
+     * <p/>
+     * 停止ファイルが存在する場合は、停止ファイルを削除する。
+     *
+     * @param start 開始日時
+     * @param now 現在日時
+     * @return 停止する場合はtrue
+     */
+    private boolean isStopRequested(long start, long now) {
+        String stopFile = logParseDefinition.getTailStopFile();
+        if (stopFile != null) {
+            File file = new File(stopFile);
+            if (file.exists()) {
+                if (!file.delete()) {
+                    LOG.logWarn("failed to delete the stop file. file = [" + file + ']');
+                }
+                return true;
+            }
+        }
+        long maxDuration = logParseDefinition.getTailMaxDuration();
+        return maxDuration > 0 && now - start >= maxDuration;
+    }
+
+    /**
+     * 集計結果CSV及びチェックポイントを出力する。
+     * <p/>
+     * チェックポイントは、集計結果CSVの出力後に出力する。
+     *
+     * @throws UncheckedIOException チェックポイントの出力に失敗した場合
+     */
+    private void flush() {
+        if (!aggregateResultHolder.getProcessNames().isEmpty()) {
+            summary.writeHourAndMinute(aggregateResultHolder);
+        }
+        try {
+            AccessLogTailCheckpoint.write(checkpointFile, aggregatorName, date, tailer.getPositions(),
+                    aggregateResultHolder);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write the checkpoint file. file = [" + checkpointFile + ']', e);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package please.change.me.statistics.action;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import please.change.me.statistics.aggregate.AggregateResultHolder;
+import please.change.me.statistics.aggregate.AggregateStateFile;
+import please.change.me.statistics.aggregate.AggregatorFactory;
+import please.change.me.statistics.parser.AccessLogTailer;
+
+/**
+ * {@link AccessLogTailAction}のチェックポイント(アクセスログの読み込み位置と、その時点の集計結果)を保持するクラス。
+ * <p/>
+ * 読み込み位置と集計結果は1つのファイルに出力するため、再起動後に同じ終了ログが重複して集計されることはない。
+ * <p/>
+ * ファイルの形式は以下のとおり。
+ * <pre>
+ * マジックナンバー(int)、バージョン(int)
+ * 集計オブジェクトの実装クラス名(UTF)
+ * 集計対象日(int、yyyyMMdd形式)
+ * アクセスログ数(int)、[ファイルの識別子(UTF)、ファイル名(UTF)、読み込み位置(long)] * アクセスログ数
+ * 集計結果({@link AggregateStateFile#writeEntries(java.io.DataOutput, AggregateResultHolder)}の形式)
+ * </pre>
+ */
+final class AccessLogTailCheckpoint {
+
+    /** マジックナンバー */
+    private static final int MAGIC = 0x4E53544C;
+
+    /** ファイル形式のバージョン */
+    private static final int VERSION = 3;
+
+    /** 集計対象日 */
+    private final int date;
+
+    /** アクセスログの読み込み位置 */
+    private final List<AccessLogTailer.Position> positions;
+
+    /** 集計結果 */
+    private final AggregateResultHolder holder;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param date 集計対象日
+     * @param positions アクセスログの読み込み位置
+     * @param holder 集計結果
+     */
+    private AccessLogTailCheckpoint(int date, List<AccessLogTailer.Position> positions, AggregateResultHolder holder) {
+        this.date = date;
+        this.positions = positions;
+        this.holder = holder;
+    }
+
+    /**
+     * チェックポイントを出力する。
+     * <p/>
+     * 一時ファイルに出力した後に置き換えるため、出力途中で異常終了した場合でも不完全なファイルは残らない。
+     *
+     * @param file 出力先のファイル
+     * @param aggregatorName 集計オブジェクトの実装クラス名
+     * @param date 集計対象日
+     * @param positions アクセスログの読み込み位置
+     * @param holder 集計結果
+     * @throws IOException 出力に失敗した場合
+     */
+    static void write(File file, String aggregatorName, int date, List<AccessLogTailer.Position> positions,
+            AggregateResultHolder holder) throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(aggregatorName);
+            out.writeInt(date);
+            out.writeInt(positions.size());
+            for (AccessLogTailer.Position position : positions) {
+                out.writeUTF(position.getFileKey());
+                out.writeUTF(position.getFileName());
+                out.writeLong(position.getOffset());
+            }
+            AggregateStateFile.writeEntries(out, holder);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * チェックポイントを読み込む。
+     *
+     * @param file チェックポイントのファイル
+     * @param aggregatorName 集計オブジェクトの実装クラス名
+     * @param factory 集計オブジェクトのファクトリ
+     * @return チェックポイント(集計オブジェクトの実装クラスが出力時と異なり、集計結果を再利用できない場合はnull)
+     * @throws IOException 読み込みに失敗した場合、またはチェックポイントの形式ではない場合
+     */
+    static AccessLogTailCheckpoint read(File file, String aggregatorName, AggregatorFactory factory)
+            throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("unsupported checkpoint file. file = [" + file.getAbsolutePath() + ']');
+            }
+            if (!in.readUTF().equals(aggregatorName)) {
+                return null;
+            }
+            int date = in.readInt();
+            int count = in.readInt();
+            List<AccessLogTailer.Position> positions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                positions.add(new AccessLogTailer.Position(in.readUTF(), in.readUTF(), in.readLong()));
+            }
+            AggregateResultHolder holder = new AggregateResultHolder(factory);
+            AggregateStateFile.readEntries(in, holder, factory);
+            return new AccessLogTailCheckpoint(date, positions, holder);
+        }
+    }
+
+    /**
+     * 集計対象日を取得する。
+     *
+     * @return 集計対象日(yyyyMMdd形式)
+     */
+    int getDate() {
+        return date;
+    }
+
+    /**
+     * アクセスログの読み込み位置を取得する。
+     *
+     * @return アクセスログの読み込み位置
+     */
+    List<AccessLogTailer.Position> getPositions() {
+        return positions;
+    }
+
+    /**
+     * 集計結果を取得する。
+     *
+     * @return 集計結果
+     */
+    AggregateResultHolder getHolder() {
+        return holder;
+    }
+}
@@ -11,5 +11,9 @@ public enum AggregateUnit {
     /** 日 */
     DAY,
     /** 時間 */
-    HOUR
+    HOUR,
+    /** 分 */
+    MINUTE,
+    /** 5分 */
+    FIVE_MINUTES
 }
@@ -1,36 +1,62 @@
 package please.change.me.statistics.action;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
 
-import nablarch.common.io.FileRecordWriterHolder;
-import nablarch.core.date.SystemTimeUtil;
 import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.FilePathSetting;
 import nablarch.core.util.FileUtil;
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.Result;
 import nablarch.fw.action.NoInputDataBatchAction;
 import nablarch.fw.launcher.CommandLine;
 import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
-import please.change.me.statistics.exception.LogParseException;
+import please.change.me.statistics.aggregate.AggregateResultHolder;
+import please.change.me.statistics.aggregate.RollupResultHolder;
+import please.change.me.statistics.aggregate.RequestInfo;
+import please.change.me.statistics.aggregate.RequestInfoBinaryFile;
+import please.change.me.statistics.parser.AccessLogSnapshot;
 
 /**
  * 画面オンラインアクセスログファイルの解析バッチアクションクラス。
  * <p/>
  * 本クラスでは、画面オンラインアクセスログを解析し、「リクエスト情報CSV」を出力する。
+ * アクセスログの解析は、{@link OnlineStatisticsDefinition#setAccessLogParserFactory}で設定されたファクトリが生成する
+ * {@link please.change.me.statistics.parser.AccessLogParser}で行う。
+ * <p/>
+ * {@link OnlineStatisticsDefinition#setDirectAggregation(boolean)}にtrueを設定した場合は、
+ * 解析したリクエスト情報を直接集計し、{@link RequestInfoAggregateAction}と同じ集計結果CSVを出力する。
+ * この場合、リクエスト情報CSVの出力及び再読み込みを行わずに集計できるため、
+ * 解析処理と集計処理を別々に実行する場合と比べて、I/O及び解析にかかるコストを削減できる。
+ * (リクエスト情報CSVを監査用に出力するか否かは、{@link OnlineStatisticsDefinition#setRequestInfoOutput(boolean)}で設定する。)
+ * <p/>
+ * 直接集計する場合に{@link OnlineStatisticsDefinition#setIncrementalAggregation(boolean)}にtrueを設定した場合は、
+ * {@link RequestInfoAggregateAction}と同じ状態ファイルを使用し、状態ファイルで集計済みの過去のリクエスト情報ファイルは読み込まない。
+ * リクエスト情報CSVを出力しない場合は、今回解析したリクエスト情報の集計結果を状態ファイルに保存し、翌日以降の集計に使用する。
+ * このため、リクエスト情報CSVを出力しない設定は、状態ファイルを使用する場合のみ指定できる。
+ * <p/>
+ * {@link OnlineStatisticsDefinition#setRequestInfoBinary(boolean)}にtrueを設定した場合は、
+ * リクエスト情報CSVの代わりに、バイナリ形式のリクエスト情報ファイル({@link RequestInfoBinaryFile})を出力する。
+ * <p/>
+ * {@link OnlineStatisticsDefinition#setSnapshotRead(boolean)}にtrueを設定した場合は、
+ * アクセスログを解析用の一時ディレクトリにコピーせずに、開始時点の内容({@link AccessLogSnapshot})を直接解析する。
+ * <p/>
+ * ファイル名の拡張子が{@link OnlineStatisticsDefinition#setAccessLogDecompressors}の展開オブジェクトに対応する
+ * アクセスログ(gzipで圧縮されたローテーション済みのアクセスログなど)は、展開したファイルを出力せずに、展開しながら解析する。
+ * (圧縮されたアクセスログは追記されないため、スナップショットは取得しない)
+ * <p/>
+ * {@link OnlineStatisticsDefinition#setAccessLogParseParallelism(int)}に2以上を設定した場合は、
+ * アクセスログをファイル毎に並列に解析する。詳細は、{@link AccessLogParseExecutor}を参照。
+ * <p/>
+ * 処理状況(フェーズ毎の処理時間、解析件数等)は{@link StatisticsMetrics}で計測し、処理終了時にログに出力する。
+ * フェーズは、copy(スナップショットとして読み込む場合はsnapshot)、parse、aggregate(直接集計する場合のみ)、write(同)とする。
  * <p/>
  * 本アクションを実行するためには、{@link OnlineStatisticsDefinition}に対して、設定を行うこと。
  * 設定値の詳細は、{@link OnlineStatisticsDefinition}を参照。
@@ -70,43 +96,139 @@ public class OnlineAccessLogParseAction extends NoInputDataBatchAction {
     /** オンラインアクセスログ解析処理の設定値を{@link SystemRepository}から取得するためのキー値 */
     private static final String PARSE_DEFINITION_KEY = "onlineAccessLogParseDefinition";
 
+    /** フォーマット定義ファイルの格納ディレクトリの論理名 */
+    private static final String FORMAT_BASE_PATH_NAME = "format";
+
     /** オンラインアクセスログ解析処理の設定値 */
     private OnlineStatisticsDefinition logParseDefinition;
 
     /** リクエスト情報ファイルのファイル名 */
     private String requestInfoCsv;
 
+    /** リクエスト情報の集計処理 */
+    private RequestInfoSummary summary;
+
+    /** アクセスログの解析処理 */
+    private AccessLogParseExecutor parseExecutor;
+
+    /** 処理状況の計測 */
+    private StatisticsMetrics metrics;
+
+    /** 集計セル(直接集計する場合のみ使用する) */
+    private RollupResultHolder rollupResultHolder;
+
+    /** 状態ファイル(直接集計し、状態ファイルを使用する場合のみ使用する) */
+    private RequestInfoStateFiles stateFiles;
+
+    /** バイナリ形式のリクエスト情報ファイルの出力オブジェクト(バイナリ形式で出力する場合のみ使用する) */
+    private RequestInfoBinaryFile.Writer requestInfoBinaryWriter;
+
+    /** リクエスト情報CSVの出力オブジェクト(リクエスト情報CSVを出力する場合のみ使用する) */
+    private RequestInfoCsvWriter requestInfoCsvWriter;
+
+    /** アクセスログのスナップショット(スナップショットとして読み込む場合のみ使用する) */
+    private List<AccessLogSnapshot> snapshots;
+
+    /** 解析対象のアクセスログ(スナップショットとして読み込む場合のみ使用する) */
+    private List<AccessLogSource> snapshotSources;
+
     /**
      * {@inheritDoc}
      * <p/>
      * 以下の処理を行う。
      * <ul>
-     * <li>アクセスログを解析用の一時ディレクトリにコピーする</li>
-     * <li>終了ログ(ENDログ)を特定するための正規表現のコンパイル</li>
-     * <li>リクエスト情報CSVを開く</li>
+     * <li>設定値の検証(リクエスト情報CSVを出力しない場合は、状態ファイルを使用すること)</li>
+     * <li>アクセスログを解析用の一時ディレクトリにコピーする(スナップショットとして読み込む場合は、スナップショットを取得する)</li>
+     * <li>アクセスログの解析処理の生成</li>
+     * <li>リクエスト情報CSVを開く(リクエスト情報CSVを出力する場合のみ)</li>
      * </ul>
      */
     @Override
     protected void initialize(CommandLine command, ExecutionContext context) {
 
         logParseDefinition = SystemRepository.get(PARSE_DEFINITION_KEY);
+        if (!isRequestInfoOutput() && !logParseDefinition.isIncrementalAggregation()) {
+            // 当日分のリクエスト情報が、翌日以降の集計で失われることを防ぐ。
+            throw new IllegalStateException("request info output can be disabled only if incremental aggregation "
+                    + "is enabled. otherwise, the request info of this day is not aggregated on the following days.");
+        }
+        metrics = new StatisticsMetrics(logParseDefinition, "OnlineAccessLogParse", "parse");
+        metrics.start();
 
-        // 解析用に一時ディレクトリにアクセスログをコピーする。
-        copyAccessLog();
+        if (logParseDefinition.isSnapshotRead()) {
+            // コピーせずに、開始時点のアクセスログの内容を解析する。
+            metrics.startPhase("snapshot");
+            snapshotSources = takeSnapshots();
+        } else {
+            // 解析用に一時ディレクトリにアクセスログをコピーする。
+            metrics.startPhase("copy");
+            copyAccessLog();
+        }
+        metrics.endPhase();
+
+        parseExecutor = new AccessLogParseExecutor(logParseDefinition, metrics.getParseCounters());
+        summary = new RequestInfoSummary(logParseDefinition);
+        requestInfoCsv = summary.getRequestInfoFileName();
+        if (logParseDefinition.isDirectAggregation()) {
+            // 今回出力するリクエスト情報ファイルも、翌日以降の集計対象となるため合わせて検証する。
+            List<String> inputFiles = pastRequestInfoFiles();
+            if (isRequestInfoOutput()) {
+                inputFiles.add(requestInfoCsv);
+            }
+            summary.checkMinuteAvailable(inputFiles);
+            rollupResultHolder = summary.createRollupHolder();
+            if (logParseDefinition.isIncrementalAggregation()) {
+                stateFiles = new RequestInfoStateFiles(logParseDefinition, summary);
+            }
+        }
 
         // リクエスト情報を出力用に開く
-        requestInfoCsv = "REQUEST_INFO_" + SystemTimeUtil.getDateString() + ".csv";
-        FileRecordWriterHolder.open(logParseDefinition.getRequestInfoBaseName(), requestInfoCsv,
-                logParseDefinition.getRequestInfoFormatName());
+        if (isRequestInfoOutput()) {
+            deleteOtherFormatRequestInfoFile();
+            File file = requestInfoFile(requestInfoCsv);
+            try {
+                if (logParseDefinition.isRequestInfoBinary()) {
+                    requestInfoBinaryWriter = RequestInfoBinaryFile.openWriter(file);
+                } else {
+                    requestInfoCsvWriter = new RequestInfoCsvWriter(FilePathSetting.getInstance().getFileWithoutCreate(
+                            FORMAT_BASE_PATH_NAME, logParseDefinition.getRequestInfoFormatName()), file);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to open the request info file. file = [" + file + ']', e);
+            }
+        }
     }
 
     /**
      * {@inheritDoc}
      * <p/>
-     * 作業ディレクトリにコピーしたアクセスログファイルを削除する。
+     * 処理状況の計測を終了し、リクエスト情報ファイルを閉じ、作業ディレクトリにコピーしたアクセスログファイルを削除する。
+     * (スナップショットとして読み込む場合は、スナップショットを閉じる。)
      */
     @Override
     protected void terminate(Result result, ExecutionContext context) {
+        if (metrics != null) {
+            metrics.finish();
+        }
+        if (requestInfoBinaryWriter != null || requestInfoCsvWriter != null) {
+            try {
+                if (requestInfoBinaryWriter != null) {
+                    requestInfoBinaryWriter.close();
+                } else {
+                    requestInfoCsvWriter.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(
+                        "failed to write the request info file. file = [" + requestInfoCsv + ']', e);
+            } finally {
+                requestInfoBinaryWriter = null;
+                requestInfoCsvWriter = null;
+            }
+        }
+        if (snapshots != null) {
+            FileUtil.closeQuietly(snapshots.toArray(new AccessLogSnapshot[snapshots.size()]));
+            return;
+        }
         String tempDir = logParseDefinition.getAccessLogParseDir();
         for (File file : listFiles(tempDir)) {
             FileUtil.deleteFile(file);
@@ -117,162 +239,213 @@ public class OnlineAccessLogParseAction extends NoInputDataBatchAction {
      * {@inheritDoc}
      * <p/>
      * アクセスログを解析し、リクエスト情報中間ファイルを出力する。
+     * <p/>
+     * 直接集計する場合は、解析したリクエスト情報と、集計期間内の過去のリクエスト情報CSVを集計し、集計結果CSVを出力する。
+     * (状態ファイルを使用する場合は、状態ファイルで集計済みの過去のリクエスト情報CSVは読み込まない)
      */
     @Override
     public Result handle(ExecutionContext ctx) {
-        String tempDir = logParseDefinition.getAccessLogParseDir();
-        for (File file : listFiles(tempDir)) {
-            parseAccessLog(file);
+        List<AccessLogSource> sources = snapshotSources;
+        if (sources == null) {
+            sources = new ArrayList<>();
+            for (File file : listFiles(logParseDefinition.getAccessLogParseDir())) {
+                sources.add(AccessLogSource.of(file));
+            }
         }
+        metrics.startPhase("parse");
+        parseExecutor.parse(sources, this::handleRequestInfo);
+
+        if (logParseDefinition.isDirectAggregation()) {
+            metrics.startPhase("aggregate");
+            if (stateFiles == null) {
+                aggregateRequestInfoFiles(ctx);
+                setCellMetrics(rollupResultHolder.getCellCount(), rollupResultHolder.getRunCount());
+                metrics.startPhase("write");
+                summary.write(rollupResultHolder);
+            } else {
+                AggregateResultHolder aggregated = aggregateWithStateFiles(ctx);
+                metrics.startPhase("write");
+                summary.write(aggregated);
+            }
+        }
+        metrics.endPhase();
         return new Result.Success();
     }
 
     /**
-     * アクセスログの解析処理を行う。
+     * 集計期間内の過去のリクエスト情報CSVを集計する。
+     * <p/>
+     * システム日付のリクエスト情報ファイル(全ての形式)は、今回解析したアクセスログから作成されるため集計対象外とする。
      *
-     * @param file 解析対象のアクセスログ
+     * @param ctx 実行コンテキスト
      */
-    private void parseAccessLog(File file) {
-        InputStream resource = FileUtil.getResource(file.toURI().toString());
+    private void aggregateRequestInfoFiles(ExecutionContext ctx) {
+        RequestInfoReader reader = new RequestInfoReader(logParseDefinition, pastRequestInfoFiles());
         try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(resource));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!isEndLog(line)) {
-                    // 終了ログ以外は処理しない
-                    continue;
-                }
-
-                String requestId = findRequestId(line);
-                if (!isTargetRequestId(requestId)) {
-                    // 処理対象外のリクエストIDの場合はスキップ
-                    continue;
-                }
-
-                Map<String, Object> outputData = new HashMap<>();
-                outputData.put("requestId", requestId);
-                Calendar dateTime = findLogOutputDateTime(line);
-                outputData.put("year", dateTime.get(Calendar.YEAR));
-                outputData.put("month", dateTime.get(Calendar.MONTH) + 1);
-                outputData.put("day", dateTime.get(Calendar.DATE));
-                outputData.put("hour", dateTime.get(Calendar.HOUR_OF_DAY));
-                outputData.put("processName", findProcessName(line));
-                outputData.put("statusCode", findStatusCode(line));
-                outputData.put("executeTime", findExecutionTime(line, reader));
-
-                FileRecordWriterHolder.write(outputData, logParseDefinition.getRequestInfoBaseName(),
-                        requestInfoCsv);
+            while (reader.hasNext(ctx)) {
+                summary.add(rollupResultHolder, reader.read(ctx));
             }
-        } catch (Exception e) {
-            throw new LogParseException("failed to read access log file. file = [" + file.getAbsolutePath() + ']', e);
         } finally {
-            FileUtil.closeQuietly(resource);
+            reader.close(ctx);
         }
     }
 
     /**
-     * ステータスコードを抽出する。
+     * 状態ファイルを使用して、集計期間内の過去のリクエスト情報ファイルと今回解析したリクエスト情報を集計する。
+     * <p/>
+     * 状態ファイルで集計済みのリクエスト情報ファイルは読み込まずに、状態ファイルの集計結果を使用する。
+     * 読み込んだリクエスト情報ファイルは、ファイル毎に集計結果を状態ファイルに保存する。
+     * リクエスト情報CSVを出力しない場合は、今回解析したリクエスト情報の集計結果を状態ファイルに保存する。
+     * (出力する場合は、出力したリクエスト情報CSVを翌日以降の実行で読み込んだ際に保存する)
+     * <p/>
+     * 翌月以降も再利用できるように、当月以外の年月単位も導出する。
      *
-     * @param line 抽出対象の行
-     * @return 抽出したステータスコード
+     * @param ctx 実行コンテキスト
+     * @return 集計期間内の全てのリクエスト情報の集計結果
      */
-    private String findStatusCode(String line) {
-        Matcher matcher = logParseDefinition.getFindStatusCodePattern().matcher(line);
-        if (matcher.find()) {
-            return matcher.group(1);
+    private AggregateResultHolder aggregateWithStateFiles(ExecutionContext ctx) {
+        // 今回解析したリクエスト情報の状態ファイルは、今回の集計結果で置き換えるため読み込まない。
+        stateFiles.delete(summary.getRequestInfoFileNames());
+        AggregateResultHolder aggregated = summary.createResultHolder();
+        List<String> inputFiles = pastRequestInfoFiles();
+        inputFiles.removeAll(stateFiles.load(inputFiles, aggregated));
+
+        Map<String, RollupResultHolder> fileCells = new HashMap<>();
+        RequestInfoReader reader = new RequestInfoReader(logParseDefinition, inputFiles, true);
+        try {
+            while (reader.hasNext(ctx)) {
+                RequestInfo requestInfo = reader.read(ctx);
+                RollupResultHolder cells = fileCells.get(reader.getSourceFileName());
+                if (cells == null) {
+                    cells = summary.createRollupHolder();
+                    fileCells.put(reader.getSourceFileName(), cells);
+                }
+                summary.add(cells, requestInfo);
+            }
+        } finally {
+            reader.close(ctx);
+        }
+
+        long cellCount = rollupResultHolder.getCellCount();
+        long runCount = rollupResultHolder.getRunCount();
+        for (String name : inputFiles) {
+            RollupResultHolder cells = fileCells.get(name);
+            if (cells == null) {
+                // リクエスト情報が存在しないファイルも、次回以降に読み込まないように状態ファイルを保存する。
+                cells = summary.createRollupHolder();
+            }
+            cellCount += cells.getCellCount();
+            runCount += cells.getRunCount();
+            AggregateResultHolder fileResult = summary.createResultHolder();
+            summary.rollup(cells, fileResult, false);
+            stateFiles.save(name, fileResult);
+            aggregated.merge(fileResult);
+        }
+        setCellMetrics(cellCount, runCount);
+
+        AggregateResultHolder parsed = summary.createResultHolder();
+        summary.rollup(rollupResultHolder, parsed, false);
+        if (!isRequestInfoOutput()) {
+            stateFiles.saveWithoutSource(requestInfoCsv, parsed);
         }
-        throw new LogParseException("online access log parse error. STATUS_CODE was not found in end log.");
+        aggregated.merge(parsed);
+        return aggregated;
     }
 
     /**
-     * ログ出力日時を抽出する。
+     * 集計期間内の過去のリクエスト情報ファイルを取得する。
+     * <p/>
+     * システム日付のリクエスト情報ファイル(全ての形式)は、今回解析したアクセスログから作成されるため含めない。
      *
-     * @param line 抽出対象の行
-     * @return ログ出力日時
-     * @throws ParseException 日付解析処理で例外が発生した場合
+     * @return 過去のリクエスト情報ファイルのファイル名
      */
-    private Calendar findLogOutputDateTime(String line) throws ParseException {
-
-        String dateTime = line.substring(
-                logParseDefinition.getLogOutputDateTimeStartPosition(),
-                logParseDefinition.getLogOutputDateTimeEndPosition());
-        DateFormat format = new SimpleDateFormat(logParseDefinition.getLogOutputDateTimeFormat());
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(format.parse(dateTime));
-        return calendar;
+    private List<String> pastRequestInfoFiles() {
+        List<String> inputFiles = new ArrayList<>(summary.findRequestInfoFiles());
+        inputFiles.removeAll(summary.getRequestInfoFileNames());
+        return inputFiles;
     }
 
     /**
-     * 起動プロセス名を抽出する。
+     * 集計セルの数及びランの数と、集計後のヒープ使用量を処理状況に設定する。
      *
-     * <p>プロセス名がログから取得できない場合には、空文字列を返却する。
+     * @param cellCount 集計セルの数
+     * @param runCount 集計セルを退避したランの数
+     */
+    private void setCellMetrics(long cellCount, long runCount) {
+        metrics.set("aggregateCells", cellCount);
+        metrics.set("spillRuns", runCount);
+        metrics.set("heapUsedAfterAggregation", metrics.sampleHeapUsed());
+    }
+
+    /**
+     * リクエスト情報CSVを出力するか否か。
+     * <p/>
+     * 直接集計しない場合は、後続の集計処理の入力となるため常に出力する。
      *
-     * @param line 抽出対象の行
-     * @return 起動プロセス名
+     * @return リクエスト情報CSVを出力する場合はtrue
      */
-    private String findProcessName(String line) {
-        Matcher matcher = logParseDefinition.getFindProcessNamePattern().matcher(line);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return "";
+    private boolean isRequestInfoOutput() {
+        return !logParseDefinition.isDirectAggregation() || logParseDefinition.isRequestInfoOutput();
     }
 
     /**
-     * リクエストIDを抽出する。
+     * アクセスログから抽出したリクエスト情報を処理する。
      * <p/>
-     * リクエストIDが見つからない場合は、nullを返却する。
+     * リクエスト情報CSVへの出力及び直接集計を行う。
      *
-     * @param line 抽出対象の行
-     * @return リクエストID
+     * @param requestInfo リクエスト情報
      */
-    private String findRequestId(String line) {
-        Matcher matcher = logParseDefinition.getFindRequestIdPattern().matcher(line);
-        if (matcher.find()) {
-            return matcher.group(1);
+    private void handleRequestInfo(RequestInfo requestInfo) {
+        metrics.addRequestInfo();
+        if (isRequestInfoOutput()) {
+            writeRequestInfo(requestInfo);
+        }
+        if (logParseDefinition.isDirectAggregation()) {
+            summary.add(rollupResultHolder, requestInfo);
         }
-        throw new LogParseException("online access log parse error. REQUEST_ID was not found in end log.");
     }
 
     /**
-     * 処理時間を取得する。
+     * リクエスト情報をリクエスト情報CSVに出力する。
      *
-     * @param line 抽出対象の行
-     * @param reader リーダ
-     * @return 処理時間
-     * @throws IOException ファイル読み込みに失敗した場合
+     * @param requestInfo リクエスト情報
      */
-    private String findExecutionTime(String line, BufferedReader reader) throws IOException {
-        Pattern pattern = logParseDefinition.getFindExecutionTimePattern();
-        Matcher matcher = pattern.matcher(line);
-        while (!matcher.find()) {
-            line = reader.readLine();
-            if (line == null) {
-                throw new LogParseException("online access log parse error. EXECUTION_TIME was not found in end log.");
+    private void writeRequestInfo(RequestInfo requestInfo) {
+        try {
+            if (requestInfoBinaryWriter != null) {
+                requestInfoBinaryWriter.write(requestInfo);
+            } else {
+                requestInfoCsvWriter.write(requestInfo);
             }
-            matcher = pattern.matcher(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "failed to write the request info file. file = [" + requestInfoCsv + ']', e);
         }
-        return matcher.group(1);
     }
 
     /**
-     * 抽出対象のリクエストIDか判定する。
-     *
-     * @param requestId リクエストID
-     * @return 抽出対象のリクエストIDの場合はtrue
+     * システム日付のリクエスト情報ファイルのうち、今回出力しない形式のファイルを削除する。
+     * <p/>
+     * 出力形式を変更した場合に、同日のリクエスト情報が重複して集計されることを防ぐ。
      */
-    private boolean isTargetRequestId(String requestId) {
-        return logParseDefinition.getIncludeRequestIdList().contains(requestId);
+    private void deleteOtherFormatRequestInfoFile() {
+        for (String fileName : summary.getRequestInfoFileNames()) {
+            File file = requestInfoFile(fileName);
+            if (!fileName.equals(requestInfoCsv) && file.exists()) {
+                FileUtil.deleteFile(file);
+            }
+        }
     }
 
     /**
-     * 終了ログか否かを判定する。
+     * リクエスト情報ファイル格納ディレクトリ配下のファイルを取得する。
      *
-     * @param line 判定対象の行
-     * @return 終了ログの場合は、true
+     * @param fileName ファイル名
+     * @return ファイル
      */
-    private boolean isEndLog(String line) {
-        return logParseDefinition.getEndLogPattern().matcher(line).find();
+    private File requestInfoFile(String fileName) {
+        return new File(FilePathSetting.getInstance().getBaseDirectory(logParseDefinition.getRequestInfoBaseName()),
+                fileName);
     }
 
     /**
@@ -284,26 +457,7 @@ public class OnlineAccessLogParseAction extends NoInputDataBatchAction {
      * @return ファイル一覧
      */
     private File[] listFiles(String dir) {
-        File[] files = FileUtil.listFiles(dir, logParseDefinition.getAccessLogFileNamePattern());
-        List<File> fileList = new ArrayList<>();
-        for (File file : files) {
-            if (file.isFile()) {
-                fileList.add(file);
-            }
-        }
-
-        // 最終更新日時でソートする。
-        fileList.sort((o1, o2) -> {
-            String name1 = o1.getName();
-            String name2 = o2.getName();
-            if (name1.length() == name2.length()) {
-                return name1.compareTo(name2);
-            } else {
-                // 短いファイル名は最新ファイルとして、判断する。
-                return name2.length() - name1.length();
-            }
-        });
-        return fileList.toArray(new File[fileList.size()]);
+        return AccessLogFiles.list(dir, logParseDefinition.getAccessLogFileNamePattern());
     }
 
     /** アクセスログを解析用の一時ディレクトリにコピーする。 */
@@ -315,5 +469,38 @@ public class OnlineAccessLogParseAction extends NoInputDataBatchAction {
             FileUtil.copy(file, new File(tempDir + '/' + file.getName()));
         }
     }
-}
 
+    /**
+     * アクセスログのスナップショットを取得する。
+     * <p/>
+     * 一覧の取得中にローテーションされ、同一のファイルが異なるファイル名で複数回抽出された場合は、
+     * 最初に抽出したファイル名のスナップショットのみを使用する。
+     * 圧縮されたアクセスログは、スナップショットを取得せずにファイルを直接解析する。
+     *
+     * @return 解析対象のアクセスログのリスト(解析順)
+     */
+    private List<AccessLogSource> takeSnapshots() {
+        snapshots = new ArrayList<>();
+        List<AccessLogSource> result = new ArrayList<>();
+        Set<Object> fileKeys = new HashSet<>();
+        try {
+            for (File file : listFiles(logParseDefinition.getAccessLogDir())) {
+                if (AccessLogSource.findDecompressor(file, logParseDefinition.getAccessLogDecompressors()) != null) {
+                    result.add(AccessLogSource.of(file));
+                    continue;
+                }
+                AccessLogSnapshot snapshot = AccessLogSnapshot.take(file);
+                if (snapshot.getFileKey() != null && !fileKeys.add(snapshot.getFileKey())) {
+                    FileUtil.closeQuietly(snapshot);
+                    continue;
+                }
+                snapshots.add(snapshot);
+                result.add(AccessLogSource.of(snapshot));
+            }
+        } catch (RuntimeException e) {
+            FileUtil.closeQuietly(snapshots.toArray(new AccessLogSnapshot[snapshots.size()]));
+            throw e;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,133 @@
+package please.change.me.statistics.action;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.FilePathSetting;
+import nablarch.core.util.FileUtil;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Result;
+import nablarch.fw.action.NoInputDataBatchAction;
+import nablarch.fw.launcher.CommandLine;
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+import please.change.me.statistics.aggregate.AggregateResultHolder;
+import please.change.me.statistics.aggregate.AggregateStateFile;
+
+/**
+ * 複数のノードで出力した部分集計ファイルを合算し、集計結果CSVを出力するバッチアクションクラス。
+ * <p/>
+ * 各ノードでは、{@link OnlineStatisticsDefinition#setPartialAggregateOutput(boolean)}にtrueを設定して
+ * {@link RequestInfoAggregateAction}を実行し、ノードのリクエスト情報ファイルの集計結果を部分集計ファイルとして出力する。
+ * 部分集計ファイルは集計途中の状態(処理時間の分布を含む)を保持するため、
+ * リクエスト情報ファイルを転送せずに、部分集計ファイルのみを1つのディレクトリに集めればよい。
+ * <p/>
+ * 本クラスでは、{@link OnlineStatisticsDefinition#setPartialAggregateBaseName(String)}のディレクトリ内の
+ * 全ての部分集計ファイルを合算し、{@link RequestInfoAggregateAction}と同じ形式の集計結果CSVを出力する。
+ * 集計結果CSVは、全ノードのリクエスト情報ファイルを1つのディレクトリに集めて{@link RequestInfoAggregateAction}で集計した場合と同一となる。
+ * (部分集計ファイルの出力と本アクションの実行は、同じ日に行うこと。年月単位の集計結果は、システム日付の当月分のみを出力する。)
+ * <p/>
+ * 部分集計ファイルの集計オブジェクトの実装クラスが、{@link OnlineStatisticsDefinition#setAggregatorFactory}で
+ * 設定されたファクトリが生成する集計オブジェクトと異なる場合や、集計単位(5分、分単位の要否)及びピークの算出要否が異なる場合は、
+ * 合算できないため異常終了する。
+ */
+public class PartialAggregateMergeAction extends NoInputDataBatchAction {
+
+    /** 部分集計ファイルのファイル名のプレフィックス */
+    static final String PARTIAL_FILE_PREFIX = "REQUEST_INFO_PARTIAL_";
+
+    /** 部分集計ファイルの拡張子 */
+    static final String PARTIAL_FILE_SUFFIX = ".bin";
+
+    /** ロガー */
+    private static final Logger LOG = LoggerManager.get(PartialAggregateMergeAction.class);
+
+    /** オンラインアクセスログ解析処理の設定値を{@link SystemRepository}から取得するためのキー値 */
+    private static final String PARSE_DEFINITION_KEY = "onlineAccessLogParseDefinition";
+
+    /** オンラインアクセスログ解析処理の設定値 */
+    private OnlineStatisticsDefinition logParseDefinition;
+
+    /** リクエスト情報の集計処理 */
+    private RequestInfoSummary summary;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void initialize(CommandLine command, ExecutionContext context) {
+        logParseDefinition = SystemRepository.get(PARSE_DEFINITION_KEY);
+        summary = new RequestInfoSummary(logParseDefinition);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 全ての部分集計ファイルを合算し、集計結果CSVを出力する。
+     *
+     * @throws IllegalStateException 部分集計ファイルの集計方法(集計オブジェクトの実装クラス等)が異なる場合
+     * @throws UncheckedIOException 部分集計ファイルの読み込みに失敗した場合
+     */
+    @Override
+    public Result handle(ExecutionContext ctx) {
+        String aggregatorName = summary.getAggregationName();
+        AggregateResultHolder holder = summary.createResultHolder();
+        List<File> files = listPartialFiles(logParseDefinition);
+        for (File file : files) {
+            try {
+                AggregateStateFile partialFile = AggregateStateFile.open(file);
+                if (!partialFile.getAggregatorName().equals(aggregatorName)) {
+                    throw new IllegalStateException("aggregator of the partial aggregate file is different. "
+                            + "file = [" + file + "], aggregator = [" + partialFile.getAggregatorName()
+                            + "], expected = [" + aggregatorName + ']');
+                }
+                partialFile.readInto(holder, logParseDefinition.getAggregatorFactory());
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to read the partial aggregate file. file = [" + file + ']', e);
+            }
+        }
+        LOG.logInfo("merged partial aggregate files. count = [" + files.size() + ']');
+
+        summary.write(holder);
+        return new Result.Success();
+    }
+
+    /**
+     * ノードの部分集計ファイルを取得する。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     * @return 部分集計ファイル
+     * @throws IllegalStateException ノードの名前が設定されていない場合
+     */
+    static File partialFileOf(OnlineStatisticsDefinition logParseDefinition) {
+        String nodeName = logParseDefinition.getPartialAggregateNodeName();
+        if (nodeName == null || nodeName.isEmpty()) {
+            throw new IllegalStateException(
+                    "partialAggregateNodeName must be set to output the partial aggregate file.");
+        }
+        File directory = FilePathSetting.getInstance().getBaseDirectory(
+                logParseDefinition.getPartialAggregateBaseName());
+        return new File(directory, PARTIAL_FILE_PREFIX + nodeName + PARTIAL_FILE_SUFFIX);
+    }
+
+    /**
+     * 部分集計ファイルの一覧を、ファイル名順に取得する。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     * @return 部分集計ファイルの一覧
+     */
+    private static List<File> listPartialFiles(OnlineStatisticsDefinition logParseDefinition) {
+        File directory = FilePathSetting.getInstance().getBaseDirectory(
+                logParseDefinition.getPartialAggregateBaseName());
+        File[] files = FileUtil.listFiles(directory.getAbsolutePath(), PARTIAL_FILE_PREFIX + '*' + PARTIAL_FILE_SUFFIX);
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+}
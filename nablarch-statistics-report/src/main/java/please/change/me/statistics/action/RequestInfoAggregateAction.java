@@ -1,30 +1,30 @@
 package please.change.me.statistics.action;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-import nablarch.core.util.DateUtil;
-import nablarch.common.io.FileRecordWriterHolder;
-import nablarch.core.dataformat.DataRecord;
-import nablarch.core.date.SystemTimeUtil;
 import nablarch.core.repository.SystemRepository;
 import nablarch.core.util.FilePathSetting;
-import nablarch.core.util.FileUtil;
-import nablarch.core.util.StringUtil;
 import nablarch.fw.DataReader;
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.Result;
 import nablarch.fw.action.BatchAction;
 import nablarch.fw.launcher.CommandLine;
 import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
-import please.change.me.statistics.reader.MultiFileRecordReader;
+import please.change.me.statistics.aggregate.AggregateResultHolder;
+import please.change.me.statistics.aggregate.AggregateStateFile;
+import please.change.me.statistics.aggregate.Aggregator;
+import please.change.me.statistics.aggregate.RequestInfo;
+import please.change.me.statistics.aggregate.RequestInfoBinaryFile;
+import please.change.me.statistics.aggregate.RollupResultHolder;
 
 /**
  * {@link OnlineAccessLogParseAction}で出力したリクエスト情報CSVを集計するバッチアクション。
@@ -44,144 +44,149 @@ import please.change.me.statistics.reader.MultiFileRecordReader;
  * {@link OnlineStatisticsDefinition#setAggregatePeriod(int)}で設定された期間分の時間集計結果CSVファイルを出力する。
  * </li>
  * </ul>
+ * また、設定に応じて5分、分単位の集計結果CSV及びピーク集計結果CSVを出力する。
+ * (詳細は{@link OnlineStatisticsDefinition#setFiveMinuteSummary(boolean)}、
+ * {@link OnlineStatisticsDefinition#setMinuteSummary(boolean)}、{@link OnlineStatisticsDefinition#setPeakWindowMinutes(int)}を参照)
+ * <p/>
+ * 集計単位毎の処理時間の集計には、{@link OnlineStatisticsDefinition#setAggregatorFactory}で設定されたファクトリが生成する
+ * {@link Aggregator}を使用する。
+ * 集計結果CSVに出力する項目は、{@link OnlineStatisticsDefinition#setRequestInfoSummaryFormatName(String)}で設定された
+ * フォーマット定義ファイルで決まる。
+ * 90、95、99、99.9パーセンタイル値を出力する場合は、フォーマット定義ファイルに「p90」、「p95」、「p99」、「p999」を定義すること。
+ * また、処理時間のヒストグラム(処理時間が指定値以下のリクエスト数)及びステータスコードの分類毎のリクエスト数も出力できる。
+ * (出力できる項目は{@link please.change.me.statistics.aggregate.SummaryCsvWriter}を参照)
+ * いずれの項目も、リクエスト情報を1回読み込む間に集計セル({@link RollupResultHolder})に集計し、
+ * 集計セルから導出した集計単位毎の集計オブジェクトから算出する。
+ * <p/>
+ * 集計はスレッド毎に行い、全スレッドの処理完了後に合算して出力するため、本アクションはマルチスレッドで実行することができる。
+ * (出力内容は、スレッド数に関わらず同一となる。)
+ * <p/>
+ * {@link OnlineStatisticsDefinition#setIncrementalAggregation(boolean)}にtrueを設定した場合は、
+ * 集計したリクエスト情報ファイル毎の集計結果を状態ファイルに保存し、次回以降の実行で再利用する。
+ * この場合、前回の実行以降に追加(または変更)されたリクエスト情報ファイルのみを読み込むため、
+ * 日次で実行する場合の処理時間は、集計期間全体ではなく1日分のリクエスト情報の量に比例する。
+ * 状態ファイルはリクエスト情報ファイル毎に作成するため、集計期間外となったリクエスト情報ファイルの状態ファイルのみが破棄される。
+ * (出力内容は、状態ファイルを使用しない場合と同一となる。)
+ * <p/>
+ * リクエスト情報CSVに加えて、バイナリ形式のリクエスト情報ファイル({@link RequestInfoBinaryFile})も集計対象とする。
+ * <p/>
+ * {@link OnlineStatisticsDefinition#setPartialAggregateOutput(boolean)}にtrueを設定した場合は、集計結果CSVを出力せずに、
+ * 集計結果を部分集計ファイルに出力する。
+ * 複数ノードの部分集計ファイルは、{@link PartialAggregateMergeAction}で合算して集計結果CSVを出力する。
+ * <p/>
+ * 処理状況(フェーズ毎の処理時間、集計件数等)は{@link StatisticsMetrics}で計測し、処理終了時にログに出力する。
+ * フェーズは、load(状態ファイルの読み込み)、aggregate(リクエスト情報の集計)、write(集計結果の導出及び出力)とする。
  * <p/>
  *
  * @author hisaaki sioiri
  */
-public class RequestInfoAggregateAction extends BatchAction<DataRecord> {
+public class RequestInfoAggregateAction extends BatchAction<RequestInfo> {
 
     /** オンラインアクセスログ解析処理の設定値を{@link SystemRepository}から取得するためのキー値 */
     private static final String PARSE_DEFINITION_KEY = "onlineAccessLogParseDefinition";
 
-    /** 日単位のリクエスト情報ファイルのファイル名のプレフィックス */
-    private static final String REQUEST_INFO_SUMMARY_DAY_PREFIX = "REQUEST_INFO_SUMMARY_DAY_";
-
-    /** 時間単位のリクエスト情報ファイルのファイル名のプレフィックス */
-    private static final String REQUEST_INFO_SUMMARY_HOUR_PREFIX = "REQUEST_INFO_SUMMARY_HOUR_";
-
-    /** 年月単位のリクエスト情報ファイルのファイル名のプレフィックス */
-    private static final String REQUEST_INFO_SUMMARY_YM_PREFIX = "REQUEST_INFO_SUMMARY_YM_";
-
-    /** リクエストID */
-    private static final String REQUEST_ID = "requestId";
-
-    /** 集計単位値 */
-    private static final String AGGREGATE_UNIT_VALUE = "aggregateUnitValue";
-
-    /** プロセス名 */
-    private static final String PROCESS_NAME = "processName";
-
-    /** 処理リクエスト数 */
-    private static final String REQUEST_COUNT = "requestCount";
-
-    /** 処理時間が閾値を超えたリクエスト数 */
-    private static final String THRESHOLD_OVER_COUNT = "thresholdOverCount";
+    /** 集計セルを読み込み元のリクエスト情報ファイル毎に保持しない場合の、集計セルのキー */
+    private static final String ALL_FILES = "";
 
-    /** 処理時間（平均） */
-    private static final String AVERAGE = "average";
+    /** オンラインアクセスログ解析処理の設定値 */
+    private OnlineStatisticsDefinition logParseDefinition;
 
-    /** 処理時間（中央値） */
-    private static final String MEDIAN = "median";
+    /** リクエスト情報の集計処理 */
+    private RequestInfoSummary summary;
 
-    /** 処理時間（最大値） */
-    private static final String MAX = "max";
+    /** 読み込み対象のリクエスト情報ファイル */
+    private List<String> inputFiles;
 
-    /** 日、時間単位の集計結果を保持するMapオブジェクト */
-    private final Map<AggregateKey, Aggregator> aggregateResultHolder = new TreeMap<>();
+    /** 状態ファイル(状態ファイルを使用しない場合はnull) */
+    private RequestInfoStateFiles stateFiles;
 
-    /** 年月集計結果を保持するMapオブジェクト */
-    private final Map<AggregateKey, Aggregator> ymAggregateResultHolder = new TreeMap<>();
+    /** 状態ファイルから読み込んだ集計結果(状態ファイルを使用しない場合はnull) */
+    private AggregateResultHolder storedResult;
 
-    /** プロセス名一覧 */
-    private final Set<String> processNames = new HashSet<>();
+    /** 処理状況の計測 */
+    private StatisticsMetrics metrics;
 
-    /** オンラインアクセスログ解析処理の設定値 */
-    private OnlineStatisticsDefinition logParseDefinition;
+    /** リクエスト情報のリーダ */
+    private RequestInfoReader reader;
 
-    /** システム日付(年月) */
-    private String systemDateYm;
+    /**
+     * 全スレッドの集計セル(スレッド毎の部分集計結果)のリスト。
+     * <p/>
+     * 状態ファイルを使用する場合は読み込み元のリクエスト情報ファイル名、使用しない場合は{@link #ALL_FILES}をキーとする。
+     */
+    private final Map<String, Queue<RollupResultHolder>> partialResultHolders = new ConcurrentHashMap<>();
 
-    /** 月単位のリクエスト情報ファイルのファイル名 */
-    private String requestInfoAggregateYmCsv;
+    /**
+     * 実行中のスレッドの集計セル({@link #partialResultHolders}と同じキー毎に保持する)。
+     * <p/>
+     * {@link #handle(RequestInfo, ExecutionContext)}は複数スレッドから並行して呼び出される可能性があるため、
+     * 集計セルはスレッド毎に保持し、{@link #terminate(Result, ExecutionContext)}で合算する。
+     */
+    private final ThreadLocal<Map<String, RollupResultHolder>> partialResultHolder =
+            ThreadLocal.withInitial(HashMap::new);
 
     /** {@inheritDoc} */
     @Override
     protected void initialize(CommandLine command, ExecutionContext context) {
         logParseDefinition = SystemRepository.get(PARSE_DEFINITION_KEY);
-
-        systemDateYm = DateUtil.formatDate(SystemTimeUtil.getDateString(), "yyyyMM");
-        requestInfoAggregateYmCsv = REQUEST_INFO_SUMMARY_YM_PREFIX + systemDateYm + '_';
+        metrics = new StatisticsMetrics(logParseDefinition, "RequestInfoAggregate", "aggregate");
+        metrics.start();
+        summary = new RequestInfoSummary(logParseDefinition);
+
+        inputFiles = summary.findRequestInfoFiles();
+        summary.checkMinuteAvailable(inputFiles);
+        if (logParseDefinition.isIncrementalAggregation()) {
+            // 状態ファイルで集計済みのファイルは読み込まない。
+            metrics.startPhase("load");
+            stateFiles = new RequestInfoStateFiles(logParseDefinition, summary);
+            storedResult = summary.createResultHolder();
+            inputFiles.removeAll(stateFiles.load(inputFiles, storedResult));
+        }
+        metrics.set("inputFiles", inputFiles.size());
+        metrics.set("inputBytes", sumFileLength(inputFiles));
+        metrics.startPhase("aggregate");
     }
 
     /**
      * {@inheritDoc}
      * <p/>
-     * インプットデータのリクエスト情報を元に、年月、日、時間単位で、処理時間とリクエスト数の算出を行う。
-     * ※年月単位の集計は、リクエスト情報の年月が当月(システム日付より取得)の場合のみ集計対象とする。
+     * インプットデータのリクエスト情報を、集計セル単位で集計する。
+     * (年月、日、時間単位等の集計結果は、{@link #terminate(Result, ExecutionContext)}で集計セルから導出する。)
+     * <p/>
+     * 集計セルは実行中のスレッド毎に保持するため、本メソッドは複数スレッドから並行して呼び出すことができる。
+     * 状態ファイルを使用する場合は、リクエスト情報ファイル毎に状態ファイルを作成するため、
+     * 集計セルを読み込み元のリクエスト情報ファイル毎に分けて集計する。
      */
     @Override
-    public Result handle(DataRecord inputData, ExecutionContext ctx) {
-
-        String ymStr = inputData.getString("year") + StringUtil.lpad(inputData.getString("month"), 2, '0');
-
-        if (systemDateYm.equals(ymStr)) {
-            // システム日付と同月のデータのみ年月集計を行う。
-            int ym = Integer.parseInt(ymStr);
-            addRequestInfo(ymAggregateResultHolder, inputData, AggregateUnit.YEAR_MONTH, ym);
-        }
-
-        // 日単位の集計処理
-        addRequestInfo(aggregateResultHolder, inputData, AggregateUnit.DAY, inputData.getBigDecimal("day").intValue());
-
-        // 時間単位の集計処理
-        addRequestInfo(aggregateResultHolder, inputData, AggregateUnit.HOUR, inputData.getBigDecimal("hour")
-                .intValue());
-
+    public Result handle(RequestInfo inputData, ExecutionContext ctx) {
+        String source = storedResult == null ? ALL_FILES : reader.getSourceFileName();
+        summary.add(partialResultHolderOf(source), inputData);
+        metrics.addRequestInfo();
         return new Result.Success();
     }
 
     /**
-     * 指定された集計結果ホルダーに今回のリクエスト情報を追加する。
+     * 実行中のスレッドの集計セルを取得する。
      *
-     * @param aggregateHolder 集計結果ホルダー
-     * @param inputData リクエスト情報1レコード
-     * @param aggregateUnit 集計単位
-     * @param unitValue 集計基準値
+     * @param source 集計セルのキー(読み込み元のリクエスト情報ファイル名、または{@link #ALL_FILES})
+     * @return 実行中のスレッドの集計セル
      */
-    private void addRequestInfo(Map<AggregateKey, Aggregator> aggregateHolder,
-            DataRecord inputData,
-            AggregateUnit aggregateUnit,
-            int unitValue) {
-
-        // プロセス名を保持する。
-        String processName = inputData.getString(PROCESS_NAME);
-        processNames.add(processName);
-
-        // 集計単位のキー
-        AggregateKey key = new AggregateKey(
-                inputData.getString(REQUEST_ID),
-                processName,
-                aggregateUnit, unitValue);
-
-        // AggregateKeyは、equals及びhashCodeを実装していないが、使用するMap実装がTreeMapであるため、以下のコードは問題なく動作する。
-        // 使用するMap実装が変更になる場合は、AggregateKeyの実装を見直すこと。
-        // ※これはカバレッジ対策の実装である。
-        if (!aggregateHolder.containsKey(key)) {
-            aggregateHolder.put(key, new Aggregator());
+    private RollupResultHolder partialResultHolderOf(String source) {
+        Map<String, RollupResultHolder> holders = partialResultHolder.get();
+        RollupResultHolder holder = holders.get(source);
+        if (holder == null) {
+            holder = summary.createRollupHolder();
+            holders.put(source, holder);
+            partialResultHolders.computeIfAbsent(source, key -> new ConcurrentLinkedQueue<>()).add(holder);
         }
-
-        Aggregator aggregator = aggregateHolder.get(key);
-        int executeTime = inputData.getBigDecimal("execute_time").intValue();
-        aggregator.addRequestData(
-                executeTime,
-                executeTime > logParseDefinition.getThresholdExecutionTime()       // 閾値を超えているか否か
-        );
+        return holder;
     }
 
     /**
      * {@inheritDoc}
      * <p/>
-     * 本処理({@link #handle(DataRecord, ExecutionContext)}で集計した結果を、集計結果CSVに出力する。
+     * 本処理({@link #handle(RequestInfo, ExecutionContext)}で集計した集計セルから各集計単位の集計結果を導出し、集計結果CSVに出力する。
+     * ※年月単位の集計は、リクエスト情報の年月が当月(システム日付より取得)の場合のみ集計対象とする。
      * <p/>
      * 集計結果ファイルは、以下の3ファイル出力する。
      * <ul>
@@ -189,276 +194,164 @@ public class RequestInfoAggregateAction extends BatchAction<DataRecord> {
      * <li>日毎集計結果CSV</li>
      * <li>時間毎集計結果CSV</li>
      * </ul>
+     * 部分集計ファイルを出力する場合は、集計結果CSVの代わりに部分集計ファイルを出力する。
+     * <p/>
+     * 状態ファイル及び部分集計ファイルを使用しない場合は、集計結果をリクエストID毎に導出しながら集計結果CSVに出力する。
+     * (集計セルを一時ファイルに退避している場合は、一時ファイルをマージしながら導出する。
+     * 詳細は{@link OnlineStatisticsDefinition#setAggregateCellLimit(int)}を参照)
+     * <p/>
+     * 出力後に、処理状況の計測を終了する。
      */
     @Override
     protected void terminate(Result result, ExecutionContext context) {
-
-        // プロセス名単位にファイル出力を行う。
-        for (String processName : processNames) {
-            // 年月単位ファイル
-            openOutputCsv(requestInfoAggregateYmCsv + processName + ".csv", "年月");
-
-            // 日単位ファイル
-            openOutputCsv(REQUEST_INFO_SUMMARY_DAY_PREFIX + processName + ".csv", "日");
-
-            // 時間単位ファイル
-            openOutputCsv(REQUEST_INFO_SUMMARY_HOUR_PREFIX + processName + ".csv", "時間");
+        if (metrics == null) {
+            return;
         }
-
-        for (Map.Entry<AggregateKey, Aggregator> entry : ymAggregateResultHolder.entrySet()) {
-            write(entry.getKey(), entry.getValue());
-        }
-
-        for (Map.Entry<AggregateKey, Aggregator> entry : aggregateResultHolder.entrySet()) {
-            write(entry.getKey(), entry.getValue());
+        try {
+            metrics.startPhase("write");
+            writeResult();
+        } finally {
+            metrics.finish();
         }
     }
 
     /**
-     * 出力対象のCSVファイルを開く。
-     *
-     * @param fileName ファイル名
-     * @param aggregateUnitValue 集計単位の値
+     * 集計セルから集計単位毎の集計結果を導出し、集計結果CSV(または部分集計ファイル)に出力する。
      */
-    private void openOutputCsv(String fileName, String aggregateUnitValue) {
-        FileRecordWriterHolder.open(
-                logParseDefinition.getRequestInfoSummaryBaseName(),
-                fileName,
-                logParseDefinition.getRequestInfoSummaryFormatName());
+    private void writeResult() {
+        AggregateResultHolder aggregated;
+        if (storedResult == null) {
+            RollupResultHolder cells = mergePartialResults(ALL_FILES);
+            setCellMetrics(cells.getCellCount(), cells.getRunCount());
+            if (!logParseDefinition.isPartialAggregateOutput()) {
+                // 集計結果を保存しない場合は、スレッド毎の集計セルを合算し、リクエストID毎に導出しながら集計結果CSVに出力する。
+                summary.write(cells);
+                return;
+            }
+            // 部分集計ファイルに出力する場合は、合算時のシステム日付で当月分を判定できるように当月以外の年月単位も導出する。
+            aggregated = summary.createResultHolder();
+            summary.rollup(cells, aggregated, false);
+        } else {
+            aggregated = rollupEachFile();
+            aggregated.merge(storedResult);
+        }
 
-        // CSVタイトルの出力
-        Map<String, String> title = new HashMap<>();
-        title.put(REQUEST_ID, "リクエストID");
-        title.put(AGGREGATE_UNIT_VALUE, aggregateUnitValue);
-        title.put(PROCESS_NAME, "プロセス名");
-        title.put(REQUEST_COUNT, "処理リクエスト数");
-        title.put(THRESHOLD_OVER_COUNT, "処理時間が閾値を超えたリクエスト数");
-        title.put(AVERAGE, "処理時間（平均）");
-        title.put(MEDIAN, "処理時間（中央値）");
-        title.put(MAX, "処理時間（最大値）");
-        FileRecordWriterHolder.write(title, logParseDefinition.getRequestInfoSummaryBaseName(), fileName);
+        if (logParseDefinition.isPartialAggregateOutput()) {
+            savePartialFile(aggregated);
+        } else {
+            summary.write(aggregated);
+        }
     }
 
     /**
-     * 集計結果を集計単位毎のファイルに出力する。
+     * 集計結果を部分集計ファイルに出力する。
+     * <p/>
+     * 同じノードの部分集計ファイルが存在する場合は、置き換える。
      *
-     * @param aggregateKey 集計単位
-     * @param aggregator 集計オブジェクト
+     * @param result 集計結果
      */
-    private void write(AggregateKey aggregateKey,
-            Aggregator aggregator) {
-
-        Map<String, Object> data = new HashMap<>();
-        data.put(REQUEST_ID, aggregateKey.requestId);
-        data.put(AGGREGATE_UNIT_VALUE, aggregateKey.aggregateUnitValue);
-        data.put(PROCESS_NAME, aggregateKey.processName);
-        data.put(REQUEST_COUNT, aggregator.requestCount);
-        data.put(THRESHOLD_OVER_COUNT, aggregator.thresholdOverCount);
-        data.put(AVERAGE, aggregator.getAverageTime());
-        data.put(MAX, aggregator.maxExecutionTime);
-        data.put(MEDIAN, aggregator.getMedianTime());
-
-        // 集計単位を元に、出力ファイルを切り替えて集計結果を出力する。
-        String fileName = null;
-        if (aggregateKey.aggregateUnit == AggregateUnit.YEAR_MONTH) {
-            fileName = requestInfoAggregateYmCsv + aggregateKey.processName + ".csv";
-
-        } else if (aggregateKey.aggregateUnit == AggregateUnit.DAY) {
-            fileName = REQUEST_INFO_SUMMARY_DAY_PREFIX + aggregateKey.processName + ".csv";
+    private void savePartialFile(AggregateResultHolder result) {
+        File requestInfoDir = FilePathSetting.getInstance().getBaseDirectory(
+                logParseDefinition.getRequestInfoBaseName());
+        List<File> sources = new ArrayList<>(inputFiles.size());
+        for (String name : inputFiles) {
+            sources.add(new File(requestInfoDir, name));
+        }
 
-        } else if (aggregateKey.aggregateUnit == AggregateUnit.HOUR) {
-            fileName = REQUEST_INFO_SUMMARY_HOUR_PREFIX + aggregateKey.processName + ".csv";
+        File file = PartialAggregateMergeAction.partialFileOf(logParseDefinition);
+        file.getParentFile().mkdirs();
+        try {
+            AggregateStateFile.write(file, summary.getAggregationName(), sources, result);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write the partial aggregate file. file = [" + file + ']', e);
         }
-        FileRecordWriterHolder.write(data, logParseDefinition.getRequestInfoSummaryBaseName(), fileName);
     }
 
     /**
-     * {@inheritDoc}
+     * 今回読み込んだリクエスト情報ファイル毎に、集計セルから集計単位毎の集計結果を導出し、状態ファイルに保存する。
      * <p/>
-     * 処理対象のリクエスト情報ファイルをリクエスト情報ファイル格納ディレクトリから抽出し、
-     * {@link MultiFileRecordReader}に登録する。
+     * 翌月以降も再利用できるように、当月以外の年月単位も導出する。
+     * リクエスト情報が存在しないリクエスト情報ファイルも、次回以降に読み込まないように状態ファイルを保存する。
+     *
+     * @return 今回読み込んだ全リクエスト情報ファイルの集計結果
      */
-    @Override
-    public DataReader<DataRecord> createReader(ExecutionContext ctx) {
-
-        File directory = FilePathSetting.getInstance().getBaseDirectory(logParseDefinition.getRequestInfoBaseName());
-        String systemDate = SystemTimeUtil.getDateString();
-        String startDate = DateUtil.addMonth(systemDate, logParseDefinition.getAggregatePeriod() * -1);
-
-        List<String> inputFiles = new ArrayList<>();
-        File[] files = FileUtil.listFiles(directory.getAbsolutePath(), "REQUEST_INFO_*");
-        for (File file : files) {
-            String name = file.getName();
-            String fileCreationDate = getFileCreationDate(name);
-            if (fileCreationDate != null && fileCreationDate.compareTo(startDate) >= 0) {
-                inputFiles.add(file.getName());
-            }
+    private AggregateResultHolder rollupEachFile() {
+        AggregateResultHolder aggregated = summary.createResultHolder();
+        long cellCount = 0;
+        long runCount = 0;
+        for (String name : inputFiles) {
+            RollupResultHolder cells = mergePartialResults(name);
+            cellCount += cells.getCellCount();
+            runCount += cells.getRunCount();
+            AggregateResultHolder fileResult = summary.createResultHolder();
+            summary.rollup(cells, fileResult, false);
+            stateFiles.save(name, fileResult);
+            aggregated.merge(fileResult);
         }
+        setCellMetrics(cellCount, runCount);
+        return aggregated;
+    }
 
-        MultiFileRecordReader reader = new MultiFileRecordReader();
-        reader.setFileList(logParseDefinition.getRequestInfoBaseName(), inputFiles);
-        reader.setLayoutFile(logParseDefinition.getRequestInfoFormatName());
-        return reader;
+    /**
+     * 集計セルの数及びランの数と、集計後のヒープ使用量を処理状況に設定する。
+     *
+     * @param cellCount 集計セルの数
+     * @param runCount 集計セルを退避したランの数
+     */
+    private void setCellMetrics(long cellCount, long runCount) {
+        metrics.set("aggregateCells", cellCount);
+        metrics.set("spillRuns", runCount);
+        metrics.set("heapUsedAfterAggregation", metrics.sampleHeapUsed());
     }
 
     /**
-     * 指定されたファイル名から、ファイルの作成日を抽出する。
-     * <p/>
-     * ファイル名のルールは、以下の形式となっている必要がある。<br/>
-     * 任意の値 + "_" + 作成日 + 拡張子
+     * リクエスト情報ファイルのサイズの合計を取得する。
      *
-     * @param fileName ファイル名
-     * @return ファイル名から抽出した日付
+     * @param fileNames リクエスト情報ファイルのファイル名
+     * @return サイズの合計(バイト)
      */
-    private String getFileCreationDate(String fileName) {
-        int startPos = fileName.lastIndexOf('_') + 1;
-        int lastPos = fileName.lastIndexOf('.');
-        if (startPos == -1 || lastPos == -1) {
-            return null;
+    private long sumFileLength(List<String> fileNames) {
+        File requestInfoDir = FilePathSetting.getInstance().getBaseDirectory(
+                logParseDefinition.getRequestInfoBaseName());
+        long length = 0;
+        for (String name : fileNames) {
+            length += new File(requestInfoDir, name).length();
         }
-        return fileName.substring(startPos, lastPos);
+        return length;
     }
 
     /**
-     * 集計単位のキー値を保持するクラス。
-     * <p/>
-     * 本クラスは、Mapのキーとして使用されるクラスであるが、{@link TreeMap}に格納することが前提となっているため、
-     * {@link #equals(Object)}及び{@link #hashCode()}の実装は行わない。
-     * この前提が変更となった場合は、実装を見直すこと。
+     * スレッド毎の集計セルを合算する。
      * <p/>
-     * キー値は、以下の3種類
-     * <ul>
-     * <li>リクエストID</li>
-     * <li>プロセス名</li>
-     * <li>集計単位</li>
-     * <li>集計単位値</li>
-     * </ul>
+     * 全てのスレッドの処理が完了した後に呼び出すこと。
+     *
+     * @param source 集計セルのキー(読み込み元のリクエスト情報ファイル名、または{@link #ALL_FILES})
+     * @return 合算した集計セル
      */
-    private static final class AggregateKey implements Comparable<AggregateKey> {
-
-        /** リクエストID */
-        private final String requestId;
-
-        /** プロセス名 */
-        private final String processName;
-
-        /** 集計単位 */
-        private final AggregateUnit aggregateUnit;
-
-        /** 集計単位値 */
-        private final int aggregateUnitValue;
-
-        /**
-         * コンストラクタ。
-         *
-         * @param requestId リクエストID
-         * @param processName プロセス名
-         * @param aggregateUnit 集計単位
-         * @param aggregateUnitValue 値(集計単位の中で、どの値の集計値か)
-         */
-        private AggregateKey(String requestId, String processName,
-                AggregateUnit aggregateUnit, int aggregateUnitValue) {
-            this.requestId = requestId;
-            this.processName = processName;
-            this.aggregateUnit = aggregateUnit;
-            this.aggregateUnitValue = aggregateUnitValue;
+    private RollupResultHolder mergePartialResults(String source) {
+        Queue<RollupResultHolder> holders = partialResultHolders.getOrDefault(source, new ConcurrentLinkedQueue<>());
+        RollupResultHolder merged = holders.poll();
+        if (merged == null) {
+            return summary.createRollupHolder();
         }
-
-        /**
-         * {@inheritDoc}
-         * <p/>
-         * リクエストID->集計値->プロセス名->集計単位の順で比較
-         */
-        public int compareTo(AggregateKey o) {
-            int result = requestId.compareTo(o.requestId);
-            if (result == 0) {
-                result = aggregateUnitValue - o.aggregateUnitValue;
-            }
-            if (result == 0) {
-                result = processName.compareTo(o.processName);
-            }
-            if (result == 0) {
-                result = aggregateUnit.compareTo(o.aggregateUnit);
-            }
-            return result;
+        RollupResultHolder partial;
+        while ((partial = holders.poll()) != null) {
+            merged.merge(partial);
         }
+        return merged;
     }
 
     /**
-     * 集計情報を保持するクラス。
+     * {@inheritDoc}
      * <p/>
-     * 以下の情報を集計結果として保持する。
-     * <ul>
-     * <li>リクエスト数</li>
-     * <li>閾値({@link OnlineStatisticsDefinition#setThresholdExecutionTime(int)}で設定した閾値)を超えた処理時間のリクエスト数</li>
-     * <li>処理時間の平均</li>
-     * <li>処理時間の最大値</li>
-     * </ul>
+     * 処理対象のリクエスト情報ファイルをリクエスト情報ファイル格納ディレクトリから抽出し、
+     * {@link RequestInfoReader}に登録する。
+     * (状態ファイルを使用する場合は、状態ファイルで集計済みのリクエスト情報ファイルは除外し、
+     * 読み込み元のリクエスト情報ファイルを特定できるように1ファイルずつ順に読み込む。)
      */
-    private static final class Aggregator {
-
-        /** 処理時間の合計 */
-        private long totalExecutionTime;
-
-        /** 閾値超のリクエスト数 */
-        private int thresholdOverCount;
-
-        /** 処理時間のリスト */
-        private final List<Integer> executionTimeList = new ArrayList<>();
-
-        /** リクエスト数 */
-        private int requestCount;
-
-        /** 最大処理時間 */
-        private int maxExecutionTime;
-
-        /**
-         * コンストラクタ。
-         */
-        private Aggregator() {
-        }
-
-
-        /**
-         * 集計対象のリクエスト情報を追加する。
-         *
-         * @param executionTime 処理時間
-         * @param thresholdOver 閾値超のリクエストか否か
-         */
-        private void addRequestData(int executionTime, boolean thresholdOver) {
-            requestCount++;
-            if (thresholdOver) {
-                thresholdOverCount++;
-            }
-            executionTimeList.add(executionTime);
-            maxExecutionTime = Math.max(maxExecutionTime, executionTime);
-            totalExecutionTime += executionTime;
-        }
-
-        /**
-         * 平均処理時間を取得する。
-         *
-         * @return 平均処理時間
-         */
-        private int getAverageTime() {
-            return (int) (totalExecutionTime / requestCount);
-        }
-
-        /**
-         * 中央値を取得する。
-         *
-         * @return 中央値
-         */
-        private int getMedianTime() {
-            Collections.sort(executionTimeList);
-            int size = executionTimeList.size();
-            int mid = size / 2;
-            if (size % 2 == 0) {
-                return (executionTimeList.get(mid - 1) + executionTimeList.get(mid)) / 2;
-            } else {
-                return executionTimeList.get(mid);
-            }
-        }
+    @Override
+    public DataReader<RequestInfo> createReader(ExecutionContext ctx) {
+        reader = new RequestInfoReader(logParseDefinition, inputFiles, storedResult != null);
+        return reader;
     }
 }
-
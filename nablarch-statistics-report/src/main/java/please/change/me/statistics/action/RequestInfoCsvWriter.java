@@ -0,0 +1,104 @@
+package please.change.me.statistics.action;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import please.change.me.statistics.aggregate.CsvFileWriter;
+import please.change.me.statistics.aggregate.RequestInfo;
+
+/**
+ * リクエスト情報をリクエスト情報CSVに出力するクラス。
+ * <p/>
+ * リクエスト情報CSVのフォーマット定義ファイル(可変長)の項目順に従い、{@link CsvFileWriter}で出力する。
+ * 項目名から出力する値への対応はコンストラクタで解決するため、1レコード毎に{@link java.util.Map}は生成しない。
+ * 出力できる項目は、year、month、day、hour、processName、requestId、executeTime、statusCodeとする。
+ * (これ以外の項目は空文字を出力する。)
+ * <p/>
+ * 本クラスはスレッドセーフではない。
+ */
+final class RequestInfoCsvWriter implements Closeable {
+
+    /** 出力できる項目の項目名(リストの位置が項目の番号となる) */
+    private static final List<String> SUPPORTED_FIELDS = Arrays.asList(
+            "year", "month", "day", "hour", "processName", "requestId", "executeTime", "statusCode");
+
+    /** リクエスト情報CSVの出力先 */
+    private final CsvFileWriter writer;
+
+    /** 出力する項目の番号(フォーマット定義ファイルの項目順。出力できない項目は-1) */
+    private final int[] fieldIds;
+
+    /**
+     * リクエスト情報CSVを開く。
+     * <p/>
+     * ファイルが既に存在する場合は上書きする。
+     *
+     * @param layoutFile リクエスト情報CSVのフォーマット定義ファイル
+     * @param file リクエスト情報CSV
+     * @throws IOException ファイルを開けなかった場合
+     * @throws IllegalArgumentException フォーマット定義ファイルが可変長ではない場合
+     */
+    RequestInfoCsvWriter(File layoutFile, File file) throws IOException {
+        CsvFileWriter.Layout layout = new CsvFileWriter.Layout(layoutFile);
+        String[] fieldNames = layout.getFieldNames();
+        fieldIds = new int[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            fieldIds[i] = SUPPORTED_FIELDS.indexOf(fieldNames[i]);
+        }
+        writer = new CsvFileWriter(layout, file);
+    }
+
+    /**
+     * リクエスト情報を1レコードとして出力する。
+     *
+     * @param requestInfo リクエスト情報
+     * @throws IOException 出力に失敗した場合
+     */
+    void write(RequestInfo requestInfo) throws IOException {
+        for (int fieldId : fieldIds) {
+            switch (fieldId) {
+                case 0:
+                    writer.writeNumber(requestInfo.getYear());
+                    break;
+                case 1:
+                    writer.writeNumber(requestInfo.getMonth());
+                    break;
+                case 2:
+                    writer.writeNumber(requestInfo.getDay());
+                    break;
+                case 3:
+                    writer.writeNumber(requestInfo.getHour());
+                    break;
+                case 4:
+                    writer.writeString(requestInfo.getProcessName());
+                    break;
+                case 5:
+                    writer.writeString(requestInfo.getRequestId());
+                    break;
+                case 6:
+                    writer.writeNumber(requestInfo.getExecutionTime());
+                    break;
+                case 7:
+                    writer.writeNumber(requestInfo.getStatusCode());
+                    break;
+                default:
+                    writer.writeString("");
+                    break;
+            }
+        }
+        writer.endRecord();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * バッファに蓄積した内容を出力した後に閉じる。
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
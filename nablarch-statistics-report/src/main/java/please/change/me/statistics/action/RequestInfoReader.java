@@ -0,0 +1,234 @@
+package please.change.me.statistics.action;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import nablarch.core.dataformat.DataRecord;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.util.FilePathSetting;
+import nablarch.core.util.FileUtil;
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+import please.change.me.statistics.aggregate.RequestInfo;
+import please.change.me.statistics.aggregate.RequestInfoBinaryFile;
+import please.change.me.statistics.reader.MultiFileRecordReader;
+
+/**
+ * リクエスト情報ファイルを読み込み、リクエスト情報を返却するリーダ。
+ * <p/>
+ * リクエスト情報CSVは{@link MultiFileRecordReader}で読み込み、リクエスト情報に変換する。
+ * バイナリ形式のリクエスト情報ファイル(拡張子が{@link RequestInfoBinaryFile#SUFFIX})は、
+ * {@link nablarch.core.dataformat.DataRecord}を経由せずに読み込む。
+ * リクエスト情報CSVを全て読み込んだ後に、バイナリ形式のリクエスト情報ファイルを1つずつ順に読み込む。
+ * <p/>
+ * リクエスト情報ファイル毎に読み込む場合は、リクエスト情報CSVも1ファイルずつ順に読み込み、
+ * {@link #getSourceFileName()}で読み込んだリクエスト情報の読み込み元のファイル名を取得できるようにする。
+ * (リクエスト情報CSVの並列読み込みは、ファイル内では行わないため無効となる。並列読み込みが設定されている場合は警告ログを出力する)
+ * <p/>
+ * 本クラスの各メソッドは、複数スレッドから並行して呼び出すことができる。
+ */
+final class RequestInfoReader implements DataReader<RequestInfo> {
+
+    /** ロガー */
+    private static final Logger LOG = LoggerManager.get(RequestInfoReader.class);
+
+    /** オンラインアクセスログ解析処理の設定値 */
+    private final OnlineStatisticsDefinition logParseDefinition;
+
+    /** リクエスト情報CSVを並列に読み込むスレッド数 */
+    private final int parallelism;
+
+    /** 1つのリーダで読み込むリクエスト情報CSVのファイル名のリスト */
+    private final List<List<String>> csvFileGroups = new ArrayList<>();
+
+    /** 次に読み込むリクエスト情報CSVのファイル名のリストの位置 */
+    private int csvFileGroupIndex;
+
+    /** 読み込み中のリクエスト情報CSVのリーダ(読み込み中のリクエスト情報CSVが存在しない場合はnull) */
+    private MultiFileRecordReader csvReader;
+
+    /** 読み込み中のリクエスト情報CSVのファイル名(複数ファイルをまとめて読み込む場合はnull) */
+    private String csvFileName;
+
+    /** バイナリ形式のリクエスト情報ファイル */
+    private final List<File> binaryFiles = new ArrayList<>();
+
+    /** 次に読み込むバイナリ形式のリクエスト情報ファイルの位置 */
+    private int binaryFileIndex;
+
+    /** 読み込み中のバイナリ形式のリクエスト情報ファイル */
+    private RequestInfoBinaryFile.Reader binaryReader;
+
+    /** バイナリ形式のリクエスト情報ファイルから先読みしたリクエスト情報 */
+    private RequestInfo next;
+
+    /** スレッド毎の、最後に読み込んだリクエスト情報の読み込み元のファイル名 */
+    private final ThreadLocal<String> sourceFileName = new ThreadLocal<>();
+
+    /**
+     * コンストラクタ。
+     * <p/>
+     * リクエスト情報CSVは、全ファイルをまとめて読み込む。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     * @param fileNames 読み込み対象のリクエスト情報ファイルのファイル名
+     */
+    RequestInfoReader(OnlineStatisticsDefinition logParseDefinition, List<String> fileNames) {
+        this(logParseDefinition, fileNames, false);
+    }
+
+    /**
+     * コンストラクタ。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     * @param fileNames 読み込み対象のリクエスト情報ファイルのファイル名
+     * @param eachFile リクエスト情報CSVを1ファイルずつ順に読み込む場合はtrue
+     */
+    RequestInfoReader(OnlineStatisticsDefinition logParseDefinition, List<String> fileNames, boolean eachFile) {
+        this.logParseDefinition = logParseDefinition;
+        File directory = FilePathSetting.getInstance().getBaseDirectory(logParseDefinition.getRequestInfoBaseName());
+        List<String> csvFiles = new ArrayList<>();
+        for (String fileName : fileNames) {
+            if (fileName.endsWith(RequestInfoBinaryFile.SUFFIX)) {
+                binaryFiles.add(new File(directory, fileName));
+            } else if (eachFile) {
+                csvFileGroups.add(Collections.singletonList(fileName));
+            } else {
+                csvFiles.add(fileName);
+            }
+        }
+        if (!csvFiles.isEmpty()) {
+            csvFileGroups.add(csvFiles);
+        }
+        if (eachFile && logParseDefinition.getRequestInfoReaderParallelism() > 1) {
+            LOG.logWarn("requestInfoReaderParallelism is ignored, because request info files are read one by one."
+                    + " requestInfoReaderParallelism = [" + logParseDefinition.getRequestInfoReaderParallelism() + ']');
+            parallelism = 1;
+        } else {
+            parallelism = logParseDefinition.getRequestInfoReaderParallelism();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException バイナリ形式のリクエスト情報ファイルの読み込みに失敗した場合
+     */
+    @Override
+    public synchronized RequestInfo read(ExecutionContext ctx) {
+        while (hasNextCsv(ctx)) {
+            // MultiFileRecordReaderは、読み込み対象のファイルが空の場合などにnullを返却することがあるため、
+            // nullの場合は次のレコードの有無を改めて判定する。
+            DataRecord record = csvReader.read(ctx);
+            if (record != null) {
+                sourceFileName.set(csvFileName);
+                return RequestInfoSummary.toRequestInfo(record);
+            }
+        }
+        if (!hasNextBinary()) {
+            return null;
+        }
+        sourceFileName.set(binaryFiles.get(binaryFileIndex - 1).getName());
+        RequestInfo requestInfo = next;
+        next = null;
+        return requestInfo;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException バイナリ形式のリクエスト情報ファイルの読み込みに失敗した場合
+     */
+    @Override
+    public synchronized boolean hasNext(ExecutionContext ctx) {
+        return hasNextCsv(ctx) || hasNextBinary();
+    }
+
+    /**
+     * 実行中のスレッドで最後に読み込んだリクエスト情報の、読み込み元のファイル名を取得する。
+     * <p/>
+     * 読み込み元を特定できるのは、リクエスト情報ファイル毎に読み込む場合のみとなる。
+     *
+     * @return 読み込み元のファイル名(読み込み元を特定できない場合はnull)
+     */
+    String getSourceFileName() {
+        return sourceFileName.get();
+    }
+
+    /**
+     * リクエスト情報CSVに次のレコードが存在するか否か。
+     * <p/>
+     * 読み込み中のリクエスト情報CSVを読み終えた場合は、次のリクエスト情報CSVのリーダに切り替える。
+     *
+     * @param ctx 実行コンテキスト
+     * @return 次のレコードが存在する場合はtrue
+     */
+    private boolean hasNextCsv(ExecutionContext ctx) {
+        while (true) {
+            if (csvReader != null) {
+                if (csvReader.hasNext(ctx)) {
+                    return true;
+                }
+                csvReader.close(ctx);
+                csvReader = null;
+            }
+            if (csvFileGroupIndex == csvFileGroups.size()) {
+                return false;
+            }
+            List<String> csvFiles = csvFileGroups.get(csvFileGroupIndex++);
+            csvReader = new MultiFileRecordReader();
+            csvReader.setFileList(logParseDefinition.getRequestInfoBaseName(), csvFiles);
+            csvReader.setLayoutFile(logParseDefinition.getRequestInfoFormatName());
+            csvReader.setParallelism(parallelism);
+            csvFileName = csvFiles.size() == 1 ? csvFiles.get(0) : null;
+        }
+    }
+
+    /**
+     * バイナリ形式のリクエスト情報ファイルから、次のリクエスト情報を先読みする。
+     *
+     * @return 次のリクエスト情報が存在する場合はtrue
+     * @throws UncheckedIOException 読み込みに失敗した場合
+     */
+    private boolean hasNextBinary() {
+        while (next == null) {
+            File file = null;
+            try {
+                if (binaryReader == null) {
+                    if (binaryFileIndex == binaryFiles.size()) {
+                        return false;
+                    }
+                    file = binaryFiles.get(binaryFileIndex++);
+                    binaryReader = RequestInfoBinaryFile.openReader(file);
+                } else {
+                    file = binaryFiles.get(binaryFileIndex - 1);
+                }
+                next = binaryReader.read();
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to read the request info file. file = [" + file + ']', e);
+            }
+            if (next == null) {
+                FileUtil.closeQuietly(binaryReader);
+                binaryReader = null;
+            }
+        }
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void close(ExecutionContext ctx) {
+        FileUtil.closeQuietly(binaryReader);
+        binaryReader = null;
+        if (csvReader != null) {
+            csvReader.close(ctx);
+            csvReader = null;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package please.change.me.statistics.action;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.util.FilePathSetting;
+import nablarch.core.util.FileUtil;
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+import please.change.me.statistics.aggregate.AggregateResultHolder;
+import please.change.me.statistics.aggregate.AggregateStateFile;
+
+/**
+ * リクエスト情報ファイル毎の集計結果を保存する状態ファイルを管理するクラス。
+ * <p/>
+ * 状態ファイルのファイル名は、{@link #STATE_FILE_PREFIX} + リクエスト情報ファイル名 + {@link #STATE_FILE_SUFFIX}とする。
+ * 状態ファイルは、通常は集計元のリクエスト情報ファイルが変更されていない場合のみ再利用する。
+ * リクエスト情報ファイルを出力せずに直接集計した場合は、集計元を持たない状態ファイルを保存し、
+ * ファイル名のリクエスト情報ファイルが集計期間内の間は再利用する。(状態ファイルのみがその日のリクエスト情報の集計結果となる)
+ */
+final class RequestInfoStateFiles {
+
+    /** 状態ファイルのファイル名のプレフィックス */
+    private static final String STATE_FILE_PREFIX = "REQUEST_INFO_STATE_";
+
+    /** 状態ファイルの拡張子 */
+    private static final String STATE_FILE_SUFFIX = ".bin";
+
+    /** ロガー */
+    private static final Logger LOG = LoggerManager.get(RequestInfoStateFiles.class);
+
+    /** オンラインアクセスログ解析処理の設定値 */
+    private final OnlineStatisticsDefinition logParseDefinition;
+
+    /** リクエスト情報の集計処理 */
+    private final RequestInfoSummary summary;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     * @param summary リクエスト情報の集計処理
+     */
+    RequestInfoStateFiles(OnlineStatisticsDefinition logParseDefinition, RequestInfoSummary summary) {
+        this.logParseDefinition = logParseDefinition;
+        this.summary = summary;
+    }
+
+    /**
+     * 状態ファイルを読み込み、集計結果を合算する。
+     * <p/>
+     * 集計元のリクエスト情報ファイルが集計期間外となった状態ファイルや、
+     * 集計元のリクエスト情報ファイルが変更された状態ファイルは、削除して再利用しない。
+     * (状態ファイルはリクエスト情報ファイル毎に作成するため、他のリクエスト情報ファイルの状態ファイルは引き続き再利用する)
+     *
+     * @param inputFiles 集計対象のリクエスト情報ファイルのファイル名
+     * @param holder 合算先の集計結果
+     * @return 状態ファイルで集計済みのリクエスト情報ファイルのファイル名
+     */
+    Set<String> load(List<String> inputFiles, AggregateResultHolder holder) {
+        File requestInfoDir = FilePathSetting.getInstance().getBaseDirectory(
+                logParseDefinition.getRequestInfoBaseName());
+        Map<String, File> files = new HashMap<>();
+        for (String name : inputFiles) {
+            files.put(name, new File(requestInfoDir, name));
+        }
+
+        String aggregatorName = summary.getAggregationName();
+        Set<String> aggregatedFiles = new HashSet<>();
+        for (File file : list()) {
+            try {
+                AggregateStateFile stateFile = AggregateStateFile.open(file);
+                if (isReusable(stateFile, aggregatorName, files)) {
+                    AggregateResultHolder state = summary.createResultHolder();
+                    stateFile.readInto(state, logParseDefinition.getAggregatorFactory());
+                    holder.merge(state);
+                    aggregatedFiles.add(requestInfoFileNameOf(file));
+                    aggregatedFiles.addAll(stateFile.getSourceFileNames());
+                    continue;
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.logWarn("failed to read the aggregate state file. file = [" + file + ']', e);
+            }
+            FileUtil.deleteFile(file);
+        }
+        return aggregatedFiles;
+    }
+
+    /**
+     * 状態ファイルを再利用できるか否かを判定する。
+     * <p/>
+     * 集計元を持たない状態ファイルは、ファイル名のリクエスト情報ファイルが集計期間内の場合に再利用できる。
+     *
+     * @param stateFile 状態ファイル
+     * @param aggregatorName 集計オブジェクトの実装クラス名
+     * @param files 集計対象のリクエスト情報ファイル(キーはファイル名)
+     * @return 再利用できる場合はtrue
+     */
+    private boolean isReusable(AggregateStateFile stateFile, String aggregatorName, Map<String, File> files) {
+        if (stateFile.getSourceFileNames().isEmpty()) {
+            return stateFile.getAggregatorName().equals(aggregatorName)
+                    && summary.isInAggregatePeriod(requestInfoFileNameOf(stateFile.getFile()));
+        }
+        return stateFile.isValid(aggregatorName, files);
+    }
+
+    /**
+     * リクエスト情報ファイルの集計結果を状態ファイルに保存する。
+     * <p/>
+     * 同じリクエスト情報ファイルの状態ファイルが存在する場合は、置き換える。
+     *
+     * @param fileName リクエスト情報ファイルのファイル名
+     * @param result リクエスト情報ファイルの集計結果
+     */
+    void save(String fileName, AggregateResultHolder result) {
+        File requestInfoDir = FilePathSetting.getInstance().getBaseDirectory(
+                logParseDefinition.getRequestInfoBaseName());
+        write(fileName, Collections.singletonList(new File(requestInfoDir, fileName)), result);
+    }
+
+    /**
+     * 出力しなかったリクエスト情報ファイルの集計結果を、集計元を持たない状態ファイルに保存する。
+     * <p/>
+     * 同じリクエスト情報ファイルの状態ファイルが存在する場合は、置き換える。
+     *
+     * @param fileName リクエスト情報ファイルのファイル名
+     * @param result リクエスト情報の集計結果
+     */
+    void saveWithoutSource(String fileName, AggregateResultHolder result) {
+        write(fileName, Collections.<File>emptyList(), result);
+    }
+
+    /**
+     * 集計結果を状態ファイルに出力する。
+     *
+     * @param fileName リクエスト情報ファイルのファイル名
+     * @param sources 集計元のリクエスト情報ファイル
+     * @param result 集計結果
+     */
+    private void write(String fileName, List<File> sources, AggregateResultHolder result) {
+        File stateDir = FilePathSetting.getInstance().getBaseDirectory(logParseDefinition.getAggregateStateBaseName());
+        stateDir.mkdirs();
+        File file = new File(stateDir, STATE_FILE_PREFIX + fileName + STATE_FILE_SUFFIX);
+        try {
+            AggregateStateFile.write(file, summary.getAggregationName(), sources, result);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write the aggregate state file. file = [" + file + ']', e);
+        }
+    }
+
+    /**
+     * 指定されたリクエスト情報ファイルの状態ファイルを削除する。
+     *
+     * @param fileNames リクエスト情報ファイルのファイル名
+     */
+    void delete(Collection<String> fileNames) {
+        File stateDir = FilePathSetting.getInstance().getBaseDirectory(logParseDefinition.getAggregateStateBaseName());
+        for (String fileName : fileNames) {
+            File file = new File(stateDir, STATE_FILE_PREFIX + fileName + STATE_FILE_SUFFIX);
+            if (file.exists()) {
+                FileUtil.deleteFile(file);
+            }
+        }
+    }
+
+    /**
+     * 状態ファイルのファイル名から、リクエスト情報ファイルのファイル名を取得する。
+     *
+     * @param stateFile 状態ファイル
+     * @return リクエスト情報ファイルのファイル名
+     */
+    private static String requestInfoFileNameOf(File stateFile) {
+        String name = stateFile.getName();
+        return name.substring(STATE_FILE_PREFIX.length(), name.length() - STATE_FILE_SUFFIX.length());
+    }
+
+    /**
+     * 状態ファイルの一覧を取得する。
+     *
+     * @return 状態ファイルの一覧
+     */
+    private File[] list() {
+        File stateDir = FilePathSetting.getInstance().getBaseDirectory(logParseDefinition.getAggregateStateBaseName());
+        File[] files = FileUtil.listFiles(stateDir.getAbsolutePath(), STATE_FILE_PREFIX + '*' + STATE_FILE_SUFFIX);
+        return files == null ? new File[0] : files;
+    }
+}
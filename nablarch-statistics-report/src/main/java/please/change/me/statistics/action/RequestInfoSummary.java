@@ -0,0 +1,696 @@
+package please.change.me.statistics.action;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import nablarch.core.dataformat.DataRecord;
+import nablarch.core.date.SystemTimeUtil;
+import nablarch.core.util.DateUtil;
+import nablarch.core.util.FilePathSetting;
+import nablarch.core.util.FileUtil;
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+import please.change.me.statistics.aggregate.AggregateKey;
+import please.change.me.statistics.aggregate.AggregateResultHolder;
+import please.change.me.statistics.aggregate.Aggregator;
+import please.change.me.statistics.aggregate.CsvFileWriter;
+import please.change.me.statistics.aggregate.MinuteRequestCounts;
+import please.change.me.statistics.aggregate.RequestInfo;
+import please.change.me.statistics.aggregate.RequestInfoBinaryFile;
+import please.change.me.statistics.aggregate.RollupResultHolder;
+import please.change.me.statistics.aggregate.SummaryCsvWriter;
+
+/**
+ * リクエスト情報を集計し、集計結果CSVを出力するクラス。
+ * <p/>
+ * {@link RequestInfoAggregateAction}及び{@link OnlineAccessLogParseAction}(直接集計する場合)で共通の集計処理を提供する。
+ * <p/>
+ * 以下の集計ファイルを出力する。
+ * <ul>
+ * <li>年月集計結果CSVファイル(当月分のリクエスト情報のみを集計する)</li>
+ * <li>日付集計結果CSVファイル</li>
+ * <li>時間集計結果CSVファイル</li>
+ * <li>5分集計結果CSVファイル({@link OnlineStatisticsDefinition#setFiveMinuteSummary(boolean)}にtrueを設定した場合のみ)</li>
+ * <li>分集計結果CSVファイル({@link OnlineStatisticsDefinition#setMinuteSummary(boolean)}にtrueを設定した場合のみ)</li>
+ * <li>ピーク集計結果CSVファイル({@link OnlineStatisticsDefinition#setPeakWindowMinutes(int)}に1以上を設定した場合のみ)</li>
+ * </ul>
+ * リクエスト情報は{@link RollupResultHolder}の集計セルに集計し、各集計単位の集計結果は集計セルから導出する。
+ * 集計セルから直接集計結果CSVを出力する場合({@link #write(RollupResultHolder)})は、リクエストID毎に導出して出力する。
+ * <p/>
+ * また、{@link AccessLogTailAction}向けに、時間及び分単位の集計結果CSVファイルを出力する。
+ */
+class RequestInfoSummary {
+
+    /** 日単位のリクエスト情報ファイルのファイル名のプレフィックス */
+    private static final String REQUEST_INFO_SUMMARY_DAY_PREFIX = "REQUEST_INFO_SUMMARY_DAY_";
+
+    /** 時間単位のリクエスト情報ファイルのファイル名のプレフィックス */
+    private static final String REQUEST_INFO_SUMMARY_HOUR_PREFIX = "REQUEST_INFO_SUMMARY_HOUR_";
+
+    /** 分単位のリクエスト情報ファイルのファイル名のプレフィックス */
+    private static final String REQUEST_INFO_SUMMARY_MINUTE_PREFIX = "REQUEST_INFO_SUMMARY_MINUTE_";
+
+    /** 5分単位のリクエスト情報ファイルのファイル名のプレフィックス */
+    private static final String REQUEST_INFO_SUMMARY_FIVE_MINUTE_PREFIX = "REQUEST_INFO_SUMMARY_5MINUTE_";
+
+    /** ピーク集計結果CSVのファイル名のプレフィックス */
+    private static final String REQUEST_INFO_PEAK_PREFIX = "REQUEST_INFO_PEAK_";
+
+    /** ピーク集計結果CSVのフォーマット定義ファイル名 */
+    private static final String PEAK_FORMAT_NAME = "requestInfoPeak";
+
+    /** フォーマット定義ファイルの格納ディレクトリの論理名 */
+    private static final String FORMAT_BASE_PATH_NAME = "format";
+
+    /** 出力途中の集計結果CSVのファイル名のサフィックス */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** 年月単位のリクエスト情報ファイルのファイル名のプレフィックス */
+    private static final String REQUEST_INFO_SUMMARY_YM_PREFIX = "REQUEST_INFO_SUMMARY_YM_";
+
+    /** リクエスト情報ファイルのファイル名のプレフィックス */
+    private static final String REQUEST_INFO_PREFIX = "REQUEST_INFO_";
+
+    /** リクエスト情報CSVの拡張子 */
+    private static final String CSV_SUFFIX = ".csv";
+
+    /** リクエストID */
+    private static final String REQUEST_ID = "requestId";
+
+    /** 集計単位値 */
+    private static final String AGGREGATE_UNIT_VALUE = "aggregateUnitValue";
+
+    /** プロセス名 */
+    private static final String PROCESS_NAME = "processName";
+
+    /** 処理リクエスト数 */
+    private static final String REQUEST_COUNT = "requestCount";
+
+    /** 処理時間が閾値を超えたリクエスト数 */
+    private static final String THRESHOLD_OVER_COUNT = "thresholdOverCount";
+
+    /** 処理時間（平均） */
+    private static final String AVERAGE = "average";
+
+    /** 処理時間（中央値） */
+    private static final String MEDIAN = "median";
+
+    /** 処理時間（最大値） */
+    private static final String MAX = "max";
+
+    /** 処理時間（90パーセンタイル） */
+    private static final String P90 = "p90";
+
+    /** 処理時間（95パーセンタイル） */
+    private static final String P95 = "p95";
+
+    /** 処理時間（99パーセンタイル） */
+    private static final String P99 = "p99";
+
+    /** 処理時間（99.9パーセンタイル） */
+    private static final String P999 = "p999";
+
+    /** ステータスコードの分類毎のリクエスト数の項目名のプレフィックス(後ろに「1xx」～「5xx」が続く) */
+    private static final String STATUS_PREFIX = "status";
+
+    /** オンラインアクセスログ解析処理の設定値 */
+    private final OnlineStatisticsDefinition logParseDefinition;
+
+    /** 集計結果CSVの格納先ディレクトリの論理名 */
+    private final String summaryBaseName;
+
+    /** システム日付 */
+    private final String systemDate;
+
+    /** システム日付(年月) */
+    private final int systemDateYm;
+
+    /** 月単位のリクエスト情報ファイルのファイル名 */
+    private final String requestInfoAggregateYmCsv;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     */
+    RequestInfoSummary(OnlineStatisticsDefinition logParseDefinition) {
+        this(logParseDefinition, logParseDefinition.getRequestInfoSummaryBaseName());
+    }
+
+    /**
+     * 集計結果CSVの格納先ディレクトリを指定するコンストラクタ。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     * @param summaryBaseName 集計結果CSVの格納先ディレクトリの論理名
+     */
+    RequestInfoSummary(OnlineStatisticsDefinition logParseDefinition, String summaryBaseName) {
+        this.logParseDefinition = logParseDefinition;
+        this.summaryBaseName = summaryBaseName;
+        systemDate = SystemTimeUtil.getDateString();
+        String ym = DateUtil.formatDate(systemDate, "yyyyMM");
+        systemDateYm = Integer.parseInt(ym);
+        requestInfoAggregateYmCsv = REQUEST_INFO_SUMMARY_YM_PREFIX + ym + '_';
+    }
+
+    /**
+     * 集計結果を保持するオブジェクトを生成する。
+     *
+     * @return 集計結果を保持するオブジェクト
+     */
+    AggregateResultHolder createResultHolder() {
+        return new AggregateResultHolder(logParseDefinition.getAggregatorFactory());
+    }
+
+    /**
+     * リクエスト情報を集計セル単位に集計するオブジェクトを生成する。
+     * <p/>
+     * 時刻の集計単位(5分、分単位)及び1分毎のリクエスト数の集計要否は、設定値に従う。
+     *
+     * @return リクエスト情報を集計セル単位に集計するオブジェクト
+     */
+    RollupResultHolder createRollupHolder() {
+        Set<AggregateUnit> timeUnits = EnumSet.of(AggregateUnit.HOUR);
+        if (logParseDefinition.isFiveMinuteSummary()) {
+            timeUnits.add(AggregateUnit.FIVE_MINUTES);
+        }
+        if (logParseDefinition.isMinuteSummary()) {
+            timeUnits.add(AggregateUnit.MINUTE);
+        }
+        int cellLimit = logParseDefinition.getAggregateCellLimit();
+        File spillDirectory = null;
+        if (cellLimit > 0) {
+            spillDirectory = FilePathSetting.getInstance().getBaseDirectory(
+                    logParseDefinition.getAggregateSpillBaseName());
+            spillDirectory.mkdirs();
+        }
+        return new RollupResultHolder(logParseDefinition.getAggregatorFactory(), timeUnits,
+                logParseDefinition.getPeakWindowMinutes() > 0, cellLimit, spillDirectory);
+    }
+
+    /**
+     * リクエスト情報を、集計セル単位で集計する。
+     * <p/>
+     * 各集計単位の集計結果は、{@link #rollup(RollupResultHolder, AggregateResultHolder, boolean)}で導出する。
+     *
+     * @param cells リクエスト情報を集計セル単位に集計するオブジェクト
+     * @param requestInfo リクエスト情報
+     */
+    void add(RollupResultHolder cells, RequestInfo requestInfo) {
+        int executionTime = requestInfo.getExecutionTime();
+        cells.add(
+                requestInfo.getRequestId(),
+                requestInfo.getProcessName(),
+                requestInfo.getYearMonth() * 100 + requestInfo.getDay(),
+                requestInfo.getHour(),
+                requestInfo.getMinute(),
+                executionTime,
+                executionTime > logParseDefinition.getThresholdExecutionTime(),      // 閾値を超えているか否か
+                requestInfo.getStatusCode()
+        );
+    }
+
+    /**
+     * 集計セルから、年月、日、時間単位(及び設定された5分、分単位)の集計結果を導出する。
+     * <p/>
+     * 当月以外の年月単位の集計結果は、集計結果CSVには出力されない。
+     * 集計結果を永続化し、翌月以降に再利用する場合は、currentMonthOnlyにfalseを指定すること。
+     *
+     * @param cells リクエスト情報を集計セル単位に集計したオブジェクト(導出後は使用しないこと)
+     * @param holder 導出した集計結果を保持するオブジェクト
+     * @param currentMonthOnly 年月単位の集計を当月(システム日付より取得)のリクエスト情報のみに限定する場合はtrue
+     */
+    void rollup(RollupResultHolder cells, AggregateResultHolder holder, boolean currentMonthOnly) {
+        cells.rollupInto(holder, ym -> !currentMonthOnly || ym == systemDateYm);
+    }
+
+    /**
+     * 状態ファイル及び部分集計ファイルに保存する集計結果の、集計方法の名前を取得する。
+     * <p/>
+     * 集計オブジェクトの実装クラス名に、集計単位及び1分毎のリクエスト数の集計要否を付与した値とする。
+     * 集計方法の名前が異なる集計結果は、集計単位等が異なるため合算できない。
+     *
+     * @return 集計方法の名前
+     */
+    String getAggregationName() {
+        StringBuilder name = new StringBuilder(
+                logParseDefinition.getAggregatorFactory().create().getClass().getName());
+        if (logParseDefinition.isFiveMinuteSummary()) {
+            name.append(" +").append(AggregateUnit.FIVE_MINUTES);
+        }
+        if (logParseDefinition.isMinuteSummary()) {
+            name.append(" +").append(AggregateUnit.MINUTE);
+        }
+        if (logParseDefinition.getPeakWindowMinutes() > 0) {
+            name.append(" +PEAK");
+        }
+        return name.toString();
+    }
+
+    /**
+     * リクエスト情報を元に、時間及び分単位で、処理時間とリクエスト数を集計する。
+     * <p/>
+     * 分単位の集計基準値は、「時 * 100 + 分」(例: 14時5分の場合は1405)とする。
+     *
+     * @param holder 集計結果を保持するオブジェクト
+     * @param requestInfo リクエスト情報
+     */
+    void addHourAndMinute(AggregateResultHolder holder, RequestInfo requestInfo) {
+        add(holder, requestInfo, AggregateUnit.HOUR, requestInfo.getHour());
+        add(holder, requestInfo, AggregateUnit.MINUTE, requestInfo.getHour() * 100 + requestInfo.getMinute());
+    }
+
+    /**
+     * 指定された集計単位でリクエスト情報を集計する。
+     *
+     * @param holder 集計結果を保持するオブジェクト
+     * @param requestInfo リクエスト情報
+     * @param aggregateUnit 集計単位
+     * @param unitValue 集計基準値
+     */
+    private void add(AggregateResultHolder holder, RequestInfo requestInfo, AggregateUnit aggregateUnit,
+            int unitValue) {
+        int executionTime = requestInfo.getExecutionTime();
+        holder.add(
+                requestInfo.getRequestId(),
+                requestInfo.getProcessName(),
+                aggregateUnit,
+                unitValue,
+                executionTime,
+                executionTime > logParseDefinition.getThresholdExecutionTime(),      // 閾値を超えているか否か
+                requestInfo.getStatusCode()
+        );
+    }
+
+    /**
+     * 集計結果を、集計結果CSVに出力する。
+     * <p/>
+     * 年月単位の集計結果は、当月分のみを出力する。
+     * 5分、分単位の集計結果CSV及びピーク集計結果CSVは、設定された場合のみ出力する。
+     *
+     * @param holder 集計結果を保持するオブジェクト
+     * @throws UncheckedIOException 集計結果CSVの出力に失敗した場合
+     */
+    void write(AggregateResultHolder holder) {
+        File directory = FilePathSetting.getInstance().getBaseDirectory(summaryBaseName);
+        try (SummaryCsvWriter writer = createSummaryWriter()) {
+            openSummaryFiles(writer, directory, holder.getProcessNames());
+            writeResults(writer, holder);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write summary file. directory = [" + directory + ']', e);
+        }
+
+        if (logParseDefinition.getPeakWindowMinutes() > 0) {
+            writePeak(holder.getMinuteRequestCounts());
+        }
+    }
+
+    /**
+     * 集計セルから当月分の集計結果を導出し、集計結果CSVに出力する。
+     * <p/>
+     * 集計結果はリクエストID毎に導出して出力するため、全ての集計結果をメモリ上に保持しない。
+     * (集計セルを一時ファイルに退避している場合は、一時ファイルをマージしながら導出する)
+     * 出力内容は、{@link #rollup(RollupResultHolder, AggregateResultHolder, boolean)}で当月分を導出した集計結果を
+     * {@link #write(AggregateResultHolder)}で出力した場合と同一となる。
+     *
+     * @param cells リクエスト情報を集計セル単位に集計したオブジェクト(出力後は使用しないこと)
+     * @throws UncheckedIOException 集計セルの一時ファイルの読み込み、または集計結果CSVの出力に失敗した場合
+     */
+    void write(RollupResultHolder cells) {
+        File directory = FilePathSetting.getInstance().getBaseDirectory(summaryBaseName);
+        try (SummaryCsvWriter writer = createSummaryWriter()) {
+            openSummaryFiles(writer, directory, cells.getProcessNames());
+            cells.rollupEach(ym -> ym == systemDateYm, results -> writeResults(writer, results));
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write summary file. directory = [" + directory + ']', e);
+        }
+
+        if (logParseDefinition.getPeakWindowMinutes() > 0) {
+            writePeak(cells.getMinuteRequestCounts());
+        }
+    }
+
+    /**
+     * プロセス名単位に、出力対象の集計単位の集計結果CSVを開く。
+     *
+     * @param writer 集計結果CSVの出力オブジェクト
+     * @param directory 集計結果CSVの格納先ディレクトリ
+     * @param processNames プロセス名一覧
+     * @throws IOException 集計結果CSVを開けなかった場合
+     */
+    private void openSummaryFiles(SummaryCsvWriter writer, File directory, Set<String> processNames)
+            throws IOException {
+        // プロセス名単位にファイル出力を行う。
+        for (String processName : processNames) {
+            // 年月単位ファイル
+            writer.open(processName, AggregateUnit.YEAR_MONTH,
+                    new File(directory, requestInfoAggregateYmCsv + processName + ".csv"),
+                    titleOf(writer, "年月"));
+
+            // 日単位ファイル
+            writer.open(processName, AggregateUnit.DAY,
+                    new File(directory, REQUEST_INFO_SUMMARY_DAY_PREFIX + processName + ".csv"),
+                    titleOf(writer, "日"));
+
+            // 時間単位ファイル
+            writer.open(processName, AggregateUnit.HOUR,
+                    new File(directory, REQUEST_INFO_SUMMARY_HOUR_PREFIX + processName + ".csv"),
+                    titleOf(writer, "時間"));
+
+            if (logParseDefinition.isFiveMinuteSummary()) {
+                // 5分単位ファイル
+                writer.open(processName, AggregateUnit.FIVE_MINUTES,
+                        new File(directory, REQUEST_INFO_SUMMARY_FIVE_MINUTE_PREFIX + processName + ".csv"),
+                        titleOf(writer, "5分"));
+            }
+            if (logParseDefinition.isMinuteSummary()) {
+                // 分単位ファイル
+                writer.open(processName, AggregateUnit.MINUTE,
+                        new File(directory, REQUEST_INFO_SUMMARY_MINUTE_PREFIX + processName + ".csv"),
+                        titleOf(writer, "分"));
+            }
+        }
+    }
+
+    /**
+     * 集計結果を、開いている集計結果CSVに出力する。(年月単位の集計結果は、当月分のみを出力する)
+     *
+     * @param writer 集計結果CSVの出力オブジェクト
+     * @param holder 集計結果を保持するオブジェクト
+     * @throws IOException 出力に失敗した場合
+     */
+    private void writeResults(SummaryCsvWriter writer, AggregateResultHolder holder) throws IOException {
+        for (Map.Entry<AggregateKey, Aggregator> entry : holder.getYmAggregateResults().entrySet()) {
+            if (entry.getKey().getAggregateUnitValue() == systemDateYm) {
+                writer.write(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (Map.Entry<AggregateKey, Aggregator> entry : holder.getAggregateResults().entrySet()) {
+            writer.write(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * 1分毎のリクエスト数から時間毎のピークを算出し、プロセス名毎のピーク集計結果CSVに出力する。
+     * <p/>
+     * 日付及び時間毎に、リクエスト数が最大となる区間の開始時刻(時 * 100 + 分)と、区間のリクエスト数を出力する。
+     * (リクエストが存在しない時間は出力しない)
+     *
+     * @param counts 1分毎のリクエスト数
+     * @throws UncheckedIOException ピーク集計結果CSVの出力に失敗した場合
+     */
+    private void writePeak(MinuteRequestCounts counts) {
+        int windowMinutes = logParseDefinition.getPeakWindowMinutes();
+        CsvFileWriter.Layout layout = new CsvFileWriter.Layout(
+                FilePathSetting.getInstance().getFileWithoutCreate(FORMAT_BASE_PATH_NAME, PEAK_FORMAT_NAME));
+        String[] fieldNames = layout.getFieldNames();
+        File directory = FilePathSetting.getInstance().getBaseDirectory(summaryBaseName);
+        for (String processName : counts.getProcessNames()) {
+            File file = new File(directory, REQUEST_INFO_PEAK_PREFIX + processName + CSV_SUFFIX);
+            try (CsvFileWriter writer = new CsvFileWriter(layout, file)) {
+                for (String fieldName : fieldNames) {
+                    writer.writeString(peakTitleOf(fieldName, windowMinutes));
+                }
+                writer.endRecord();
+
+                for (int date : counts.getDates(processName)) {
+                    for (int hour = 0; hour < 24; hour++) {
+                        int requestCount = counts.getRequestCount(processName, date, hour * 60, 60);
+                        if (requestCount == 0) {
+                            continue;
+                        }
+                        int peakStart = counts.getPeakStartMinute(processName, date, hour, windowMinutes);
+                        for (String fieldName : fieldNames) {
+                            switch (fieldName) {
+                                case "date":
+                                    writer.writeNumber(date);
+                                    break;
+                                case "hour":
+                                    writer.writeNumber(hour);
+                                    break;
+                                case PROCESS_NAME:
+                                    writer.writeString(processName);
+                                    break;
+                                case REQUEST_COUNT:
+                                    writer.writeNumber(requestCount);
+                                    break;
+                                case "peakStartTime":
+                                    writer.writeNumber(peakStart / 60 * 100 + peakStart % 60);
+                                    break;
+                                case "peakRequestCount":
+                                    writer.writeNumber(
+                                            counts.getRequestCount(processName, date, peakStart, windowMinutes));
+                                    break;
+                                default:
+                                    writer.writeString("");
+                                    break;
+                            }
+                        }
+                        writer.endRecord();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to write peak summary file. file = [" + file + ']', e);
+            }
+        }
+    }
+
+    /**
+     * ピーク集計結果CSVのタイトル行の項目を取得する。
+     *
+     * @param fieldName 項目名
+     * @param windowMinutes ピーク区間の長さ(分)
+     * @return タイトル行の項目(ピーク集計結果CSVの項目ではない場合は空文字)
+     */
+    private static String peakTitleOf(String fieldName, int windowMinutes) {
+        switch (fieldName) {
+            case "date":
+                return "日付";
+            case "hour":
+                return "時間";
+            case PROCESS_NAME:
+                return "プロセス名";
+            case REQUEST_COUNT:
+                return "処理リクエスト数";
+            case "peakStartTime":
+                return "ピーク区間の開始時刻";
+            case "peakRequestCount":
+                return "ピーク区間の処理リクエスト数（" + windowMinutes + "分間）";
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * 時間及び分単位の集計結果を、集計結果CSVに出力する。
+     * <p/>
+     * 出力中の集計結果CSVが参照された場合に不完全な内容とならないよう、一時ファイルに出力した後に置き換える。
+     * 本メソッドは、同じ集計結果CSVに繰り返し出力する場合に使用する。
+     *
+     * @param holder 集計結果を保持するオブジェクト(時間及び分単位の集計結果のみを保持すること)
+     * @throws UncheckedIOException 集計結果CSVの出力または置き換えに失敗した場合
+     */
+    void writeHourAndMinute(AggregateResultHolder holder) {
+        File directory = FilePathSetting.getInstance().getBaseDirectory(summaryBaseName);
+        List<String> fileNames = new ArrayList<>();
+        try (SummaryCsvWriter writer = createSummaryWriter()) {
+            for (String processName : holder.getProcessNames()) {
+                String hourCsv = REQUEST_INFO_SUMMARY_HOUR_PREFIX + processName + ".csv";
+                writer.open(processName, AggregateUnit.HOUR, new File(directory, hourCsv + TEMP_SUFFIX),
+                        titleOf(writer, "時間"));
+                fileNames.add(hourCsv);
+
+                String minuteCsv = REQUEST_INFO_SUMMARY_MINUTE_PREFIX + processName + ".csv";
+                writer.open(processName, AggregateUnit.MINUTE, new File(directory, minuteCsv + TEMP_SUFFIX),
+                        titleOf(writer, "分"));
+                fileNames.add(minuteCsv);
+            }
+
+            for (Map.Entry<AggregateKey, Aggregator> entry : holder.getAggregateResults().entrySet()) {
+                writer.write(entry.getKey(), entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write summary file. directory = [" + directory + ']', e);
+        }
+
+        for (String fileName : fileNames) {
+            try {
+                Files.move(new File(directory, fileName + TEMP_SUFFIX).toPath(), new File(directory, fileName).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to replace summary file. file = [" + fileName + ']', e);
+            }
+        }
+    }
+
+    /**
+     * 集計結果CSVの出力オブジェクトを生成する。
+     *
+     * @return 集計結果CSVの出力オブジェクト
+     */
+    private SummaryCsvWriter createSummaryWriter() {
+        return new SummaryCsvWriter(FilePathSetting.getInstance().getFileWithoutCreate(
+                FORMAT_BASE_PATH_NAME, logParseDefinition.getRequestInfoSummaryFormatName()));
+    }
+
+    /**
+     * 集計結果CSVのタイトル行を取得する。
+     *
+     * @param writer 集計結果CSVの出力オブジェクト
+     * @param aggregateUnitValue 集計単位の値
+     * @return タイトル行(キーは項目名)
+     */
+    private static Map<String, String> titleOf(SummaryCsvWriter writer, String aggregateUnitValue) {
+        Map<String, String> title = new HashMap<>();
+        title.put(REQUEST_ID, "リクエストID");
+        title.put(AGGREGATE_UNIT_VALUE, aggregateUnitValue);
+        title.put(PROCESS_NAME, "プロセス名");
+        title.put(REQUEST_COUNT, "処理リクエスト数");
+        title.put(THRESHOLD_OVER_COUNT, "処理時間が閾値を超えたリクエスト数");
+        title.put(AVERAGE, "処理時間（平均）");
+        title.put(MEDIAN, "処理時間（中央値）");
+        title.put(MAX, "処理時間（最大値）");
+        title.put(P90, "処理時間（90パーセンタイル）");
+        title.put(P95, "処理時間（95パーセンタイル）");
+        title.put(P99, "処理時間（99パーセンタイル）");
+        title.put(P999, "処理時間（99.9パーセンタイル）");
+        for (int statusClass = 1; statusClass <= 5; statusClass++) {
+            title.put(STATUS_PREFIX + statusClass + "xx", "ステータスコード" + statusClass + "xxのリクエスト数");
+        }
+        for (String fieldName : writer.getFieldNames()) {
+            int threshold = SummaryCsvWriter.withinThresholdOf(fieldName);
+            if (threshold >= 0) {
+                title.put(fieldName, "処理時間が" + threshold + "ミリ秒以下のリクエスト数");
+            }
+        }
+        return title;
+    }
+
+    /**
+     * システム日付に作成されるリクエスト情報ファイルのファイル名を取得する。
+     * <p/>
+     * {@link OnlineStatisticsDefinition#setRequestInfoBinary(boolean)}にtrueを設定した場合は、
+     * バイナリ形式のリクエスト情報ファイルのファイル名となる。
+     *
+     * @return リクエスト情報ファイルのファイル名
+     */
+    String getRequestInfoFileName() {
+        return REQUEST_INFO_PREFIX + systemDate
+                + (logParseDefinition.isRequestInfoBinary() ? RequestInfoBinaryFile.SUFFIX : CSV_SUFFIX);
+    }
+
+    /**
+     * システム日付に作成されるリクエスト情報ファイルのファイル名を、全ての形式について取得する。
+     *
+     * @return リクエスト情報ファイルのファイル名(リクエスト情報CSV、バイナリ形式の順)
+     */
+    List<String> getRequestInfoFileNames() {
+        return Arrays.asList(REQUEST_INFO_PREFIX + systemDate + CSV_SUFFIX,
+                REQUEST_INFO_PREFIX + systemDate + RequestInfoBinaryFile.SUFFIX);
+    }
+
+    /**
+     * 集計対象のリクエスト情報ファイルを、リクエスト情報ファイル格納ディレクトリから抽出する。
+     * <p/>
+     * {@link OnlineStatisticsDefinition#setAggregatePeriod(int)}で設定された期間内に作成されたファイルが集計対象となる。
+     *
+     * @return 集計対象のリクエスト情報ファイルのファイル名
+     */
+    List<String> findRequestInfoFiles() {
+        File directory = FilePathSetting.getInstance().getBaseDirectory(logParseDefinition.getRequestInfoBaseName());
+
+        List<String> inputFiles = new ArrayList<>();
+        File[] files = FileUtil.listFiles(directory.getAbsolutePath(), REQUEST_INFO_PREFIX + '*');
+        for (File file : files) {
+            if (isInAggregatePeriod(file.getName())) {
+                inputFiles.add(file.getName());
+            }
+        }
+        return inputFiles;
+    }
+
+    /**
+     * リクエスト情報ファイルが、{@link OnlineStatisticsDefinition#setAggregatePeriod(int)}で設定された期間内に
+     * 作成されたものか否かを判定する。
+     *
+     * @param fileName リクエスト情報ファイルのファイル名
+     * @return 集計期間内に作成されたリクエスト情報ファイルの場合はtrue
+     */
+    boolean isInAggregatePeriod(String fileName) {
+        String startDate = DateUtil.addMonth(systemDate, logParseDefinition.getAggregatePeriod() * -1);
+        String fileCreationDate = getFileCreationDate(fileName);
+        return fileCreationDate != null && fileCreationDate.compareTo(startDate) >= 0;
+    }
+
+    /**
+     * 集計対象のリクエスト情報ファイルから、分を必要とする集計結果を導出できることを検証する。
+     * <p/>
+     * リクエスト情報CSVはログ出力日時の分を保持しないため、5分単位及び分単位の集計結果、時間毎のピークを出力する場合は、
+     * リクエスト情報CSVを集計対象とすることはできない。(全てのリクエスト情報が0分として集計され、誤った集計結果となるため)
+     *
+     * @param inputFiles 集計対象のリクエスト情報ファイルのファイル名
+     * @throws IllegalStateException 分を必要とする集計結果を出力する場合に、リクエスト情報CSVが含まれる場合
+     */
+    void checkMinuteAvailable(List<String> inputFiles) {
+        if (!logParseDefinition.isFiveMinuteSummary() && !logParseDefinition.isMinuteSummary()
+                && logParseDefinition.getPeakWindowMinutes() <= 0) {
+            return;
+        }
+        for (String fileName : inputFiles) {
+            if (fileName.endsWith(CSV_SUFFIX)) {
+                throw new IllegalStateException("request info csv file does not have the minute of the log output "
+                        + "date-time. five-minute, minute and peak summaries require binary request info files. "
+                        + "file = [" + fileName + ']');
+            }
+        }
+    }
+
+    /**
+     * 指定されたファイル名から、ファイルの作成日を抽出する。
+     * <p/>
+     * ファイル名のルールは、以下の形式となっている必要がある。<br/>
+     * 任意の値 + "_" + 作成日 + 拡張子
+     *
+     * @param fileName ファイル名
+     * @return ファイル名から抽出した日付
+     */
+    private static String getFileCreationDate(String fileName) {
+        int startPos = fileName.lastIndexOf('_') + 1;
+        int lastPos = fileName.lastIndexOf('.');
+        if (startPos == -1 || lastPos == -1) {
+            return null;
+        }
+        return fileName.substring(startPos, lastPos);
+    }
+
+    /**
+     * リクエスト情報CSVの1レコードを、リクエスト情報に変換する。
+     * <p/>
+     * リクエスト情報CSVは分を保持しないため、ログ出力日時(分)は0とする。
+     * (分を必要とする集計結果を出力する場合は、{@link #checkMinuteAvailable(List)}でリクエスト情報CSVを集計対象から除外すること)
+     *
+     * @param record リクエスト情報CSVの1レコード
+     * @return リクエスト情報
+     */
+    static RequestInfo toRequestInfo(DataRecord record) {
+        return new RequestInfo(
+                record.getBigDecimal("year").intValue(),
+                record.getBigDecimal("month").intValue(),
+                record.getBigDecimal("day").intValue(),
+                record.getBigDecimal("hour").intValue(),
+                0,
+                record.getString(PROCESS_NAME),
+                record.getString(REQUEST_ID),
+                record.getBigDecimal("execute_time").intValue(),
+                record.getBigDecimal("status_code").intValue());
+    }
+}
@@ -0,0 +1,375 @@
+package please.change.me.statistics.action;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import nablarch.core.date.SystemTimeUtil;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.util.FilePathSetting;
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+import please.change.me.statistics.parser.AccessLogParseCounters;
+
+/**
+ * 統計処理のバッチアクションの処理状況(メトリクス)を計測するクラス。
+ * <p/>
+ * 以下を計測する。
+ * <ul>
+ * <li>フェーズ(アクセスログのコピー、解析、集計、集計結果CSVの出力等)毎の処理時間</li>
+ * <li>アクセスログの解析件数({@link AccessLogParseCounters}。読み込んだ行数、終了ログの件数、スキップした終了ログの件数、バイト数)</li>
+ * <li>処理したリクエスト情報の件数</li>
+ * <li>アクションが設定する値(集計セルの数等)</li>
+ * <li>ヒープの使用量(計測時点の値のため、ガベージコレクション前の不要なオブジェクトを含む)</li>
+ * </ul>
+ * {@link OnlineStatisticsDefinition#setMetricsLogInterval(long)}に1以上を設定した場合は、処理中の計測値と
+ * 前回の出力からの処理速度(1秒あたりの行数及びリクエスト情報の件数)を、設定された間隔で進捗ログとして出力する。
+ * 処理の終了時には、計測値をログに出力し、{@link OnlineStatisticsDefinition#setMetricsOutput(boolean)}にtrueを設定した場合は
+ * JSON形式のメトリクスファイルにも出力する。
+ * <p/>
+ * 件数の計上はスレッドセーフであり、複数スレッドから並行して行うことができる。
+ * フェーズの切り替え及び値の設定は、バッチアクションのメインスレッドで行うこと。
+ */
+final class StatisticsMetrics {
+
+    /** ロガー */
+    private static final Logger LOG = LoggerManager.get(StatisticsMetrics.class);
+
+    /** メトリクスファイルのファイル名のプレフィックス */
+    private static final String METRICS_FILE_PREFIX = "STATISTICS_METRICS_";
+
+    /** メトリクスファイルの拡張子 */
+    private static final String METRICS_FILE_SUFFIX = ".json";
+
+    /** オンラインアクセスログ解析処理の設定値 */
+    private final OnlineStatisticsDefinition logParseDefinition;
+
+    /** バッチアクションの名前 */
+    private final String jobName;
+
+    /** 処理速度の算出対象のフェーズ */
+    private final String throughputPhase;
+
+    /** アクセスログの解析件数 */
+    private final AccessLogParseCounters parseCounters = new AccessLogParseCounters();
+
+    /** 処理したリクエスト情報の件数 */
+    private final LongAdder requestInfos = new LongAdder();
+
+    /** フェーズ毎の処理時間(ミリ秒) */
+    private final Map<String, Long> phaseMillis = new LinkedHashMap<>();
+
+    /** アクションが設定した値 */
+    private final Map<String, Long> values = new LinkedHashMap<>();
+
+    /** ヒープの使用量の最大値 */
+    private final AtomicLong maxHeapUsed = new AtomicLong();
+
+    /** 計測の開始時刻(ナノ秒) */
+    private long startNanos;
+
+    /** 実行中のフェーズ(フェーズ外の場合はnull) */
+    private volatile String currentPhase;
+
+    /** 実行中のフェーズの開始時刻(ナノ秒) */
+    private long phaseStartNanos;
+
+    /** 進捗ログの出力スレッド(進捗ログを出力しない場合はnull) */
+    private ScheduledExecutorService progressLogger;
+
+    /** 前回の進捗ログの出力時刻(ナノ秒) */
+    private long lastLogNanos;
+
+    /** 前回の進捗ログの出力時点の行数 */
+    private long lastLines;
+
+    /** 前回の進捗ログの出力時点のリクエスト情報の件数 */
+    private long lastRequestInfos;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     * @param jobName バッチアクションの名前(ログ及びメトリクスファイル名に使用する)
+     * @param throughputPhase 処理速度の算出対象のフェーズ(終了時の1秒あたりの件数は、このフェーズの処理時間で算出する)
+     */
+    StatisticsMetrics(OnlineStatisticsDefinition logParseDefinition, String jobName, String throughputPhase) {
+        this.logParseDefinition = logParseDefinition;
+        this.jobName = jobName;
+        this.throughputPhase = throughputPhase;
+    }
+
+    /**
+     * 計測を開始する。
+     * <p/>
+     * 進捗ログを出力する場合は、進捗ログの出力スレッドを開始する。
+     */
+    void start() {
+        startNanos = System.nanoTime();
+        lastLogNanos = startNanos;
+        long interval = logParseDefinition.getMetricsLogInterval();
+        if (interval > 0) {
+            progressLogger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "StatisticsMetrics-" + jobName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            progressLogger.scheduleAtFixedRate(this::logProgress, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * フェーズを開始する。(実行中のフェーズは終了する)
+     *
+     * @param phase フェーズの名前
+     */
+    void startPhase(String phase) {
+        endPhase();
+        phaseStartNanos = System.nanoTime();
+        currentPhase = phase;
+    }
+
+    /**
+     * 実行中のフェーズを終了し、処理時間を記録する。(実行中のフェーズが存在しない場合は何もしない)
+     * <p/>
+     * 同じ名前のフェーズを複数回実行した場合は、処理時間を合算する。
+     */
+    void endPhase() {
+        String phase = currentPhase;
+        if (phase == null) {
+            return;
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStartNanos);
+        synchronized (phaseMillis) {
+            phaseMillis.merge(phase, millis, Long::sum);
+        }
+        currentPhase = null;
+        sampleHeapUsed();
+    }
+
+    /**
+     * アクセスログの解析件数の計上先を取得する。
+     *
+     * @return アクセスログの解析件数の計上先
+     */
+    AccessLogParseCounters getParseCounters() {
+        return parseCounters;
+    }
+
+    /**
+     * 処理したリクエスト情報の件数を計上する。
+     */
+    void addRequestInfo() {
+        requestInfos.increment();
+    }
+
+    /**
+     * 計測値を設定する。(同じ名前の値が存在する場合は置き換える)
+     *
+     * @param name 名前
+     * @param value 値
+     */
+    void set(String name, long value) {
+        synchronized (values) {
+            values.put(name, value);
+        }
+    }
+
+    /**
+     * ヒープの使用量を計測する。
+     *
+     * @return ヒープの使用量(バイト)
+     */
+    long sampleHeapUsed() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        maxHeapUsed.accumulateAndGet(used, Math::max);
+        return used;
+    }
+
+    /**
+     * 計測を終了する。
+     * <p/>
+     * 実行中のフェーズを終了し、進捗ログの出力スレッドを停止した上で、計測値をログに出力する。
+     * メトリクスファイルを出力する場合は、メトリクスファイルを出力する。
+     *
+     * @throws UncheckedIOException メトリクスファイルの出力に失敗した場合
+     */
+    void finish() {
+        endPhase();
+        if (progressLogger != null) {
+            progressLogger.shutdownNow();
+            progressLogger = null;
+        }
+        Map<String, Object> metrics = snapshot();
+        LOG.logInfo("statistics metrics. " + toLogText(metrics));
+        if (logParseDefinition.isMetricsOutput()) {
+            writeMetricsFile(metrics);
+        }
+    }
+
+    /**
+     * 処理中の計測値と、前回の出力からの処理速度を進捗ログに出力する。
+     */
+    private void logProgress() {
+        long now = System.nanoTime();
+        long lines = parseCounters.getLines();
+        long count = requestInfos.sum();
+        double seconds = Math.max(now - lastLogNanos, 1) / 1e9;
+        String phase = currentPhase;
+        LOG.logInfo("statistics progress. job = [" + jobName + "], phase = [" + (phase == null ? "-" : phase)
+                + "], elapsedMillis = [" + TimeUnit.NANOSECONDS.toMillis(now - startNanos)
+                + "], linesScanned = [" + lines + "], linesPerSecond = [" + (long) ((lines - lastLines) / seconds)
+                + "], endLogs = [" + parseCounters.getEndLogs()
+                + "], skippedRequestIds = [" + parseCounters.getSkippedRequestIds()
+                + "], bytesRead = [" + parseCounters.getBytes()
+                + "], requestInfos = [" + count
+                + "], requestInfosPerSecond = [" + (long) ((count - lastRequestInfos) / seconds)
+                + "], heapUsed = [" + sampleHeapUsed() + ']');
+        lastLogNanos = now;
+        lastLines = lines;
+        lastRequestInfos = count;
+    }
+
+    /**
+     * 計測値を取得する。(出力順)
+     *
+     * @return 計測値(フェーズ毎の処理時間は、キーが「phases」のMap)
+     */
+    Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("job", jobName);
+        metrics.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        Map<String, Long> phases;
+        synchronized (phaseMillis) {
+            phases = new LinkedHashMap<>(phaseMillis);
+        }
+        metrics.put("phases", phases);
+
+        long lines = parseCounters.getLines();
+        long count = requestInfos.sum();
+        metrics.put("linesScanned", lines);
+        metrics.put("endLogs", parseCounters.getEndLogs());
+        metrics.put("skippedRequestIds", parseCounters.getSkippedRequestIds());
+        metrics.put("bytesRead", parseCounters.getBytes());
+        metrics.put("requestInfos", count);
+        Long throughputMillis = phases.get(throughputPhase);
+        if (throughputMillis != null && throughputMillis > 0) {
+            metrics.put("linesPerSecond", lines * 1000 / throughputMillis);
+            metrics.put("requestInfosPerSecond", count * 1000 / throughputMillis);
+        }
+        synchronized (values) {
+            metrics.putAll(values);
+        }
+        metrics.put("maxHeapUsed", maxHeapUsed.get());
+        return metrics;
+    }
+
+    /**
+     * 計測値をログ出力用の文字列に変換する。
+     *
+     * @param metrics 計測値
+     * @return ログ出力用の文字列
+     */
+    private static String toLogText(Map<String, Object> metrics) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(entry.getKey()).append(" = [");
+            if (entry.getValue() instanceof Map) {
+                String separator = "";
+                for (Map.Entry<?, ?> phase : ((Map<?, ?>) entry.getValue()).entrySet()) {
+                    text.append(separator).append(phase.getKey()).append('=').append(phase.getValue()).append("ms");
+                    separator = " ";
+                }
+            } else {
+                text.append(entry.getValue());
+            }
+            text.append(']');
+        }
+        return text.toString();
+    }
+
+    /**
+     * 計測値をJSON形式に変換する。
+     *
+     * @param metrics 計測値(値は文字列、数値、またはMap)
+     * @return JSON形式の文字列
+     */
+    static String toJson(Map<String, Object> metrics) {
+        StringBuilder json = new StringBuilder("{\n");
+        String separator = "";
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            json.append(separator).append("  ").append(quote(entry.getKey())).append(": ");
+            Object value = entry.getValue();
+            if (value instanceof Map) {
+                json.append('{');
+                String innerSeparator = "";
+                for (Map.Entry<?, ?> inner : ((Map<?, ?>) value).entrySet()) {
+                    json.append(innerSeparator).append(quote(String.valueOf(inner.getKey()))).append(": ")
+                            .append(inner.getValue());
+                    innerSeparator = ", ";
+                }
+                json.append('}');
+            } else if (value instanceof Number) {
+                json.append(value);
+            } else {
+                json.append(quote(String.valueOf(value)));
+            }
+            separator = ",\n";
+        }
+        return json.append("\n}\n").toString();
+    }
+
+    /**
+     * JSONの文字列に変換する。
+     *
+     * @param value 値
+     * @return 引用符で囲み、エスケープした値
+     */
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * メトリクスファイルを出力する。
+     * <p/>
+     * ファイル名は「STATISTICS_METRICS_バッチアクションの名前_システム日時.json」とする。
+     *
+     * @param metrics 計測値
+     * @throws UncheckedIOException 出力に失敗した場合
+     */
+    private void writeMetricsFile(Map<String, Object> metrics) {
+        File directory = FilePathSetting.getInstance().getBaseDirectory(logParseDefinition.getMetricsBaseName());
+        directory.mkdirs();
+        File file = new File(directory,
+                METRICS_FILE_PREFIX + jobName + '_' + SystemTimeUtil.getDateTimeString() + METRICS_FILE_SUFFIX);
+        try {
+            Files.write(file.toPath(), toJson(metrics).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write the metrics file. file = [" + file + ']', e);
+        }
+    }
+}
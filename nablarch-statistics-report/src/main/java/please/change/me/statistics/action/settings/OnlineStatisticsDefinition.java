@@ -1,10 +1,20 @@
 package please.change.me.statistics.action.settings;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.regex.Pattern;
 
+import please.change.me.statistics.aggregate.AggregatorFactory;
+import please.change.me.statistics.aggregate.IntArrayAggregatorFactory;
+import please.change.me.statistics.parser.AccessLogDecompressor;
+import please.change.me.statistics.parser.AccessLogLineMatcher;
+import please.change.me.statistics.parser.AccessLogParserFactory;
+import please.change.me.statistics.parser.GzipAccessLogDecompressor;
+import please.change.me.statistics.parser.RegexAccessLogParserFactory;
+import please.change.me.statistics.parser.RequestIdFilter;
+
 /**
  * オンラインアクセスログを解析するための設定を保持するクラス。
  * <p/>
@@ -23,12 +33,24 @@ public class OnlineStatisticsDefinition {
     /** アクセスログ解析用の一時ディレクトリ */
     private String accessLogParseDir;
 
+    /** アクセスログを一時ディレクトリにコピーせずに、スナップショットとして読み込むか否か */
+    private boolean snapshotRead;
+
     /** アクセスログの終了ログ(ENDログ)を特定するための正規表現 */
     private Pattern endLogPattern;
 
     /** 抽出対象のリクエストID一覧 */
     private List<String> includeRequestIdList = new ArrayList<>();
 
+    /** 抽出対象のリクエストIDの末尾の「*」を前方一致の条件とするか否か */
+    private boolean includeRequestIdWildcard;
+
+    /** 抽出対象のリクエストIDの判定オブジェクト(未生成の場合はnull) */
+    private volatile RequestIdFilter requestIdFilter;
+
+    /** アクセスログの行の解析オブジェクト(未生成の場合はnull) */
+    private volatile AccessLogLineMatcher lineMatcher;
+
     /** 終了ログからリクエストIDを抽出するための正規表現 */
     private Pattern findRequestIdPattern;
 
@@ -68,6 +90,91 @@ public class OnlineStatisticsDefinition {
     /** 集計対象期間 */
     private int aggregatePeriod = 1;
 
+    /** リクエスト情報CSVを並列に読み込むスレッド数 */
+    private int requestInfoReaderParallelism = 1;
+
+    /** 集計オブジェクトのファクトリ */
+    private AggregatorFactory aggregatorFactory = new IntArrayAggregatorFactory();
+
+    /** アクセスログの解析時に直接集計するか否か */
+    private boolean directAggregation;
+
+    /** 直接集計する場合に、リクエスト情報CSVを出力するか否か */
+    private boolean requestInfoOutput = true;
+
+    /** リクエスト情報をバイナリ形式のリクエスト情報ファイルに出力するか否か */
+    private boolean requestInfoBinary;
+
+    /** アクセスログの文字エンコーディング */
+    private Charset accessLogEncoding = Charset.defaultCharset();
+
+    /** アクセスログの解析オブジェクトのファクトリ */
+    private AccessLogParserFactory accessLogParserFactory = new RegexAccessLogParserFactory();
+
+    /** 圧縮されたアクセスログの展開オブジェクト */
+    private List<AccessLogDecompressor> accessLogDecompressors =
+            Collections.singletonList(new GzipAccessLogDecompressor());
+
+    /** アクセスログを並列に解析するスレッド数 */
+    private int accessLogParseParallelism = 1;
+
+    /** 集計結果を状態ファイルに保存し、次回以降の集計で再利用するか否か */
+    private boolean incrementalAggregation;
+
+    /** 状態ファイルの格納先ディレクトリの論理名 */
+    private String aggregateStateBaseName;
+
+    /** 集計結果CSVの代わりに部分集計ファイルを出力するか否か */
+    private boolean partialAggregateOutput;
+
+    /** 部分集計ファイルの格納先ディレクトリの論理名 */
+    private String partialAggregateBaseName;
+
+    /** 部分集計ファイルを出力するノードの名前 */
+    private String partialAggregateNodeName;
+
+    /** 5分単位の集計結果CSVを出力するか否か */
+    private boolean fiveMinuteSummary;
+
+    /** 分単位の集計結果CSVを出力するか否か */
+    private boolean minuteSummary;
+
+    /** 時間毎のピークを算出する区間の分数(0の場合はピークを算出しない) */
+    private int peakWindowMinutes;
+
+    /** 集計中にメモリ上に保持する集計セル数の上限(0以下の場合は上限なし) */
+    private int aggregateCellLimit;
+
+    /** 上限を超えた集計セルを退避する一時ファイルの格納先ディレクトリの論理名 */
+    private String aggregateSpillBaseName;
+
+    /** 処理状況の進捗ログの出力間隔(ミリ秒) */
+    private long metricsLogInterval;
+
+    /** 処理状況をメトリクスファイルに出力するか否か */
+    private boolean metricsOutput;
+
+    /** メトリクスファイルの格納先ディレクトリの論理名 */
+    private String metricsBaseName;
+
+    /** アクセスログを追跡する場合の集計結果CSVの格納先ディレクトリの論理名 */
+    private String tailSummaryBaseName;
+
+    /** アクセスログを追跡する場合の読み込み間隔(ミリ秒) */
+    private long tailPollInterval = 1000;
+
+    /** アクセスログを追跡する場合の集計結果CSVの出力間隔(ミリ秒) */
+    private long tailFlushInterval = 60000;
+
+    /** アクセスログを追跡する場合に、分単位の集計結果を保持する期間(分) */
+    private int tailMinuteRetention = 60;
+
+    /** アクセスログを追跡する最大時間(ミリ秒) */
+    private long tailMaxDuration;
+
+    /** アクセスログの追跡を停止するための停止ファイルのパス */
+    private String tailStopFile;
+
     /**
      * アクセスログが出力されるディレクトリを設定する。
      * <p/>
@@ -129,6 +236,31 @@ public class OnlineStatisticsDefinition {
         this.accessLogParseDir = accessLogParseDir;
     }
 
+    /**
+     * アクセスログを一時ディレクトリにコピーせずに、スナップショットとして読み込むか否かを取得する。
+     *
+     * @return スナップショットとして読み込む場合はtrue
+     */
+    public boolean isSnapshotRead() {
+        return snapshotRead;
+    }
+
+    /**
+     * アクセスログを一時ディレクトリにコピーせずに、スナップショットとして読み込むか否かを設定する。
+     * <p/>
+     * trueを設定した場合は、解析処理の開始時に各アクセスログのファイルの識別子(inodeなど)とサイズを記録し、
+     * {@link #setAccessLogParseDir(String)}のディレクトリにコピーせずに、記録したサイズまでを直接解析する。
+     * 解析中のアクセスログへの追記やリネームによるローテーションは、解析結果に影響しない。
+     * (詳細は、{@link please.change.me.statistics.parser.AccessLogSnapshot}を参照)
+     * <p/>
+     * なお、本設定値を省略した場合はfalse(一時ディレクトリにコピーしてから解析する)となる。
+     *
+     * @param snapshotRead スナップショットとして読み込む場合はtrue
+     */
+    public void setSnapshotRead(boolean snapshotRead) {
+        this.snapshotRead = snapshotRead;
+    }
+
     /**
      * 終了ログを特定するための正規表現パターン
      *
@@ -145,6 +277,7 @@ public class OnlineStatisticsDefinition {
      */
     public void setEndLogPattern(String endLogPattern) {
         this.endLogPattern = Pattern.compile(endLogPattern);
+        lineMatcher = null;
     }
 
     /**
@@ -165,6 +298,64 @@ public class OnlineStatisticsDefinition {
      */
     public void setIncludeRequestIdList(List<String> includeRequestIdList) {
         this.includeRequestIdList = Collections.unmodifiableList(includeRequestIdList);
+        requestIdFilter = null;
+    }
+
+    /**
+     * 抽出対象のリクエストIDの末尾の「*」を前方一致の条件とするか否かを取得する。
+     *
+     * @return 前方一致の条件とする場合はtrue
+     */
+    public boolean isIncludeRequestIdWildcard() {
+        return includeRequestIdWildcard;
+    }
+
+    /**
+     * 抽出対象のリクエストIDの末尾の「*」を前方一致の条件とするか否かを設定する。
+     * <p/>
+     * trueを設定した場合は、{@link #setIncludeRequestIdList(List)}で設定したリクエストIDのうち、
+     * 末尾が「*」のものを前方一致の条件とする。(例:「RW11*」の場合は「RW11」で始まるリクエストIDが抽出対象となる)
+     * <p/>
+     * なお、本設定値を省略した場合はfalse(全てのリクエストIDを完全一致で判定する)となる。
+     *
+     * @param includeRequestIdWildcard 前方一致の条件とする場合はtrue
+     */
+    public void setIncludeRequestIdWildcard(boolean includeRequestIdWildcard) {
+        this.includeRequestIdWildcard = includeRequestIdWildcard;
+        requestIdFilter = null;
+    }
+
+    /**
+     * 抽出対象のリクエストIDの判定オブジェクトを取得する。
+     * <p/>
+     * 判定オブジェクトは、{@link #setIncludeRequestIdList(List)}及び{@link #setIncludeRequestIdWildcard(boolean)}の
+     * 設定値から初回の取得時に生成する。
+     *
+     * @return 抽出対象のリクエストIDの判定オブジェクト
+     */
+    public RequestIdFilter getRequestIdFilter() {
+        RequestIdFilter filter = requestIdFilter;
+        if (filter == null) {
+            filter = RequestIdFilter.of(includeRequestIdList, includeRequestIdWildcard);
+            requestIdFilter = filter;
+        }
+        return filter;
+    }
+
+    /**
+     * アクセスログの行の解析オブジェクトを取得する。
+     * <p/>
+     * 解析オブジェクトは、終了ログを特定するための正規表現及び各項目を抽出するための正規表現から、初回の取得時に生成する。
+     *
+     * @return アクセスログの行の解析オブジェクト
+     */
+    public AccessLogLineMatcher getLineMatcher() {
+        AccessLogLineMatcher matcher = lineMatcher;
+        if (matcher == null) {
+            matcher = AccessLogLineMatcher.compile(this);
+            lineMatcher = matcher;
+        }
+        return matcher;
     }
 
     /**
@@ -188,6 +379,7 @@ public class OnlineStatisticsDefinition {
      */
     public void setFindRequestIdPattern(String findRequestIdPattern) {
         this.findRequestIdPattern = Pattern.compile(findRequestIdPattern);
+        lineMatcher = null;
     }
 
     /**
@@ -211,6 +403,7 @@ public class OnlineStatisticsDefinition {
      */
     public void setFindProcessNamePattern(String findProcessNamePattern) {
         this.findProcessNamePattern = Pattern.compile(findProcessNamePattern);
+        lineMatcher = null;
     }
 
     /**
@@ -234,6 +427,7 @@ public class OnlineStatisticsDefinition {
      */
     public void setFindStatusCodePattern(String findStatusCodePattern) {
         this.findStatusCodePattern = Pattern.compile(findStatusCodePattern);
+        lineMatcher = null;
     }
 
     /**
@@ -257,6 +451,7 @@ public class OnlineStatisticsDefinition {
      */
     public void setFindExecutionTimePattern(String findExecutionTimePattern) {
         this.findExecutionTimePattern = Pattern.compile(findExecutionTimePattern);
+        lineMatcher = null;
     }
 
     /**
@@ -327,6 +522,8 @@ public class OnlineStatisticsDefinition {
 
     /**
      * リクエスト情報CSVのフォーマット定義ファイル名を設定する。
+     * <p/>
+     * フォーマット定義ファイルは可変長(CSV)とすること。
      *
      * @param requestInfoFormatName リクエスト情報CSVのフォーマット定義
      */
@@ -430,5 +627,684 @@ public class OnlineStatisticsDefinition {
     public void setAggregatePeriod(int aggregatePeriod) {
         this.aggregatePeriod = aggregatePeriod;
     }
-}
 
+    /**
+     * 集計オブジェクトのファクトリを取得する。
+     *
+     * @return 集計オブジェクトのファクトリ
+     */
+    public AggregatorFactory getAggregatorFactory() {
+        return aggregatorFactory;
+    }
+
+    /**
+     * 集計オブジェクトのファクトリを設定する。
+     * <p/>
+     * 集計単位毎の処理時間の集計方法を切り替える場合に設定する。
+     * 以下の実装を提供している。
+     * <ul>
+     * <li>{@link IntArrayAggregatorFactory}: 全ての処理時間をint配列に保持し、正確な中央値及びパーセンタイル値を算出する。</li>
+     * <li>{@link please.change.me.statistics.aggregate.ListAggregatorFactory}:
+     * 全ての処理時間をリストに保持し、正確な中央値及びパーセンタイル値を算出する。</li>
+     * <li>{@link please.change.me.statistics.aggregate.HistogramAggregatorFactory}:
+     * 処理時間をヒストグラムで保持し、集計単位あたり一定のメモリ量で中央値及びパーセンタイル値の近似値を算出する。</li>
+     * </ul>
+     * なお、本設定値を省略した場合は{@link IntArrayAggregatorFactory}を使用する。
+     *
+     * @param aggregatorFactory 集計オブジェクトのファクトリ
+     */
+    public void setAggregatorFactory(AggregatorFactory aggregatorFactory) {
+        this.aggregatorFactory = aggregatorFactory;
+    }
+
+    /**
+     * リクエスト情報CSVを並列に読み込むスレッド数を取得する。
+     *
+     * @return リクエスト情報CSVを並列に読み込むスレッド数
+     */
+    public int getRequestInfoReaderParallelism() {
+        return requestInfoReaderParallelism;
+    }
+
+    /**
+     * リクエスト情報CSVを並列に読み込むスレッド数を設定する。
+     * <p/>
+     * 2以上を設定した場合は、リクエスト情報CSVをファイル毎に並列に読み込む。
+     * (詳細は、{@link please.change.me.statistics.reader.MultiFileRecordReader#setParallelism(int)}を参照)
+     * <p/>
+     * リクエスト情報ファイル毎に集計する場合(増分集計や直接集計の場合)は、リクエスト情報CSVを1ファイルずつ読み込むため、
+     * 本設定値は無視する。(警告ログを出力する)
+     * <p/>
+     * なお、本設定値を省略した場合は1(ファイルを1つずつ順に読み込む)となる。
+     *
+     * @param requestInfoReaderParallelism リクエスト情報CSVを並列に読み込むスレッド数
+     */
+    public void setRequestInfoReaderParallelism(int requestInfoReaderParallelism) {
+        this.requestInfoReaderParallelism = requestInfoReaderParallelism;
+    }
+
+    /**
+     * アクセスログの解析時に直接集計するか否かを取得する。
+     *
+     * @return 直接集計する場合はtrue
+     */
+    public boolean isDirectAggregation() {
+        return directAggregation;
+    }
+
+    /**
+     * アクセスログの解析時に直接集計するか否かを設定する。
+     * <p/>
+     * trueを設定した場合は、{@link please.change.me.statistics.action.OnlineAccessLogParseAction}で
+     * 解析したリクエスト情報を直接集計し、集計結果CSVを出力する。
+     * (集計期間内の過去のリクエスト情報CSVも集計対象となる。
+     * 毎回読み込まないようにする場合は、{@link #setIncrementalAggregation(boolean)}にtrueを設定すること。)
+     * この場合、{@link please.change.me.statistics.action.RequestInfoAggregateAction}を実行する必要はない。
+     * <p/>
+     * なお、本設定値を省略した場合はfalse(解析処理ではリクエスト情報CSVの出力のみを行う)となる。
+     *
+     * @param directAggregation 直接集計する場合はtrue
+     */
+    public void setDirectAggregation(boolean directAggregation) {
+        this.directAggregation = directAggregation;
+    }
+
+    /**
+     * 直接集計する場合に、リクエスト情報CSVを出力するか否かを取得する。
+     *
+     * @return リクエスト情報CSVを出力する場合はtrue
+     */
+    public boolean isRequestInfoOutput() {
+        return requestInfoOutput;
+    }
+
+    /**
+     * 直接集計する場合に、リクエスト情報CSVを出力するか否かを設定する。
+     * <p/>
+     * {@link #setDirectAggregation(boolean)}にtrueを設定した場合のみ有効となる。
+     * falseを設定した場合はリクエスト情報CSVを出力せずに、当日分のリクエスト情報の集計結果を状態ファイルに保存し、
+     * 後続の日の集計処理では状態ファイルの集計結果を使用する。
+     * このため、falseを設定する場合は、{@link #setIncrementalAggregation(boolean)}にtrueを設定すること。
+     * (状態ファイルを使用しない場合は、当日分のリクエスト情報が後続の日に集計されなくなるため、集計を開始せずに異常終了する)
+     * <p/>
+     * なお、本設定値を省略した場合はtrue(監査用にリクエスト情報CSVを出力する)となる。
+     *
+     * @param requestInfoOutput リクエスト情報CSVを出力する場合はtrue
+     */
+    public void setRequestInfoOutput(boolean requestInfoOutput) {
+        this.requestInfoOutput = requestInfoOutput;
+    }
+
+    /**
+     * リクエスト情報をバイナリ形式のリクエスト情報ファイルに出力するか否かを取得する。
+     *
+     * @return バイナリ形式で出力する場合はtrue
+     */
+    public boolean isRequestInfoBinary() {
+        return requestInfoBinary;
+    }
+
+    /**
+     * リクエスト情報をバイナリ形式のリクエスト情報ファイルに出力するか否かを設定する。
+     * <p/>
+     * trueを設定した場合は、リクエスト情報CSV(REQUEST_INFO_yyyyMMdd.csv)の代わりに、
+     * バイナリ形式のリクエスト情報ファイル(REQUEST_INFO_yyyyMMdd.bin)を出力する。
+     * (形式の詳細は、{@link please.change.me.statistics.aggregate.RequestInfoBinaryFile}を参照)
+     * 集計処理では、本設定値に関わらず、いずれの形式のリクエスト情報ファイルも集計対象となる。
+     * <p/>
+     * なお、本設定値を省略した場合はfalse(リクエスト情報CSVを出力する)となる。
+     *
+     * @param requestInfoBinary バイナリ形式で出力する場合はtrue
+     */
+    public void setRequestInfoBinary(boolean requestInfoBinary) {
+        this.requestInfoBinary = requestInfoBinary;
+    }
+
+    /**
+     * 集計結果を状態ファイルに保存し、次回以降の集計で再利用するか否かを取得する。
+     *
+     * @return 状態ファイルを使用する場合はtrue
+     */
+    public boolean isIncrementalAggregation() {
+        return incrementalAggregation;
+    }
+
+    /**
+     * 集計結果を状態ファイルに保存し、次回以降の集計で再利用するか否かを設定する。
+     * <p/>
+     * trueを設定した場合は、{@link please.change.me.statistics.action.RequestInfoAggregateAction}
+     * (及び直接集計する場合の{@link please.change.me.statistics.action.OnlineAccessLogParseAction})で
+     * 読み込んだリクエスト情報CSVの集計結果を{@link #setAggregateStateBaseName(String)}のディレクトリに状態ファイルとして保存し、
+     * 次回以降の実行では、状態ファイルで集計済みのリクエスト情報CSVを読み込まずに、状態ファイルの集計結果を使用する。
+     * 状態ファイルはリクエスト情報CSV毎に保存し、リクエスト情報CSVが変更された場合や、集計期間外となった場合は、
+     * そのリクエスト情報CSVの状態ファイルのみが削除され再利用されない。
+     * <p/>
+     * なお、本設定値を省略した場合はfalse(毎回、集計期間内の全てのリクエスト情報CSVを読み込む)となる。
+     *
+     * @param incrementalAggregation 状態ファイルを使用する場合はtrue
+     */
+    public void setIncrementalAggregation(boolean incrementalAggregation) {
+        this.incrementalAggregation = incrementalAggregation;
+    }
+
+    /**
+     * 状態ファイルの格納先ディレクトリの論理名を取得する。
+     *
+     * @return 状態ファイルの格納先ディレクトリの論理名
+     */
+    public String getAggregateStateBaseName() {
+        return aggregateStateBaseName;
+    }
+
+    /**
+     * 状態ファイルの格納先ディレクトリの論理名を設定する。
+     * <p/>
+     * {@link #setIncrementalAggregation(boolean)}にtrueを設定した場合は、必ず設定すること。
+     *
+     * @param aggregateStateBaseName 状態ファイルの格納先ディレクトリの論理名
+     */
+    public void setAggregateStateBaseName(String aggregateStateBaseName) {
+        this.aggregateStateBaseName = aggregateStateBaseName;
+    }
+
+    /**
+     * 集計結果CSVの代わりに部分集計ファイルを出力するか否かを取得する。
+     *
+     * @return 部分集計ファイルを出力する場合はtrue
+     */
+    public boolean isPartialAggregateOutput() {
+        return partialAggregateOutput;
+    }
+
+    /**
+     * 集計結果CSVの代わりに部分集計ファイルを出力するか否かを設定する。
+     * <p/>
+     * 複数のノード(アプリケーションサーバ)でそれぞれアクセスログの解析及び集計を行い、集計結果を1つにまとめる場合に使用する。
+     * trueを設定した場合は、{@link please.change.me.statistics.action.RequestInfoAggregateAction}で
+     * 集計結果CSVを出力せずに、ノードのリクエスト情報ファイルの集計結果を部分集計ファイルとして
+     * {@link #setPartialAggregateBaseName(String)}のディレクトリに出力する。
+     * 各ノードの部分集計ファイルを1つのディレクトリに集めた後に、
+     * {@link please.change.me.statistics.action.PartialAggregateMergeAction}で合算して集計結果CSVを出力する。
+     * 集計結果CSVは、全ノードのリクエスト情報ファイルを1つのディレクトリに集めて集計した場合と同一となる。
+     * <p/>
+     * なお、本設定値を省略した場合はfalse(集計結果CSVを出力する)となる。
+     *
+     * @param partialAggregateOutput 部分集計ファイルを出力する場合はtrue
+     */
+    public void setPartialAggregateOutput(boolean partialAggregateOutput) {
+        this.partialAggregateOutput = partialAggregateOutput;
+    }
+
+    /**
+     * 部分集計ファイルの格納先ディレクトリの論理名を取得する。
+     *
+     * @return 部分集計ファイルの格納先ディレクトリの論理名
+     */
+    public String getPartialAggregateBaseName() {
+        return partialAggregateBaseName;
+    }
+
+    /**
+     * 部分集計ファイルの格納先ディレクトリの論理名を設定する。
+     * <p/>
+     * {@link #setPartialAggregateOutput(boolean)}にtrueを設定した場合、
+     * 及び{@link please.change.me.statistics.action.PartialAggregateMergeAction}を実行する場合は、必ず設定すること。
+     *
+     * @param partialAggregateBaseName 部分集計ファイルの格納先ディレクトリの論理名
+     */
+    public void setPartialAggregateBaseName(String partialAggregateBaseName) {
+        this.partialAggregateBaseName = partialAggregateBaseName;
+    }
+
+    /**
+     * 部分集計ファイルを出力するノードの名前を取得する。
+     *
+     * @return ノードの名前
+     */
+    public String getPartialAggregateNodeName() {
+        return partialAggregateNodeName;
+    }
+
+    /**
+     * 部分集計ファイルを出力するノードの名前を設定する。
+     * <p/>
+     * ノードの名前は部分集計ファイルのファイル名に使用するため、ノード毎に一意となる値(ファイル名に使用できる文字のみ)を設定すること。
+     * 同じノードで再度集計した場合は、部分集計ファイルを上書きする。
+     * <p/>
+     * {@link #setPartialAggregateOutput(boolean)}にtrueを設定した場合は、必ず設定すること。
+     *
+     * @param partialAggregateNodeName ノードの名前
+     */
+    public void setPartialAggregateNodeName(String partialAggregateNodeName) {
+        this.partialAggregateNodeName = partialAggregateNodeName;
+    }
+
+    /**
+     * 5分単位の集計結果CSVを出力するか否かを取得する。
+     *
+     * @return 5分単位の集計結果CSVを出力する場合はtrue
+     */
+    public boolean isFiveMinuteSummary() {
+        return fiveMinuteSummary;
+    }
+
+    /**
+     * 5分単位の集計結果CSVを出力するか否かを設定する。
+     * <p/>
+     * trueを設定した場合は、年月、日、時間単位に加えて、5分単位の集計結果CSV(REQUEST_INFO_SUMMARY_5MINUTE_プロセス名.csv)を出力する。
+     * 集計単位値は「時 * 100 + 5分単位に切り捨てた分」(例: 14時7分の場合は1405)とし、時間単位と同様に集計期間内の全ての日を合算する。
+     * <p/>
+     * リクエスト情報CSVはログ出力日時の分を保持しないため、分単位の集計はバイナリ形式のリクエスト情報ファイル
+     * ({@link #setRequestInfoBinary(boolean)})のみを集計する場合に使用できる。
+     * 集計期間内にリクエスト情報CSVが存在する場合(直接集計する場合は、今回出力するリクエスト情報ファイルも含む)は、
+     * 誤った集計結果を出力しないように、集計を開始せずに異常終了する。
+     * <p/>
+     * なお、本設定値を省略した場合はfalse(5分単位の集計結果CSVを出力しない)となる。
+     *
+     * @param fiveMinuteSummary 5分単位の集計結果CSVを出力する場合はtrue
+     */
+    public void setFiveMinuteSummary(boolean fiveMinuteSummary) {
+        this.fiveMinuteSummary = fiveMinuteSummary;
+    }
+
+    /**
+     * 分単位の集計結果CSVを出力するか否かを取得する。
+     *
+     * @return 分単位の集計結果CSVを出力する場合はtrue
+     */
+    public boolean isMinuteSummary() {
+        return minuteSummary;
+    }
+
+    /**
+     * 分単位の集計結果CSVを出力するか否かを設定する。
+     * <p/>
+     * trueを設定した場合は、年月、日、時間単位に加えて、分単位の集計結果CSV(REQUEST_INFO_SUMMARY_MINUTE_プロセス名.csv)を出力する。
+     * 集計単位値は「時 * 100 + 分」(例: 14時7分の場合は1407)とし、時間単位と同様に集計期間内の全ての日を合算する。
+     * 分単位の集計の制約は、{@link #setFiveMinuteSummary(boolean)}と同じである。
+     * <p/>
+     * 集計単位を追加しても、リクエスト情報1件あたりの集計処理は増えない。
+     * (時間、5分単位の集計結果は、分単位の集計結果から導出する。詳細は{@link please.change.me.statistics.aggregate.RollupResultHolder}を参照)
+     * ただし、保持する集計結果はリクエストID毎に最大1440件増えるため、
+     * 処理時間を全て保持する集計オブジェクトを使用する場合はメモリ使用量に注意すること。
+     * <p/>
+     * なお、本設定値を省略した場合はfalse(分単位の集計結果CSVを出力しない)となる。
+     *
+     * @param minuteSummary 分単位の集計結果CSVを出力する場合はtrue
+     */
+    public void setMinuteSummary(boolean minuteSummary) {
+        this.minuteSummary = minuteSummary;
+    }
+
+    /**
+     * 時間毎のピークを算出する区間の分数を取得する。
+     *
+     * @return 時間毎のピークを算出する区間の分数
+     */
+    public int getPeakWindowMinutes() {
+        return peakWindowMinutes;
+    }
+
+    /**
+     * 時間毎のピークを算出する区間の分数を設定する。
+     * <p/>
+     * 1以上を設定した場合は、プロセス名毎のピーク集計結果CSV(REQUEST_INFO_PEAK_プロセス名.csv)を出力する。
+     * ピーク集計結果CSVには、日付及び時間毎に、その時間内に開始する本設定値の分数の区間を1分ずつずらしながら評価し、
+     * 処理したリクエスト数(全リクエストIDの合計)が最大となる区間の開始時刻とリクエスト数を出力する。
+     * (1を設定した場合は、1分あたりのリクエスト数の最大値となる)
+     * <p/>
+     * リクエスト情報はログ出力日時を分単位で保持するため、1分未満の区間(1秒あたりのリクエスト数等)は算出できない。
+     * また、分単位の集計の制約は、{@link #setFiveMinuteSummary(boolean)}と同じである。
+     * <p/>
+     * なお、本設定値を省略した場合、または0以下を設定した場合はピークを算出しない。
+     *
+     * @param peakWindowMinutes 時間毎のピークを算出する区間の分数
+     */
+    public void setPeakWindowMinutes(int peakWindowMinutes) {
+        this.peakWindowMinutes = peakWindowMinutes;
+    }
+
+    /**
+     * 集計中にメモリ上に保持する集計セル数の上限を取得する。
+     *
+     * @return 集計セル数の上限(0以下の場合は上限なし)
+     */
+    public int getAggregateCellLimit() {
+        return aggregateCellLimit;
+    }
+
+    /**
+     * 集計中にメモリ上に保持する集計セル数の上限を設定する。
+     * <p/>
+     * {@link please.change.me.statistics.action.RequestInfoAggregateAction}及び直接集計する場合の
+     * {@link please.change.me.statistics.action.OnlineAccessLogParseAction}では、リクエスト情報をリクエストID、プロセス名、
+     * 日付及び時刻毎の集計セルに集計する。
+     * 1以上を設定した場合は、集計セルの数が本設定値に達する度に、集計セルをキー順に並べた一時ファイル(ラン)として
+     * {@link #setAggregateSpillBaseName(String)}のディレクトリに退避し、メモリ上の集計セルを破棄する。
+     * 退避したランは、集計結果CSVの出力時にキー順にマージしながら集計結果を導出し、リクエストID毎に集計結果CSVに出力する。
+     * (同時に開くランの数には上限があり、ランの数が上限を超える場合は段階的にマージする)
+     * このため、リクエストIDの数や集計期間が大きい場合でも、集計セル及び集計結果のメモリ使用量は本設定値とスレッド数で決まる上限内となる。
+     * (本設定値はスレッド毎に適用される)
+     * <p/>
+     * 集計セル1つあたりのメモリ使用量は、集計オブジェクトの実装に依存する。
+     * ヒストグラム({@link please.change.me.statistics.aggregate.HistogramAggregatorFactory})以外の実装は、
+     * 集計セル内のリクエスト数に比例して増加するため、集計セル数の上限のみではメモリ使用量を制限できない。
+     * また、{@link #setIncrementalAggregation(boolean)}または{@link #setPartialAggregateOutput(boolean)}にtrueを設定した場合は、
+     * 状態ファイル等に出力するために導出した集計結果を全てメモリ上に保持するため、本設定値は集計中のみ有効となる。
+     * この場合、導出した集計結果のメモリ使用量は本設定値では制限されず、リクエストIDの数、集計期間及び集計単位の種類に比例する。
+     * (状態ファイルから読み込んだ集計済みの集計結果も同様)
+     * <p/>
+     * なお、本設定値を省略した場合、または0以下を設定した場合は上限なし(一時ファイルを使用しない)となる。
+     *
+     * @param aggregateCellLimit 集計セル数の上限
+     */
+    public void setAggregateCellLimit(int aggregateCellLimit) {
+        this.aggregateCellLimit = aggregateCellLimit;
+    }
+
+    /**
+     * 上限を超えた集計セルを退避する一時ファイルの格納先ディレクトリの論理名を取得する。
+     *
+     * @return 一時ファイルの格納先ディレクトリの論理名
+     */
+    public String getAggregateSpillBaseName() {
+        return aggregateSpillBaseName;
+    }
+
+    /**
+     * 上限を超えた集計セルを退避する一時ファイルの格納先ディレクトリの論理名を設定する。
+     * <p/>
+     * {@link #setAggregateCellLimit(int)}に1以上を設定した場合は、必ず設定すること。
+     * 一時ファイルは、集計結果CSVの出力後に削除される。
+     *
+     * @param aggregateSpillBaseName 一時ファイルの格納先ディレクトリの論理名
+     */
+    public void setAggregateSpillBaseName(String aggregateSpillBaseName) {
+        this.aggregateSpillBaseName = aggregateSpillBaseName;
+    }
+
+    /**
+     * 処理状況の進捗ログの出力間隔(ミリ秒)を取得する。
+     *
+     * @return 進捗ログの出力間隔(ミリ秒)
+     */
+    public long getMetricsLogInterval() {
+        return metricsLogInterval;
+    }
+
+    /**
+     * 処理状況の進捗ログの出力間隔(ミリ秒)を設定する。
+     * <p/>
+     * 1以上を設定した場合は、アクセスログの解析及びリクエスト情報の集計の処理中に、
+     * 処理中のフェーズ、読み込んだ行数、処理したリクエスト情報の件数、1秒あたりの処理件数及びヒープの使用量を
+     * 設定された間隔でINFOレベルのログに出力する。
+     * 0以下の場合(デフォルト)は、進捗ログを出力しない。(処理終了時の計測値は常に出力する)
+     *
+     * @param metricsLogInterval 進捗ログの出力間隔(ミリ秒)
+     */
+    public void setMetricsLogInterval(long metricsLogInterval) {
+        this.metricsLogInterval = metricsLogInterval;
+    }
+
+    /**
+     * 処理状況をメトリクスファイルに出力するか否かを取得する。
+     *
+     * @return 出力する場合はtrue
+     */
+    public boolean isMetricsOutput() {
+        return metricsOutput;
+    }
+
+    /**
+     * 処理状況をメトリクスファイルに出力するか否かを設定する。
+     * <p/>
+     * trueを設定した場合は、処理終了時に、フェーズ毎の処理時間、解析件数、1秒あたりの処理件数、集計セルの数及び
+     * ヒープの使用量の最大値を、JSON形式のメトリクスファイル(STATISTICS_METRICS_バッチアクションの名前_システム日時.json)に出力する。
+     * デフォルトはfalse。
+     *
+     * @param metricsOutput 出力する場合はtrue
+     */
+    public void setMetricsOutput(boolean metricsOutput) {
+        this.metricsOutput = metricsOutput;
+    }
+
+    /**
+     * メトリクスファイルの格納先ディレクトリの論理名を取得する。
+     *
+     * @return メトリクスファイルの格納先ディレクトリの論理名
+     */
+    public String getMetricsBaseName() {
+        return metricsBaseName;
+    }
+
+    /**
+     * メトリクスファイルの格納先ディレクトリの論理名を設定する。
+     * <p/>
+     * {@link #setMetricsOutput(boolean)}にtrueを設定した場合は、必ず設定すること。
+     *
+     * @param metricsBaseName メトリクスファイルの格納先ディレクトリの論理名
+     */
+    public void setMetricsBaseName(String metricsBaseName) {
+        this.metricsBaseName = metricsBaseName;
+    }
+
+    /**
+     * アクセスログの文字エンコーディングを取得する。
+     *
+     * @return アクセスログの文字エンコーディング
+     */
+    public Charset getAccessLogEncoding() {
+        return accessLogEncoding;
+    }
+
+    /**
+     * アクセスログの文字エンコーディングを設定する。
+     * <p/>
+     * なお、本設定値を省略した場合は、実行環境のデフォルトの文字エンコーディングとなる。
+     *
+     * @param accessLogEncoding アクセスログの文字エンコーディング
+     */
+    public void setAccessLogEncoding(String accessLogEncoding) {
+        this.accessLogEncoding = Charset.forName(accessLogEncoding);
+        lineMatcher = null;
+    }
+
+    /**
+     * アクセスログの解析オブジェクトのファクトリを取得する。
+     *
+     * @return アクセスログの解析オブジェクトのファクトリ
+     */
+    public AccessLogParserFactory getAccessLogParserFactory() {
+        return accessLogParserFactory;
+    }
+
+    /**
+     * アクセスログの解析オブジェクトのファクトリを設定する。
+     * <p/>
+     * アクセスログの解析方法を切り替える場合に設定する。
+     * 以下の実装を提供している。
+     * <ul>
+     * <li>{@link RegexAccessLogParserFactory}: アクセスログを1行ずつ読み込み、正規表現で解析する。</li>
+     * <li>{@link please.change.me.statistics.parser.MappedAccessLogParserFactory}:
+     * アクセスログをメモリにマッピングし、バイト列のまま解析する。
+     * (使用条件は、{@link please.change.me.statistics.parser.MappedAccessLogParser}を参照)</li>
+     * </ul>
+     * なお、本設定値を省略した場合は{@link RegexAccessLogParserFactory}を使用する。
+     *
+     * @param accessLogParserFactory アクセスログの解析オブジェクトのファクトリ
+     */
+    public void setAccessLogParserFactory(AccessLogParserFactory accessLogParserFactory) {
+        this.accessLogParserFactory = accessLogParserFactory;
+    }
+
+    /**
+     * 圧縮されたアクセスログの展開オブジェクトを取得する。
+     *
+     * @return 圧縮されたアクセスログの展開オブジェクト
+     */
+    public List<AccessLogDecompressor> getAccessLogDecompressors() {
+        return accessLogDecompressors;
+    }
+
+    /**
+     * 圧縮されたアクセスログの展開オブジェクトを設定する。
+     * <p/>
+     * ファイル名の拡張子が{@link AccessLogDecompressor#getSuffix()}に一致するアクセスログは、
+     * 展開オブジェクトで展開しながら解析する。(展開したファイルはディスクに出力しない)
+     * gzip以外の圧縮形式(zstdなど)を解析する場合は、{@link AccessLogDecompressor}の実装クラスを追加すること。
+     * <p/>
+     * なお、本設定値を省略した場合は{@link GzipAccessLogDecompressor}(拡張子「.gz」)のみを使用する。
+     *
+     * @param accessLogDecompressors 圧縮されたアクセスログの展開オブジェクト
+     */
+    public void setAccessLogDecompressors(List<AccessLogDecompressor> accessLogDecompressors) {
+        this.accessLogDecompressors = Collections.unmodifiableList(accessLogDecompressors);
+    }
+
+    /**
+     * アクセスログを並列に解析するスレッド数を取得する。
+     *
+     * @return アクセスログを並列に解析するスレッド数
+     */
+    public int getAccessLogParseParallelism() {
+        return accessLogParseParallelism;
+    }
+
+    /**
+     * アクセスログを並列に解析するスレッド数を設定する。
+     * <p/>
+     * 2以上を設定した場合は、アクセスログをファイル毎に並列に解析する。(圧縮されたアクセスログは、ファイル毎に展開する)
+     * 並列に解析した場合も、リクエスト情報CSVへの出力及び集計は、アクセスログの古い順(ファイル名の長い順)に行う。
+     * <p/>
+     * なお、本設定値を省略した場合は1(アクセスログを1ファイルずつ順に解析する)となる。
+     *
+     * @param accessLogParseParallelism アクセスログを並列に解析するスレッド数
+     */
+    public void setAccessLogParseParallelism(int accessLogParseParallelism) {
+        this.accessLogParseParallelism = accessLogParseParallelism;
+    }
+
+    /**
+     * アクセスログを追跡する場合の集計結果CSVの格納先ディレクトリの論理名を取得する。
+     *
+     * @return 集計結果CSVの格納先ディレクトリの論理名
+     */
+    public String getTailSummaryBaseName() {
+        return tailSummaryBaseName;
+    }
+
+    /**
+     * アクセスログを追跡する場合の集計結果CSVの格納先ディレクトリの論理名を設定する。
+     * <p/>
+     * {@link please.change.me.statistics.action.AccessLogTailAction}を実行する場合は、必ず設定すること。
+     * 日次の集計結果CSVを上書きしないよう、{@link #setRequestInfoSummaryBaseName(String)}とは異なるディレクトリを設定すること。
+     *
+     * @param tailSummaryBaseName 集計結果CSVの格納先ディレクトリの論理名
+     */
+    public void setTailSummaryBaseName(String tailSummaryBaseName) {
+        this.tailSummaryBaseName = tailSummaryBaseName;
+    }
+
+    /**
+     * アクセスログを追跡する場合の読み込み間隔(ミリ秒)を取得する。
+     *
+     * @return 読み込み間隔(ミリ秒)
+     */
+    public long getTailPollInterval() {
+        return tailPollInterval;
+    }
+
+    /**
+     * アクセスログを追跡する場合の読み込み間隔(ミリ秒)を設定する。
+     * <p/>
+     * なお、本設定値を省略した場合は1000(1秒)となる。
+     *
+     * @param tailPollInterval 読み込み間隔(ミリ秒)
+     */
+    public void setTailPollInterval(long tailPollInterval) {
+        this.tailPollInterval = tailPollInterval;
+    }
+
+    /**
+     * アクセスログを追跡する場合の集計結果CSVの出力間隔(ミリ秒)を取得する。
+     *
+     * @return 集計結果CSVの出力間隔(ミリ秒)
+     */
+    public long getTailFlushInterval() {
+        return tailFlushInterval;
+    }
+
+    /**
+     * アクセスログを追跡する場合の集計結果CSVの出力間隔(ミリ秒)を設定する。
+     * <p/>
+     * 集計結果CSVの出力に合わせて、チェックポイント(アクセスログの読み込み位置及び集計結果)を保存する。
+     * なお、本設定値を省略した場合は60000(1分)となる。
+     *
+     * @param tailFlushInterval 集計結果CSVの出力間隔(ミリ秒)
+     */
+    public void setTailFlushInterval(long tailFlushInterval) {
+        this.tailFlushInterval = tailFlushInterval;
+    }
+
+    /**
+     * アクセスログを追跡する場合に、分単位の集計結果を保持する期間(分)を取得する。
+     *
+     * @return 分単位の集計結果を保持する期間(分)
+     */
+    public int getTailMinuteRetention() {
+        return tailMinuteRetention;
+    }
+
+    /**
+     * アクセスログを追跡する場合に、分単位の集計結果を保持する期間(分)を設定する。
+     * <p/>
+     * 最新のリクエスト情報のログ出力日時から、本設定値の期間内の分単位の集計結果のみを保持及び出力する。
+     * なお、本設定値を省略した場合は60(1時間)となる。
+     *
+     * @param tailMinuteRetention 分単位の集計結果を保持する期間(分)
+     */
+    public void setTailMinuteRetention(int tailMinuteRetention) {
+        this.tailMinuteRetention = tailMinuteRetention;
+    }
+
+    /**
+     * アクセスログを追跡する最大時間(ミリ秒)を取得する。
+     *
+     * @return アクセスログを追跡する最大時間(ミリ秒)
+     */
+    public long getTailMaxDuration() {
+        return tailMaxDuration;
+    }
+
+    /**
+     * アクセスログを追跡する最大時間(ミリ秒)を設定する。
+     * <p/>
+     * 本設定値の時間が経過した場合は、集計結果CSVを出力して終了する。
+     * なお、本設定値を省略した場合は0(停止ファイルが作成されるまで追跡を続ける)となる。
+     *
+     * @param tailMaxDuration アクセスログを追跡する最大時間(ミリ秒)
+     */
+    public void setTailMaxDuration(long tailMaxDuration) {
+        this.tailMaxDuration = tailMaxDuration;
+    }
+
+    /**
+     * アクセスログの追跡を停止するための停止ファイルのパスを取得する。
+     *
+     * @return 停止ファイルのパス
+     */
+    public String getTailStopFile() {
+        return tailStopFile;
+    }
+
+    /**
+     * アクセスログの追跡を停止するための停止ファイルのパスを設定する。
+     * <p/>
+     * 本設定値のファイルが作成された場合は、集計結果CSVを出力して終了する。(停止ファイルは終了時に削除する)
+     *
+     * @param tailStopFile 停止ファイルのパス
+     */
+    public void setTailStopFile(String tailStopFile) {
+        this.tailStopFile = tailStopFile;
+    }
+}
@@ -0,0 +1,136 @@
+package please.change.me.statistics.aggregate;
+
+import java.util.HashMap;
+import java.util.TreeMap;
+
+import please.change.me.statistics.action.AggregateUnit;
+
+/**
+ * 集計単位のキー値を保持するクラス。
+ * <p/>
+ * 本クラスは、Mapのキーとして使用されるクラスである。
+ * 集計結果は{@link TreeMap}にキー順に格納し、集計セル({@link RollupResultHolder})は{@link HashMap}に格納するため、
+ * {@link #compareTo(AggregateKey)}と一貫性のある{@link #equals(Object)}及び{@link #hashCode()}を実装する。
+ * <p/>
+ * キー値は、以下の4種類
+ * <ul>
+ * <li>リクエストID</li>
+ * <li>プロセス名</li>
+ * <li>集計単位</li>
+ * <li>集計単位値</li>
+ * </ul>
+ */
+public final class AggregateKey implements Comparable<AggregateKey> {
+
+    /** リクエストID */
+    private final String requestId;
+
+    /** プロセス名 */
+    private final String processName;
+
+    /** 集計単位 */
+    private final AggregateUnit aggregateUnit;
+
+    /** 集計単位値 */
+    private final int aggregateUnitValue;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param requestId リクエストID
+     * @param processName プロセス名
+     * @param aggregateUnit 集計単位
+     * @param aggregateUnitValue 値(集計単位の中で、どの値の集計値か)
+     */
+    public AggregateKey(String requestId, String processName,
+            AggregateUnit aggregateUnit, int aggregateUnitValue) {
+        this.requestId = requestId;
+        this.processName = processName;
+        this.aggregateUnit = aggregateUnit;
+        this.aggregateUnitValue = aggregateUnitValue;
+    }
+
+    /**
+     * リクエストIDを取得する。
+     *
+     * @return リクエストID
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * プロセス名を取得する。
+     *
+     * @return プロセス名
+     */
+    public String getProcessName() {
+        return processName;
+    }
+
+    /**
+     * 集計単位を取得する。
+     *
+     * @return 集計単位
+     */
+    public AggregateUnit getAggregateUnit() {
+        return aggregateUnit;
+    }
+
+    /**
+     * 集計単位値を取得する。
+     *
+     * @return 集計単位値
+     */
+    public int getAggregateUnitValue() {
+        return aggregateUnitValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * リクエストID->集計値->プロセス名->集計単位の順で比較
+     */
+    public int compareTo(AggregateKey o) {
+        int result = requestId.compareTo(o.requestId);
+        if (result == 0) {
+            result = aggregateUnitValue - o.aggregateUnitValue;
+        }
+        if (result == 0) {
+            result = processName.compareTo(o.processName);
+        }
+        if (result == 0) {
+            result = aggregateUnit.compareTo(o.aggregateUnit);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * リクエストID、プロセス名、集計単位及び集計単位値が全て等しい場合に等価とする。
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AggregateKey)) {
+            return false;
+        }
+        AggregateKey other = (AggregateKey) o;
+        return aggregateUnitValue == other.aggregateUnitValue
+                && aggregateUnit == other.aggregateUnit
+                && requestId.equals(other.requestId)
+                && processName.equals(other.processName);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        int result = requestId.hashCode();
+        result = 31 * result + processName.hashCode();
+        result = 31 * result + aggregateUnit.ordinal();
+        return 31 * result + aggregateUnitValue;
+    }
+}
@@ -0,0 +1,224 @@
+package please.change.me.statistics.aggregate;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import please.change.me.statistics.action.AggregateUnit;
+
+/**
+ * 集計単位毎の集計結果を保持するクラス。
+ * <p/>
+ * 年月単位の集計結果と、日、時間、5分、分単位の集計結果を、それぞれ集計単位のキー順に保持する。
+ * また、集計結果CSVをプロセス名単位に出力するため、集計したリクエスト情報のプロセス名一覧を保持する。
+ * 時間毎のピークを算出する場合は、1分毎のリクエスト数({@link MinuteRequestCounts})も合わせて保持する。
+ * <p/>
+ * 本クラスはスレッドセーフではない。
+ * 複数スレッドで集計を行う場合は、スレッド毎にインスタンスを生成し、集計後に{@link #merge(AggregateResultHolder)}で合算すること。
+ */
+public class AggregateResultHolder {
+
+    /** 日、時間、5分、分単位の集計結果を保持するMapオブジェクト */
+    private final Map<AggregateKey, Aggregator> aggregateResults = new TreeMap<>();
+
+    /** 年月集計結果を保持するMapオブジェクト */
+    private final Map<AggregateKey, Aggregator> ymAggregateResults = new TreeMap<>();
+
+    /** プロセス名一覧 */
+    private final Set<String> processNames = new HashSet<>();
+
+    /** 1分毎のリクエスト数 */
+    private final MinuteRequestCounts minuteRequestCounts = new MinuteRequestCounts();
+
+    /** 集計オブジェクトのファクトリ */
+    private final AggregatorFactory aggregatorFactory;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param aggregatorFactory 集計オブジェクトのファクトリ
+     */
+    public AggregateResultHolder(AggregatorFactory aggregatorFactory) {
+        this.aggregatorFactory = aggregatorFactory;
+    }
+
+    /**
+     * 集計対象のリクエスト情報を追加する。
+     *
+     * @param requestId リクエストID
+     * @param processName プロセス名
+     * @param aggregateUnit 集計単位
+     * @param unitValue 集計基準値
+     * @param executionTime 処理時間
+     * @param thresholdOver 閾値超のリクエストか否か
+     */
+    public void add(String requestId, String processName, AggregateUnit aggregateUnit, int unitValue,
+            int executionTime, boolean thresholdOver) {
+        add(requestId, processName, aggregateUnit, unitValue, executionTime, thresholdOver, 0);
+    }
+
+    /**
+     * 集計対象のリクエスト情報を、ステータスコードと合わせて追加する。
+     *
+     * @param requestId リクエストID
+     * @param processName プロセス名
+     * @param aggregateUnit 集計単位
+     * @param unitValue 集計基準値
+     * @param executionTime 処理時間
+     * @param thresholdOver 閾値超のリクエストか否か
+     * @param statusCode ステータスコード(分類毎のリクエスト数に計上しない場合は0)
+     */
+    public void add(String requestId, String processName, AggregateUnit aggregateUnit, int unitValue,
+            int executionTime, boolean thresholdOver, int statusCode) {
+
+        // プロセス名を保持する。
+        processNames.add(processName);
+
+        // 集計単位のキー
+        AggregateKey key = new AggregateKey(requestId, processName, aggregateUnit, unitValue);
+        Map<AggregateKey, Aggregator> holder = holderOf(aggregateUnit);
+
+        // 集計結果は、集計単位のキー順に出力するためTreeMapで保持する。(AggregateKeyのcompareToはequalsと一貫性がある)
+        // 本インスタンスはスレッド毎に生成するため、排他制御を行わずに集計オブジェクトを取得・登録する。
+        // (スレッド毎の集計結果は、集計後にmergeで合算する)
+        Aggregator aggregator = holder.get(key);
+        if (aggregator == null) {
+            aggregator = aggregatorFactory.create();
+            holder.put(key, aggregator);
+        }
+        aggregator.addRequestData(executionTime, thresholdOver, statusCode);
+    }
+
+    /**
+     * 他のインスタンスが保持する集計結果を、本インスタンスに合算する。
+     * <p/>
+     * 合算後は、合算元のインスタンスを使用しないこと。(合算元の集計オブジェクトを本インスタンスで引き継ぐため)
+     *
+     * @param other 合算元のインスタンス
+     */
+    public void merge(AggregateResultHolder other) {
+        processNames.addAll(other.processNames);
+        mergeInto(aggregateResults, other.aggregateResults);
+        mergeInto(ymAggregateResults, other.ymAggregateResults);
+        minuteRequestCounts.merge(other.minuteRequestCounts);
+    }
+
+    /**
+     * 集計単位の集計結果を、本インスタンスに合算する。
+     * <p/>
+     * 合算後は、合算元の集計オブジェクトを使用しないこと。(本インスタンスで引き継ぐ場合があるため)
+     *
+     * @param key 集計単位のキー
+     * @param aggregator 合算元の集計オブジェクト
+     */
+    public void merge(AggregateKey key, Aggregator aggregator) {
+        processNames.add(key.getProcessName());
+        Map<AggregateKey, Aggregator> holder = holderOf(key.getAggregateUnit());
+        Aggregator current = holder.get(key);
+        if (current == null) {
+            holder.put(key, aggregator);
+        } else {
+            current.merge(aggregator);
+        }
+    }
+
+    /**
+     * 集計単位の集計結果に、他の集計オブジェクトの集計結果を加算する。
+     * <p/>
+     * {@link #merge(AggregateKey, Aggregator)}とは異なり加算元の集計オブジェクトを引き継がないため、
+     * 1つの集計オブジェクトを複数の集計単位に加算できる。(より小さな集計単位の集計結果から、集計結果を導出する場合に使用する)
+     *
+     * @param key 集計単位のキー
+     * @param aggregator 加算元の集計オブジェクト
+     */
+    public void rollup(AggregateKey key, Aggregator aggregator) {
+        processNames.add(key.getProcessName());
+        Map<AggregateKey, Aggregator> holder = holderOf(key.getAggregateUnit());
+        Aggregator current = holder.get(key);
+        if (current == null) {
+            current = aggregatorFactory.create();
+            holder.put(key, current);
+        }
+        current.merge(aggregator);
+    }
+
+    /**
+     * 集計結果を合算する。
+     *
+     * @param target 合算先
+     * @param source 合算元
+     */
+    private static void mergeInto(Map<AggregateKey, Aggregator> target, Map<AggregateKey, Aggregator> source) {
+        for (Map.Entry<AggregateKey, Aggregator> entry : source.entrySet()) {
+            Aggregator aggregator = target.get(entry.getKey());
+            if (aggregator == null) {
+                target.put(entry.getKey(), entry.getValue());
+            } else {
+                aggregator.merge(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 条件に一致する集計単位の集計結果を削除する。
+     * <p/>
+     * 集計期間外となった集計結果を破棄する場合に使用する。(プロセス名一覧及び1分毎のリクエスト数は変更しない)
+     *
+     * @param filter 削除する集計単位の条件
+     */
+    public void removeIf(Predicate<AggregateKey> filter) {
+        ymAggregateResults.keySet().removeIf(filter);
+        aggregateResults.keySet().removeIf(filter);
+    }
+
+    /**
+     * 集計単位に対応する集計結果のMapを取得する。
+     *
+     * @param aggregateUnit 集計単位
+     * @return 集計結果のMap
+     */
+    private Map<AggregateKey, Aggregator> holderOf(AggregateUnit aggregateUnit) {
+        return aggregateUnit == AggregateUnit.YEAR_MONTH ? ymAggregateResults : aggregateResults;
+    }
+
+    /**
+     * 年月単位の集計結果を、集計単位のキー順に取得する。
+     *
+     * @return 年月単位の集計結果
+     */
+    public Map<AggregateKey, Aggregator> getYmAggregateResults() {
+        return Collections.unmodifiableMap(ymAggregateResults);
+    }
+
+    /**
+     * 日、時間、5分、分単位の集計結果を、集計単位のキー順に取得する。
+     *
+     * @return 日、時間、5分、分単位の集計結果
+     */
+    public Map<AggregateKey, Aggregator> getAggregateResults() {
+        return Collections.unmodifiableMap(aggregateResults);
+    }
+
+    /**
+     * プロセス名一覧を取得する。
+     *
+     * @return プロセス名一覧
+     */
+    public Set<String> getProcessNames() {
+        return Collections.unmodifiableSet(processNames);
+    }
+
+    /**
+     * 1分毎のリクエスト数を取得する。
+     * <p/>
+     * 返却したオブジェクトへの加算は、本インスタンスの1分毎のリクエスト数に反映される。
+     *
+     * @return 1分毎のリクエスト数
+     */
+    public MinuteRequestCounts getMinuteRequestCounts() {
+        return minuteRequestCounts;
+    }
+}
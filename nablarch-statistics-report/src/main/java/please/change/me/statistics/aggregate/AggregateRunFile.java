@@ -0,0 +1,204 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+
+import please.change.me.statistics.action.AggregateUnit;
+
+/**
+ * 集計セルをキー順に退避するバイナリ形式の一時ファイル(ラン)。
+ * <p/>
+ * {@link RollupResultHolder}で、メモリ上に保持する集計セルの数が上限に達した場合に、集計セルを退避するために使用する。
+ * 各ランは集計セルのキー順に出力されているため、複数のランを{@link Reader}で先頭から読み込むことで、
+ * 全てのランを保持することなくキー順にマージできる。
+ * マージした結果は、{@link Writer}で1つのランに出力できる。(ランの数が多い場合に、段階的にマージするために使用する)
+ * <p/>
+ * ファイルの形式は以下のとおり。
+ * <pre>
+ * マジックナンバー(int)
+ * [後続あり(boolean。true)、リクエストID(UTF)、プロセス名(UTF)、集計単位(byte)、集計単位値(int)、
+ *  集計結果({@link Aggregator#writeTo(java.io.DataOutput)}の形式)] * 集計セル数
+ * 後続なし(boolean。false)
+ * </pre>
+ */
+final class AggregateRunFile {
+
+    /** マジックナンバー */
+    private static final int MAGIC = 0x4E53524E;
+
+    /** 入出力のバッファサイズ */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** 隠蔽コンストラクタ。 */
+    private AggregateRunFile() {
+    }
+
+    /**
+     * 集計セルをランに出力する。
+     *
+     * @param directory ランの格納先ディレクトリ
+     * @param cells キー順の集計セル
+     * @return 出力したラン
+     * @throws IOException 出力に失敗した場合
+     */
+    static File write(File directory, SortedMap<AggregateKey, Aggregator> cells) throws IOException {
+        Writer writer = new Writer(directory);
+        try {
+            for (Map.Entry<AggregateKey, Aggregator> entry : cells.entrySet()) {
+                writer.write(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            writer.close();
+        }
+        return writer.getFile();
+    }
+
+    /**
+     * 集計セルをキー順にランに出力するクラス。
+     * <p/>
+     * 複数のランをマージした結果を、全ての集計セルを保持することなく1つのランに出力するために使用する。
+     * 集計セルは、キー順に出力すること。
+     */
+    static final class Writer implements Closeable {
+
+        /** 出力先のラン */
+        private final File file;
+
+        /** 出力ストリーム */
+        private final DataOutputStream out;
+
+        /**
+         * コンストラクタ。
+         * <p/>
+         * 指定されたディレクトリに、ランを新規に作成する。
+         *
+         * @param directory ランの格納先ディレクトリ
+         * @throws IOException ランの作成に失敗した場合
+         */
+        Writer(File directory) throws IOException {
+            file = File.createTempFile("ROLLUP_", ".run", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+        }
+
+        /**
+         * 出力先のランを取得する。
+         *
+         * @return 出力先のラン
+         */
+        File getFile() {
+            return file;
+        }
+
+        /**
+         * 集計セルを出力する。
+         *
+         * @param key 集計セルのキー
+         * @param aggregator 集計セルの集計オブジェクト
+         * @throws IOException 出力に失敗した場合
+         */
+        void write(AggregateKey key, Aggregator aggregator) throws IOException {
+            out.writeBoolean(true);
+            out.writeUTF(key.getRequestId());
+            out.writeUTF(key.getProcessName());
+            out.writeByte(key.getAggregateUnit().ordinal());
+            out.writeInt(key.getAggregateUnitValue());
+            aggregator.writeTo(out);
+        }
+
+        /**
+         * ランの終端を出力し、ランを閉じる。
+         *
+         * @throws IOException 出力に失敗した場合
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                out.writeBoolean(false);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * ランを先頭から順に読み込むクラス。
+     * <p/>
+     * {@link #next()}で次の集計セルのキーを読み込み、{@link #readInto(Aggregator)}でその集計結果を読み込む。
+     * 集計結果を読み込む前に、次の集計セルのキーを読み込むことはできない。
+     */
+    static final class Reader implements Closeable {
+
+        /** 集計単位 */
+        private static final AggregateUnit[] UNITS = AggregateUnit.values();
+
+        /** 入力ストリーム */
+        private final DataInputStream in;
+
+        /** 読み込み中の集計セルのキー */
+        private AggregateKey key;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param file ラン
+         * @throws IOException 読み込みに失敗した場合、またはランの形式ではない場合
+         */
+        Reader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+            if (in.readInt() != MAGIC) {
+                in.close();
+                throw new IOException("unsupported aggregate run file. file = [" + file.getAbsolutePath() + ']');
+            }
+        }
+
+        /**
+         * 次の集計セルのキーを読み込む。
+         *
+         * @return 次の集計セルが存在する場合はtrue
+         * @throws IOException 読み込みに失敗した場合
+         */
+        boolean next() throws IOException {
+            if (!in.readBoolean()) {
+                key = null;
+                return false;
+            }
+            key = new AggregateKey(in.readUTF(), in.readUTF(), UNITS[in.readByte()], in.readInt());
+            return true;
+        }
+
+        /**
+         * 読み込み中の集計セルのキーを取得する。
+         *
+         * @return 集計セルのキー(全て読み込んだ場合はnull)
+         */
+        AggregateKey getKey() {
+            return key;
+        }
+
+        /**
+         * 読み込み中の集計セルの集計結果を読み込み、指定された集計オブジェクトに合算する。
+         *
+         * @param aggregator 合算先の集計オブジェクト
+         * @throws IOException 読み込みに失敗した場合
+         */
+        void readInto(Aggregator aggregator) throws IOException {
+            aggregator.readFrom(in);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import please.change.me.statistics.action.AggregateUnit;
+
+/**
+ * 集計結果(集計途中の状態)を永続化したバイナリ形式の状態ファイル。
+ * <p/>
+ * 集計結果と合わせて、集計元のファイル(ファイル名、サイズ、最終更新日時、チェックサム)と集計オブジェクトの実装クラス名を保持する。
+ * 集計元のファイルが変更されていないことを{@link #isValid(String, Map)}で確認した上で{@link #readInto(AggregateResultHolder, AggregatorFactory)}で
+ * 集計結果を読み込むことで、集計元のファイルを再度読み込むことなく集計結果を再利用できる。
+ * <p/>
+ * チェックサムは、集計元のファイルの先頭及び末尾の{@link #CHECKSUM_SAMPLE_SIZE}バイトのCRC32とする。
+ * 集計元のファイル全体を読み込まずに、サイズ及び最終更新日時を変えずに書き換えられた場合(コピー時に最終更新日時を引き継いだ場合等)も検出する。
+ * ただし、先頭及び末尾以外の部分のみが同じサイズで書き換えられた場合は検出できない。
+ * <p/>
+ * ファイルの形式は以下のとおり。
+ * <pre>
+ * マジックナンバー(int)、バージョン(int)
+ * 集計オブジェクトの実装クラス名(UTF)
+ * 集計元ファイル数(int)、[ファイル名(UTF)、サイズ(long)、最終更新日時(long)、チェックサム(long)] * 集計元ファイル数
+ * 集計結果の件数(int)、[リクエストID(UTF)、プロセス名(UTF)、集計単位(byte)、集計単位値(int)、
+ *                       集計結果({@link Aggregator#writeTo(java.io.DataOutput)}の形式)] * 集計結果の件数
+ * 1分毎のリクエスト数({@link MinuteRequestCounts#writeTo(java.io.DataOutput)}の形式)
+ * </pre>
+ */
+public final class AggregateStateFile {
+
+    /** マジックナンバー */
+    private static final int MAGIC = 0x4E535354;
+
+    /** ファイル形式のバージョン */
+    private static final int VERSION = 4;
+
+    /** チェックサムを算出する、集計元ファイルの先頭及び末尾のバイト数 */
+    static final int CHECKSUM_SAMPLE_SIZE = 64 * 1024;
+
+    /** 状態ファイル */
+    private final File file;
+
+    /** 集計オブジェクトの実装クラス名 */
+    private final String aggregatorName;
+
+    /** 集計元ファイル */
+    private final List<SourceFile> sourceFiles;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param file 状態ファイル
+     * @param aggregatorName 集計オブジェクトの実装クラス名
+     * @param sourceFiles 集計元ファイル
+     */
+    private AggregateStateFile(File file, String aggregatorName, List<SourceFile> sourceFiles) {
+        this.file = file;
+        this.aggregatorName = aggregatorName;
+        this.sourceFiles = sourceFiles;
+    }
+
+    /**
+     * 集計結果を状態ファイルに出力する。
+     * <p/>
+     * 一時ファイルに出力した後に置き換えるため、出力途中で異常終了した場合でも不完全な状態ファイルは残らない。
+     *
+     * @param file 状態ファイル
+     * @param aggregatorName 集計オブジェクトの実装クラス名
+     * @param sources 集計元ファイル
+     * @param holder 集計結果
+     * @throws IOException 出力に失敗した場合
+     */
+    public static void write(File file, String aggregatorName, List<File> sources, AggregateResultHolder holder)
+            throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(aggregatorName);
+            out.writeInt(sources.size());
+            for (File source : sources) {
+                out.writeUTF(source.getName());
+                out.writeLong(source.length());
+                out.writeLong(source.lastModified());
+                out.writeLong(checksumOf(source));
+            }
+            writeEntries(out, holder);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 集計結果の件数、集計結果及び1分毎のリクエスト数を出力する。
+     * <p/>
+     * 状態ファイルと同じ形式で、集計結果を他のファイルに出力する場合にも使用できる。
+     * 出力した集計結果は、{@link #readEntries(DataInput, AggregateResultHolder, AggregatorFactory)}で読み込むことができる。
+     *
+     * @param out 出力先
+     * @param holder 集計結果
+     * @throws IOException 出力に失敗した場合
+     */
+    public static void writeEntries(DataOutput out, AggregateResultHolder holder) throws IOException {
+        out.writeInt(holder.getYmAggregateResults().size() + holder.getAggregateResults().size());
+        writeEntries(out, holder.getYmAggregateResults());
+        writeEntries(out, holder.getAggregateResults());
+        holder.getMinuteRequestCounts().writeTo(out);
+    }
+
+    /**
+     * 集計結果を出力する。
+     *
+     * @param out 出力先
+     * @param results 集計結果
+     * @throws IOException 出力に失敗した場合
+     */
+    private static void writeEntries(DataOutput out, Map<AggregateKey, Aggregator> results)
+            throws IOException {
+        for (Map.Entry<AggregateKey, Aggregator> entry : results.entrySet()) {
+            AggregateKey key = entry.getKey();
+            out.writeUTF(key.getRequestId());
+            out.writeUTF(key.getProcessName());
+            out.writeByte(key.getAggregateUnit().ordinal());
+            out.writeInt(key.getAggregateUnitValue());
+            entry.getValue().writeTo(out);
+        }
+    }
+
+    /**
+     * 状態ファイルのヘッダ(集計オブジェクトの実装クラス名及び集計元ファイル)を読み込む。
+     *
+     * @param file 状態ファイル
+     * @return 状態ファイル
+     * @throws IOException 読み込みに失敗した場合、または状態ファイルの形式ではない場合
+     */
+    public static AggregateStateFile open(File file) throws IOException {
+        try (DataInputStream in = openStream(file)) {
+            return readHeader(file, in);
+        }
+    }
+
+    /**
+     * 状態ファイルを開く。
+     *
+     * @param file 状態ファイル
+     * @return 入力ストリーム
+     * @throws IOException ファイルを開けなかった場合
+     */
+    private static DataInputStream openStream(File file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    }
+
+    /**
+     * 状態ファイルのヘッダを読み込む。
+     *
+     * @param file 状態ファイル
+     * @param in 入力ストリーム
+     * @return 状態ファイル
+     * @throws IOException 読み込みに失敗した場合、または状態ファイルの形式ではない場合
+     */
+    private static AggregateStateFile readHeader(File file, DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("unsupported aggregate state file. file = [" + file.getAbsolutePath() + ']');
+        }
+        String aggregatorName = in.readUTF();
+        int sourceCount = in.readInt();
+        List<SourceFile> sourceFiles = new ArrayList<>(sourceCount);
+        for (int i = 0; i < sourceCount; i++) {
+            sourceFiles.add(new SourceFile(in.readUTF(), in.readLong(), in.readLong(), in.readLong()));
+        }
+        return new AggregateStateFile(file, aggregatorName, sourceFiles);
+    }
+
+    /**
+     * 状態ファイルの集計結果を、指定された集計結果に合算する。
+     *
+     * @param holder 合算先の集計結果
+     * @param factory 集計オブジェクトのファクトリ
+     * @throws IOException 読み込みに失敗した場合
+     */
+    public void readInto(AggregateResultHolder holder, AggregatorFactory factory) throws IOException {
+        try (DataInputStream in = openStream(file)) {
+            readHeader(file, in);
+            readEntries(in, holder, factory);
+        }
+    }
+
+    /**
+     * {@link #writeEntries(DataOutput, AggregateResultHolder)}で出力した集計結果を読み込み、指定された集計結果に合算する。
+     *
+     * @param in 入力元
+     * @param holder 合算先の集計結果
+     * @param factory 集計オブジェクトのファクトリ
+     * @throws IOException 読み込みに失敗した場合
+     */
+    public static void readEntries(DataInput in, AggregateResultHolder holder, AggregatorFactory factory)
+            throws IOException {
+        AggregateUnit[] units = AggregateUnit.values();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            AggregateKey key = new AggregateKey(in.readUTF(), in.readUTF(), units[in.readByte()], in.readInt());
+            Aggregator aggregator = factory.create();
+            aggregator.readFrom(in);
+            holder.merge(key, aggregator);
+        }
+        holder.getMinuteRequestCounts().readFrom(in);
+    }
+
+    /**
+     * 状態ファイルの集計結果が再利用できるか否かを判定する。
+     * <p/>
+     * 以下の条件を全て満たす場合に再利用できる。
+     * <ul>
+     * <li>集計オブジェクトの実装クラス名が一致すること</li>
+     * <li>全ての集計元ファイルが存在し、サイズ、最終更新日時及びチェックサムが出力時から変更されていないこと</li>
+     * </ul>
+     * 集計元ファイルのチェックサムを算出できなかった場合は、再利用できないと判定する。
+     *
+     * @param aggregatorName 集計オブジェクトの実装クラス名
+     * @param files 現在のファイル(キーはファイル名)
+     * @return 再利用できる場合はtrue
+     */
+    public boolean isValid(String aggregatorName, Map<String, File> files) {
+        if (!this.aggregatorName.equals(aggregatorName)) {
+            return false;
+        }
+        for (SourceFile sourceFile : sourceFiles) {
+            File current = files.get(sourceFile.name);
+            if (current == null
+                    || current.length() != sourceFile.length
+                    || current.lastModified() != sourceFile.lastModified) {
+                return false;
+            }
+        }
+        for (SourceFile sourceFile : sourceFiles) {
+            try {
+                if (checksumOf(files.get(sourceFile.name)) != sourceFile.checksum) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ファイルの先頭及び末尾の{@link #CHECKSUM_SAMPLE_SIZE}バイトから、チェックサム(CRC32)を算出する。
+     * <p/>
+     * ファイルのサイズが{@link #CHECKSUM_SAMPLE_SIZE}の2倍以下の場合は、ファイル全体から算出する。
+     *
+     * @param file ファイル
+     * @return チェックサム
+     * @throws IOException 読み込みに失敗した場合
+     */
+    static long checksumOf(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[CHECKSUM_SAMPLE_SIZE];
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long length = in.length();
+            int headLength = (int) Math.min(length, CHECKSUM_SAMPLE_SIZE);
+            in.readFully(buffer, 0, headLength);
+            crc.update(buffer, 0, headLength);
+            long tailStart = Math.max(CHECKSUM_SAMPLE_SIZE, length - CHECKSUM_SAMPLE_SIZE);
+            if (tailStart < length) {
+                int tailLength = (int) (length - tailStart);
+                in.seek(tailStart);
+                in.readFully(buffer, 0, tailLength);
+                crc.update(buffer, 0, tailLength);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * 集計オブジェクトの実装クラス名を取得する。
+     *
+     * @return 集計オブジェクトの実装クラス名
+     */
+    public String getAggregatorName() {
+        return aggregatorName;
+    }
+
+    /**
+     * 集計元ファイルのファイル名を取得する。
+     *
+     * @return 集計元ファイルのファイル名
+     */
+    public List<String> getSourceFileNames() {
+        List<String> names = new ArrayList<>(sourceFiles.size());
+        for (SourceFile sourceFile : sourceFiles) {
+            names.add(sourceFile.name);
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * 状態ファイルを取得する。
+     *
+     * @return 状態ファイル
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 集計元ファイルの情報を保持するクラス。
+     */
+    private static final class SourceFile {
+
+        /** ファイル名 */
+        private final String name;
+
+        /** サイズ */
+        private final long length;
+
+        /** 最終更新日時 */
+        private final long lastModified;
+
+        /** チェックサム */
+        private final long checksum;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param name ファイル名
+         * @param length サイズ
+         * @param lastModified 最終更新日時
+         * @param checksum チェックサム
+         */
+        private SourceFile(String name, long length, long lastModified, long checksum) {
+            this.name = name;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 集計単位毎の処理時間とリクエスト数を集計するインタフェース。
+ * <p/>
+ * 以下の情報を集計結果として保持する。
+ * <ul>
+ * <li>リクエスト数</li>
+ * <li>閾値を超えた処理時間のリクエスト数</li>
+ * <li>処理時間の平均</li>
+ * <li>処理時間の最大値</li>
+ * <li>処理時間の中央値及びパーセンタイル値</li>
+ * <li>処理時間が指定値以下のリクエスト数(処理時間のヒストグラム)</li>
+ * <li>ステータスコードの分類(1xx～5xx)毎のリクエスト数</li>
+ * </ul>
+ * 中央値、パーセンタイル値及び処理時間が指定値以下のリクエスト数が正確な値となるか、近似値となるかは実装クラスに依存する。
+ * <p/>
+ * 同一の実装クラス同士であれば、{@link #merge(Aggregator)}で集計結果を合算できる。
+ * また、{@link #writeTo(DataOutput)}で出力した集計結果は、{@link #readFrom(DataInput)}で読み込んで合算できる。
+ * 本インタフェースの実装クラスはスレッドセーフではない。
+ */
+public interface Aggregator {
+
+    /**
+     * 集計対象のリクエスト情報を追加する。
+     *
+     * @param executionTime 処理時間
+     * @param thresholdOver 閾値超のリクエストか否か
+     */
+    void addRequestData(int executionTime, boolean thresholdOver);
+
+    /**
+     * 集計対象のリクエスト情報を、ステータスコードと合わせて追加する。
+     * <p/>
+     * ステータスコードが100以上600未満の場合は、ステータスコードの分類毎のリクエスト数に計上する。
+     * (それ以外のステータスコードは、いずれの分類にも計上しない)
+     *
+     * @param executionTime 処理時間
+     * @param thresholdOver 閾値超のリクエストか否か
+     * @param statusCode ステータスコード
+     */
+    void addRequestData(int executionTime, boolean thresholdOver, int statusCode);
+
+    /**
+     * 他の集計オブジェクトの集計結果を、本オブジェクトに合算する。
+     *
+     * @param other 合算対象の集計オブジェクト(本オブジェクトと同一の実装クラスであること)
+     * @throws IllegalArgumentException 実装クラスが異なる場合
+     */
+    void merge(Aggregator other);
+
+    /**
+     * リクエスト数を取得する。
+     *
+     * @return リクエスト数
+     */
+    int getRequestCount();
+
+    /**
+     * 閾値超のリクエスト数を取得する。
+     *
+     * @return 閾値超のリクエスト数
+     */
+    int getThresholdOverCount();
+
+    /**
+     * 平均処理時間を取得する。
+     *
+     * @return 平均処理時間
+     */
+    int getAverageTime();
+
+    /**
+     * 最大処理時間を取得する。
+     *
+     * @return 最大処理時間
+     */
+    int getMaxExecutionTime();
+
+    /**
+     * 中央値を取得する。
+     *
+     * @return 中央値
+     */
+    int getMedianTime();
+
+    /**
+     * 指定されたパーセンタイルの処理時間を取得する。
+     * <p/>
+     * パーセンタイル値は、最近順位法(処理時間を昇順に並べた際に、全体のpercentile%以上を含む最小の順位の値)で算出する。
+     *
+     * @param percentile パーセンタイル(0より大きく100以下)
+     * @return パーセンタイル値
+     */
+    int getPercentileTime(double percentile);
+
+    /**
+     * 処理時間が指定値以下のリクエスト数を取得する。
+     * <p/>
+     * 対数間隔の指定値毎に取得することで、処理時間のヒストグラム(累積)となる。
+     *
+     * @param executionTime 処理時間
+     * @return 処理時間が指定値以下のリクエスト数
+     */
+    int getRequestCountWithin(int executionTime);
+
+    /**
+     * ステータスコードの分類毎のリクエスト数を取得する。
+     *
+     * @param statusClass ステータスコードの分類(ステータスコードの百の位。1以上5以下)
+     * @return ステータスコードの分類に該当するリクエスト数
+     * @throws IllegalArgumentException ステータスコードの分類が範囲外の場合
+     */
+    int getStatusClassCount(int statusClass);
+
+    /**
+     * 集計結果をバイナリ形式で出力する。
+     * <p/>
+     * 出力した集計結果は、同一の実装クラス(同一の設定値)の{@link #readFrom(DataInput)}で読み込むことができる。
+     *
+     * @param out 出力先
+     * @throws IOException 出力に失敗した場合
+     */
+    void writeTo(DataOutput out) throws IOException;
+
+    /**
+     * {@link #writeTo(DataOutput)}で出力した集計結果を読み込み、本オブジェクトに合算する。
+     *
+     * @param in 入力元
+     * @throws IOException 入力に失敗した場合
+     * @throws IllegalArgumentException 出力時と設定値が異なり、合算できない場合
+     */
+    void readFrom(DataInput in) throws IOException;
+}
@@ -0,0 +1,18 @@
+package please.change.me.statistics.aggregate;
+
+/**
+ * {@link Aggregator}を生成するファクトリインタフェース。
+ * <p/>
+ * 集計処理で使用する{@link Aggregator}の実装は、本インタフェースの実装クラスを
+ * {@link please.change.me.statistics.action.settings.OnlineStatisticsDefinition#setAggregatorFactory(AggregatorFactory)}
+ * に設定することで切り替える。
+ */
+public interface AggregatorFactory {
+
+    /**
+     * 新しい集計オブジェクトを生成する。
+     *
+     * @return 集計オブジェクト
+     */
+    Aggregator create();
+}
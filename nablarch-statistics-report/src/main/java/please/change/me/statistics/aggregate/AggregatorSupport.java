@@ -0,0 +1,256 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * {@link Aggregator}の実装をサポートする抽象クラス。
+ * <p/>
+ * リクエスト数、閾値超のリクエスト数、処理時間の合計及び最大値、ステータスコードの分類毎のリクエスト数の集計を行う。
+ * 処理時間の分布(中央値、パーセンタイル値、処理時間が指定値以下のリクエスト数の算出に必要な情報)の保持はサブクラスで行う。
+ * <p/>
+ * 集計結果のバイナリ形式は、リクエスト数、閾値超のリクエスト数、処理時間の合計、最大処理時間、
+ * ステータスコードの分類毎のリクエスト数(可変長)の後ろに、サブクラスが出力する処理時間の分布を続けた形式となる。
+ */
+public abstract class AggregatorSupport implements Aggregator {
+
+    /** ステータスコードの分類の数(1xx～5xx) */
+    private static final int STATUS_CLASS_COUNT = 5;
+
+    /** 処理時間の合計 */
+    private long totalExecutionTime;
+
+    /** 閾値超のリクエスト数 */
+    private int thresholdOverCount;
+
+    /** リクエスト数 */
+    private int requestCount;
+
+    /** 最大処理時間 */
+    private int maxExecutionTime;
+
+    /** ステータスコードの分類毎のリクエスト数(1xxが先頭) */
+    private final int[] statusClassCounts = new int[STATUS_CLASS_COUNT];
+
+    /** {@inheritDoc} */
+    @Override
+    public void addRequestData(int executionTime, boolean thresholdOver, int statusCode) {
+        addRequestData(executionTime, thresholdOver);
+        if (statusCode >= 100 && statusCode < (STATUS_CLASS_COUNT + 1) * 100) {
+            statusClassCounts[statusCode / 100 - 1]++;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addRequestData(int executionTime, boolean thresholdOver) {
+        requestCount++;
+        if (thresholdOver) {
+            thresholdOverCount++;
+        }
+        maxExecutionTime = Math.max(maxExecutionTime, executionTime);
+        totalExecutionTime += executionTime;
+        addExecutionTime(executionTime);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void merge(Aggregator other) {
+        if (other.getClass() != getClass()) {
+            throw new IllegalArgumentException("can not merge different aggregator. "
+                    + "this = [" + getClass().getName() + "], other = [" + other.getClass().getName() + ']');
+        }
+        AggregatorSupport support = (AggregatorSupport) other;
+        requestCount += support.requestCount;
+        thresholdOverCount += support.thresholdOverCount;
+        maxExecutionTime = Math.max(maxExecutionTime, support.maxExecutionTime);
+        totalExecutionTime += support.totalExecutionTime;
+        for (int i = 0; i < STATUS_CLASS_COUNT; i++) {
+            statusClassCounts[i] += support.statusClassCounts[i];
+        }
+        mergeExecutionTimes(support);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(requestCount);
+        out.writeInt(thresholdOverCount);
+        out.writeLong(totalExecutionTime);
+        out.writeInt(maxExecutionTime);
+        for (int count : statusClassCounts) {
+            writeVarLong(out, count);
+        }
+        writeExecutionTimes(out);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void readFrom(DataInput in) throws IOException {
+        requestCount += in.readInt();
+        thresholdOverCount += in.readInt();
+        totalExecutionTime += in.readLong();
+        maxExecutionTime = Math.max(maxExecutionTime, in.readInt());
+        for (int i = 0; i < STATUS_CLASS_COUNT; i++) {
+            statusClassCounts[i] += (int) readVarLong(in);
+        }
+        readExecutionTimes(in);
+    }
+
+    /**
+     * 処理時間の分布をバイナリ形式で出力する。
+     *
+     * @param out 出力先
+     * @throws IOException 出力に失敗した場合
+     */
+    protected abstract void writeExecutionTimes(DataOutput out) throws IOException;
+
+    /**
+     * {@link #writeExecutionTimes(DataOutput)}で出力した処理時間の分布を読み込み、本オブジェクトに合算する。
+     *
+     * @param in 入力元
+     * @throws IOException 入力に失敗した場合
+     */
+    protected abstract void readExecutionTimes(DataInput in) throws IOException;
+
+    /**
+     * 処理時間の分布に処理時間を追加する。
+     *
+     * @param executionTime 処理時間
+     */
+    protected abstract void addExecutionTime(int executionTime);
+
+    /**
+     * 他の集計オブジェクトが保持する処理時間の分布を、本オブジェクトに合算する。
+     *
+     * @param other 合算対象の集計オブジェクト(本オブジェクトと同一の実装クラス)
+     */
+    protected abstract void mergeExecutionTimes(AggregatorSupport other);
+
+    /** {@inheritDoc} */
+    @Override
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getThresholdOverCount() {
+        return thresholdOverCount;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getAverageTime() {
+        return (int) (totalExecutionTime / requestCount);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getMaxExecutionTime() {
+        return maxExecutionTime;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getStatusClassCount(int statusClass) {
+        if (statusClass < 1 || statusClass > STATUS_CLASS_COUNT) {
+            throw new IllegalArgumentException("statusClass must be between 1 and " + STATUS_CLASS_COUNT
+                    + ". statusClass = [" + statusClass + ']');
+        }
+        return statusClassCounts[statusClass - 1];
+    }
+
+    /**
+     * 最近順位法で、パーセンタイル値の順位(1始まり)を算出する。
+     *
+     * @param percentile パーセンタイル(0より大きく100以下)
+     * @param size 母数
+     * @return 順位(1始まり)
+     */
+    protected static int rankOf(double percentile, int size) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be greater than 0 and less than or equal to 100. "
+                    + "percentile = [" + percentile + ']');
+        }
+        int rank = (int) Math.ceil(percentile / 100 * size);
+        return Math.max(1, Math.min(rank, size));
+    }
+
+    /**
+     * 昇順にソート済みの処理時間を出力する。
+     * <p/>
+     * 件数の後ろに、先頭の値と前の値との差分を可変長で出力する。
+     * (処理時間が密集している場合、1件あたり1～2バイト程度となる)
+     *
+     * @param out 出力先
+     * @param sortedValues 昇順にソート済みの処理時間
+     * @param length 出力する件数
+     * @throws IOException 出力に失敗した場合
+     */
+    protected static void writeSortedValues(DataOutput out, int[] sortedValues, int length) throws IOException {
+        writeVarLong(out, length);
+        long previous = 0;
+        for (int i = 0; i < length; i++) {
+            long value = sortedValues[i];
+            // 先頭の値のみ負数となる可能性があるため、ジグザグ符号化する。
+            writeVarLong(out, i == 0 ? (value << 1) ^ (value >> 63) : value - previous);
+            previous = value;
+        }
+    }
+
+    /**
+     * {@link #writeSortedValues(DataOutput, int[], int)}で出力した処理時間を読み込む。
+     *
+     * @param in 入力元
+     * @return 昇順にソート済みの処理時間
+     * @throws IOException 入力に失敗した場合
+     */
+    protected static int[] readSortedValues(DataInput in) throws IOException {
+        int[] values = new int[(int) readVarLong(in)];
+        long previous = 0;
+        for (int i = 0; i < values.length; i++) {
+            long encoded = readVarLong(in);
+            long value = i == 0 ? (encoded >>> 1) ^ -(encoded & 1) : previous + encoded;
+            values[i] = (int) value;
+            previous = value;
+        }
+        return values;
+    }
+
+    /**
+     * 0以上の値を可変長(7ビット毎、下位から順)で出力する。
+     *
+     * @param out 出力先
+     * @param value 値(0以上)
+     * @throws IOException 出力に失敗した場合
+     */
+    protected static void writeVarLong(DataOutput out, long value) throws IOException {
+        long rest = value;
+        while ((rest & ~0x7FL) != 0) {
+            out.writeByte((int) (rest & 0x7F) | 0x80);
+            rest >>>= 7;
+        }
+        out.writeByte((int) rest);
+    }
+
+    /**
+     * {@link #writeVarLong(DataOutput, long)}で出力した値を読み込む。
+     *
+     * @param in 入力元
+     * @return 値
+     * @throws IOException 入力に失敗した場合
+     */
+    protected static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed variable length value.");
+    }
+}
@@ -0,0 +1,281 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.dataformat.FieldDefinition;
+import nablarch.core.dataformat.LayoutDefinition;
+import nablarch.core.dataformat.LayoutFileParser;
+
+/**
+ * フォーマット定義ファイル(可変長)に従って、CSVファイルに1行ずつ出力するクラス。
+ * <p/>
+ * 文字エンコーディング、区切り文字、囲み文字及び改行コードはフォーマット定義ファイルに従い、
+ * {@link nablarch.common.io.FileRecordWriterHolder}で出力した場合と同じ内容を出力する。
+ * (全ての項目に囲み文字を付与する)
+ * <p/>
+ * 1行分の項目をフォーマット定義ファイルの項目順に{@link #writeString(String)}または{@link #writeNumber(int)}で出力し、
+ * {@link #endRecord()}で行を確定する。
+ * 1行分の内容は単一のバッファに組み立て、数値はボクシングせずに直接文字に変換する。
+ * (文字列項目は、囲み文字を付与した状態で符号化した結果を再利用する。)
+ * 確定した行はバッファに蓄積した後に{@link FileChannel}に出力する。
+ * <p/>
+ * 本クラスはスレッドセーフではない。
+ */
+public final class CsvFileWriter implements Closeable {
+
+    /** 出力先のバッファのサイズ */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** 符号化した結果をキャッシュする文字列項目の最大数 */
+    private static final int MAX_CACHED_VALUES = 10000;
+
+    /** フォーマット定義 */
+    private final Layout layout;
+
+    /** 出力先のチャネル */
+    private final FileChannel channel;
+
+    /** 出力先のバッファ */
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /** 文字列項目を符号化した結果(囲み文字を含む)のキャッシュ */
+    private final Map<String, byte[]> encodedValues = new HashMap<>();
+
+    /** 1行分のバッファ */
+    private byte[] row = new byte[256];
+
+    /** 1行分のバッファに出力済みのバイト数 */
+    private int rowLength;
+
+    /** 1行分のバッファに出力済みの項目数 */
+    private int fieldCount;
+
+    /**
+     * CSVファイルを開く。
+     * <p/>
+     * ファイルが既に存在する場合は上書きする。
+     *
+     * @param layout フォーマット定義
+     * @param file 出力先のCSVファイル
+     * @throws IOException ファイルを開けなかった場合
+     */
+    public CsvFileWriter(Layout layout, File file) throws IOException {
+        this.layout = layout;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * 文字列項目を出力する。
+     * <p/>
+     * 値に含まれる囲み文字は、囲み文字を重ねてエスケープする。
+     *
+     * @param value 値
+     */
+    public void writeString(String value) {
+        beginField();
+        byte[] encoded = encodedValues.get(value);
+        if (encoded == null) {
+            String quote = layout.quote;
+            String text = quote == null ? value : quote + value.replace(quote, quote + quote) + quote;
+            encoded = text.getBytes(layout.charset);
+            if (encodedValues.size() < MAX_CACHED_VALUES) {
+                encodedValues.put(value, encoded);
+            }
+        }
+        append(encoded);
+    }
+
+    /**
+     * 数値項目を、囲み文字を付与して出力する。
+     *
+     * @param value 値
+     */
+    public void writeNumber(int value) {
+        beginField();
+        append(layout.numberQuote);
+        if (!layout.asciiNumbers) {
+            append(String.valueOf(value).getBytes(layout.charset));
+            append(layout.numberQuote);
+            return;
+        }
+        ensureCapacity(11);
+        long remaining = value;
+        if (remaining < 0) {
+            row[rowLength++] = '-';
+            remaining = -remaining;
+        }
+        int digits = 1;
+        for (long n = remaining; n >= 10; n /= 10) {
+            digits++;
+        }
+        for (int i = rowLength + digits - 1; i >= rowLength; i--) {
+            row[i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        rowLength += digits;
+        append(layout.numberQuote);
+    }
+
+    /**
+     * 出力した項目を1行として確定し、バッファに出力する。
+     * <p/>
+     * バッファに収まらない場合は、バッファの内容をチャネルに出力する。
+     *
+     * @throws IOException 出力に失敗した場合
+     */
+    public void endRecord() throws IOException {
+        append(layout.recordSeparator);
+        if (buffer.remaining() < rowLength) {
+            flush();
+            if (buffer.remaining() < rowLength) {
+                ByteBuffer large = ByteBuffer.wrap(row, 0, rowLength);
+                while (large.hasRemaining()) {
+                    channel.write(large);
+                }
+                rowLength = 0;
+                fieldCount = 0;
+                return;
+            }
+        }
+        buffer.put(row, 0, rowLength);
+        rowLength = 0;
+        fieldCount = 0;
+    }
+
+    /**
+     * 項目の出力を開始する。(2項目目以降の場合は、区切り文字を出力する)
+     */
+    private void beginField() {
+        if (fieldCount++ > 0) {
+            append(layout.fieldSeparator);
+        }
+    }
+
+    /**
+     * 1行分のバッファに出力する。
+     *
+     * @param bytes 出力する内容
+     */
+    private void append(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, row, rowLength, bytes.length);
+        rowLength += bytes.length;
+    }
+
+    /**
+     * 指定されたバイト数を出力できるように、1行分のバッファを拡張する。
+     *
+     * @param length 出力するバイト数
+     */
+    private void ensureCapacity(int length) {
+        if (rowLength + length > row.length) {
+            row = Arrays.copyOf(row, Math.max(row.length * 2, rowLength + length));
+        }
+    }
+
+    /**
+     * バッファの内容をチャネルに出力する。
+     *
+     * @throws IOException 出力に失敗した場合
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * バッファに蓄積した内容を出力した後に閉じる。(確定していない行は出力しない)
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * CSVファイルのフォーマット定義。
+     * <p/>
+     * 同じフォーマット定義ファイルで複数のCSVファイルを出力する場合は、本クラスを共有できる。
+     */
+    public static final class Layout {
+
+        /** 項目名(フォーマット定義ファイルの項目順) */
+        private final String[] fieldNames;
+
+        /** 文字エンコーディング */
+        private final Charset charset;
+
+        /** 囲み文字(囲み文字を使用しない場合はnull) */
+        private final String quote;
+
+        /** 符号化した区切り文字 */
+        private final byte[] fieldSeparator;
+
+        /** 符号化した改行コード */
+        private final byte[] recordSeparator;
+
+        /** 数値をASCII文字のまま出力できるか否か(文字エンコーディングがASCII互換の場合はtrue) */
+        private final boolean asciiNumbers;
+
+        /** 符号化した数値の囲み文字 */
+        private final byte[] numberQuote;
+
+        /**
+         * フォーマット定義ファイルを解析する。
+         *
+         * @param layoutFile フォーマット定義ファイル
+         * @throws IllegalArgumentException フォーマット定義ファイルが可変長ではない場合
+         */
+        public Layout(File layoutFile) {
+            LayoutDefinition layout = new LayoutFileParser(layoutFile.getPath()).parse();
+            Map<String, Object> directive = layout.getDirective();
+            if (!"Variable".equals(directive.get("file-type"))) {
+                throw new IllegalArgumentException(
+                        "csv layout must be a variable length layout. file = [" + layoutFile + ']');
+            }
+            List<FieldDefinition> fields = layout.getRecords().get(0).getFields();
+            fieldNames = new String[fields.size()];
+            for (int i = 0; i < fieldNames.length; i++) {
+                fieldNames[i] = fields.get(i).getName();
+            }
+            charset = Charset.forName(String.valueOf(directive.get("text-encoding")));
+            Object quotingDelimiter = directive.get("quoting-delimiter");
+            quote = quotingDelimiter == null ? null : String.valueOf(quotingDelimiter);
+            fieldSeparator = String.valueOf(directive.get("field-separator")).getBytes(charset);
+            recordSeparator = String.valueOf(directive.get("record-separator")).getBytes(charset);
+
+            String digits = "-0123456789";
+            asciiNumbers = Arrays.equals(digits.getBytes(charset), digits.getBytes(StandardCharsets.US_ASCII));
+            numberQuote = quote == null ? new byte[0] : quote.getBytes(charset);
+        }
+
+        /**
+         * 項目名を取得する。
+         *
+         * @return 項目名(フォーマット定義ファイルの項目順)
+         */
+        public String[] getFieldNames() {
+            return fieldNames.clone();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 対数線形バケットのヒストグラムで処理時間の分布を保持し、中央値及びパーセンタイル値の近似値を算出する{@link Aggregator}実装クラス。
+ * <p/>
+ * 処理時間を精度ビット数(p)に応じたバケットに振り分けてカウントする。
+ * <ul>
+ * <li>2<sup>p</sup>未満の処理時間は、値毎のバケットでカウントする(誤差なし)。</li>
+ * <li>2<sup>p</sup>以上の処理時間は、2のべき乗の区間をそれぞれ2<sup>p-1</sup>個に等分したバケットでカウントする。</li>
+ * </ul>
+ * 中央値及びパーセンタイル値には、該当するバケットの中間値(最小値と最大値の範囲に丸めた値)を返却する。
+ * このため、算出される値の相対誤差は最大で2<sup>-p</sup>となる。(精度ビット数が7の場合は0.79%以内)
+ * 処理時間が指定値以下のリクエスト数も、バケット単位で算出した近似値となる。
+ * <p/>
+ * リクエスト数、閾値超のリクエスト数、平均値及び最大値は正確な値を算出する。
+ * <p/>
+ * バケットは、これまでに追加された最大の処理時間を格納できるサイズまで拡張される。
+ * int型の処理時間の全範囲を格納する場合でも、バケット数は2<sup>p</sup> + (31 - p) * 2<sup>p-1</sup>以下となるため、
+ * 集計単位あたりのメモリ使用量はリクエスト数に依存せず一定の上限を持つ。
+ * (精度ビット数が7の場合は、最大で1,664バケット(約6.5KB)。処理時間が10秒以内であれば約2.3KB)
+ * <p/>
+ * 同じ精度ビット数の集計オブジェクト同士は、誤差なしで合算できる。
+ */
+public class HistogramAggregator extends AggregatorSupport {
+
+    /** 精度ビット数 */
+    private final int precisionBits;
+
+    /** 値毎にカウントする処理時間の上限(この値未満は誤差なし) */
+    private final int exactLimit;
+
+    /** 2のべき乗の区間あたりのバケット数 */
+    private final int halfBucketCount;
+
+    /** バケット毎のカウント */
+    private int[] counts;
+
+    /** 最小処理時間 */
+    private int minExecutionTime = Integer.MAX_VALUE;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param precisionBits 精度ビット数(1以上30以下)
+     */
+    public HistogramAggregator(int precisionBits) {
+        if (precisionBits < 1 || precisionBits > 30) {
+            throw new IllegalArgumentException(
+                    "precisionBits must be between 1 and 30. precisionBits = [" + precisionBits + ']');
+        }
+        this.precisionBits = precisionBits;
+        exactLimit = 1 << precisionBits;
+        halfBucketCount = exactLimit >> 1;
+        counts = new int[exactLimit];
+    }
+
+    /**
+     * 精度ビット数を取得する。
+     *
+     * @return 精度ビット数
+     */
+    public int getPrecisionBits() {
+        return precisionBits;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void addExecutionTime(int executionTime) {
+        int value = Math.max(executionTime, 0);
+        int index = indexOf(value);
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length + halfBucketCount));
+        }
+        counts[index]++;
+        minExecutionTime = Math.min(minExecutionTime, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void mergeExecutionTimes(AggregatorSupport other) {
+        HistogramAggregator histogram = (HistogramAggregator) other;
+        if (histogram.precisionBits != precisionBits) {
+            throw new IllegalArgumentException("can not merge histogram of different precision. "
+                    + "this = [" + precisionBits + "], other = [" + histogram.precisionBits + ']');
+        }
+        if (histogram.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, histogram.counts.length);
+        }
+        for (int i = 0; i < histogram.counts.length; i++) {
+            counts[i] += histogram.counts[i];
+        }
+        minExecutionTime = Math.min(minExecutionTime, histogram.minExecutionTime);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 精度ビット数、最小処理時間の後ろに、カウントが0ではないバケットのみ(前のバケットとのインデックスの差分とカウント)を出力する。
+     */
+    @Override
+    protected void writeExecutionTimes(DataOutput out) throws IOException {
+        out.writeByte(precisionBits);
+        out.writeInt(minExecutionTime);
+        int nonEmpty = 0;
+        for (int count : counts) {
+            if (count != 0) {
+                nonEmpty++;
+            }
+        }
+        writeVarLong(out, nonEmpty);
+        int previous = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                writeVarLong(out, i - previous);
+                writeVarLong(out, counts[i]);
+                previous = i;
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void readExecutionTimes(DataInput in) throws IOException {
+        int bits = in.readUnsignedByte();
+        if (bits != precisionBits) {
+            throw new IllegalArgumentException("can not merge histogram of different precision. "
+                    + "this = [" + precisionBits + "], other = [" + bits + ']');
+        }
+        minExecutionTime = Math.min(minExecutionTime, in.readInt());
+        long nonEmpty = readVarLong(in);
+        int index = 0;
+        for (long i = 0; i < nonEmpty; i++) {
+            index += (int) readVarLong(in);
+            if (index >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length + halfBucketCount));
+            }
+            counts[index] += (int) readVarLong(in);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getMedianTime() {
+        return getPercentileTime(50);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getPercentileTime(double percentile) {
+        int rank = rankOf(percentile, getRequestCount());
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return Math.max(minExecutionTime, Math.min(representativeValueOf(i), getMaxExecutionTime()));
+            }
+        }
+        return getMaxExecutionTime();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 指定値を含むバケットは、バケットの代表値が指定値以下の場合に計上する。
+     * このため、指定値が2<sup>p</sup>以上の場合は、指定値を含むバケット分の誤差が生じる。
+     */
+    @Override
+    public int getRequestCountWithin(int executionTime) {
+        if (executionTime < minExecutionTime) {
+            return 0;
+        }
+        if (executionTime >= getMaxExecutionTime()) {
+            return getRequestCount();
+        }
+        int last = indexOf(executionTime);
+        if (representativeValueOf(last) > executionTime) {
+            last--;
+        }
+        int count = 0;
+        for (int i = 0; i <= last && i < counts.length; i++) {
+            count += counts[i];
+        }
+        return count;
+    }
+
+    /**
+     * 処理時間を格納するバケットのインデックスを算出する。
+     *
+     * @param value 処理時間(0以上)
+     * @return バケットのインデックス
+     */
+    private int indexOf(int value) {
+        if (value < exactLimit) {
+            return value;
+        }
+        int exponent = 31 - Integer.numberOfLeadingZeros(value);
+        int shift = exponent - precisionBits + 1;
+        int mantissa = value >>> shift;
+        return exactLimit + (exponent - precisionBits) * halfBucketCount + (mantissa - halfBucketCount);
+    }
+
+    /**
+     * バケットの代表値(バケットに格納される処理時間の中間値)を算出する。
+     *
+     * @param index バケットのインデックス
+     * @return バケットの代表値
+     */
+    private int representativeValueOf(int index) {
+        if (index < exactLimit) {
+            return index;
+        }
+        int offset = index - exactLimit;
+        int shift = offset / halfBucketCount + 1;
+        long mantissa = halfBucketCount + offset % halfBucketCount;
+        long lowest = mantissa << shift;
+        long highest = ((mantissa + 1) << shift) - 1;
+        return (int) ((lowest + highest) / 2);
+    }
+}
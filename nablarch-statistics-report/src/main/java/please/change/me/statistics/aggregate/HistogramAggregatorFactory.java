@@ -0,0 +1,30 @@
+package please.change.me.statistics.aggregate;
+
+/**
+ * {@link HistogramAggregator}を生成するファクトリクラス。
+ * <p/>
+ * 精度ビット数を省略した場合は7となる。(中央値及びパーセンタイル値の相対誤差は0.79%以内)
+ */
+public class HistogramAggregatorFactory implements AggregatorFactory {
+
+    /** 精度ビット数 */
+    private int precisionBits = 7;
+
+    /** {@inheritDoc} */
+    @Override
+    public Aggregator create() {
+        return new HistogramAggregator(precisionBits);
+    }
+
+    /**
+     * 精度ビット数を設定する。
+     * <p/>
+     * 中央値及びパーセンタイル値の相対誤差は、最大で2<sup>-精度ビット数</sup>となる。
+     * 精度ビット数を1増やすと誤差は半分になるが、集計単位あたりのメモリ使用量は約2倍となる。
+     *
+     * @param precisionBits 精度ビット数(1以上30以下)
+     */
+    public void setPrecisionBits(int precisionBits) {
+        this.precisionBits = precisionBits;
+    }
+}
@@ -0,0 +1,320 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 全ての処理時間をプリミティブのint配列に保持し、正確な中央値及びパーセンタイル値を算出する{@link Aggregator}実装クラス。
+ * <p/>
+ * {@link ListAggregator}と同じ値を算出するが、以下の点で処理時間の保持及び算出のコストが小さい。
+ * <ul>
+ * <li>
+ * 処理時間はボクシングせずに、サイズを段階的に拡張するint配列のチャンクに保持する。
+ * (処理時間1件あたりのメモリ使用量は約4バイト)
+ * </li>
+ * <li>
+ * 中央値及びパーセンタイル値は、全件のソートを行わずにクイックセレクトで算出する(平均O(n))。
+ * 処理時間の範囲(最大値 - 最小値)が件数以下の場合は、計数ソートで並び替える(O(n))。
+ * </li>
+ * <li>
+ * 並び替えた結果は保持し、処理時間が追加されるまで再利用する。
+ * </li>
+ * </ul>
+ */
+public class IntArrayAggregator extends AggregatorSupport {
+
+    /** 最初のチャンクのサイズ */
+    private static final int INITIAL_CHUNK_SIZE = 16;
+
+    /** チャンクの最大サイズ */
+    private static final int MAX_CHUNK_SIZE = 1 << 16;
+
+    /** 処理時間を保持するチャンクのリスト(最後のチャンク以外は満杯) */
+    private final List<int[]> chunks = new ArrayList<>();
+
+    /** 書き込み中のチャンク */
+    private int[] current;
+
+    /** 書き込み中のチャンクに格納済みの件数 */
+    private int currentSize;
+
+    /** 保持している処理時間の件数 */
+    private int size;
+
+    /** 最小処理時間 */
+    private int minExecutionTime = Integer.MAX_VALUE;
+
+    /** 1つの配列に集約した処理時間(処理時間が追加されると破棄する) */
+    private int[] values;
+
+    /** {@link #values}が昇順にソート済みか否か */
+    private boolean sorted;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void addExecutionTime(int executionTime) {
+        if (current == null || currentSize == current.length) {
+            newChunk();
+        }
+        current[currentSize++] = executionTime;
+        size++;
+        minExecutionTime = Math.min(minExecutionTime, executionTime);
+        values = null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void mergeExecutionTimes(AggregatorSupport other) {
+        IntArrayAggregator aggregator = (IntArrayAggregator) other;
+        int[] otherValues = aggregator.toArray();
+        for (int value : otherValues) {
+            addExecutionTime(value);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void writeExecutionTimes(DataOutput out) throws IOException {
+        int[] array = toArray();
+        if (!sorted) {
+            Arrays.sort(array);
+            sorted = true;
+        }
+        writeSortedValues(out, array, size);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void readExecutionTimes(DataInput in) throws IOException {
+        for (int value : readSortedValues(in)) {
+            addExecutionTime(value);
+        }
+    }
+
+    /**
+     * 処理時間を格納するチャンクを追加する。
+     * <p/>
+     * チャンクのサイズは、{@link #MAX_CHUNK_SIZE}まで倍々で拡張する。
+     * 処理時間を保持していない状態で{@link #toArray()}を呼び出した場合は、書き込み中のチャンクが長さ0の配列となるため、
+     * 拡張後のサイズが{@link #INITIAL_CHUNK_SIZE}を下回らないようにする。
+     */
+    private void newChunk() {
+        int chunkSize = current == null
+                ? INITIAL_CHUNK_SIZE
+                : Math.max(INITIAL_CHUNK_SIZE, Math.min(current.length * 2, MAX_CHUNK_SIZE));
+        current = new int[chunkSize];
+        currentSize = 0;
+        chunks.add(current);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 処理時間を保持していない場合は0を返却する。({@link HistogramAggregator}と同じ)
+     */
+    @Override
+    public int getMedianTime() {
+        if (size == 0) {
+            return 0;
+        }
+        int[] array = toArray();
+        int mid = size / 2;
+        int upper = valueAt(array, mid);
+        if (size % 2 == 0) {
+            // 選択後は、mid未満の位置にmid番目以下の値のみが存在する。
+            int lower = sorted ? array[mid - 1] : max(array, mid);
+            return (lower + upper) / 2;
+        }
+        return upper;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 処理時間を保持していない場合は0を返却する。({@link HistogramAggregator}と同じ)
+     */
+    @Override
+    public int getPercentileTime(double percentile) {
+        int rank = rankOf(percentile, size);
+        if (size == 0) {
+            return 0;
+        }
+        int[] array = toArray();
+        return valueAt(array, rank - 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 並び替え済みの場合は二分探索で、それ以外の場合は全件を走査して算出する。
+     */
+    @Override
+    public int getRequestCountWithin(int executionTime) {
+        int[] array = toArray();
+        if (sorted) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (array[mid] <= executionTime) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        int count = 0;
+        for (int value : array) {
+            if (value <= executionTime) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 昇順に並べた場合に指定した位置となる値を取得する。
+     *
+     * @param array 処理時間の配列
+     * @param index 位置(0始まり)
+     * @return 指定した位置の値
+     */
+    private int valueAt(int[] array, int index) {
+        if (sorted) {
+            return array[index];
+        }
+        long range = (long) getMaxExecutionTime() - minExecutionTime;
+        if (range < size) {
+            countingSort(array);
+            return array[index];
+        }
+        return select(array, index);
+    }
+
+    /**
+     * 保持している処理時間を1つの配列に集約して返却する。
+     * <p/>
+     * 集約した配列は、処理時間が追加されるまで再利用する。
+     * また、集約後はチャンクを集約した配列1つに置き換えて、メモリ使用量が増えないようにする。
+     *
+     * @return 処理時間の配列
+     */
+    int[] toArray() {
+        if (values != null) {
+            return values;
+        }
+        int[] array;
+        if (chunks.size() == 1 && currentSize == current.length) {
+            array = current;
+        } else {
+            array = new int[size];
+            int pos = 0;
+            for (int[] chunk : chunks) {
+                int length = chunk == current ? currentSize : chunk.length;
+                System.arraycopy(chunk, 0, array, pos, length);
+                pos += length;
+            }
+            chunks.clear();
+            chunks.add(array);
+            current = array;
+            currentSize = array.length;
+        }
+        values = array;
+        sorted = false;
+        return array;
+    }
+
+    /**
+     * 計数ソートで配列を昇順に並び替える。
+     *
+     * @param array 並び替え対象の配列
+     */
+    private void countingSort(int[] array) {
+        int min = minExecutionTime;
+        int[] counts = new int[getMaxExecutionTime() - min + 1];
+        for (int value : array) {
+            counts[value - min]++;
+        }
+        int pos = 0;
+        for (int i = 0; i < counts.length; i++) {
+            for (int count = counts[i]; count > 0; count--) {
+                array[pos++] = i + min;
+            }
+        }
+        sorted = true;
+    }
+
+    /**
+     * クイックセレクトで、昇順に並べた場合に指定した位置となる値を選択する。
+     * <p/>
+     * 選択後の配列は、指定した位置より前に指定した位置の値以下の値が、後ろに以上の値が並ぶ。
+     *
+     * @param array 選択対象の配列
+     * @param index 位置(0始まり)
+     * @return 指定した位置の値
+     */
+    private static int select(int[] array, int index) {
+        int left = 0;
+        int right = array.length - 1;
+        while (left < right) {
+            int pivot = medianOfThree(array[left], array[(left + right) >>> 1], array[right]);
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (array[i] < pivot) {
+                    i++;
+                }
+                while (array[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int temp = array[i];
+                    array[i] = array[j];
+                    array[j] = temp;
+                    i++;
+                    j--;
+                }
+            }
+            if (index <= j) {
+                right = j;
+            } else if (index >= i) {
+                left = i;
+            } else {
+                return array[index];
+            }
+        }
+        return array[index];
+    }
+
+    /**
+     * 3つの値の中央値を返却する。
+     *
+     * @param a 値1
+     * @param b 値2
+     * @param c 値3
+     * @return 中央値
+     */
+    private static int medianOfThree(int a, int b, int c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    /**
+     * 配列の先頭から指定した件数の範囲での最大値を返却する。
+     *
+     * @param array 配列
+     * @param length 件数
+     * @return 最大値
+     */
+    private static int max(int[] array, int length) {
+        int max = array[0];
+        for (int i = 1; i < length; i++) {
+            max = Math.max(max, array[i]);
+        }
+        return max;
+    }
+}
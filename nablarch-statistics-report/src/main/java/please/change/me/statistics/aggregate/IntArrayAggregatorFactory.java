@@ -0,0 +1,13 @@
+package please.change.me.statistics.aggregate;
+
+/**
+ * {@link IntArrayAggregator}を生成するファクトリクラス。
+ */
+public class IntArrayAggregatorFactory implements AggregatorFactory {
+
+    /** {@inheritDoc} */
+    @Override
+    public Aggregator create() {
+        return new IntArrayAggregator();
+    }
+}
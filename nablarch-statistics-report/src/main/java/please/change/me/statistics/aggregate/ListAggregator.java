@@ -0,0 +1,103 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 全ての処理時間をリストに保持し、正確な中央値及びパーセンタイル値を算出する{@link Aggregator}実装クラス。
+ * <p/>
+ * 処理時間を全件保持するため、使用するメモリ量はリクエスト数に比例する。
+ */
+public class ListAggregator extends AggregatorSupport {
+
+    /** 処理時間のリスト */
+    private final List<Integer> executionTimeList = new ArrayList<>();
+
+    /** 処理時間のリストがソート済みか否か */
+    private boolean sorted = true;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void addExecutionTime(int executionTime) {
+        executionTimeList.add(executionTime);
+        sorted = false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void mergeExecutionTimes(AggregatorSupport other) {
+        executionTimeList.addAll(((ListAggregator) other).executionTimeList);
+        sorted = false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void writeExecutionTimes(DataOutput out) throws IOException {
+        sort();
+        int[] values = new int[executionTimeList.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = executionTimeList.get(i);
+        }
+        writeSortedValues(out, values, values.length);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void readExecutionTimes(DataInput in) throws IOException {
+        for (int value : readSortedValues(in)) {
+            executionTimeList.add(value);
+        }
+        sorted = false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getMedianTime() {
+        sort();
+        int size = executionTimeList.size();
+        int mid = size / 2;
+        if (size % 2 == 0) {
+            return (executionTimeList.get(mid - 1) + executionTimeList.get(mid)) / 2;
+        } else {
+            return executionTimeList.get(mid);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getPercentileTime(double percentile) {
+        sort();
+        return executionTimeList.get(rankOf(percentile, executionTimeList.size()) - 1);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getRequestCountWithin(int executionTime) {
+        sort();
+        int index = Collections.binarySearch(executionTimeList, executionTime);
+        if (index < 0) {
+            return -index - 1;
+        }
+        // 同じ処理時間が連続する場合は、最後の位置まで進める。
+        while (index + 1 < executionTimeList.size() && executionTimeList.get(index + 1) == executionTime) {
+            index++;
+        }
+        return index + 1;
+    }
+
+    /**
+     * 処理時間のリストをソートする。
+     * <p/>
+     * 前回のソート以降に処理時間が追加されていない場合は、ソートを行わない。
+     */
+    private void sort() {
+        if (!sorted) {
+            Collections.sort(executionTimeList);
+            sorted = true;
+        }
+    }
+}
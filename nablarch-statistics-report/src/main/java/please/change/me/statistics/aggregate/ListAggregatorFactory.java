@@ -0,0 +1,13 @@
+package please.change.me.statistics.aggregate;
+
+/**
+ * {@link ListAggregator}を生成するファクトリクラス。
+ */
+public class ListAggregatorFactory implements AggregatorFactory {
+
+    /** {@inheritDoc} */
+    @Override
+    public Aggregator create() {
+        return new ListAggregator();
+    }
+}
@@ -0,0 +1,219 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * プロセス名及び日付毎に、1分毎のリクエスト数を保持するクラス。
+ * <p/>
+ * 時間毎のピーク(指定された分数の区間に処理したリクエスト数の最大値)を、
+ * 1分ずつずらした区間(スライディングウィンドウ)で算出するために使用する。
+ * 1分毎のリクエスト数は単純に加算できるため、スレッド毎やノード毎に保持したリクエスト数を{@link #merge(MinuteRequestCounts)}で
+ * 合算した場合でも、全てのリクエスト情報を1か所で集計した場合と同じピークとなる。
+ * <p/>
+ * 保持するデータ量は、プロセス名及び日付毎に1日分(1440分)のリクエスト数であり、リクエスト情報の件数には依存しない。
+ * <p/>
+ * 本クラスはスレッドセーフではない。
+ */
+public final class MinuteRequestCounts {
+
+    /** 1日の分数 */
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    /** 1時間の分数 */
+    private static final int MINUTES_PER_HOUR = 60;
+
+    /** 1分毎のリクエスト数(キーはプロセス名、日付(yyyyMMdd)の順) */
+    private final Map<String, Map<Integer, int[]>> counts = new TreeMap<>();
+
+    /**
+     * 1分毎のリクエスト数を加算する。
+     *
+     * @param processName プロセス名
+     * @param date 日付(yyyyMMdd)
+     * @param minuteOfDay 0時0分からの経過分数(0以上1440未満)
+     * @param count 加算するリクエスト数
+     */
+    public void add(String processName, int date, int minuteOfDay, int count) {
+        countsOf(processName, date)[minuteOfDay] += count;
+    }
+
+    /**
+     * プロセス名及び日付に対応する1分毎のリクエスト数を取得する。(存在しない場合は生成する)
+     *
+     * @param processName プロセス名
+     * @param date 日付(yyyyMMdd)
+     * @return 1分毎のリクエスト数
+     */
+    private int[] countsOf(String processName, int date) {
+        return counts.computeIfAbsent(processName, name -> new TreeMap<>())
+                     .computeIfAbsent(date, key -> new int[MINUTES_PER_DAY]);
+    }
+
+    /**
+     * 他のインスタンスが保持するリクエスト数を、本インスタンスに合算する。
+     *
+     * @param other 合算元のインスタンス
+     */
+    public void merge(MinuteRequestCounts other) {
+        for (Map.Entry<String, Map<Integer, int[]>> process : other.counts.entrySet()) {
+            for (Map.Entry<Integer, int[]> date : process.getValue().entrySet()) {
+                int[] target = countsOf(process.getKey(), date.getKey());
+                int[] source = date.getValue();
+                for (int i = 0; i < MINUTES_PER_DAY; i++) {
+                    target[i] += source[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * リクエスト数を保持していないか否か。
+     *
+     * @return リクエスト数を保持していない場合はtrue
+     */
+    public boolean isEmpty() {
+        return counts.isEmpty();
+    }
+
+    /**
+     * プロセス名一覧を取得する。
+     *
+     * @return プロセス名一覧(プロセス名順)
+     */
+    public Set<String> getProcessNames() {
+        return Collections.unmodifiableSet(counts.keySet());
+    }
+
+    /**
+     * プロセス名に対応する日付一覧を取得する。
+     *
+     * @param processName プロセス名
+     * @return 日付(yyyyMMdd)一覧(日付順)
+     */
+    public Set<Integer> getDates(String processName) {
+        Map<Integer, int[]> dates = counts.get(processName);
+        return dates == null ? Collections.<Integer>emptySet() : Collections.unmodifiableSet(dates.keySet());
+    }
+
+    /**
+     * 指定された区間に処理したリクエスト数を取得する。
+     * <p/>
+     * 区間は、開始時刻から指定された分数とする。(日付をまたぐ部分は含まない)
+     *
+     * @param processName プロセス名
+     * @param date 日付(yyyyMMdd)
+     * @param startMinute 区間の開始時刻(0時0分からの経過分数)
+     * @param windowMinutes 区間の分数(1以上)
+     * @return 区間に処理したリクエスト数
+     */
+    public int getRequestCount(String processName, int date, int startMinute, int windowMinutes) {
+        Map<Integer, int[]> dates = counts.get(processName);
+        int[] minutes = dates == null ? null : dates.get(date);
+        if (minutes == null) {
+            return 0;
+        }
+        int total = 0;
+        int end = Math.min(startMinute + windowMinutes, MINUTES_PER_DAY);
+        for (int i = startMinute; i < end; i++) {
+            total += minutes[i];
+        }
+        return total;
+    }
+
+    /**
+     * 指定された時間内に開始する区間のうち、処理したリクエスト数が最大となる区間の開始時刻を取得する。
+     * <p/>
+     * 区間は1分ずつずらしながら評価する。(区間の終了時刻は、次の時間にかかってもよい)
+     * リクエスト数が最大となる区間が複数存在する場合は、最も早い区間の開始時刻を返す。
+     *
+     * @param processName プロセス名
+     * @param date 日付(yyyyMMdd)
+     * @param hour 時(0以上24未満)
+     * @param windowMinutes 区間の分数(1以上)
+     * @return リクエスト数が最大となる区間の開始時刻(0時0分からの経過分数)
+     */
+    public int getPeakStartMinute(String processName, int date, int hour, int windowMinutes) {
+        Map<Integer, int[]> dates = counts.get(processName);
+        int[] minutes = dates == null ? null : dates.get(date);
+        int first = hour * MINUTES_PER_HOUR;
+        if (minutes == null) {
+            return first;
+        }
+        // 先頭の区間のリクエスト数を求めた後は、区間をずらす毎に差分のみを加減算する。
+        int current = getRequestCount(processName, date, first, windowMinutes);
+        int peak = current;
+        int peakStart = first;
+        for (int start = first + 1; start < first + MINUTES_PER_HOUR; start++) {
+            current -= minutes[start - 1];
+            int added = start + windowMinutes - 1;
+            if (added < MINUTES_PER_DAY) {
+                current += minutes[added];
+            }
+            if (current > peak) {
+                peak = current;
+                peakStart = start;
+            }
+        }
+        return peakStart;
+    }
+
+    /**
+     * 保持するリクエスト数をバイナリ形式で出力する。
+     * <p/>
+     * プロセス名及び日付毎に、リクエスト数が0ではない分のみを出力する。
+     *
+     * @param out 出力先
+     * @throws IOException 出力に失敗した場合
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(counts.size());
+        for (Map.Entry<String, Map<Integer, int[]>> process : counts.entrySet()) {
+            out.writeUTF(process.getKey());
+            out.writeInt(process.getValue().size());
+            for (Map.Entry<Integer, int[]> date : process.getValue().entrySet()) {
+                int[] minutes = date.getValue();
+                int nonZero = 0;
+                for (int count : minutes) {
+                    if (count != 0) {
+                        nonZero++;
+                    }
+                }
+                out.writeInt(date.getKey());
+                out.writeShort(nonZero);
+                for (int i = 0; i < MINUTES_PER_DAY; i++) {
+                    if (minutes[i] != 0) {
+                        out.writeShort(i);
+                        out.writeInt(minutes[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * {@link #writeTo(DataOutput)}で出力したリクエスト数を読み込み、本インスタンスに合算する。
+     *
+     * @param in 入力元
+     * @throws IOException 入力に失敗した場合
+     */
+    public void readFrom(DataInput in) throws IOException {
+        int processCount = in.readInt();
+        for (int i = 0; i < processCount; i++) {
+            String processName = in.readUTF();
+            int dateCount = in.readInt();
+            for (int j = 0; j < dateCount; j++) {
+                int[] minutes = countsOf(processName, in.readInt());
+                int nonZero = in.readShort();
+                for (int k = 0; k < nonZero; k++) {
+                    minutes[in.readShort()] += in.readInt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package please.change.me.statistics.aggregate;
+
+/**
+ * アクセスログの終了ログ1件分のリクエスト情報を保持するクラス。
+ * <p/>
+ * リクエスト情報CSVの1レコードに相当する。
+ */
+public final class RequestInfo {
+
+    /** ログ出力日時(年) */
+    private final int year;
+
+    /** ログ出力日時(月) */
+    private final int month;
+
+    /** ログ出力日時(日) */
+    private final int day;
+
+    /** ログ出力日時(時) */
+    private final int hour;
+
+    /** ログ出力日時(分) */
+    private final int minute;
+
+    /** 起動プロセス名 */
+    private final String processName;
+
+    /** リクエストID */
+    private final String requestId;
+
+    /** 処理時間 */
+    private final int executionTime;
+
+    /** ステータスコード */
+    private final int statusCode;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param year ログ出力日時(年)
+     * @param month ログ出力日時(月)
+     * @param day ログ出力日時(日)
+     * @param hour ログ出力日時(時)
+     * @param minute ログ出力日時(分)
+     * @param processName 起動プロセス名
+     * @param requestId リクエストID
+     * @param executionTime 処理時間
+     * @param statusCode ステータスコード
+     */
+    public RequestInfo(int year, int month, int day, int hour, int minute, String processName, String requestId,
+            int executionTime, int statusCode) {
+        this.year = year;
+        this.month = month;
+        this.day = day;
+        this.hour = hour;
+        this.minute = minute;
+        this.processName = processName;
+        this.requestId = requestId;
+        this.executionTime = executionTime;
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * ログ出力日時(年)を取得する。
+     *
+     * @return ログ出力日時(年)
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * ログ出力日時(月)を取得する。
+     *
+     * @return ログ出力日時(月)
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * ログ出力日時(年月)をyyyyMM形式の数値で取得する。
+     *
+     * @return ログ出力日時(年月)
+     */
+    public int getYearMonth() {
+        return year * 100 + month;
+    }
+
+    /**
+     * ログ出力日時(日)を取得する。
+     *
+     * @return ログ出力日時(日)
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * ログ出力日時(時)を取得する。
+     *
+     * @return ログ出力日時(時)
+     */
+    public int getHour() {
+        return hour;
+    }
+
+    /**
+     * ログ出力日時(分)を取得する。
+     * <p/>
+     * リクエスト情報CSVは分を保持しないため、リクエスト情報CSVから読み込んだ場合は0となる。
+     *
+     * @return ログ出力日時(分)
+     */
+    public int getMinute() {
+        return minute;
+    }
+
+    /**
+     * 起動プロセス名を取得する。
+     *
+     * @return 起動プロセス名
+     */
+    public String getProcessName() {
+        return processName;
+    }
+
+    /**
+     * リクエストIDを取得する。
+     *
+     * @return リクエストID
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * 処理時間を取得する。
+     *
+     * @return 処理時間
+     */
+    public int getExecutionTime() {
+        return executionTime;
+    }
+
+    /**
+     * ステータスコードを取得する。
+     *
+     * @return ステータスコード
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,530 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * リクエスト情報をバイナリ形式で保持するリクエスト情報ファイル。
+ * <p/>
+ * リクエスト情報CSVと同じ内容(及びログ出力日時の分)を、以下の方法で小さく保持する。
+ * <ul>
+ * <li>リクエスト情報を{@link #BLOCK_SIZE}件毎のブロックにまとめ、ブロック内では項目毎に連続して保持する(列指向)</li>
+ * <li>リクエストID及びプロセス名は、ファイル内で初出の値のみを辞書に追加し、以降は辞書の番号で保持する</li>
+ * <li>ログ出力日時は年月日時分を1つの数値にまとめ、直前のリクエスト情報との差分で保持する</li>
+ * <li>数値は可変長(7ビット毎)で保持する</li>
+ * </ul>
+ * 読み込みはブロック単位で行い、{@link nablarch.core.dataformat.DataRecord}を経由せずに{@link RequestInfo}を生成する。
+ * <p/>
+ * ファイルの形式は以下のとおり。(可変長の数値は「varint」と表記する)
+ * <pre>
+ * マジックナンバー(int)、バージョン(int)
+ * [ブロックのバイト数(int)、ブロック] * ブロック数
+ *
+ * ブロック:
+ *   件数(varint)
+ *   追加するプロセス名の件数(varint)、[プロセス名(UTF-8のバイト数(varint)、UTF-8)] * 件数
+ *   追加するリクエストIDの件数(varint)、[リクエストID(UTF-8のバイト数(varint)、UTF-8)] * 件数
+ *   ログ出力日時(直前との差分をジグザグ符号化したvarint) * 件数
+ *   プロセス名(辞書の番号のvarint) * 件数
+ *   リクエストID(辞書の番号のvarint) * 件数
+ *   処理時間(varint) * 件数
+ *   ステータスコード(varint) * 件数
+ * </pre>
+ */
+public final class RequestInfoBinaryFile {
+
+    /** リクエスト情報ファイルの拡張子 */
+    public static final String SUFFIX = ".bin";
+
+    /** 1ブロックに保持するリクエスト情報の件数 */
+    static final int BLOCK_SIZE = 4096;
+
+    /** マジックナンバー */
+    private static final int MAGIC = 0x4E535249;
+
+    /** ファイル形式のバージョン */
+    private static final int VERSION = 1;
+
+    /** 隠蔽コンストラクタ。 */
+    private RequestInfoBinaryFile() {
+    }
+
+    /**
+     * リクエスト情報ファイルを出力用に開く。
+     * <p/>
+     * ファイルが既に存在する場合は上書きする。
+     *
+     * @param file リクエスト情報ファイル
+     * @return 出力オブジェクト
+     * @throws IOException ファイルを開けなかった場合
+     */
+    public static Writer openWriter(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+        return new Writer(out);
+    }
+
+    /**
+     * リクエスト情報ファイルを読み込み用に開く。
+     *
+     * @param file リクエスト情報ファイル
+     * @return 読み込みオブジェクト
+     * @throws IOException ファイルを開けなかった場合、またはリクエスト情報ファイルの形式ではない場合
+     */
+    public static Reader openReader(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("unsupported request info file. file = [" + file.getAbsolutePath() + ']');
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new Reader(in);
+    }
+
+    /**
+     * ログ出力日時を1つの数値にまとめる。
+     *
+     * @param requestInfo リクエスト情報
+     * @return ログ出力日時
+     */
+    private static long packDateTime(RequestInfo requestInfo) {
+        return (long) requestInfo.getYear() << 26
+                | requestInfo.getMonth() << 22
+                | requestInfo.getDay() << 17
+                | requestInfo.getHour() << 12
+                | requestInfo.getMinute();
+    }
+
+    /**
+     * リクエスト情報ファイルの出力オブジェクト。
+     * <p/>
+     * 本クラスはスレッドセーフではない。
+     */
+    public static final class Writer implements Closeable {
+
+        /** 出力先 */
+        private final DataOutputStream out;
+
+        /** ブロックの出力用バッファ */
+        private final BlockBuffer buffer = new BlockBuffer();
+
+        /** プロセス名の辞書(値と番号) */
+        private final Map<String, Integer> processNames = new HashMap<>();
+
+        /** リクエストIDの辞書(値と番号) */
+        private final Map<String, Integer> requestIds = new HashMap<>();
+
+        /** ブロック内で辞書に追加したプロセス名 */
+        private final List<String> newProcessNames = new ArrayList<>();
+
+        /** ブロック内で辞書に追加したリクエストID */
+        private final List<String> newRequestIds = new ArrayList<>();
+
+        /** ブロック内のログ出力日時 */
+        private final long[] dateTimes = new long[BLOCK_SIZE];
+
+        /** ブロック内のプロセス名の番号 */
+        private final int[] processNameIds = new int[BLOCK_SIZE];
+
+        /** ブロック内のリクエストIDの番号 */
+        private final int[] requestIdIds = new int[BLOCK_SIZE];
+
+        /** ブロック内の処理時間 */
+        private final int[] executionTimes = new int[BLOCK_SIZE];
+
+        /** ブロック内のステータスコード */
+        private final int[] statusCodes = new int[BLOCK_SIZE];
+
+        /** ブロック内の件数 */
+        private int count;
+
+        /** 直前に出力したログ出力日時 */
+        private long lastDateTime;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param out 出力先
+         */
+        private Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * リクエスト情報を出力する。
+         *
+         * @param requestInfo リクエスト情報
+         * @throws IOException 出力に失敗した場合
+         */
+        public void write(RequestInfo requestInfo) throws IOException {
+            dateTimes[count] = packDateTime(requestInfo);
+            processNameIds[count] = idOf(requestInfo.getProcessName(), processNames, newProcessNames);
+            requestIdIds[count] = idOf(requestInfo.getRequestId(), requestIds, newRequestIds);
+            executionTimes[count] = requestInfo.getExecutionTime();
+            statusCodes[count] = requestInfo.getStatusCode();
+            if (++count == BLOCK_SIZE) {
+                flushBlock();
+            }
+        }
+
+        /**
+         * 辞書の番号を取得する。
+         * <p/>
+         * 辞書に存在しない値の場合は、辞書に追加する。
+         *
+         * @param value 値
+         * @param dictionary 辞書
+         * @param added ブロック内で辞書に追加した値
+         * @return 辞書の番号
+         */
+        private static int idOf(String value, Map<String, Integer> dictionary, List<String> added) {
+            Integer id = dictionary.get(value);
+            if (id == null) {
+                id = dictionary.size();
+                dictionary.put(value, id);
+                added.add(value);
+            }
+            return id;
+        }
+
+        /**
+         * ブロック内のリクエスト情報を出力する。
+         *
+         * @throws IOException 出力に失敗した場合
+         */
+        private void flushBlock() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            buffer.reset();
+            buffer.writeVarint(count);
+            buffer.writeStrings(newProcessNames);
+            buffer.writeStrings(newRequestIds);
+            for (int i = 0; i < count; i++) {
+                long delta = dateTimes[i] - lastDateTime;
+                buffer.writeVarint((delta << 1) ^ (delta >> 63));
+                lastDateTime = dateTimes[i];
+            }
+            buffer.writeVarints(processNameIds, count);
+            buffer.writeVarints(requestIdIds, count);
+            buffer.writeVarints(executionTimes, count);
+            buffer.writeVarints(statusCodes, count);
+            out.writeInt(buffer.size());
+            out.write(buffer.bytes(), 0, buffer.size());
+
+            newProcessNames.clear();
+            newRequestIds.clear();
+            count = 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p/>
+         * 出力していないリクエスト情報を出力した後に閉じる。
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flushBlock();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * リクエスト情報ファイルの読み込みオブジェクト。
+     * <p/>
+     * 本クラスはスレッドセーフではない。
+     */
+    public static final class Reader implements Closeable {
+
+        /** 入力元 */
+        private final DataInputStream in;
+
+        /** プロセス名の辞書 */
+        private final List<String> processNames = new ArrayList<>();
+
+        /** リクエストIDの辞書 */
+        private final List<String> requestIds = new ArrayList<>();
+
+        /** ブロック内のリクエスト情報 */
+        private RequestInfo[] block = new RequestInfo[0];
+
+        /** ブロック内の次に返却するリクエスト情報の位置 */
+        private int position;
+
+        /** ブロックの読み込み用バッファ */
+        private byte[] bytes = new byte[0];
+
+        /** 直前に読み込んだログ出力日時 */
+        private long lastDateTime;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param in 入力元
+         */
+        private Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * 次のリクエスト情報を読み込む。
+         *
+         * @return リクエスト情報(ファイルの終端に達した場合はnull)
+         * @throws IOException 読み込みに失敗した場合
+         */
+        public RequestInfo read() throws IOException {
+            if (position == block.length && !readBlock()) {
+                return null;
+            }
+            return block[position++];
+        }
+
+        /**
+         * 次のブロックを読み込む。
+         *
+         * @return ブロックを読み込んだ場合はtrue(ファイルの終端に達した場合はfalse)
+         * @throws IOException 読み込みに失敗した場合
+         */
+        private boolean readBlock() throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+            in.readFully(bytes, 0, length);
+
+            BlockDecoder decoder = new BlockDecoder(bytes);
+            int count = decoder.readVarint();
+            decoder.readStrings(processNames);
+            decoder.readStrings(requestIds);
+            long[] dateTimes = new long[count];
+            for (int i = 0; i < count; i++) {
+                long zigzag = decoder.readVarLong();
+                lastDateTime += (zigzag >>> 1) ^ -(zigzag & 1);
+                dateTimes[i] = lastDateTime;
+            }
+            int[] processNameIds = decoder.readVarints(count);
+            int[] requestIdIds = decoder.readVarints(count);
+            int[] executionTimes = decoder.readVarints(count);
+            int[] statusCodes = decoder.readVarints(count);
+
+            block = new RequestInfo[count];
+            for (int i = 0; i < count; i++) {
+                long dateTime = dateTimes[i];
+                block[i] = new RequestInfo(
+                        (int) (dateTime >>> 26),
+                        (int) (dateTime >>> 22) & 0xF,
+                        (int) (dateTime >>> 17) & 0x1F,
+                        (int) (dateTime >>> 12) & 0x1F,
+                        (int) dateTime & 0xFFF,
+                        processNames.get(processNameIds[i]),
+                        requestIds.get(requestIdIds[i]),
+                        executionTimes[i],
+                        statusCodes[i]);
+            }
+            position = 0;
+            return count > 0 || readBlock();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * ブロックの出力用バッファ。
+     */
+    private static final class BlockBuffer {
+
+        /** バッファ */
+        private byte[] bytes = new byte[BLOCK_SIZE * 8];
+
+        /** 出力済みのバイト数 */
+        private int size;
+
+        /** バッファを空にする。 */
+        private void reset() {
+            size = 0;
+        }
+
+        /**
+         * バッファを取得する。
+         *
+         * @return バッファ
+         */
+        private byte[] bytes() {
+            return bytes;
+        }
+
+        /**
+         * 出力済みのバイト数を取得する。
+         *
+         * @return 出力済みのバイト数
+         */
+        private int size() {
+            return size;
+        }
+
+        /**
+         * 指定されたバイト数を出力できるように、バッファを拡張する。
+         *
+         * @param length 出力するバイト数
+         */
+        private void ensureCapacity(int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+        }
+
+        /**
+         * 数値(符号なし)を可変長で出力する。
+         *
+         * @param value 数値
+         */
+        private void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        /**
+         * 数値の配列を可変長で出力する。
+         * <p/>
+         * 負数は32ビットの符号なし整数として出力する。
+         *
+         * @param values 数値の配列
+         * @param count 出力する件数
+         */
+        private void writeVarints(int[] values, int count) {
+            for (int i = 0; i < count; i++) {
+                writeVarint(values[i] & 0xFFFFFFFFL);
+            }
+        }
+
+        /**
+         * 文字列のリストを出力する。
+         *
+         * @param values 文字列のリスト
+         */
+        private void writeStrings(List<String> values) {
+            writeVarint(values.size());
+            for (String value : values) {
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint(encoded.length);
+                ensureCapacity(encoded.length);
+                System.arraycopy(encoded, 0, bytes, size, encoded.length);
+                size += encoded.length;
+            }
+        }
+    }
+
+    /**
+     * ブロックの読み込みオブジェクト。
+     */
+    private static final class BlockDecoder {
+
+        /** ブロック */
+        private final byte[] bytes;
+
+        /** 次に読み込む位置 */
+        private int position;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param bytes ブロック
+         */
+        private BlockDecoder(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * 可変長で出力された数値(符号なし)を読み込む。
+         *
+         * @return 数値
+         */
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        /**
+         * 可変長で出力された32ビットの数値を読み込む。
+         *
+         * @return 数値
+         */
+        private int readVarint() {
+            return (int) readVarLong();
+        }
+
+        /**
+         * 可変長で出力された32ビットの数値の配列を読み込む。
+         *
+         * @param count 件数
+         * @return 数値の配列
+         */
+        private int[] readVarints(int count) {
+            int[] values = new int[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = readVarint();
+            }
+            return values;
+        }
+
+        /**
+         * 文字列のリストを読み込み、指定されたリストに追加する。
+         *
+         * @param values 追加先のリスト
+         */
+        private void readStrings(List<String> values) {
+            int count = readVarint();
+            for (int i = 0; i < count; i++) {
+                int length = readVarint();
+                values.add(new String(bytes, position, length, StandardCharsets.UTF_8));
+                position += length;
+            }
+        }
+    }
+}
@@ -0,0 +1,618 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+import nablarch.core.util.FileUtil;
+
+import please.change.me.statistics.action.AggregateUnit;
+
+/**
+ * リクエスト情報を最小の集計単位(集計セル)で集計し、各集計単位の集計結果を導出(ロールアップ)するクラス。
+ * <p/>
+ * リクエスト情報は、以下の2つの集計セルにのみ追加する。
+ * <ul>
+ * <li>日付セル(リクエストID、プロセス名、年月日毎)</li>
+ * <li>時刻セル(リクエストID、プロセス名、時刻毎。時刻の粒度は、出力する時刻の集計単位のうち最小のもの)</li>
+ * </ul>
+ * 年月及び日単位の集計結果は日付セルから、時間、5分及び分単位の集計結果は時刻セルから、
+ * {@link #rollupInto(AggregateResultHolder, IntPredicate)}で導出する。
+ * このため、時刻の集計単位を追加しても、リクエスト情報1件あたりの処理(集計オブジェクトへの追加)は2回のままとなる。
+ * 導出は集計セル毎に行うため、導出の回数はリクエスト情報の件数ではなく、集計セルの数に比例する。
+ * <p/>
+ * 時間毎のピークを算出する場合は、合わせてプロセス名及び日付毎に1分毎のリクエスト数を集計する。
+ * <p/>
+ * 集計セル数の上限を指定した場合は、メモリ上の集計セルの数が上限に達する度に、集計セルをキー順にランとして一時ファイルに退避する。
+ * 退避したランは、{@link #rollupEach(IntPredicate, ResultHandler)}でキー順にマージ(k-wayマージ)しながら導出するため、
+ * リクエストIDや集計単位の種類が多い場合でも、メモリ上に保持する集計セルの数は上限までとなる。
+ * (プロセス名一覧及び1分毎のリクエスト数は、リクエストIDの数に依存しないためメモリ上に保持する)
+ * ランの数が{@link #MAX_FAN_IN}を超える場合は、古いランから段階的にマージするため、同時に開くファイルの数は一定となる。
+ * <p/>
+ * 本クラスはスレッドセーフではない。
+ * 複数スレッドで集計を行う場合は、スレッド毎にインスタンスを生成し、集計後に{@link #merge(RollupResultHolder)}で合算すること。
+ */
+public class RollupResultHolder {
+
+    /** ランのマージで同時に開くランの最大数 */
+    static final int MAX_FAN_IN = 64;
+
+    /** 日付セル(集計単位値は年月日(yyyyMMdd)) */
+    private final Map<AggregateKey, Aggregator> dateCells = new HashMap<>();
+
+    /** 時刻セル(集計単位値は、時刻の集計単位のうち最小のものの集計単位値) */
+    private final Map<AggregateKey, Aggregator> timeCells = new HashMap<>();
+
+    /** 1分毎のリクエスト数(ピークを算出しない場合はnull) */
+    private final MinuteRequestCounts minuteRequestCounts;
+
+    /** 集計オブジェクトのファクトリ */
+    private final AggregatorFactory aggregatorFactory;
+
+    /** 導出する時刻の集計単位 */
+    private final Set<AggregateUnit> timeUnits;
+
+    /** 時刻セルの集計単位 */
+    private final AggregateUnit cellUnit;
+
+    /** メモリ上に保持する集計セル数の上限(0以下の場合は上限なし) */
+    private final int cellLimit;
+
+    /** ランの格納先ディレクトリ(上限なしの場合はnull) */
+    private final File spillDirectory;
+
+    /** 退避したラン */
+    private final List<File> runFiles = new ArrayList<>();
+
+    /** ランに退避した集計セルの数 */
+    private long spilledCellCount;
+
+    /** プロセス名一覧 */
+    private final Set<String> processNames = new HashSet<>();
+
+    /**
+     * コンストラクタ。
+     * <p/>
+     * メモリ上に保持する集計セル数の上限は設けない。
+     *
+     * @param aggregatorFactory 集計オブジェクトのファクトリ
+     * @param timeUnits 導出する時刻の集計単位(時間、5分、分単位のいずれか。時間単位は常に導出する)
+     * @param countPerMinute 1分毎のリクエスト数を集計する場合はtrue
+     * @throws IllegalArgumentException 時刻の集計単位以外が指定された場合
+     */
+    public RollupResultHolder(AggregatorFactory aggregatorFactory, Set<AggregateUnit> timeUnits,
+            boolean countPerMinute) {
+        this(aggregatorFactory, timeUnits, countPerMinute, 0, null);
+    }
+
+    /**
+     * メモリ上に保持する集計セル数の上限を指定するコンストラクタ。
+     *
+     * @param aggregatorFactory 集計オブジェクトのファクトリ
+     * @param timeUnits 導出する時刻の集計単位(時間、5分、分単位のいずれか。時間単位は常に導出する)
+     * @param countPerMinute 1分毎のリクエスト数を集計する場合はtrue
+     * @param cellLimit メモリ上に保持する集計セル数の上限(0以下の場合は上限なし)
+     * @param spillDirectory ランの格納先ディレクトリ(上限なしの場合はnull)
+     * @throws IllegalArgumentException 時刻の集計単位以外が指定された場合
+     */
+    public RollupResultHolder(AggregatorFactory aggregatorFactory, Set<AggregateUnit> timeUnits,
+            boolean countPerMinute, int cellLimit, File spillDirectory) {
+        this.aggregatorFactory = aggregatorFactory;
+        this.cellLimit = cellLimit;
+        this.spillDirectory = spillDirectory;
+        this.timeUnits = EnumSet.of(AggregateUnit.HOUR);
+        this.timeUnits.addAll(timeUnits);
+        if (this.timeUnits.contains(AggregateUnit.YEAR_MONTH) || this.timeUnits.contains(AggregateUnit.DAY)) {
+            throw new IllegalArgumentException("time units must be HOUR, FIVE_MINUTES or MINUTE. units = " + timeUnits);
+        }
+        if (this.timeUnits.contains(AggregateUnit.MINUTE)) {
+            cellUnit = AggregateUnit.MINUTE;
+        } else if (this.timeUnits.contains(AggregateUnit.FIVE_MINUTES)) {
+            cellUnit = AggregateUnit.FIVE_MINUTES;
+        } else {
+            cellUnit = AggregateUnit.HOUR;
+        }
+        minuteRequestCounts = countPerMinute ? new MinuteRequestCounts() : null;
+    }
+
+    /**
+     * 集計対象のリクエスト情報を追加する。
+     *
+     * @param requestId リクエストID
+     * @param processName プロセス名
+     * @param date 年月日(yyyyMMdd)
+     * @param hour 時
+     * @param minute 分
+     * @param executionTime 処理時間
+     * @param thresholdOver 閾値超のリクエストか否か
+     * @param statusCode ステータスコード(分類毎のリクエスト数に計上しない場合は0)
+     */
+    public void add(String requestId, String processName, int date, int hour, int minute,
+            int executionTime, boolean thresholdOver, int statusCode) {
+        processNames.add(processName);
+        cellOf(dateCells, new AggregateKey(requestId, processName, AggregateUnit.DAY, date))
+                .addRequestData(executionTime, thresholdOver, statusCode);
+        cellOf(timeCells, new AggregateKey(requestId, processName, cellUnit, unitValueOf(cellUnit, hour, minute)))
+                .addRequestData(executionTime, thresholdOver, statusCode);
+        if (minuteRequestCounts != null) {
+            minuteRequestCounts.add(processName, date, hour * 60 + minute, 1);
+        }
+        spillIfExceeded();
+    }
+
+    /**
+     * 集計セルを取得する。(存在しない場合は生成する)
+     *
+     * @param cells 集計セル
+     * @param key 集計セルのキー
+     * @return 集計セルの集計オブジェクト
+     */
+    private Aggregator cellOf(Map<AggregateKey, Aggregator> cells, AggregateKey key) {
+        Aggregator aggregator = cells.get(key);
+        if (aggregator == null) {
+            aggregator = aggregatorFactory.create();
+            cells.put(key, aggregator);
+        }
+        return aggregator;
+    }
+
+    /**
+     * 他のインスタンスが保持する集計セルを、本インスタンスに合算する。
+     * <p/>
+     * 合算後は、合算元のインスタンスを使用しないこと。(合算元の集計オブジェクトを本インスタンスで引き継ぐため)
+     *
+     * @param other 合算元のインスタンス(本インスタンスと同じ集計単位であること)
+     */
+    public void merge(RollupResultHolder other) {
+        processNames.addAll(other.processNames);
+        runFiles.addAll(other.runFiles);
+        spilledCellCount += other.spilledCellCount;
+        mergeInto(dateCells, other.dateCells);
+        mergeInto(timeCells, other.timeCells);
+        if (minuteRequestCounts != null && other.minuteRequestCounts != null) {
+            minuteRequestCounts.merge(other.minuteRequestCounts);
+        }
+        spillIfExceeded();
+    }
+
+    /**
+     * メモリ上の集計セルの数が上限に達した場合は、集計セルをランに退避する。
+     */
+    private void spillIfExceeded() {
+        if (cellLimit > 0 && dateCells.size() + timeCells.size() >= cellLimit) {
+            spill();
+        }
+    }
+
+    /**
+     * メモリ上の集計セルを、キー順にランに退避する。
+     *
+     * @throws UncheckedIOException ランの出力に失敗した場合
+     */
+    private void spill() {
+        SortedMap<AggregateKey, Aggregator> sorted = new TreeMap<>(dateCells);
+        sorted.putAll(timeCells);
+        try {
+            runFiles.add(AggregateRunFile.write(spillDirectory, sorted));
+            spilledCellCount += sorted.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to spill aggregate cells. directory = [" + spillDirectory + ']', e);
+        }
+        dateCells.clear();
+        timeCells.clear();
+    }
+
+    /**
+     * 集計セルを合算する。
+     *
+     * @param target 合算先
+     * @param source 合算元
+     */
+    private static void mergeInto(Map<AggregateKey, Aggregator> target, Map<AggregateKey, Aggregator> source) {
+        for (Map.Entry<AggregateKey, Aggregator> entry : source.entrySet()) {
+            Aggregator aggregator = target.get(entry.getKey());
+            if (aggregator == null) {
+                target.put(entry.getKey(), entry.getValue());
+            } else {
+                aggregator.merge(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 集計セルから各集計単位の集計結果を導出し、指定された集計結果に合算する。
+     * <p/>
+     * 日付セルからは年月(条件に一致する年月のみ)及び日単位、時刻セルからは時間単位及び導出対象の5分、分単位の集計結果を導出する。
+     * 1分毎のリクエスト数を集計している場合は、合わせて合算する。
+     * <p/>
+     * 集計オブジェクトの複製を避けるため、各集計セルの最後の導出先では集計セルの集計オブジェクトを引き継ぐ。
+     * このため、導出後は本インスタンスを使用しないこと。
+     * <p/>
+     * 集計セルをランに退避している場合も、導出した集計結果は全て合算先に保持される。
+     * 導出した集計結果をメモリ上に保持せずに出力する場合は、{@link #rollupEach(IntPredicate, ResultHandler)}を使用すること。
+     *
+     * @param holder 合算先の集計結果
+     * @param yearMonthFilter 年月単位の集計結果を導出する年月(yyyyMM)の条件
+     * @throws UncheckedIOException ランの読み込みに失敗した場合
+     */
+    public void rollupInto(AggregateResultHolder holder, IntPredicate yearMonthFilter) {
+        if (runFiles.isEmpty()) {
+            for (Map.Entry<AggregateKey, Aggregator> entry : dateCells.entrySet()) {
+                rollupCell(holder, entry.getKey(), entry.getValue(), yearMonthFilter);
+            }
+            for (Map.Entry<AggregateKey, Aggregator> entry : timeCells.entrySet()) {
+                rollupCell(holder, entry.getKey(), entry.getValue(), yearMonthFilter);
+            }
+            dateCells.clear();
+            timeCells.clear();
+        } else {
+            try {
+                rollupEach(yearMonthFilter, holder::merge);
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to merge aggregate runs. directory = [" + spillDirectory + ']', e);
+            }
+        }
+
+        if (minuteRequestCounts != null) {
+            holder.getMinuteRequestCounts().merge(minuteRequestCounts);
+        }
+    }
+
+    /**
+     * 集計セルから各集計単位の集計結果をリクエストID毎に導出し、指定されたハンドラに渡す。
+     * <p/>
+     * 集計セルをリクエストIDの順に処理し、1つのリクエストIDの集計結果を導出する度にハンドラを呼び出す。
+     * このため、導出した集計結果のうちメモリ上に保持するのは、1つのリクエストID分のみとなる。
+     * ハンドラに渡す集計結果は、集計単位のキー順に出力した場合、全ての集計結果をキー順に出力した場合と同じ順序となる。
+     * <p/>
+     * ランに退避した集計セルは、メモリ上の集計セルをランに退避した後に、全てのランをキー順にマージしながら導出する。
+     * 導出後はランを削除する。
+     * 1分毎のリクエスト数は導出の対象外となるため、{@link #getMinuteRequestCounts()}で取得すること。
+     * <p/>
+     * 導出後は本インスタンスを使用しないこと。(導出する集計単位等は{@link #rollupInto(AggregateResultHolder, IntPredicate)}と同じ)
+     *
+     * @param yearMonthFilter 年月単位の集計結果を導出する年月(yyyyMM)の条件
+     * @param handler リクエストID毎の集計結果のハンドラ
+     * @throws IOException ランの読み込み、またはハンドラの処理に失敗した場合
+     * @throws UncheckedIOException メモリ上の集計セルのランへの退避に失敗した場合
+     */
+    public void rollupEach(IntPredicate yearMonthFilter, ResultHandler handler) throws IOException {
+        RequestIdGroup group = new RequestIdGroup(yearMonthFilter, handler);
+        if (runFiles.isEmpty()) {
+            SortedMap<AggregateKey, Aggregator> sorted = new TreeMap<>(dateCells);
+            sorted.putAll(timeCells);
+            dateCells.clear();
+            timeCells.clear();
+            for (Map.Entry<AggregateKey, Aggregator> entry : sorted.entrySet()) {
+                group.add(entry.getKey(), entry.getValue());
+            }
+        } else {
+            if (!dateCells.isEmpty() || !timeCells.isEmpty()) {
+                spill();
+            }
+            mergeRuns(group);
+        }
+        group.flush();
+    }
+
+    /**
+     * 全てのランをキー順にマージし、同じキーの集計セルを合算して導出する。
+     * <p/>
+     * 各ランの読み込み中の集計セルのみをメモリ上に保持する。
+     * 同時に開くランの数は{@link #MAX_FAN_IN}までとし、ランの数がこれを超える場合は、
+     * 古いランから{@link #MAX_FAN_IN}個ずつ1つのランにマージしてから導出する。
+     * マージ後は、全てのランを削除する。
+     *
+     * @param group リクエストID毎の導出先
+     * @throws IOException ランの読み込み、またはハンドラの処理に失敗した場合
+     */
+    private void mergeRuns(RequestIdGroup group) throws IOException {
+        try {
+            while (runFiles.size() > MAX_FAN_IN) {
+                List<File> oldest = new ArrayList<>(runFiles.subList(0, MAX_FAN_IN));
+                AggregateRunFile.Writer writer = new AggregateRunFile.Writer(spillDirectory);
+                runFiles.add(writer.getFile());
+                try {
+                    mergeRuns(oldest, writer::write);
+                } finally {
+                    writer.close();
+                }
+                for (File runFile : oldest) {
+                    FileUtil.deleteFile(runFile);
+                }
+                runFiles.subList(0, MAX_FAN_IN).clear();
+            }
+            mergeRuns(runFiles, group::add);
+        } finally {
+            for (File runFile : runFiles) {
+                FileUtil.deleteFile(runFile);
+            }
+            runFiles.clear();
+            spilledCellCount = 0;
+        }
+    }
+
+    /**
+     * 指定されたランをキー順にマージし、同じキーの集計セルを合算して出力先に渡す。
+     *
+     * @param runs マージするラン
+     * @param output 合算した集計セルの出力先
+     * @throws IOException ランの読み込み、または出力に失敗した場合
+     */
+    private void mergeRuns(List<File> runs, CellHandler output) throws IOException {
+        List<AggregateRunFile.Reader> readers = new ArrayList<>(runs.size());
+        PriorityQueue<AggregateRunFile.Reader> queue = new PriorityQueue<>(runs.size(),
+                Comparator.comparing(AggregateRunFile.Reader::getKey));
+        try {
+            for (File runFile : runs) {
+                AggregateRunFile.Reader reader = new AggregateRunFile.Reader(runFile);
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            while (!queue.isEmpty()) {
+                AggregateRunFile.Reader reader = queue.poll();
+                AggregateKey key = reader.getKey();
+                Aggregator aggregator = aggregatorFactory.create();
+                readCell(queue, reader, aggregator);
+                while (!queue.isEmpty() && queue.peek().getKey().equals(key)) {
+                    readCell(queue, queue.poll(), aggregator);
+                }
+                output.handle(key, aggregator);
+            }
+        } finally {
+            for (AggregateRunFile.Reader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * ランの読み込み中の集計セルを合算し、次の集計セルが存在する場合はマージ対象に戻す。
+     *
+     * @param queue マージ対象のラン
+     * @param reader 読み込み中のラン
+     * @param aggregator 合算先の集計オブジェクト
+     * @throws IOException 読み込みに失敗した場合
+     */
+    private static void readCell(PriorityQueue<AggregateRunFile.Reader> queue, AggregateRunFile.Reader reader,
+            Aggregator aggregator) throws IOException {
+        reader.readInto(aggregator);
+        if (reader.next()) {
+            queue.add(reader);
+        }
+    }
+
+    /**
+     * 1つの集計セルから各集計単位の集計結果を導出し、指定された集計結果に合算する。
+     * <p/>
+     * 最後の導出先では、集計セルの集計オブジェクトを引き継ぐ。
+     *
+     * @param holder 合算先の集計結果
+     * @param cell 集計セルのキー
+     * @param aggregator 集計セルの集計オブジェクト
+     * @param yearMonthFilter 年月単位の集計結果を導出する年月(yyyyMM)の条件
+     */
+    private void rollupCell(AggregateResultHolder holder, AggregateKey cell, Aggregator aggregator,
+            IntPredicate yearMonthFilter) {
+        if (cell.getAggregateUnit() == AggregateUnit.DAY) {
+            int date = cell.getAggregateUnitValue();
+            if (yearMonthFilter.test(date / 100)) {
+                holder.rollup(keyOf(cell, AggregateUnit.YEAR_MONTH, date / 100), aggregator);
+            }
+            holder.merge(keyOf(cell, AggregateUnit.DAY, date % 100), aggregator);
+            return;
+        }
+
+        int hour = hourOf(cellUnit, cell.getAggregateUnitValue());
+        int minute = minuteOf(cellUnit, cell.getAggregateUnitValue());
+        for (AggregateUnit unit : timeUnits) {
+            if (unit != cellUnit) {
+                holder.rollup(keyOf(cell, unit, unitValueOf(unit, hour, minute)), aggregator);
+            }
+        }
+        holder.merge(keyOf(cell, cellUnit, cell.getAggregateUnitValue()), aggregator);
+    }
+
+    /**
+     * 集計セルの数を取得する。
+     * <p/>
+     * メモリ上の集計セルと、ランに退避した集計セルの合計とする。
+     * 異なるランに退避した同じキーの集計セルは、導出時に合算されるため、導出前は重複して数える。
+     *
+     * @return 集計セルの数
+     */
+    public long getCellCount() {
+        return dateCells.size() + timeCells.size() + spilledCellCount;
+    }
+
+    /**
+     * 退避したランの数を取得する。
+     *
+     * @return ランの数
+     */
+    public int getRunCount() {
+        return runFiles.size();
+    }
+
+    /**
+     * 集計したリクエスト情報のプロセス名一覧を取得する。
+     *
+     * @return プロセス名一覧
+     */
+    public Set<String> getProcessNames() {
+        return processNames;
+    }
+
+    /**
+     * 1分毎のリクエスト数を取得する。
+     *
+     * @return 1分毎のリクエスト数(1分毎のリクエスト数を集計しない場合は空のオブジェクト)
+     */
+    public MinuteRequestCounts getMinuteRequestCounts() {
+        return minuteRequestCounts == null ? new MinuteRequestCounts() : minuteRequestCounts;
+    }
+
+    /**
+     * 集計セルのキーから、導出先の集計単位のキーを生成する。
+     *
+     * @param cell 集計セルのキー
+     * @param unit 導出先の集計単位
+     * @param unitValue 導出先の集計単位値
+     * @return 導出先の集計単位のキー
+     */
+    private static AggregateKey keyOf(AggregateKey cell, AggregateUnit unit, int unitValue) {
+        return new AggregateKey(cell.getRequestId(), cell.getProcessName(), unit, unitValue);
+    }
+
+    /**
+     * 時刻の集計単位の集計単位値を取得する。
+     * <p/>
+     * 集計単位値は、以下のとおり。
+     * <ul>
+     * <li>時間単位: 時(0～23)</li>
+     * <li>5分単位: 時 * 100 + 5分単位に切り捨てた分(例: 14時7分の場合は1405)</li>
+     * <li>分単位: 時 * 100 + 分(例: 14時7分の場合は1407)</li>
+     * </ul>
+     *
+     * @param unit 時刻の集計単位
+     * @param hour 時
+     * @param minute 分
+     * @return 集計単位値
+     */
+    public static int unitValueOf(AggregateUnit unit, int hour, int minute) {
+        switch (unit) {
+            case HOUR:
+                return hour;
+            case FIVE_MINUTES:
+                return hour * 100 + minute / 5 * 5;
+            case MINUTE:
+                return hour * 100 + minute;
+            default:
+                throw new IllegalArgumentException("not a time unit. unit = [" + unit + ']');
+        }
+    }
+
+    /**
+     * 時刻の集計単位値から時を取得する。
+     *
+     * @param unit 時刻の集計単位
+     * @param unitValue 集計単位値
+     * @return 時
+     */
+    private static int hourOf(AggregateUnit unit, int unitValue) {
+        return unit == AggregateUnit.HOUR ? unitValue : unitValue / 100;
+    }
+
+    /**
+     * 時刻の集計単位値から分を取得する。
+     *
+     * @param unit 時刻の集計単位
+     * @param unitValue 集計単位値
+     * @return 分(時間単位の場合は0)
+     */
+    private static int minuteOf(AggregateUnit unit, int unitValue) {
+        return unit == AggregateUnit.HOUR ? 0 : unitValue % 100;
+    }
+
+    /**
+     * ランをマージした集計セルを処理するインタフェース。
+     */
+    private interface CellHandler {
+
+        /**
+         * 1つの集計セルを処理する。
+         *
+         * @param key 集計セルのキー
+         * @param aggregator 集計セルの集計オブジェクト
+         * @throws IOException 処理に失敗した場合
+         */
+        void handle(AggregateKey key, Aggregator aggregator) throws IOException;
+    }
+
+    /**
+     * {@link #rollupEach(IntPredicate, ResultHandler)}で導出したリクエストID毎の集計結果を処理するインタフェース。
+     */
+    public interface ResultHandler {
+
+        /**
+         * 1つのリクエストIDの集計結果を処理する。
+         *
+         * @param results 1つのリクエストIDの集計結果(プロセス名一覧は、当該リクエストIDのプロセス名のみとなる)
+         * @throws IOException 処理に失敗した場合
+         */
+        void handle(AggregateResultHolder results) throws IOException;
+    }
+
+    /**
+     * キー順の集計セルを、リクエストID毎の集計結果に導出するクラス。
+     */
+    private final class RequestIdGroup {
+
+        /** 年月単位の集計結果を導出する年月(yyyyMM)の条件 */
+        private final IntPredicate yearMonthFilter;
+
+        /** リクエストID毎の集計結果のハンドラ */
+        private final ResultHandler handler;
+
+        /** 導出中のリクエストID */
+        private String requestId;
+
+        /** 導出中のリクエストIDの集計結果 */
+        private AggregateResultHolder results;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param yearMonthFilter 年月単位の集計結果を導出する年月(yyyyMM)の条件
+         * @param handler リクエストID毎の集計結果のハンドラ
+         */
+        private RequestIdGroup(IntPredicate yearMonthFilter, ResultHandler handler) {
+            this.yearMonthFilter = yearMonthFilter;
+            this.handler = handler;
+        }
+
+        /**
+         * 集計セルを導出する。
+         * <p/>
+         * リクエストIDが変わった場合は、導出中のリクエストIDの集計結果をハンドラに渡す。
+         *
+         * @param cell 集計セルのキー
+         * @param aggregator 集計セルの集計オブジェクト
+         * @throws IOException ハンドラの処理に失敗した場合
+         */
+        private void add(AggregateKey cell, Aggregator aggregator) throws IOException {
+            if (!cell.getRequestId().equals(requestId)) {
+                flush();
+                requestId = cell.getRequestId();
+                results = new AggregateResultHolder(aggregatorFactory);
+            }
+            rollupCell(results, cell, aggregator, yearMonthFilter);
+        }
+
+        /**
+         * 導出中のリクエストIDの集計結果をハンドラに渡す。
+         *
+         * @throws IOException ハンドラの処理に失敗した場合
+         */
+        private void flush() throws IOException {
+            if (results != null) {
+                handler.handle(results);
+                results = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import please.change.me.statistics.action.AggregateUnit;
+
+/**
+ * 集計結果を集計結果CSVに出力するクラス。
+ * <p/>
+ * フォーマット定義ファイル(可変長)の項目順、文字エンコーディング、区切り文字、囲み文字及び改行コードに従い、
+ * {@link nablarch.common.io.FileRecordWriterHolder}で出力した場合と同じ内容を出力する。
+ * <p/>
+ * 集計結果CSVは、プロセス名及び集計単位毎に{@link #open(String, AggregateUnit, File, Map)}で開き、
+ * 集計結果を{@link #write(AggregateKey, Aggregator)}で出力する。
+ * 集計結果はプロセス名及び集計単位から出力先を特定し、出力先の{@link CsvFileWriter}で出力する。
+ * 集計結果CSV内の行の順序は、出力した順となる。
+ * <p/>
+ * 出力する項目は、フォーマット定義ファイルに定義された項目名で決まる。出力できる項目は以下のとおり。
+ * (これ以外の項目は空文字を出力する。)
+ * <ul>
+ * <li>requestId、aggregateUnitValue、processName(集計単位のキー)</li>
+ * <li>requestCount、thresholdOverCount、average、median、max</li>
+ * <li>p90、p95、p99、p999(90、95、99、99.9パーセンタイル値)</li>
+ * <li>status1xx～status5xx(ステータスコードの分類毎のリクエスト数)</li>
+ * <li>
+ * within + 処理時間(例: within1000。処理時間が指定値以下のリクエスト数)<br/>
+ * 対数間隔の処理時間を複数定義することで、処理時間のヒストグラム(累積)を出力できる。
+ * </li>
+ * </ul>
+ * <p/>
+ * 本クラスはスレッドセーフではない。
+ */
+public final class SummaryCsvWriter implements Closeable {
+
+    /**
+     * 処理時間が指定値以下のリクエスト数を出力する項目の項目名のプレフィックス。
+     * <p/>
+     * プレフィックスの後ろに処理時間(ミリ秒)を付与した項目名(例: within1000)とする。
+     */
+    public static final String WITHIN_FIELD_PREFIX = "within";
+
+    /** 出力できる項目の項目名(配列の位置が項目の番号となる) */
+    private static final List<String> SUPPORTED_FIELDS = Arrays.asList(
+            "requestId", "aggregateUnitValue", "processName", "requestCount", "thresholdOverCount",
+            "average", "median", "max", "p90", "p95", "p99", "p999",
+            "status1xx", "status2xx", "status3xx", "status4xx", "status5xx");
+
+    /** ステータスコードの分類毎のリクエスト数の項目(1xx)の番号 */
+    private static final int STATUS_FIELD_ID = SUPPORTED_FIELDS.indexOf("status1xx");
+
+    /** 処理時間が指定値以下のリクエスト数の項目の番号 */
+    private static final int WITHIN_FIELD_ID = SUPPORTED_FIELDS.size();
+
+    /** 出力する項目の項目名(フォーマット定義ファイルの項目順) */
+    private final String[] fieldNames;
+
+    /** 出力する項目の番号(出力できない項目は-1) */
+    private final int[] fieldIds;
+
+    /** 処理時間が指定値以下のリクエスト数の項目の処理時間(それ以外の項目は0) */
+    private final int[] withinThresholds;
+
+    /** 集計結果CSVのフォーマット定義 */
+    private final CsvFileWriter.Layout layout;
+
+    /** プロセス名及び集計単位毎の出力先 */
+    private final Map<String, Map<AggregateUnit, CsvFileWriter>> outputs = new HashMap<>();
+
+    /**
+     * コンストラクタ。
+     *
+     * @param layoutFile 集計結果CSVのフォーマット定義ファイル
+     * @throws IllegalArgumentException フォーマット定義ファイルが可変長ではない場合
+     */
+    public SummaryCsvWriter(File layoutFile) {
+        layout = new CsvFileWriter.Layout(layoutFile);
+        fieldNames = layout.getFieldNames();
+        fieldIds = new int[fieldNames.length];
+        withinThresholds = new int[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            fieldIds[i] = SUPPORTED_FIELDS.indexOf(fieldNames[i]);
+            int threshold = withinThresholdOf(fieldNames[i]);
+            if (threshold >= 0) {
+                fieldIds[i] = WITHIN_FIELD_ID;
+                withinThresholds[i] = threshold;
+            }
+        }
+    }
+
+    /**
+     * プロセス名及び集計単位に対応する集計結果CSVを開き、タイトル行を出力する。
+     * <p/>
+     * ファイルが既に存在する場合は上書きする。
+     *
+     * @param processName プロセス名
+     * @param aggregateUnit 集計単位
+     * @param file 集計結果CSV
+     * @param title タイトル行(キーは項目名)
+     * @throws IOException 出力に失敗した場合
+     */
+    public void open(String processName, AggregateUnit aggregateUnit, File file, Map<String, String> title)
+            throws IOException {
+        CsvFileWriter output = new CsvFileWriter(layout, file);
+        CsvFileWriter previous = outputs.computeIfAbsent(processName, name -> new EnumMap<>(AggregateUnit.class))
+                .put(aggregateUnit, output);
+        if (previous != null) {
+            previous.close();
+        }
+
+        for (String fieldName : fieldNames) {
+            String value = title.get(fieldName);
+            output.writeString(value == null ? "" : value);
+        }
+        output.endRecord();
+    }
+
+    /**
+     * 集計結果を、プロセス名及び集計単位に対応する集計結果CSVに出力する。
+     *
+     * @param key 集計単位のキー
+     * @param aggregator 集計オブジェクト
+     * @throws IOException 出力に失敗した場合
+     * @throws IllegalStateException 集計結果CSVを開いていない場合
+     */
+    public void write(AggregateKey key, Aggregator aggregator) throws IOException {
+        Map<AggregateUnit, CsvFileWriter> units = outputs.get(key.getProcessName());
+        CsvFileWriter output = units == null ? null : units.get(key.getAggregateUnit());
+        if (output == null) {
+            throw new IllegalStateException("summary file was not opened. process name = [" + key.getProcessName()
+                    + "], aggregate unit = [" + key.getAggregateUnit() + ']');
+        }
+
+        for (int i = 0; i < fieldNames.length; i++) {
+            writeField(output, i, key, aggregator);
+        }
+        output.endRecord();
+    }
+
+    /**
+     * 出力する項目の項目名を取得する。
+     *
+     * @return 項目名(フォーマット定義ファイルの項目順)
+     */
+    public String[] getFieldNames() {
+        return fieldNames.clone();
+    }
+
+    /**
+     * 処理時間が指定値以下のリクエスト数を出力する項目の場合に、項目名から処理時間を取得する。
+     *
+     * @param fieldName 項目名
+     * @return 処理時間(ミリ秒)。処理時間が指定値以下のリクエスト数を出力する項目ではない場合は-1
+     */
+    public static int withinThresholdOf(String fieldName) {
+        if (!fieldName.startsWith(WITHIN_FIELD_PREFIX)) {
+            return -1;
+        }
+        String threshold = fieldName.substring(WITHIN_FIELD_PREFIX.length());
+        if (threshold.isEmpty() || threshold.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < threshold.length(); i++) {
+            if (threshold.charAt(i) < '0' || threshold.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        return Integer.parseInt(threshold);
+    }
+
+    /**
+     * 1項目分の値を出力する。
+     * <p/>
+     * フォーマット定義ファイルの項目のうち、集計結果に存在しない項目は空文字とする。
+     *
+     * @param output 出力先
+     * @param index 項目の位置(フォーマット定義ファイルの項目順)
+     * @param key 集計単位のキー
+     * @param aggregator 集計オブジェクト
+     */
+    private void writeField(CsvFileWriter output, int index, AggregateKey key, Aggregator aggregator) {
+        int fieldId = fieldIds[index];
+        if (fieldId == WITHIN_FIELD_ID) {
+            output.writeNumber(aggregator.getRequestCountWithin(withinThresholds[index]));
+            return;
+        }
+        if (fieldId >= STATUS_FIELD_ID) {
+            output.writeNumber(aggregator.getStatusClassCount(fieldId - STATUS_FIELD_ID + 1));
+            return;
+        }
+        switch (fieldId) {
+            case 0:
+                output.writeString(key.getRequestId());
+                break;
+            case 1:
+                output.writeNumber(key.getAggregateUnitValue());
+                break;
+            case 2:
+                output.writeString(key.getProcessName());
+                break;
+            case 3:
+                output.writeNumber(aggregator.getRequestCount());
+                break;
+            case 4:
+                output.writeNumber(aggregator.getThresholdOverCount());
+                break;
+            case 5:
+                output.writeNumber(aggregator.getAverageTime());
+                break;
+            case 6:
+                output.writeNumber(aggregator.getMedianTime());
+                break;
+            case 7:
+                output.writeNumber(aggregator.getMaxExecutionTime());
+                break;
+            case 8:
+                output.writeNumber(aggregator.getPercentileTime(90));
+                break;
+            case 9:
+                output.writeNumber(aggregator.getPercentileTime(95));
+                break;
+            case 10:
+                output.writeNumber(aggregator.getPercentileTime(99));
+                break;
+            case 11:
+                output.writeNumber(aggregator.getPercentileTime(99.9));
+                break;
+            default:
+                output.writeString("");
+                break;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 全ての集計結果CSVに、バッファに蓄積した内容を出力した後に閉じる。
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Map<AggregateUnit, CsvFileWriter> units : outputs.values()) {
+            for (CsvFileWriter output : units.values()) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+        outputs.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
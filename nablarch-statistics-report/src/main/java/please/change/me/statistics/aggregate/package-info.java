@@ -0,0 +1,4 @@
+/**
+ * リクエスト情報の集計処理で使用する集計オブジェクトを提供する。
+ */
+package please.change.me.statistics.aggregate;
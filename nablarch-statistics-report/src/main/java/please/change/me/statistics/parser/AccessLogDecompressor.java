@@ -0,0 +1,33 @@
+package please.change.me.statistics.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 圧縮されたアクセスログを展開しながら読み込むためのインタフェース。
+ * <p/>
+ * 展開した内容はストリームのまま{@link AccessLogParser#parse(InputStream, java.io.File, java.util.function.Consumer)}で
+ * 解析するため、展開したファイルをディスクに出力する必要はない。
+ * <p/>
+ * 実装クラスは、{@link please.change.me.statistics.action.settings.OnlineStatisticsDefinition#setAccessLogDecompressors}
+ * に設定する。
+ * 本インタフェースの実装クラスは、スレッドセーフであること。
+ */
+public interface AccessLogDecompressor {
+
+    /**
+     * 展開対象とするアクセスログのファイル名の拡張子を取得する。
+     *
+     * @return ファイル名の拡張子(例:「.gz」)
+     */
+    String getSuffix();
+
+    /**
+     * 圧縮されたアクセスログの入力ストリームから、展開しながら読み込む入力ストリームを生成する。
+     *
+     * @param in 圧縮されたアクセスログの入力ストリーム
+     * @return 展開しながら読み込む入力ストリーム(閉じた場合は、元の入力ストリームも閉じること)
+     * @throws IOException 圧縮形式のヘッダの読み込みに失敗した場合
+     */
+    InputStream decompress(InputStream in) throws IOException;
+}
@@ -0,0 +1,308 @@
+package please.change.me.statistics.parser;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+
+/**
+ * {@link OnlineStatisticsDefinition}で設定された正規表現から生成した、アクセスログの行の解析オブジェクト。
+ * <p/>
+ * 終了ログ(ENDログ)を特定するための正規表現が固定文字列の場合は、正規表現を使用せずに固定文字列で判定する。
+ * <p/>
+ * 各項目(リクエストID、プロセス名、ステータスコード、処理時間)を抽出するための正規表現のうち、
+ * 「固定文字列 + (抽出する値のパターン) + 固定文字列」の形式のもの({@link LiteralFieldPattern}を参照)は、
+ * 行の先頭から1度だけ走査し、各項目の前方の固定文字列が出現した位置で値を抽出する。
+ * 走査は前方の固定文字列の末尾の文字(例:「rid = [」の場合は「[」)の出現位置のみで行うため、
+ * 全ての項目の末尾の文字が同じ場合は、その文字の出現位置を{@link String#indexOf(int, int)}で順に検索する。
+ * それ以外の形式の正規表現は、項目毎に正規表現で抽出する。
+ * いずれの場合も、抽出結果は項目毎の正規表現で抽出した結果と同じとなる。
+ * <p/>
+ * 本クラスはイミュータブルであり、スレッドセーフである。
+ */
+public final class AccessLogLineMatcher {
+
+    /** 項目:リクエストID */
+    private static final int REQUEST_ID = 0;
+
+    /** 項目:プロセス名 */
+    private static final int PROCESS_NAME = 1;
+
+    /** 項目:ステータスコード */
+    private static final int STATUS_CODE = 2;
+
+    /** 項目:処理時間 */
+    private static final int EXECUTION_TIME = 3;
+
+    /** 項目数 */
+    private static final int FIELD_COUNT = 4;
+
+    /** 前方の固定文字列の末尾の文字による絞り込みを行う文字の範囲 */
+    private static final int LAST_CHAR_TABLE_SIZE = 128;
+
+    /** 前方の固定文字列の末尾の文字が項目毎に異なることを表す値 */
+    private static final int MIXED_LAST_CHARS = -1;
+
+    /** 終了ログを特定するための正規表現 */
+    private final Pattern endLogPattern;
+
+    /** 終了ログを特定するための固定文字列(固定文字列ではない場合はnull) */
+    private final String endLogLiteral;
+
+    /** 項目毎の正規表現 */
+    private final Pattern[] patterns;
+
+    /** 項目毎の固定文字列のパターン(固定文字列のパターンに変換できない項目はnull) */
+    private final LiteralFieldPattern[] literalPatterns;
+
+    /** 文字が、いずれかの項目の前方の固定文字列の末尾の文字と一致するか否か(ASCII文字のみ) */
+    private final boolean[] lastChars = new boolean[LAST_CHAR_TABLE_SIZE];
+
+    /** 前方の固定文字列の末尾の文字がASCII文字以外の項目が存在するか否か */
+    private final boolean nonAsciiLastChar;
+
+    /** 全ての項目に共通する前方の固定文字列の末尾の文字(項目毎に異なる場合は{@link #MIXED_LAST_CHARS}) */
+    private final int commonLastChar;
+
+    /** 固定文字列のパターンで抽出する項目が存在するか否か */
+    private final boolean hasLiteralPattern;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     */
+    private AccessLogLineMatcher(OnlineStatisticsDefinition logParseDefinition) {
+        endLogPattern = logParseDefinition.getEndLogPattern();
+        endLogLiteral = LiteralFieldPattern.literalTextOf(endLogPattern);
+        patterns = new Pattern[FIELD_COUNT];
+        patterns[REQUEST_ID] = logParseDefinition.getFindRequestIdPattern();
+        patterns[PROCESS_NAME] = logParseDefinition.getFindProcessNamePattern();
+        patterns[STATUS_CODE] = logParseDefinition.getFindStatusCodePattern();
+        patterns[EXECUTION_TIME] = logParseDefinition.getFindExecutionTimePattern();
+
+        literalPatterns = new LiteralFieldPattern[FIELD_COUNT];
+        boolean nonAscii = false;
+        boolean literal = false;
+        int common = 0;
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            try {
+                literalPatterns[i] = LiteralFieldPattern.of(patterns[i], logParseDefinition.getAccessLogEncoding());
+            } catch (IllegalArgumentException e) {
+                // 固定文字列のパターンに変換できない項目は、正規表現で抽出する。
+                continue;
+            }
+            String prefix = literalPatterns[i].getPrefixText();
+            char last = prefix.charAt(prefix.length() - 1);
+            if (last < LAST_CHAR_TABLE_SIZE) {
+                lastChars[last] = true;
+            } else {
+                nonAscii = true;
+            }
+            common = !literal || common == last ? last : MIXED_LAST_CHARS;
+            literal = true;
+        }
+        nonAsciiLastChar = nonAscii;
+        commonLastChar = common;
+        hasLiteralPattern = literal;
+    }
+
+    /**
+     * オンラインアクセスログ解析処理の設定値から、解析オブジェクトを生成する。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     * @return 解析オブジェクト
+     */
+    public static AccessLogLineMatcher compile(OnlineStatisticsDefinition logParseDefinition) {
+        return new AccessLogLineMatcher(logParseDefinition);
+    }
+
+    /**
+     * 終了ログか否かを判定する。
+     *
+     * @param line 判定対象の行
+     * @return 終了ログの場合はtrue
+     */
+    public boolean isEndLog(String line) {
+        if (endLogLiteral != null) {
+            return line.contains(endLogLiteral);
+        }
+        return endLogPattern.matcher(line).find();
+    }
+
+    /**
+     * 行から各項目を抽出する。
+     *
+     * @param line 抽出対象の行
+     * @return 抽出結果
+     */
+    public Fields extract(String line) {
+        String[] values = new String[FIELD_COUNT];
+        if (hasLiteralPattern) {
+            scan(line, values);
+        }
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            if (literalPatterns[i] == null) {
+                values[i] = find(patterns[i], line);
+            }
+        }
+        return new Fields(values);
+    }
+
+    /**
+     * 行から処理時間を抽出する。
+     *
+     * @param line 抽出対象の行
+     * @return 処理時間(抽出できない場合はnull)
+     */
+    public String findExecutionTime(String line) {
+        LiteralFieldPattern literalPattern = literalPatterns[EXECUTION_TIME];
+        if (literalPattern != null) {
+            return literalPattern.find(line, 0);
+        }
+        return find(patterns[EXECUTION_TIME], line);
+    }
+
+    /**
+     * 行を先頭から1度だけ走査し、固定文字列のパターンで抽出する項目を抽出する。
+     * <p/>
+     * 項目毎に、前方の固定文字列が出現した位置のうち、値がパターンに一致する最初の位置から抽出する。
+     *
+     * @param line 抽出対象の行
+     * @param values 抽出結果の格納先
+     */
+    private void scan(String line, String[] values) {
+        // 抽出が完了していない項目(抽出済み、または後方の固定文字列が存在せず抽出できない項目は除く)
+        boolean[] pending = new boolean[FIELD_COUNT];
+        int pendingCount = 0;
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            if (literalPatterns[i] != null) {
+                pending[i] = true;
+                pendingCount++;
+            }
+        }
+        int length = line.length();
+        int pos = -1;
+        while (pendingCount > 0) {
+            // 前方の固定文字列の末尾の文字の出現位置まで進める。
+            if (commonLastChar != MIXED_LAST_CHARS) {
+                pos = line.indexOf(commonLastChar, pos + 1);
+                if (pos < 0) {
+                    return;
+                }
+            } else {
+                do {
+                    pos++;
+                } while (pos < length && !isLastChar(line.charAt(pos)));
+                if (pos == length) {
+                    return;
+                }
+            }
+            char c = line.charAt(pos);
+            for (int i = 0; i < FIELD_COUNT; i++) {
+                if (!pending[i]) {
+                    continue;
+                }
+                LiteralFieldPattern literalPattern = literalPatterns[i];
+                String prefix = literalPattern.getPrefixText();
+                int prefixStart = pos - prefix.length() + 1;
+                if (prefix.charAt(prefix.length() - 1) != c || prefixStart < 0
+                        || !line.startsWith(prefix, prefixStart)) {
+                    continue;
+                }
+                int valueEnd = line.indexOf(literalPattern.getSuffixText(), pos + 1);
+                if (valueEnd < 0) {
+                    // 後方の固定文字列が存在しない場合、以降の位置からも抽出できない。
+                    pending[i] = false;
+                    pendingCount--;
+                    continue;
+                }
+                String value = line.substring(pos + 1, valueEnd);
+                if (literalPattern.matches(value)) {
+                    values[i] = value;
+                    pending[i] = false;
+                    pendingCount--;
+                }
+            }
+        }
+    }
+
+    /**
+     * いずれかの項目の前方の固定文字列の末尾の文字か否か。
+     *
+     * @param c 文字
+     * @return 末尾の文字の場合はtrue
+     */
+    private boolean isLastChar(char c) {
+        return c < LAST_CHAR_TABLE_SIZE ? lastChars[c] : nonAsciiLastChar;
+    }
+
+    /**
+     * 正規表現で値を抽出する。
+     *
+     * @param pattern 正規表現
+     * @param line 抽出対象の行
+     * @return 抽出した値(抽出できない場合はnull)
+     */
+    private static String find(Pattern pattern, String line) {
+        Matcher matcher = pattern.matcher(line);
+        if (matcher.find()) {
+            return matcher.group(1);
+        }
+        return null;
+    }
+
+    /**
+     * 行から抽出した各項目を保持するクラス。
+     */
+    public static final class Fields {
+
+        /** 項目毎の値 */
+        private final String[] values;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param values 項目毎の値
+         */
+        private Fields(String[] values) {
+            this.values = values;
+        }
+
+        /**
+         * リクエストIDを取得する。
+         *
+         * @return リクエストID(抽出できない場合はnull)
+         */
+        public String getRequestId() {
+            return values[REQUEST_ID];
+        }
+
+        /**
+         * プロセス名を取得する。
+         *
+         * @return プロセス名(抽出できない場合はnull)
+         */
+        public String getProcessName() {
+            return values[PROCESS_NAME];
+        }
+
+        /**
+         * ステータスコードを取得する。
+         *
+         * @return ステータスコード(抽出できない場合はnull)
+         */
+        public String getStatusCode() {
+            return values[STATUS_CODE];
+        }
+
+        /**
+         * 処理時間を取得する。
+         *
+         * @return 処理時間(抽出できない場合はnull)
+         */
+        public String getExecutionTime() {
+            return values[EXECUTION_TIME];
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package please.change.me.statistics.parser;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * アクセスログの解析件数を計上するクラス。
+ * <p/>
+ * 以下の件数を計上する。
+ * <ul>
+ * <li>読み込んだ行数({@link MappedAccessLogParser}でメモリにマッピングして解析する場合は、行単位に読み込まないため計上しない)</li>
+ * <li>終了ログの件数(処理対象外のリクエストIDの終了ログを含む)</li>
+ * <li>処理対象外のリクエストIDのため、スキップした終了ログの件数</li>
+ * <li>解析を完了したアクセスログのバイト数(圧縮されたアクセスログは、圧縮後のサイズ)</li>
+ * </ul>
+ * 解析オブジェクトは解析中の件数を自身で保持し、一定の行数毎及びアクセスログの解析完了時にまとめて計上するため、
+ * 行毎に本クラスを更新することはない。
+ * <p/>
+ * 本クラスはスレッドセーフであり、複数スレッドの解析オブジェクトで共有できる。
+ */
+public final class AccessLogParseCounters {
+
+    /** 読み込んだ行数 */
+    private final LongAdder lines = new LongAdder();
+
+    /** 終了ログの件数 */
+    private final LongAdder endLogs = new LongAdder();
+
+    /** スキップした終了ログの件数 */
+    private final LongAdder skippedRequestIds = new LongAdder();
+
+    /** 解析を完了したアクセスログのバイト数 */
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * 解析件数を計上する。
+     *
+     * @param lines 読み込んだ行数
+     * @param endLogs 終了ログの件数
+     * @param skippedRequestIds スキップした終了ログの件数
+     */
+    public void add(long lines, long endLogs, long skippedRequestIds) {
+        this.lines.add(lines);
+        this.endLogs.add(endLogs);
+        this.skippedRequestIds.add(skippedRequestIds);
+    }
+
+    /**
+     * 解析を完了したアクセスログのバイト数を計上する。
+     *
+     * @param bytes バイト数
+     */
+    public void addBytes(long bytes) {
+        this.bytes.add(bytes);
+    }
+
+    /**
+     * 読み込んだ行数を取得する。
+     *
+     * @return 読み込んだ行数
+     */
+    public long getLines() {
+        return lines.sum();
+    }
+
+    /**
+     * 終了ログの件数を取得する。
+     *
+     * @return 終了ログの件数
+     */
+    public long getEndLogs() {
+        return endLogs.sum();
+    }
+
+    /**
+     * 処理対象外のリクエストIDのため、スキップした終了ログの件数を取得する。
+     *
+     * @return スキップした終了ログの件数
+     */
+    public long getSkippedRequestIds() {
+        return skippedRequestIds.sum();
+    }
+
+    /**
+     * 解析を完了したアクセスログのバイト数を取得する。
+     *
+     * @return バイト数
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+}
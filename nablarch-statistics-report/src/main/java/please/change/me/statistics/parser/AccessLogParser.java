@@ -0,0 +1,59 @@
+package please.change.me.statistics.parser;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import please.change.me.statistics.aggregate.RequestInfo;
+
+/**
+ * 画面オンラインアクセスログを解析し、終了ログ(ENDログ)からリクエスト情報を抽出するインタフェース。
+ * <p/>
+ * 抽出対象は、{@link please.change.me.statistics.action.settings.OnlineStatisticsDefinition}で設定された
+ * 抽出対象のリクエストIDの終了ログのみとなる。
+ * 本インタフェースの実装クラスはスレッドセーフではない。
+ */
+public interface AccessLogParser {
+
+    /**
+     * アクセスログを解析し、抽出したリクエスト情報をログの出現順に通知する。
+     *
+     * @param file 解析対象のアクセスログ
+     * @param consumer 抽出したリクエスト情報の通知先
+     * @throws please.change.me.statistics.exception.LogParseException 解析に失敗した場合
+     */
+    void parse(File file, Consumer<RequestInfo> consumer);
+
+    /**
+     * アクセスログのスナップショットを解析し、抽出したリクエスト情報をログの出現順に通知する。
+     * <p/>
+     * スナップショットの取得後にアクセスログに追記された内容は解析しない。
+     *
+     * @param snapshot 解析対象のアクセスログのスナップショット
+     * @param consumer 抽出したリクエスト情報の通知先
+     * @throws please.change.me.statistics.exception.LogParseException 解析に失敗した場合
+     */
+    void parse(AccessLogSnapshot snapshot, Consumer<RequestInfo> consumer);
+
+    /**
+     * 入力ストリームから読み込んだアクセスログを解析し、抽出したリクエスト情報をログの出現順に通知する。
+     * <p/>
+     * 圧縮されたアクセスログを展開しながら解析する場合に使用する。
+     * 入力ストリームは、解析後に閉じる。
+     *
+     * @param in アクセスログの入力ストリーム
+     * @param file 解析対象のアクセスログ(例外のメッセージに使用する)
+     * @param consumer 抽出したリクエスト情報の通知先
+     * @throws please.change.me.statistics.exception.LogParseException 解析に失敗した場合
+     */
+    void parse(InputStream in, File file, Consumer<RequestInfo> consumer);
+
+    /**
+     * 解析件数の計上先を設定する。
+     * <p/>
+     * 設定しない場合は、解析件数を計上しない。
+     *
+     * @param counters 解析件数の計上先
+     */
+    void setCounters(AccessLogParseCounters counters);
+}
@@ -0,0 +1,17 @@
+package please.change.me.statistics.parser;
+
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+
+/**
+ * {@link AccessLogParser}を生成するファクトリインタフェース。
+ */
+public interface AccessLogParserFactory {
+
+    /**
+     * アクセスログの解析オブジェクトを生成する。
+     *
+     * @param definition オンラインアクセスログ解析処理の設定値
+     * @return アクセスログの解析オブジェクト
+     */
+    AccessLogParser create(OnlineStatisticsDefinition definition);
+}
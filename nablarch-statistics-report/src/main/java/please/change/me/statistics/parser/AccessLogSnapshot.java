@@ -0,0 +1,342 @@
+package please.change.me.statistics.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32;
+
+import please.change.me.statistics.exception.LogParseException;
+
+/**
+ * ある時点のアクセスログの内容(スナップショット)を、コピーせずに読み込むためのクラス。
+ * <p/>
+ * スナップショットの取得時にアクセスログを開き、ファイルの識別子(inodeなど)とサイズを記録する。
+ * 以降は開いたチャネルから、記録したサイズまでのみを読み込むため、以下の場合でも取得時点の内容を読み込むことができる。
+ * <ul>
+ * <li>取得後にアクセスログに追記された場合(追記された内容は読み込まない)</li>
+ * <li>取得後にアクセスログがリネームによりローテーションされた場合(開いたチャネルは同一のファイルを参照し続ける)</li>
+ * </ul>
+ * なお、取得時点で改行で終わっていない最終行は、書き込み途中の可能性があるためスナップショットに含めない。
+ * <p/>
+ * 取得後にアクセスログが切り詰められた場合(copytruncate方式のローテーションなど)は、
+ * 取得時点の内容を読み込むことができないため、{@link LogParseException}を送出する。
+ * 切り詰めは、以下のいずれかに該当する場合に検知する。
+ * <ul>
+ * <li>アクセスログのサイズが、スナップショットのサイズより小さい場合</li>
+ * <li>
+ * スナップショットの先頭及び末尾({@link #FINGERPRINT_SIZE}バイトずつ)のチェックサムが、取得時点と異なる場合
+ * (切り詰め後に追記され、スナップショットのサイズを超えた場合)
+ * </li>
+ * </ul>
+ * 検知は、読み込みの開始時及びスナップショットの終端まで読み込んだ時点で行う。
+ * このため、読み込み中に切り詰められた場合も、読み込んだ内容は破棄される(例外が送出される)。
+ * なお、先頭及び末尾の範囲外のみが書き換えられた場合は検知できない。
+ * (アクセスログの各行はログ出力日時を含むため、切り詰め後に追記された内容が取得時点の先頭及び末尾と一致することはない)
+ */
+public final class AccessLogSnapshot implements Closeable {
+
+    /** 最終行を検索する際に1度に読み込むサイズ */
+    private static final int SCAN_BUFFER_SIZE = 8192;
+
+    /** スナップショットを取得する際のリトライ回数 */
+    private static final int MAX_RETRY = 3;
+
+    /** 切り詰めの検知に使用する、スナップショットの先頭及び末尾のサイズ */
+    static final int FINGERPRINT_SIZE = 4096;
+
+    /** アクセスログ */
+    private final File file;
+
+    /** アクセスログのチャネル */
+    private final FileChannel channel;
+
+    /** ファイルの識別子 */
+    private final Object fileKey;
+
+    /** スナップショットのサイズ */
+    private final long size;
+
+    /** スナップショットの先頭のチェックサム */
+    private final long headChecksum;
+
+    /** スナップショットの末尾のチェックサム */
+    private final long tailChecksum;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param file アクセスログ
+     * @param channel アクセスログのチャネル
+     * @param fileKey ファイルの識別子
+     * @param size スナップショットのサイズ
+     * @throws IOException 読み込みに失敗した場合
+     */
+    private AccessLogSnapshot(File file, FileChannel channel, Object fileKey, long size) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.fileKey = fileKey;
+        this.size = size;
+        headChecksum = headChecksum();
+        tailChecksum = tailChecksum();
+    }
+
+    /**
+     * アクセスログのスナップショットを取得する。
+     * <p/>
+     * アクセスログを開く前後でファイルの識別子が異なる場合(開く間にローテーションされた場合)は、取得し直す。
+     *
+     * @param file アクセスログ
+     * @return スナップショット
+     * @throws LogParseException スナップショットの取得に失敗した場合
+     */
+    public static AccessLogSnapshot take(File file) {
+        Path path = file.toPath();
+        try {
+            for (int i = 0; i < MAX_RETRY; i++) {
+                Object before = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                try {
+                    Object after = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+                    if (before == null || before.equals(after)) {
+                        AccessLogSnapshot snapshot = new AccessLogSnapshot(
+                                file, channel, before, completeLineSize(channel, channel.size()));
+                        channel = null;
+                        return snapshot;
+                    }
+                } finally {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new LogParseException("failed to take access log snapshot. file = [" + file.getAbsolutePath() + ']',
+                    e);
+        }
+        throw new LogParseException("access log was rotated while taking snapshot. file = ["
+                + file.getAbsolutePath() + ']');
+    }
+
+    /**
+     * 改行で終わる最終行までのサイズを取得する。
+     *
+     * @param channel アクセスログのチャネル
+     * @param size アクセスログのサイズ
+     * @return 改行で終わる最終行までのサイズ(改行が存在しない場合は0)
+     * @throws IOException 読み込みに失敗した場合
+     */
+    private static long completeLineSize(FileChannel channel, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long end = size;
+        while (end > 0) {
+            long start = Math.max(0, end - SCAN_BUFFER_SIZE);
+            buffer.clear().limit((int) (end - start));
+            readFully(channel, buffer, start);
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    /**
+     * スナップショットの先頭のチェックサムを算出する。
+     *
+     * @return チェックサム
+     * @throws IOException 読み込みに失敗した場合、ファイルの終端に達した場合
+     */
+    private long headChecksum() throws IOException {
+        return checksum(0, Math.min(size, FINGERPRINT_SIZE));
+    }
+
+    /**
+     * スナップショットの末尾のチェックサムを算出する。
+     *
+     * @return チェックサム
+     * @throws IOException 読み込みに失敗した場合、ファイルの終端に達した場合
+     */
+    private long tailChecksum() throws IOException {
+        long start = Math.max(0, size - FINGERPRINT_SIZE);
+        return checksum(start, size - start);
+    }
+
+    /**
+     * 指定された範囲のチェックサムを算出する。
+     *
+     * @param position 開始位置
+     * @param length 長さ({@link #FINGERPRINT_SIZE}以下)
+     * @return チェックサム
+     * @throws IOException 読み込みに失敗した場合、ファイルの終端に達した場合
+     */
+    private long checksum(long position, long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        readFully(channel, buffer, position);
+        buffer.flip();
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        return crc.getValue();
+    }
+
+    /**
+     * 指定された位置からバッファが一杯になるまで読み込む。
+     *
+     * @param channel チャネル
+     * @param buffer バッファ
+     * @param position 読み込み開始位置
+     * @throws IOException 読み込みに失敗した場合、ファイルの終端に達した場合
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, pos);
+            if (read < 0) {
+                throw new IOException("unexpected end of file. position = [" + pos + ']');
+            }
+            pos += read;
+        }
+    }
+
+    /**
+     * アクセスログを取得する。
+     *
+     * @return アクセスログ
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * ファイルの識別子を取得する。
+     * <p/>
+     * ファイルシステムがファイルの識別子を提供しない場合はnullとなる。
+     *
+     * @return ファイルの識別子
+     */
+    public Object getFileKey() {
+        return fileKey;
+    }
+
+    /**
+     * スナップショットのサイズを取得する。
+     *
+     * @return スナップショットのサイズ
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * スナップショットを読み込むためのチャネルを取得する。
+     * <p/>
+     * チャネルの読み込み位置は共有されるため、{@link FileChannel#read(ByteBuffer, long)}などの位置を指定する操作で読み込むこと。
+     *
+     * @return アクセスログのチャネル
+     * @throws LogParseException 取得後にアクセスログが切り詰められた場合
+     */
+    FileChannel getChannel() {
+        verifyNotTruncated();
+        return channel;
+    }
+
+    /**
+     * スナップショットを先頭から読み込む入力ストリームを生成する。
+     * <p/>
+     * 入力ストリームは、スナップショットのサイズに達した時点で終端となる。
+     * 終端に達した時点で、読み込み中にアクセスログが切り詰められていないことを再度検証する。
+     *
+     * @return 入力ストリーム
+     * @throws LogParseException 取得後にアクセスログが切り詰められた場合
+     */
+    InputStream newInputStream() {
+        verifyNotTruncated();
+        return new SnapshotInputStream();
+    }
+
+    /**
+     * 取得後にアクセスログが切り詰められていないことを検証する。
+     * <p/>
+     * {@link #getChannel()}で取得したチャネルを読み込んだ場合は、読み込み後に本メソッドで再度検証すること。
+     *
+     * @throws LogParseException 切り詰められた場合、読み込みに失敗した場合
+     */
+    void verifyNotTruncated() {
+        long current;
+        boolean rewritten;
+        try {
+            current = channel.size();
+            rewritten = current >= size && (headChecksum() != headChecksum || tailChecksum() != tailChecksum);
+        } catch (IOException e) {
+            throw new LogParseException("failed to read access log file. file = [" + file.getAbsolutePath() + ']', e);
+        }
+        if (current < size) {
+            throw new LogParseException("access log was truncated after snapshot. file = ["
+                    + file.getAbsolutePath() + "], snapshot size = [" + size + "], current size = [" + current + ']');
+        }
+        if (rewritten) {
+            throw new LogParseException("access log was truncated after snapshot. content of the snapshot range was"
+                    + " rewritten. file = [" + file.getAbsolutePath() + "], snapshot size = [" + size + ']');
+        }
+    }
+
+    /**
+     * アクセスログのチャネルを閉じる。
+     *
+     * @throws IOException チャネルを閉じることができなかった場合
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * スナップショットの範囲のみを読み込む入力ストリーム。
+     */
+    private final class SnapshotInputStream extends InputStream {
+
+        /** 読み込み位置 */
+        private long position;
+
+        /** 終端に達した時点の検証を行ったか否か */
+        private boolean verified;
+
+        /** {@inheritDoc} */
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            long remaining = size - position;
+            if (remaining <= 0) {
+                if (!verified) {
+                    verified = true;
+                    verifyNotTruncated();
+                }
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+            if (read < 0) {
+                throw new IOException("access log was truncated after snapshot. file = ["
+                        + file.getAbsolutePath() + ']');
+            }
+            position += read;
+            return read;
+        }
+    }
+}
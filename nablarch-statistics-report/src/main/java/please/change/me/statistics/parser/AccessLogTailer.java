@@ -0,0 +1,343 @@
+package please.change.me.statistics.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+import please.change.me.statistics.aggregate.RequestInfo;
+import please.change.me.statistics.exception.LogParseException;
+
+/**
+ * 出力中のアクセスログを追跡し、前回の読み込み位置以降に追記された終了ログ(ENDログ)からリクエスト情報を抽出するクラス。
+ * <p/>
+ * 終了ログの判定及び各項目の抽出は、{@link RegexAccessLogParser}と同じ規則で行う。
+ * <p/>
+ * アクセスログはファイルの識別子(inodeなど)で追跡するため、リネームによりローテーションされた場合は、
+ * ローテーション後のファイル名で残りの内容を読み込み、新たに作成されたアクセスログは先頭から読み込む。
+ * また、前回の読み込み位置よりサイズが小さくなったアクセスログ(切り詰められたアクセスログ)は、先頭から読み込み直す。
+ * <p/>
+ * 読み込みは改行で終わる行までとし、書き込み途中の最終行は次回に読み込む。
+ * 終了ログの後続の行に出力される処理時間が未出力の場合は、次回以降に処理時間を抽出した時点でリクエスト情報を通知する。
+ * <p/>
+ * 読み込み位置は{@link #getPositions()}で取得し、{@link #restore(List)}で復元できる。
+ * 処理時間が未出力の終了ログが存在する場合、取得した読み込み位置は終了ログの行の先頭となるため、
+ * 復元後に同じ終了ログが重複して通知されることはない。
+ * <p/>
+ * 本クラスはスレッドセーフではない。
+ */
+public class AccessLogTailer {
+
+    /** 1度に読み込むサイズ */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /** 行の解析オブジェクト */
+    private final RegexAccessLogParser lineParser;
+
+    /** アクセスログの文字エンコーディング */
+    private final Charset charset;
+
+    /** 追跡中のアクセスログ(キーはファイルの識別子) */
+    private final Map<String, TrackedFile> trackedFiles = new LinkedHashMap<>();
+
+    /** 読み込みバッファ */
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+    /** 行バッファ */
+    private byte[] lineBuffer = new byte[1024];
+
+    /**
+     * コンストラクタ。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     */
+    public AccessLogTailer(OnlineStatisticsDefinition logParseDefinition) {
+        lineParser = new RegexAccessLogParser(logParseDefinition);
+        charset = logParseDefinition.getAccessLogEncoding();
+    }
+
+    /**
+     * アクセスログに追記された内容を読み込み、抽出したリクエスト情報をログの出現順に通知する。
+     * <p/>
+     * 指定されなかったアクセスログ(削除されたアクセスログ)は、追跡対象から除外する。
+     *
+     * @param files アクセスログ(古い順)
+     * @param consumer 抽出したリクエスト情報の通知先
+     * @throws LogParseException 読み込みまたは解析に失敗した場合
+     */
+    public void poll(File[] files, Consumer<RequestInfo> consumer) {
+        Set<String> currentKeys = new HashSet<>();
+        for (File file : files) {
+            String key;
+            try {
+                key = fileKeyOf(file);
+            } catch (IOException e) {
+                // 一覧の取得後に削除された場合は、次回の読み込みで追跡対象から除外する。
+                continue;
+            }
+            if (!currentKeys.add(key)) {
+                continue;
+            }
+            TrackedFile trackedFile = trackedFiles.get(key);
+            if (trackedFile == null) {
+                trackedFile = new TrackedFile(key, file.getName(), 0);
+                trackedFiles.put(key, trackedFile);
+            }
+            trackedFile.name = file.getName();
+            read(file, trackedFile, consumer);
+        }
+        trackedFiles.keySet().retainAll(currentKeys);
+    }
+
+    /**
+     * アクセスログの前回の読み込み位置以降を読み込む。
+     *
+     * @param file アクセスログ
+     * @param trackedFile 追跡中のアクセスログ
+     * @param consumer 抽出したリクエスト情報の通知先
+     */
+    private void read(File file, TrackedFile trackedFile, Consumer<RequestInfo> consumer) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < trackedFile.position) {
+                // 切り詰められた場合は、先頭から読み込み直す。
+                trackedFile.reset();
+            }
+            long position = trackedFile.position;
+            int lineLength = 0;
+            while (position < size) {
+                readBuffer.clear();
+                readBuffer.limit((int) Math.min(READ_BUFFER_SIZE, size - position));
+                int read = channel.read(readBuffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                byte[] bytes = readBuffer.array();
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] == '\n') {
+                        long next = position + i + 1;
+                        handleLine(trackedFile, decode(lineLength), next - lineLength - 1, next, consumer);
+                        lineLength = 0;
+                    } else {
+                        appendToLine(lineLength++, bytes[i]);
+                    }
+                }
+                position += read;
+            }
+        } catch (Exception e) {
+            throw new LogParseException("failed to read access log file. file = [" + file.getAbsolutePath() + ']', e);
+        }
+    }
+
+    /**
+     * 1行を処理する。
+     *
+     * @param trackedFile 追跡中のアクセスログ
+     * @param line 行(改行を含まない)
+     * @param lineStart 行の先頭の位置
+     * @param next 次の行の先頭の位置
+     * @param consumer 抽出したリクエスト情報の通知先
+     * @throws Exception 解析に失敗した場合
+     */
+    private void handleLine(TrackedFile trackedFile, String line, long lineStart, long next,
+            Consumer<RequestInfo> consumer) throws Exception {
+        if (trackedFile.pending != null) {
+            // 処理時間が未出力の終了ログの後続の行は、処理時間の抽出のみを行う。
+            String executionTime = lineParser.findExecutionTime(line);
+            if (executionTime != null) {
+                RegexAccessLogParser.EndLog endLog = trackedFile.pending;
+                trackedFile.pending = null;
+                consumer.accept(endLog.toRequestInfo(executionTime));
+            }
+            trackedFile.position = next;
+            return;
+        }
+        RegexAccessLogParser.EndLog endLog = lineParser.parseEndLog(line);
+        trackedFile.position = next;
+        if (endLog == null) {
+            return;
+        }
+        if (endLog.getExecutionTime() != null) {
+            consumer.accept(endLog.toRequestInfo(endLog.getExecutionTime()));
+        } else {
+            trackedFile.pending = endLog;
+            trackedFile.pendingPosition = lineStart;
+        }
+    }
+
+    /**
+     * 行バッファに1バイト追加する。
+     *
+     * @param index 追加する位置
+     * @param b 追加するバイト
+     */
+    private void appendToLine(int index, byte b) {
+        if (index == lineBuffer.length) {
+            lineBuffer = Arrays.copyOf(lineBuffer, lineBuffer.length * 2);
+        }
+        lineBuffer[index] = b;
+    }
+
+    /**
+     * 行バッファをデコードする。(行末のCRは除く)
+     *
+     * @param length 行バッファの長さ
+     * @return デコードした行
+     */
+    private String decode(int length) {
+        int end = length > 0 && lineBuffer[length - 1] == '\r' ? length - 1 : length;
+        return new String(lineBuffer, 0, end, charset);
+    }
+
+    /**
+     * ファイルの識別子を取得する。
+     * <p/>
+     * ファイルシステムがファイルの識別子を提供しない場合は、ファイル名を識別子とする。
+     *
+     * @param file ファイル
+     * @return ファイルの識別子
+     * @throws IOException ファイルの属性の取得に失敗した場合
+     */
+    private static String fileKeyOf(File file) throws IOException {
+        Object fileKey = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        return fileKey == null ? "name:" + file.getName() : fileKey.toString();
+    }
+
+    /**
+     * 追跡中のアクセスログの読み込み位置を取得する。
+     *
+     * @return 読み込み位置
+     */
+    public List<Position> getPositions() {
+        List<Position> positions = new ArrayList<>(trackedFiles.size());
+        for (TrackedFile trackedFile : trackedFiles.values()) {
+            long position = trackedFile.pending == null ? trackedFile.position : trackedFile.pendingPosition;
+            positions.add(new Position(trackedFile.key, trackedFile.name, position));
+        }
+        return Collections.unmodifiableList(positions);
+    }
+
+    /**
+     * 読み込み位置を復元する。
+     * <p/>
+     * 復元後の{@link #poll(File[], Consumer)}では、復元した読み込み位置以降を読み込む。
+     *
+     * @param positions {@link #getPositions()}で取得した読み込み位置
+     */
+    public void restore(List<Position> positions) {
+        trackedFiles.clear();
+        for (Position position : positions) {
+            trackedFiles.put(position.getFileKey(),
+                    new TrackedFile(position.getFileKey(), position.getFileName(), position.getOffset()));
+        }
+    }
+
+    /**
+     * アクセスログの読み込み位置を保持するクラス。
+     */
+    public static final class Position {
+
+        /** ファイルの識別子 */
+        private final String fileKey;
+
+        /** ファイル名 */
+        private final String fileName;
+
+        /** 読み込み位置 */
+        private final long offset;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param fileKey ファイルの識別子
+         * @param fileName ファイル名
+         * @param offset 読み込み位置
+         */
+        public Position(String fileKey, String fileName, long offset) {
+            this.fileKey = fileKey;
+            this.fileName = fileName;
+            this.offset = offset;
+        }
+
+        /**
+         * ファイルの識別子を取得する。
+         *
+         * @return ファイルの識別子
+         */
+        public String getFileKey() {
+            return fileKey;
+        }
+
+        /**
+         * ファイル名を取得する。
+         *
+         * @return ファイル名
+         */
+        public String getFileName() {
+            return fileName;
+        }
+
+        /**
+         * 読み込み位置を取得する。
+         *
+         * @return 読み込み位置
+         */
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+    /**
+     * 追跡中のアクセスログの状態を保持するクラス。
+     */
+    private static final class TrackedFile {
+
+        /** ファイルの識別子 */
+        private final String key;
+
+        /** ファイル名 */
+        private String name;
+
+        /** 次に読み込む位置 */
+        private long position;
+
+        /** 処理時間が未出力の終了ログ */
+        private RegexAccessLogParser.EndLog pending;
+
+        /** 処理時間が未出力の終了ログの行の先頭の位置 */
+        private long pendingPosition;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param key ファイルの識別子
+         * @param name ファイル名
+         * @param position 次に読み込む位置
+         */
+        private TrackedFile(String key, String name, long position) {
+            this.key = key;
+            this.name = name;
+            this.position = position;
+        }
+
+        /** 先頭から読み込み直す。 */
+        private void reset() {
+            position = 0;
+            pending = null;
+        }
+    }
+}
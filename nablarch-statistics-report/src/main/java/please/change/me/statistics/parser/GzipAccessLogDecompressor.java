@@ -0,0 +1,28 @@
+package please.change.me.statistics.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * gzip形式(拡張子「.gz」)で圧縮されたアクセスログを展開する{@link AccessLogDecompressor}実装クラス。
+ * <p/>
+ * 複数のgzipメンバを連結したファイルも展開できる。
+ */
+public class GzipAccessLogDecompressor implements AccessLogDecompressor {
+
+    /** 展開時の入力バッファのサイズ */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** {@inheritDoc} */
+    @Override
+    public String getSuffix() {
+        return ".gz";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        return new GZIPInputStream(in, BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,246 @@
+package please.change.me.statistics.parser;
+
+import java.nio.charset.Charset;
+import java.util.regex.Pattern;
+
+/**
+ * 正規表現から導出した、バイト列または文字列で検索するための固定文字列のパターン。
+ * <p/>
+ * 項目の抽出に使用する正規表現は、「固定文字列(前方) + (抽出する値のパターン) + 固定文字列(後方)」の形式であること。
+ * (例: {@code rid = \[([^\]]+)\]}の場合、前方は「rid = [」、後方は「]」となる。)
+ * <p/>
+ * 抽出する値は、前方の固定文字列の直後から最初に出現する後方の固定文字列の直前までとなる。
+ * 正規表現での抽出結果と一致させるため、抽出する値のパターンは後方の固定文字列の先頭文字にマッチしないこと。
+ */
+final class LiteralFieldPattern {
+
+    /** 正規表現のメタ文字 */
+    private static final String META_CHARACTERS = ".[]{}()*+?^$|";
+
+    /** 前方の固定文字列 */
+    private final byte[] prefix;
+
+    /** 後方の固定文字列 */
+    private final byte[] suffix;
+
+    /** 前方の固定文字列(文字列での検索用) */
+    private final String prefixText;
+
+    /** 後方の固定文字列(文字列での検索用) */
+    private final String suffixText;
+
+    /** 抽出する値のパターン */
+    private final Pattern valuePattern;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param prefix 前方の固定文字列
+     * @param suffix 後方の固定文字列
+     * @param valuePattern 抽出する値のパターン
+     * @param charset アクセスログの文字エンコーディング
+     */
+    private LiteralFieldPattern(String prefix, String suffix, Pattern valuePattern, Charset charset) {
+        this.prefix = prefix.getBytes(charset);
+        this.suffix = suffix.getBytes(charset);
+        prefixText = prefix;
+        suffixText = suffix;
+        this.valuePattern = valuePattern;
+    }
+
+    /**
+     * 項目を抽出する正規表現から、パターンを生成する。
+     *
+     * @param pattern 項目を抽出する正規表現
+     * @param charset アクセスログの文字エンコーディング
+     * @return パターン
+     * @throws IllegalArgumentException 正規表現がサポートしない形式の場合
+     */
+    static LiteralFieldPattern of(Pattern pattern, Charset charset) {
+        String regex = pattern.pattern();
+        int open = indexOfGroup(regex);
+        int close = open < 0 ? -1 : indexOfGroupEnd(regex, open);
+        String prefix = open < 0 ? null : toLiteral(regex.substring(0, open));
+        String suffix = close < 0 ? null : toLiteral(regex.substring(close + 1));
+        if (prefix == null || prefix.isEmpty() || suffix == null || suffix.isEmpty()
+                || regex.startsWith("?", open + 1)) {
+            throw new IllegalArgumentException(
+                    "pattern must be 'literal(value pattern)literal' form. pattern = [" + regex + ']');
+        }
+        Pattern valuePattern = Pattern.compile(regex.substring(open + 1, close));
+        if (valuePattern.matcher(suffix.substring(0, 1)).matches()) {
+            throw new IllegalArgumentException(
+                    "value pattern must not match the first character of the suffix. pattern = [" + regex + ']');
+        }
+        return new LiteralFieldPattern(prefix, suffix, valuePattern, charset);
+    }
+
+    /**
+     * 固定文字列の正規表現から、固定文字列のバイト列を取得する。
+     *
+     * @param pattern 固定文字列の正規表現
+     * @param charset アクセスログの文字エンコーディング
+     * @return 固定文字列のバイト列
+     * @throws IllegalArgumentException 正規表現が固定文字列ではない場合
+     */
+    static byte[] literalOf(Pattern pattern, Charset charset) {
+        String literal = toLiteral(pattern.pattern());
+        if (literal == null || literal.isEmpty()) {
+            throw new IllegalArgumentException("pattern must be literal. pattern = [" + pattern.pattern() + ']');
+        }
+        return literal.getBytes(charset);
+    }
+
+    /**
+     * 固定文字列の正規表現から、固定文字列を取得する。
+     *
+     * @param pattern 固定文字列の正規表現
+     * @return 固定文字列(正規表現が固定文字列ではない場合はnull)
+     */
+    static String literalTextOf(Pattern pattern) {
+        String literal = toLiteral(pattern.pattern());
+        return literal == null || literal.isEmpty() ? null : literal;
+    }
+
+    /**
+     * 前方の固定文字列を取得する。
+     *
+     * @return 前方の固定文字列
+     */
+    byte[] getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * 後方の固定文字列を取得する。
+     *
+     * @return 後方の固定文字列
+     */
+    byte[] getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * 前方の固定文字列を取得する。(文字列での検索用)
+     *
+     * @return 前方の固定文字列
+     */
+    String getPrefixText() {
+        return prefixText;
+    }
+
+    /**
+     * 後方の固定文字列を取得する。(文字列での検索用)
+     *
+     * @return 後方の固定文字列
+     */
+    String getSuffixText() {
+        return suffixText;
+    }
+
+    /**
+     * 行の指定された位置以降から、パターンに一致する最初の値を抽出する。
+     *
+     * @param line 抽出対象の行
+     * @param from 検索の開始位置
+     * @return 抽出した値(一致しない場合はnull)
+     */
+    String find(String line, int from) {
+        int hit = from;
+        while ((hit = line.indexOf(prefixText, hit)) >= 0) {
+            int valueStart = hit + prefixText.length();
+            int valueEnd = line.indexOf(suffixText, valueStart);
+            if (valueEnd < 0) {
+                return null;
+            }
+            String value = line.substring(valueStart, valueEnd);
+            if (matches(value)) {
+                return value;
+            }
+            hit++;
+        }
+        return null;
+    }
+
+    /**
+     * 抽出した値がパターンに一致するか否か。
+     *
+     * @param value 抽出した値
+     * @return 一致する場合はtrue
+     */
+    boolean matches(String value) {
+        return valuePattern.matcher(value).matches();
+    }
+
+    /**
+     * 正規表現をエスケープを解除した固定文字列に変換する。
+     *
+     * @param regex 正規表現
+     * @return 固定文字列(固定文字列ではない場合はnull)
+     */
+    private static String toLiteral(String regex) {
+        StringBuilder literal = new StringBuilder(regex.length());
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (++i == regex.length() || Character.isLetterOrDigit(regex.charAt(i))) {
+                    // \d、\sなどの文字クラスは固定文字列ではない
+                    return null;
+                }
+                literal.append(regex.charAt(i));
+            } else if (META_CHARACTERS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.toString();
+    }
+
+    /**
+     * 最初のグループの開始位置を取得する。
+     *
+     * @param regex 正規表現
+     * @return グループの開始位置(グループが存在しない場合は-1)
+     */
+    private static int indexOfGroup(String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '(') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * グループの終了位置を取得する。
+     * <p/>
+     * 文字クラス内の括弧は、グループの開始、終了とはみなさない。
+     *
+     * @param regex 正規表現
+     * @param open グループの開始位置
+     * @return グループの終了位置(終了していない場合は-1)
+     */
+    private static int indexOfGroupEnd(String regex, int open) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = open; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,378 @@
+package please.change.me.statistics.parser;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * ログ出力日時を解析し、年・月・日・時・分を取得するクラス。
+ * <p/>
+ * 解析結果は{@link SimpleDateFormat}(lenientモード)で解析した結果と同じとなる。
+ * ただし、書式が固定長の数値項目と記号のみで構成される場合(例:「yyyy-MM-dd HH:mm:ss.SSS」)は、
+ * {@link SimpleDateFormat}及び{@link Calendar}を使用せずに、各項目を固定位置から直接数値に変換する。
+ * 固定位置から変換できる書式の項目は以下のとおり。
+ * <ul>
+ * <li>yyyy(年)、MM(月)、dd(日)、HH(時、0-23)、hh(時、1-12)、mm(分)、ss(秒)、SSS(ミリ秒)</li>
+ * </ul>
+ * 上記以外の書式の場合や、値が範囲外などの理由で固定位置から変換できない場合は、
+ * インスタンス毎に生成済みの{@link SimpleDateFormat}で解析する。
+ * (固定位置から変換した場合、夏時間の切り替えにより存在しない日時は、ログに出力された日時のまま扱う)
+ * <p/>
+ * hh(時、1-12)は{@link SimpleDateFormat}と同じく午前として扱うため、12時は0時、13時以降はそのままの時となる。
+ * <p/>
+ * ミリ秒を除く部分(秒まで)が直前に解析したログ出力日時と同じ場合は、直前の解析結果を再利用する。
+ * <p/>
+ * 本クラスはスレッドセーフではない。解析処理のインスタンス毎に生成すること。
+ */
+final class LogDateTimeParser {
+
+    /** 項目の種類:年 */
+    private static final int YEAR = 0;
+
+    /** 項目の種類:月 */
+    private static final int MONTH = 1;
+
+    /** 項目の種類:日 */
+    private static final int DAY = 2;
+
+    /** 項目の種類:時(0-23) */
+    private static final int HOUR_OF_DAY = 3;
+
+    /** 項目の種類:時(1-12) */
+    private static final int CLOCK_HOUR = 4;
+
+    /** 項目の種類:分 */
+    private static final int MINUTE = 5;
+
+    /** 項目の種類:秒 */
+    private static final int SECOND = 6;
+
+    /** 項目の種類:ミリ秒 */
+    private static final int MILLISECOND = 7;
+
+    /** 月毎の日数(閏年の2月は別途判定する) */
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    /** ログ出力日時の書式 */
+    private final String format;
+
+    /** 固定位置から変換する項目の種類(固定位置から変換できない書式の場合はnull) */
+    private final int[] fieldTypes;
+
+    /** 固定位置から変換する項目の開始位置 */
+    private final int[] fieldStarts;
+
+    /** 固定位置から変換する項目の桁数 */
+    private final int[] fieldLengths;
+
+    /** 再利用の判定に使用する桁数(ミリ秒を除いた先頭からの桁数) */
+    private final int reuseLength;
+
+    /** 固定位置から変換できない場合に使用するフォーマット */
+    private final DateFormat fallbackFormat;
+
+    /** 固定位置から変換した項目の値(項目の種類毎) */
+    private final int[] values = new int[MILLISECOND + 1];
+
+    /** 固定位置から変換できない場合に使用するカレンダー */
+    private Calendar fallbackCalendar;
+
+    /** 直前に解析した文字列 */
+    private String lastText;
+
+    /** 直前に解析したログ出力日時の開始位置 */
+    private int lastStart;
+
+    /** 直前に解析したログ出力日時の桁数 */
+    private int lastLength;
+
+    /** 年 */
+    private int year;
+
+    /** 月 */
+    private int month;
+
+    /** 日 */
+    private int day;
+
+    /** 時 */
+    private int hour;
+
+    /** 分 */
+    private int minute;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param format ログ出力日時の書式({@link SimpleDateFormat}の形式)
+     * @throws IllegalArgumentException 書式が不正な場合
+     */
+    LogDateTimeParser(String format) {
+        this.format = format;
+        // 書式の妥当性は、SimpleDateFormatの生成時と同じく生成時に検証する。
+        fallbackFormat = new SimpleDateFormat(format);
+
+        int[] types = new int[format.length()];
+        int[] starts = new int[format.length()];
+        int[] lengths = new int[format.length()];
+        int count = 0;
+        int reuse = format.length();
+        boolean fixed = true;
+        int pos = 0;
+        while (pos < format.length()) {
+            char c = format.charAt(pos);
+            int end = pos + 1;
+            while (end < format.length() && format.charAt(end) == c) {
+                end++;
+            }
+            if (isLetter(c) || c == '\'') {
+                int type = fieldTypeOf(c, end - pos);
+                if (type < 0) {
+                    fixed = false;
+                    break;
+                }
+                if (type == MILLISECOND && end == format.length()) {
+                    reuse = pos;
+                }
+                types[count] = type;
+                starts[count] = pos;
+                lengths[count] = end - pos;
+                count++;
+            } else if (Character.isDigit(c)) {
+                // 数値の記号は、隣接する数値項目と区別できないため固定位置から変換しない。
+                fixed = false;
+                break;
+            }
+            pos = end;
+        }
+        if (fixed && count > 0) {
+            fieldTypes = new int[count];
+            fieldStarts = new int[count];
+            fieldLengths = new int[count];
+            System.arraycopy(types, 0, fieldTypes, 0, count);
+            System.arraycopy(starts, 0, fieldStarts, 0, count);
+            System.arraycopy(lengths, 0, fieldLengths, 0, count);
+        } else {
+            fieldTypes = null;
+            fieldStarts = null;
+            fieldLengths = null;
+        }
+        reuseLength = reuse;
+    }
+
+    /**
+     * 書式の項目を表す文字か否か。
+     *
+     * @param c 文字
+     * @return 項目を表す文字の場合はtrue
+     */
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * 書式の項目から、固定位置から変換する項目の種類を取得する。
+     *
+     * @param c 項目を表す文字
+     * @param length 項目の桁数
+     * @return 項目の種類(固定位置から変換できない項目の場合は-1)
+     */
+    private static int fieldTypeOf(char c, int length) {
+        switch (c) {
+            case 'y':
+                return length == 4 ? YEAR : -1;
+            case 'M':
+                return length == 2 ? MONTH : -1;
+            case 'd':
+                return length == 2 ? DAY : -1;
+            case 'H':
+                return length == 2 ? HOUR_OF_DAY : -1;
+            case 'h':
+                return length == 2 ? CLOCK_HOUR : -1;
+            case 'm':
+                return length == 2 ? MINUTE : -1;
+            case 's':
+                return length == 2 ? SECOND : -1;
+            case 'S':
+                return length == 3 ? MILLISECOND : -1;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * 文字列の指定された範囲をログ出力日時として解析する。
+     * <p/>
+     * 解析結果は、{@link #getYear()}などで取得する。
+     *
+     * @param text 解析対象の文字列
+     * @param start ログ出力日時の開始位置
+     * @param end ログ出力日時の終了位置
+     * @throws ParseException ログ出力日時の解析に失敗した場合
+     * @throws StringIndexOutOfBoundsException 範囲が文字列の範囲外の場合
+     */
+    void parse(String text, int start, int end) throws ParseException {
+        if (lastText != null && end - start == lastLength && end <= text.length()) {
+            // 固定位置から変換する書式の場合はミリ秒を除いて比較し、それ以外の書式の場合は全体を比較する。
+            int length = fieldTypes != null && lastLength == format.length() ? reuseLength : lastLength;
+            if (text.regionMatches(start, lastText, lastStart, length)) {
+                return;
+            }
+        }
+        lastText = null;
+        if (!parseFixed(text, start, end)) {
+            parseFallback(text.substring(start, end));
+        }
+        lastText = text;
+        lastStart = start;
+        lastLength = end - start;
+    }
+
+    /**
+     * 各項目を固定位置から変換する。
+     *
+     * @param text 解析対象の文字列
+     * @param start ログ出力日時の開始位置
+     * @param end ログ出力日時の終了位置
+     * @return 変換できた場合はtrue
+     */
+    private boolean parseFixed(String text, int start, int end) {
+        if (fieldTypes == null || end - start != format.length() || end > text.length()) {
+            return false;
+        }
+        Arrays.fill(values, 0);
+        int fieldIndex = 0;
+        for (int i = 0; i < format.length(); i++) {
+            if (fieldIndex < fieldTypes.length && i == fieldStarts[fieldIndex]) {
+                int value = 0;
+                for (int j = 0; j < fieldLengths[fieldIndex]; j++) {
+                    int digit = text.charAt(start + i + j) - '0';
+                    if (digit < 0 || digit > 9) {
+                        return false;
+                    }
+                    value = value * 10 + digit;
+                }
+                values[fieldTypes[fieldIndex]] = value;
+                i += fieldLengths[fieldIndex] - 1;
+                fieldIndex++;
+            } else if (text.charAt(start + i) != format.charAt(i)) {
+                return false;
+            }
+        }
+
+        int parsedYear = isPresent(YEAR) ? values[YEAR] : 1970;
+        int parsedMonth = isPresent(MONTH) ? values[MONTH] : 1;
+        int parsedDay = isPresent(DAY) ? values[DAY] : 1;
+        int parsedHour = values[HOUR_OF_DAY];
+        if (isPresent(CLOCK_HOUR)) {
+            // SimpleDateFormatと同じく、12は0時とし、13以降はそのまま(lenientモードでの繰り上がり)とする。
+            parsedHour = values[CLOCK_HOUR] == 12 ? 0 : values[CLOCK_HOUR];
+        }
+        if (parsedYear < 1 || parsedMonth < 1 || parsedMonth > 12
+                || parsedDay < 1 || parsedDay > daysInMonth(parsedYear, parsedMonth)
+                || parsedHour > 23 || values[MINUTE] > 59 || values[SECOND] > 59) {
+            // 範囲外の値はlenientモードで繰り上げる必要があるため、SimpleDateFormatで解析する。
+            return false;
+        }
+        year = parsedYear;
+        month = parsedMonth;
+        day = parsedDay;
+        hour = parsedHour;
+        minute = values[MINUTE];
+        return true;
+    }
+
+    /**
+     * 書式に指定された種類の項目が存在するか否か。
+     *
+     * @param type 項目の種類
+     * @return 存在する場合はtrue
+     */
+    private boolean isPresent(int type) {
+        for (int fieldType : fieldTypes) {
+            if (fieldType == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 月の日数を取得する。
+     *
+     * @param year 年
+     * @param month 月
+     * @return 日数
+     */
+    private static int daysInMonth(int year, int month) {
+        if (month == 2 && (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) {
+            return 29;
+        }
+        return DAYS_IN_MONTH[month - 1];
+    }
+
+    /**
+     * {@link SimpleDateFormat}でログ出力日時を解析する。
+     *
+     * @param dateTime ログ出力日時
+     * @throws ParseException ログ出力日時の解析に失敗した場合
+     */
+    private void parseFallback(String dateTime) throws ParseException {
+        if (fallbackCalendar == null) {
+            fallbackCalendar = Calendar.getInstance();
+        }
+        fallbackCalendar.setTime(fallbackFormat.parse(dateTime));
+        year = fallbackCalendar.get(Calendar.YEAR);
+        month = fallbackCalendar.get(Calendar.MONTH) + 1;
+        day = fallbackCalendar.get(Calendar.DATE);
+        hour = fallbackCalendar.get(Calendar.HOUR_OF_DAY);
+        minute = fallbackCalendar.get(Calendar.MINUTE);
+    }
+
+    /**
+     * 直前に解析したログ出力日時の年を取得する。
+     *
+     * @return 年
+     */
+    int getYear() {
+        return year;
+    }
+
+    /**
+     * 直前に解析したログ出力日時の月を取得する。
+     *
+     * @return 月(1-12)
+     */
+    int getMonth() {
+        return month;
+    }
+
+    /**
+     * 直前に解析したログ出力日時の日を取得する。
+     *
+     * @return 日
+     */
+    int getDay() {
+        return day;
+    }
+
+    /**
+     * 直前に解析したログ出力日時の時を取得する。
+     *
+     * @return 時(0-23)
+     */
+    int getHour() {
+        return hour;
+    }
+
+    /**
+     * 直前に解析したログ出力日時の分を取得する。
+     *
+     * @return 分
+     */
+    int getMinute() {
+        return minute;
+    }
+}
@@ -0,0 +1,564 @@
+package please.change.me.statistics.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+import please.change.me.statistics.aggregate.RequestInfo;
+import please.change.me.statistics.exception.LogParseException;
+
+/**
+ * アクセスログをメモリにマッピングし、バイト列のまま解析する{@link AccessLogParser}実装クラス。
+ * <p/>
+ * {@link RegexAccessLogParser}と同じリクエスト情報を抽出するが、以下の点で解析のコストが小さい。
+ * <ul>
+ * <li>アクセスログは{@link FileChannel#map}でマッピングし、ヒープへのコピー及び文字列へのデコードを行わない。</li>
+ * <li>終了ログ(ENDログ)の固定文字列をバイト列のまま検索し、終了ログ以外の行は行の区切りも判定しない。</li>
+ * <li>各項目は、正規表現から導出した前後の固定文字列をバイト列のまま検索し、抽出した値のみをデコードする。</li>
+ * </ul>
+ * 本クラスを使用するためには、以下の条件を満たすこと。
+ * <ul>
+ * <li>終了ログを特定するための正規表現が、固定文字列であること。</li>
+ * <li>各項目を抽出するための正規表現が、「固定文字列 + (抽出する値のパターン) + 固定文字列」の形式であること。
+ * (詳細は{@link LiteralFieldPattern}を参照)</li>
+ * <li>
+ * アクセスログの文字エンコーディングが、マルチバイト文字にASCIIの範囲のバイトを含まないこと。(UTF-8、EUC-JPなど)
+ * Shift_JIS(Windows-31J)は、2バイト目に「[」、「]」などと同じバイトを含むため使用できない。
+ * </li>
+ * <li>改行コードがLFまたはCRLFであること。</li>
+ * </ul>
+ * 入力ストリーム(圧縮されたアクセスログを展開した内容など)はメモリにマッピングできないため、
+ * {@link RegexAccessLogParser}で解析する。
+ * <p/>
+ * 終了ログ以外の行は行単位に読み込まずに読み飛ばすため、解析件数のうち読み込んだ行数は計上しない。
+ * (終了ログの件数等は、マッピングし直す毎及びアクセスログの解析完了時に計上する)
+ */
+public class MappedAccessLogParser implements AccessLogParser {
+
+    /** 1度にマッピングするサイズのデフォルト値(256MB) */
+    static final int DEFAULT_MAP_SIZE = 256 * 1024 * 1024;
+
+    /** 1度にマッピングするサイズの上限 */
+    private static final int MAX_MAP_SIZE = Integer.MAX_VALUE - 8;
+
+    /** 使用できる文字エンコーディング */
+    private static final Set<String> SUPPORTED_CHARSETS = new HashSet<>(Arrays.asList(
+            "UTF-8", "US-ASCII", "EUC-JP", "EUC-KR", "windows-1252"));
+
+    /** 改行(LF) */
+    private static final byte LF = '\n';
+
+    /** 改行(CR) */
+    private static final byte CR = '\r';
+
+    /** オンラインアクセスログ解析処理の設定値 */
+    private final OnlineStatisticsDefinition logParseDefinition;
+
+    /** アクセスログの文字エンコーディング */
+    private final Charset charset;
+
+    /** 終了ログを特定するための固定文字列 */
+    private final byte[] endLog;
+
+    /** リクエストIDを抽出するためのパターン */
+    private final LiteralFieldPattern requestIdPattern;
+
+    /** プロセス名を抽出するためのパターン */
+    private final LiteralFieldPattern processNamePattern;
+
+    /** ステータスコードを抽出するためのパターン */
+    private final LiteralFieldPattern statusCodePattern;
+
+    /** 処理時間を抽出するためのパターン */
+    private final LiteralFieldPattern executionTimePattern;
+
+    /** 抽出対象のリクエストIDの判定オブジェクト */
+    private final RequestIdFilter requestIdFilter;
+
+    /** ログ出力日時の解析オブジェクト */
+    private final LogDateTimeParser dateTimeParser;
+
+    /** 1度にマッピングするサイズ */
+    private final int mapSize;
+
+    /** 入力ストリームの解析オブジェクト */
+    private final RegexAccessLogParser streamParser;
+
+    /** デコード用のバッファ */
+    private byte[] decodeBuffer = new byte[256];
+
+    /** 解析件数の計上先(計上しない場合はnull) */
+    private AccessLogParseCounters counters;
+
+    /** 計上していない終了ログの件数 */
+    private long endLogCount;
+
+    /** 計上していないスキップした終了ログの件数 */
+    private long skippedCount;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     * @param mapSize 1度にマッピングするサイズ(バイト)
+     * @throws IllegalArgumentException 設定値が本クラスの使用条件を満たさない場合
+     */
+    public MappedAccessLogParser(OnlineStatisticsDefinition logParseDefinition, int mapSize) {
+        this.logParseDefinition = logParseDefinition;
+        charset = logParseDefinition.getAccessLogEncoding();
+        if (!isSupported(charset)) {
+            throw new IllegalArgumentException(
+                    "access log encoding is not supported by mapped parser. encoding = [" + charset.name() + ']');
+        }
+        if (mapSize <= 0) {
+            throw new IllegalArgumentException("mapSize must be greater than 0. mapSize = [" + mapSize + ']');
+        }
+        endLog = LiteralFieldPattern.literalOf(logParseDefinition.getEndLogPattern(), charset);
+        requestIdPattern = LiteralFieldPattern.of(logParseDefinition.getFindRequestIdPattern(), charset);
+        processNamePattern = LiteralFieldPattern.of(logParseDefinition.getFindProcessNamePattern(), charset);
+        statusCodePattern = LiteralFieldPattern.of(logParseDefinition.getFindStatusCodePattern(), charset);
+        executionTimePattern = LiteralFieldPattern.of(logParseDefinition.getFindExecutionTimePattern(), charset);
+        requestIdFilter = logParseDefinition.getRequestIdFilter();
+        dateTimeParser = new LogDateTimeParser(logParseDefinition.getLogOutputDateTimeFormat());
+        this.mapSize = mapSize;
+        streamParser = new RegexAccessLogParser(logParseDefinition);
+    }
+
+    /**
+     * 本クラスで使用できる文字エンコーディングか否か。
+     *
+     * @param charset 文字エンコーディング
+     * @return 使用できる場合はtrue
+     */
+    private static boolean isSupported(Charset charset) {
+        return SUPPORTED_CHARSETS.contains(charset.name()) || charset.name().startsWith("ISO-8859-");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void parse(File file, Consumer<RequestInfo> consumer) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            parse(channel, channel.size(), consumer);
+        } catch (Exception e) {
+            throw new LogParseException("failed to read access log file. file = [" + file.getAbsolutePath() + ']', e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void parse(AccessLogSnapshot snapshot, Consumer<RequestInfo> consumer) {
+        try {
+            parse(snapshot.getChannel(), snapshot.getSize(), consumer);
+            // 解析中に切り詰められた場合は、解析結果を使用しない。
+            snapshot.verifyNotTruncated();
+        } catch (Exception e) {
+            throw new LogParseException("failed to read access log file. file = ["
+                    + snapshot.getFile().getAbsolutePath() + ']', e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void parse(InputStream in, File file, Consumer<RequestInfo> consumer) {
+        streamParser.parse(in, file, consumer);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setCounters(AccessLogParseCounters counters) {
+        this.counters = counters;
+        streamParser.setCounters(counters);
+    }
+
+    /**
+     * 解析中の件数を計上先に計上する。(計上先が設定されていない場合は破棄する)
+     */
+    private void flushCounters() {
+        if (counters != null) {
+            counters.add(0, endLogCount, skippedCount);
+        }
+        endLogCount = 0;
+        skippedCount = 0;
+    }
+
+    /**
+     * チャネルの先頭から指定されたサイズまでを解析する。
+     *
+     * @param channel アクセスログのチャネル
+     * @param size 解析するサイズ
+     * @param consumer 抽出したリクエスト情報の通知先
+     * @throws IOException 読み込みに失敗した場合
+     * @throws ParseException ログ出力日時の解析に失敗した場合
+     */
+    void parse(FileChannel channel, long size, Consumer<RequestInfo> consumer) throws IOException, ParseException {
+        if (size == 0) {
+            return;
+        }
+        Window window = new Window(channel, size, mapSize);
+        window.map(0);
+        int pos = 0;
+        try {
+            while (true) {
+                int next = parseNext(window, pos, consumer);
+                if (next == Window.END) {
+                    return;
+                }
+                if (next == Window.NEED_MORE) {
+                    // 行がマッピングした範囲に収まらない場合は、行の先頭からマッピングし直す。
+                    window.map(window.offset + window.restart);
+                    pos = 0;
+                    flushCounters();
+                } else {
+                    pos = next;
+                }
+            }
+        } finally {
+            flushCounters();
+        }
+    }
+
+    /**
+     * 次の終了ログを解析する。
+     *
+     * @param window マッピングした範囲
+     * @param pos 解析開始位置(行の先頭)
+     * @param consumer 抽出したリクエスト情報の通知先
+     * @return 次の解析開始位置
+     *         (ファイルの終端に達した場合は{@link Window#END}、マッピングし直す必要がある場合は{@link Window#NEED_MORE})
+     * @throws ParseException ログ出力日時の解析に失敗した場合
+     */
+    private int parseNext(Window window, int pos, Consumer<RequestInfo> consumer) throws ParseException {
+        MappedByteBuffer buffer = window.buffer;
+        int limit = window.limit;
+
+        int hit = indexOf(buffer, pos, limit, endLog);
+        if (hit < 0) {
+            if (window.isLast()) {
+                return Window.END;
+            }
+            // 改行で終わっていない最終行に終了ログが含まれる可能性があるため、最終行の先頭からマッピングし直す。
+            return window.needMore(lastIndexOf(buffer, pos, limit, LF) + 1, pos);
+        }
+
+        int lineStart = Math.max(pos, lastIndexOf(buffer, pos, hit, LF) + 1);
+        int lineEnd = indexOf(buffer, hit + endLog.length, limit, LF);
+        if (lineEnd < 0) {
+            if (!window.isLast()) {
+                return window.needMore(lineStart, pos);
+            }
+            lineEnd = limit;
+        }
+        int contentEnd = trimCr(buffer, lineStart, lineEnd);
+
+        String requestId = find(requestIdPattern, buffer, lineStart, contentEnd);
+        if (requestId == null) {
+            throw new LogParseException("online access log parse error. REQUEST_ID was not found in end log.");
+        }
+        if (!requestIdFilter.accept(requestId)) {
+            // 処理対象外のリクエストIDの場合はスキップ
+            endLogCount++;
+            skippedCount++;
+            return Math.min(lineEnd + 1, limit);
+        }
+
+        findLogOutputDateTime(buffer, lineStart, contentEnd);
+        String processName = find(processNamePattern, buffer, lineStart, contentEnd);
+        String statusCode = find(statusCodePattern, buffer, lineStart, contentEnd);
+        if (statusCode == null) {
+            throw new LogParseException("online access log parse error. STATUS_CODE was not found in end log.");
+        }
+
+        // 処理時間は、終了ログの行に存在しない場合は後続の行から抽出する。
+        String executionTime = find(executionTimePattern, buffer, lineStart, contentEnd);
+        int next = lineEnd + 1;
+        while (executionTime == null) {
+            if (next >= limit) {
+                if (window.isLast()) {
+                    throw new LogParseException(
+                            "online access log parse error. EXECUTION_TIME was not found in end log.");
+                }
+                return window.needMore(lineStart, pos);
+            }
+            int end = indexOf(buffer, next, limit, LF);
+            if (end < 0) {
+                if (!window.isLast()) {
+                    return window.needMore(lineStart, pos);
+                }
+                end = limit;
+            }
+            executionTime = find(executionTimePattern, buffer, next, trimCr(buffer, next, end));
+            next = end + 1;
+        }
+
+        endLogCount++;
+        consumer.accept(new RequestInfo(
+                dateTimeParser.getYear(),
+                dateTimeParser.getMonth(),
+                dateTimeParser.getDay(),
+                dateTimeParser.getHour(),
+                dateTimeParser.getMinute(),
+                processName == null ? "" : processName,
+                requestId,
+                Integer.parseInt(executionTime),
+                Integer.parseInt(statusCode)));
+        return Math.min(next, limit);
+    }
+
+    /**
+     * ログ出力日時を抽出する。
+     * <p/>
+     * ログ出力日時までがASCII文字のみの場合は、ログ出力日時の部分のみをデコードする。
+     * 抽出結果は、{@link #dateTimeParser}から取得する。
+     *
+     * @param buffer バッファ
+     * @param lineStart 行の開始位置
+     * @param lineEnd 行の終了位置(改行を含まない)
+     * @throws ParseException 日付解析処理で例外が発生した場合
+     */
+    private void findLogOutputDateTime(MappedByteBuffer buffer, int lineStart, int lineEnd)
+            throws ParseException {
+        int start = logParseDefinition.getLogOutputDateTimeStartPosition();
+        int end = logParseDefinition.getLogOutputDateTimeEndPosition();
+        if (lineStart + end <= lineEnd && isAscii(buffer, lineStart, lineStart + end)) {
+            String dateTime = decode(buffer, lineStart + start, lineStart + end);
+            dateTimeParser.parse(dateTime, 0, dateTime.length());
+        } else {
+            dateTimeParser.parse(decode(buffer, lineStart, lineEnd), start, end);
+        }
+    }
+
+    /**
+     * 指定された範囲から、パターンに一致する最初の値を抽出する。
+     *
+     * @param pattern パターン
+     * @param buffer バッファ
+     * @param from 開始位置
+     * @param to 終了位置(1行の範囲内であること)
+     * @return 抽出した値(一致しない場合はnull)
+     */
+    private String find(LiteralFieldPattern pattern, MappedByteBuffer buffer, int from, int to) {
+        byte[] prefix = pattern.getPrefix();
+        int pos = from;
+        int hit;
+        while ((hit = indexOf(buffer, pos, to, prefix)) >= 0) {
+            int valueStart = hit + prefix.length;
+            int valueEnd = indexOf(buffer, valueStart, to, pattern.getSuffix());
+            if (valueEnd < 0) {
+                return null;
+            }
+            String value = decode(buffer, valueStart, valueEnd);
+            if (pattern.matches(value)) {
+                return value;
+            }
+            pos = hit + 1;
+        }
+        return null;
+    }
+
+    /**
+     * 指定された範囲をデコードする。
+     *
+     * @param buffer バッファ
+     * @param from 開始位置
+     * @param to 終了位置
+     * @return デコードした文字列
+     */
+    private String decode(MappedByteBuffer buffer, int from, int to) {
+        int length = to - from;
+        if (decodeBuffer.length < length) {
+            decodeBuffer = new byte[Math.max(length, decodeBuffer.length * 2)];
+        }
+        buffer.get(from, decodeBuffer, 0, length);
+        return new String(decodeBuffer, 0, length, charset);
+    }
+
+    /**
+     * 指定された範囲がASCII文字のみか否か。
+     *
+     * @param buffer バッファ
+     * @param from 開始位置
+     * @param to 終了位置
+     * @return ASCII文字のみの場合はtrue
+     */
+    private static boolean isAscii(MappedByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 行末のCRを除いた行の終了位置を取得する。
+     *
+     * @param buffer バッファ
+     * @param lineStart 行の開始位置
+     * @param lineEnd 行の終了位置(LFの位置)
+     * @return CRを除いた行の終了位置
+     */
+    private static int trimCr(MappedByteBuffer buffer, int lineStart, int lineEnd) {
+        return lineEnd > lineStart && buffer.get(lineEnd - 1) == CR ? lineEnd - 1 : lineEnd;
+    }
+
+    /**
+     * 指定された範囲から、バイトが最初に出現する位置を検索する。
+     *
+     * @param buffer バッファ
+     * @param from 開始位置
+     * @param to 終了位置
+     * @param b 検索するバイト
+     * @return 出現位置(出現しない場合は-1)
+     */
+    private static int indexOf(MappedByteBuffer buffer, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 指定された範囲から、バイト列が最初に出現する位置を検索する。
+     *
+     * @param buffer バッファ
+     * @param from 開始位置
+     * @param to 終了位置
+     * @param bytes 検索するバイト列
+     * @return 出現位置(出現しない場合は-1)
+     */
+    private static int indexOf(MappedByteBuffer buffer, int from, int to, byte[] bytes) {
+        byte first = bytes[0];
+        int max = to - bytes.length;
+        for (int i = from; i <= max; i++) {
+            if (buffer.get(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < bytes.length && buffer.get(i + j) == bytes[j]) {
+                j++;
+            }
+            if (j == bytes.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 指定された範囲から、バイトが最後に出現する位置を検索する。
+     *
+     * @param buffer バッファ
+     * @param from 開始位置
+     * @param to 終了位置
+     * @param b 検索するバイト
+     * @return 出現位置(出現しない場合は-1)
+     */
+    private static int lastIndexOf(MappedByteBuffer buffer, int from, int to, byte b) {
+        for (int i = to - 1; i >= from; i--) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * アクセスログのうち、メモリにマッピングした範囲。
+     */
+    private static final class Window {
+
+        /** ファイルの終端に達したことを示す値 */
+        private static final int END = -1;
+
+        /** マッピングし直す必要があることを示す値 */
+        private static final int NEED_MORE = -2;
+
+        /** アクセスログのチャネル */
+        private final FileChannel channel;
+
+        /** 解析するサイズ */
+        private final long size;
+
+        /** 1度にマッピングするサイズ */
+        private int mapSize;
+
+        /** マッピングしたバッファ */
+        private MappedByteBuffer buffer;
+
+        /** マッピングした範囲のファイル上の開始位置 */
+        private long offset;
+
+        /** マッピングした範囲のサイズ */
+        private int limit;
+
+        /** マッピングし直す位置(マッピングした範囲内の位置) */
+        private int restart;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param channel アクセスログのチャネル
+         * @param size 解析するサイズ
+         * @param mapSize 1度にマッピングするサイズ
+         */
+        private Window(FileChannel channel, long size, int mapSize) {
+            this.channel = channel;
+            this.size = size;
+            this.mapSize = mapSize;
+        }
+
+        /**
+         * 指定された位置からマッピングする。
+         * <p/>
+         * 前回と同じ位置からマッピングする場合(1行がマッピングした範囲に収まらない場合)は、マッピングするサイズを拡張する。
+         *
+         * @param position ファイル上の位置
+         * @throws IOException マッピングに失敗した場合
+         */
+        private void map(long position) throws IOException {
+            if (buffer != null && position == offset) {
+                if (mapSize == MAX_MAP_SIZE) {
+                    throw new LogParseException("online access log parse error. line is too long. offset = ["
+                            + position + ']');
+                }
+                mapSize = (int) Math.min(MAX_MAP_SIZE, (long) mapSize * 2);
+            }
+            offset = position;
+            limit = (int) Math.min(mapSize, size - position);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, limit);
+        }
+
+        /**
+         * マッピングした範囲がファイルの終端を含むか否か。
+         *
+         * @return ファイルの終端を含む場合はtrue
+         */
+        private boolean isLast() {
+            return offset + limit >= size;
+        }
+
+        /**
+         * マッピングし直す位置を設定する。
+         *
+         * @param lineStart マッピングし直す位置(行の先頭)
+         * @param pos 解析開始位置(lineStartが解析開始位置より前の場合は、解析開始位置からマッピングし直す)
+         * @return {@link #NEED_MORE}
+         */
+        private int needMore(int lineStart, int pos) {
+            restart = Math.max(lineStart, pos);
+            return NEED_MORE;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package please.change.me.statistics.parser;
+
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+
+/**
+ * {@link MappedAccessLogParser}を生成するファクトリクラス。
+ */
+public class MappedAccessLogParserFactory implements AccessLogParserFactory {
+
+    /** 1度にマッピングするサイズ(バイト) */
+    private int mapSize = MappedAccessLogParser.DEFAULT_MAP_SIZE;
+
+    /** {@inheritDoc} */
+    @Override
+    public AccessLogParser create(OnlineStatisticsDefinition definition) {
+        return new MappedAccessLogParser(definition, mapSize);
+    }
+
+    /**
+     * 1度にマッピングするサイズ(バイト)を設定する。
+     * <p/>
+     * アクセスログは、このサイズ毎に区切ってメモリにマッピングしながら解析する。
+     * なお、本設定値を省略した場合は256MBとなる。
+     *
+     * @param mapSize 1度にマッピングするサイズ(バイト)
+     */
+    public void setMapSize(int mapSize) {
+        this.mapSize = mapSize;
+    }
+}
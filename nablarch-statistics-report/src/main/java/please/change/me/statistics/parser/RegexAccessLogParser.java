@@ -0,0 +1,273 @@
+package please.change.me.statistics.parser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.text.ParseException;
+import java.util.function.Consumer;
+
+import nablarch.core.util.FileUtil;
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+import please.change.me.statistics.aggregate.RequestInfo;
+import please.change.me.statistics.exception.LogParseException;
+
+/**
+ * アクセスログを1行ずつ読み込み、{@link OnlineStatisticsDefinition}で設定された正規表現で解析する{@link AccessLogParser}実装クラス。
+ * <p/>
+ * 終了ログ(ENDログ)の判定及び各項目の抽出は、行毎に{@link OnlineStatisticsDefinition#getLineMatcher()}で行う。
+ * 処理時間が終了ログの行に存在しない場合は、後続の行から抽出する。(抽出に使用した行は、終了ログの判定対象外となる)
+ * <p/>
+ * 解析件数の計上先を設定した場合は、解析中の件数を{@link #FLUSH_LINES}行毎及びアクセスログの解析完了時に計上する。
+ */
+public class RegexAccessLogParser implements AccessLogParser {
+
+    /** 解析件数を計上する間隔(行数) */
+    private static final int FLUSH_LINES = 65536;
+
+    /** オンラインアクセスログ解析処理の設定値 */
+    private final OnlineStatisticsDefinition logParseDefinition;
+
+    /** 行の解析オブジェクト */
+    private final AccessLogLineMatcher lineMatcher;
+
+    /** 抽出対象のリクエストIDの判定オブジェクト */
+    private final RequestIdFilter requestIdFilter;
+
+    /** ログ出力日時の解析オブジェクト */
+    private final LogDateTimeParser dateTimeParser;
+
+    /** 解析件数の計上先(計上しない場合はnull) */
+    private AccessLogParseCounters counters;
+
+    /** 計上していない読み込んだ行数 */
+    private long lineCount;
+
+    /** 計上していない終了ログの件数 */
+    private long endLogCount;
+
+    /** 計上していないスキップした終了ログの件数 */
+    private long skippedCount;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param logParseDefinition オンラインアクセスログ解析処理の設定値
+     */
+    public RegexAccessLogParser(OnlineStatisticsDefinition logParseDefinition) {
+        this.logParseDefinition = logParseDefinition;
+        lineMatcher = logParseDefinition.getLineMatcher();
+        requestIdFilter = logParseDefinition.getRequestIdFilter();
+        dateTimeParser = new LogDateTimeParser(logParseDefinition.getLogOutputDateTimeFormat());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void parse(File file, Consumer<RequestInfo> consumer) {
+        parse(FileUtil.getResource(file.toURI().toString()), file, consumer);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void parse(AccessLogSnapshot snapshot, Consumer<RequestInfo> consumer) {
+        parse(snapshot.newInputStream(), snapshot.getFile(), consumer);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setCounters(AccessLogParseCounters counters) {
+        this.counters = counters;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void parse(InputStream resource, File file, Consumer<RequestInfo> consumer) {
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(resource, logParseDefinition.getAccessLogEncoding()));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (++lineCount >= FLUSH_LINES) {
+                    flushCounters();
+                }
+                EndLog endLog = parseEndLog(line);
+                if (endLog == null) {
+                    continue;
+                }
+
+                // 処理時間は、終了ログの行に存在しない場合は後続の行から抽出する。
+                String executionTime = endLog.getExecutionTime();
+                while (executionTime == null) {
+                    line = reader.readLine();
+                    if (line == null) {
+                        throw new LogParseException(
+                                "online access log parse error. EXECUTION_TIME was not found in end log.");
+                    }
+                    lineCount++;
+                    executionTime = findExecutionTime(line);
+                }
+                consumer.accept(endLog.toRequestInfo(executionTime));
+            }
+        } catch (Exception e) {
+            throw new LogParseException("failed to read access log file. file = [" + file.getAbsolutePath() + ']', e);
+        } finally {
+            FileUtil.closeQuietly(resource);
+            flushCounters();
+        }
+    }
+
+    /**
+     * 解析中の件数を計上先に計上する。(計上先が設定されていない場合は破棄する)
+     */
+    private void flushCounters() {
+        if (counters != null) {
+            counters.add(lineCount, endLogCount, skippedCount);
+        }
+        lineCount = 0;
+        endLogCount = 0;
+        skippedCount = 0;
+    }
+
+    /**
+     * 1行を解析し、処理対象の終了ログの場合は終了ログの情報を抽出する。
+     *
+     * @param line 解析対象の行
+     * @return 終了ログの情報(終了ログ以外の行、または処理対象外のリクエストIDの場合はnull)
+     * @throws ParseException 日付解析処理で例外が発生した場合
+     * @throws LogParseException 終了ログに必須の項目が存在しない場合
+     */
+    EndLog parseEndLog(String line) throws ParseException {
+        if (!lineMatcher.isEndLog(line)) {
+            // 終了ログ以外は処理しない
+            return null;
+        }
+        endLogCount++;
+
+        AccessLogLineMatcher.Fields fields = lineMatcher.extract(line);
+        String requestId = fields.getRequestId();
+        if (requestId == null) {
+            throw new LogParseException("online access log parse error. REQUEST_ID was not found in end log.");
+        }
+        if (!requestIdFilter.accept(requestId)) {
+            // 処理対象外のリクエストIDの場合はスキップ
+            skippedCount++;
+            return null;
+        }
+
+        findLogOutputDateTime(line);
+        // プロセス名がログから取得できない場合には、空文字列とする。
+        String processName = fields.getProcessName() == null ? "" : fields.getProcessName();
+        String statusCode = fields.getStatusCode();
+        if (statusCode == null) {
+            throw new LogParseException("online access log parse error. STATUS_CODE was not found in end log.");
+        }
+        return new EndLog(dateTimeParser, processName, requestId, statusCode, fields.getExecutionTime());
+    }
+
+    /**
+     * ログ出力日時を抽出する。
+     * <p/>
+     * 抽出結果は、{@link #dateTimeParser}から取得する。
+     *
+     * @param line 抽出対象の行
+     * @throws ParseException 日付解析処理で例外が発生した場合
+     */
+    private void findLogOutputDateTime(String line) throws ParseException {
+        dateTimeParser.parse(line,
+                logParseDefinition.getLogOutputDateTimeStartPosition(),
+                logParseDefinition.getLogOutputDateTimeEndPosition());
+    }
+
+    /**
+     * 処理時間を抽出する。
+     *
+     * @param line 抽出対象の行
+     * @return 処理時間(抽出できない場合はnull)
+     */
+    String findExecutionTime(String line) {
+        return lineMatcher.findExecutionTime(line);
+    }
+
+    /**
+     * 終了ログから抽出した情報を保持するクラス。
+     */
+    static final class EndLog {
+
+        /** ログ出力日時の年 */
+        private final int year;
+
+        /** ログ出力日時の月 */
+        private final int month;
+
+        /** ログ出力日時の日 */
+        private final int day;
+
+        /** ログ出力日時の時 */
+        private final int hour;
+
+        /** ログ出力日時の分 */
+        private final int minute;
+
+        /** 起動プロセス名 */
+        private final String processName;
+
+        /** リクエストID */
+        private final String requestId;
+
+        /** ステータスコード */
+        private final String statusCode;
+
+        /** 処理時間(終了ログの行に存在しない場合はnull) */
+        private final String executionTime;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param dateTime ログ出力日時を解析済みの解析オブジェクト
+         * @param processName 起動プロセス名
+         * @param requestId リクエストID
+         * @param statusCode ステータスコード
+         * @param executionTime 処理時間(終了ログの行に存在しない場合はnull)
+         */
+        private EndLog(LogDateTimeParser dateTime, String processName, String requestId, String statusCode,
+                String executionTime) {
+            year = dateTime.getYear();
+            month = dateTime.getMonth();
+            day = dateTime.getDay();
+            hour = dateTime.getHour();
+            minute = dateTime.getMinute();
+            this.processName = processName;
+            this.requestId = requestId;
+            this.statusCode = statusCode;
+            this.executionTime = executionTime;
+        }
+
+        /**
+         * 終了ログの行から抽出した処理時間を取得する。
+         *
+         * @return 処理時間(終了ログの行に存在しない場合はnull)
+         */
+        String getExecutionTime() {
+            return executionTime;
+        }
+
+        /**
+         * リクエスト情報に変換する。
+         *
+         * @param executionTime 処理時間
+         * @return リクエスト情報
+         */
+        RequestInfo toRequestInfo(String executionTime) {
+            return new RequestInfo(
+                    year,
+                    month,
+                    day,
+                    hour,
+                    minute,
+                    processName,
+                    requestId,
+                    Integer.parseInt(executionTime),
+                    Integer.parseInt(statusCode));
+        }
+    }
+}
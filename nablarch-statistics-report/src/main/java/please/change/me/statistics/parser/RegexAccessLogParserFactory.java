@@ -0,0 +1,15 @@
+package please.change.me.statistics.parser;
+
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+
+/**
+ * {@link RegexAccessLogParser}を生成するファクトリクラス。
+ */
+public class RegexAccessLogParserFactory implements AccessLogParserFactory {
+
+    /** {@inheritDoc} */
+    @Override
+    public AccessLogParser create(OnlineStatisticsDefinition definition) {
+        return new RegexAccessLogParser(definition);
+    }
+}
@@ -0,0 +1,93 @@
+package please.change.me.statistics.parser;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 抽出対象のリクエストIDか否かを判定するクラス。
+ * <p/>
+ * 抽出対象のリクエストIDはハッシュで保持するため、判定のコストは抽出対象のリクエストIDの件数に依存しない。
+ * <p/>
+ * 前方一致を有効にした場合は、末尾が「*」のリクエストIDを前方一致の条件とする。
+ * (例:「RW11*」の場合は「RW11」で始まるリクエストID、「*」の場合は全てのリクエストIDが抽出対象となる)
+ * 前方一致の判定のコストは、前方一致の条件の件数ではなく、条件の長さの種類の数に比例する。
+ * <p/>
+ * 本クラスはイミュータブルであり、スレッドセーフである。
+ */
+public final class RequestIdFilter {
+
+    /** 前方一致の条件を表す末尾の文字 */
+    private static final String WILDCARD = "*";
+
+    /** 完全一致で判定するリクエストID */
+    private final Set<String> exactIds;
+
+    /** 前方一致で判定するリクエストIDの前方部分 */
+    private final Set<String> prefixes;
+
+    /** 前方一致で判定するリクエストIDの前方部分の長さ(昇順) */
+    private final int[] prefixLengths;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param exactIds 完全一致で判定するリクエストID
+     * @param prefixes 前方一致で判定するリクエストIDの前方部分
+     */
+    private RequestIdFilter(Set<String> exactIds, Set<String> prefixes) {
+        this.exactIds = exactIds;
+        this.prefixes = prefixes;
+        Set<Integer> lengths = new TreeSet<>();
+        for (String prefix : prefixes) {
+            lengths.add(prefix.length());
+        }
+        prefixLengths = new int[lengths.size()];
+        int i = 0;
+        for (int length : lengths) {
+            prefixLengths[i++] = length;
+        }
+    }
+
+    /**
+     * 抽出対象のリクエストIDのリストから、判定オブジェクトを生成する。
+     *
+     * @param includeRequestIdList 抽出対象のリクエストIDのリスト
+     * @param prefixMatch 末尾が「*」のリクエストIDを前方一致の条件とする場合はtrue
+     * @return 判定オブジェクト
+     */
+    public static RequestIdFilter of(List<String> includeRequestIdList, boolean prefixMatch) {
+        Set<String> exactIds = new HashSet<>();
+        Set<String> prefixes = new HashSet<>();
+        for (String requestId : includeRequestIdList) {
+            if (prefixMatch && requestId.endsWith(WILDCARD)) {
+                prefixes.add(requestId.substring(0, requestId.length() - WILDCARD.length()));
+            } else {
+                exactIds.add(requestId);
+            }
+        }
+        return new RequestIdFilter(exactIds, prefixes);
+    }
+
+    /**
+     * 抽出対象のリクエストIDか判定する。
+     *
+     * @param requestId リクエストID
+     * @return 抽出対象のリクエストIDの場合はtrue
+     */
+    public boolean accept(String requestId) {
+        if (exactIds.contains(requestId)) {
+            return true;
+        }
+        for (int length : prefixLengths) {
+            if (length > requestId.length()) {
+                return false;
+            }
+            if (prefixes.contains(requestId.substring(0, length))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * 画面オンラインアクセスログの解析処理を提供する。
+ */
+package please.change.me.statistics.parser;
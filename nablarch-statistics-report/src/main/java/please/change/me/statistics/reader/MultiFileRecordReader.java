@@ -3,6 +3,13 @@ package please.change.me.statistics.reader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import nablarch.core.dataformat.DataRecord;
 import nablarch.core.log.Logger;
@@ -16,6 +23,15 @@ import nablarch.fw.reader.FileDataReader;
  * 複数のファイルを連続して読み込むためのファイルレコードリーダクラス。
  * <p/>
  * ファイル読み込み処理は、FileDataReaderにて行う。
+ * <p/>
+ * {@link #setParallelism(int)}に2以上を設定した場合は、並列読み込みモードで動作する。
+ * 並列読み込みモードでは、ファイル毎に専用のワーカスレッドでレコードの解析を行い、
+ * 解析したレコードを上限付きのキューを介して呼び出し元に返却する。
+ * キューが上限に達した場合、ワーカスレッドは空きができるまで待機する。
+ * <ul>
+ * <li>同一ファイル内のレコードは、ファイル内の順序どおりに返却する。</li>
+ * <li>異なるファイル間のレコードの返却順序は保証しない。</li>
+ * </ul>
  *
  * @author hisaaki sioiri
  */
@@ -24,6 +40,9 @@ public class MultiFileRecordReader implements DataReader<DataRecord> {
     /** ロガー */
     private static final Logger LOG = LoggerManager.get(MultiFileRecordReader.class);
 
+    /** 並列読み込み時に、キューからレコードを取り出す際の待機時間(ミリ秒) */
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
     /** 読み込み対象のファイルリスト */
     private List<String> fileList;
 
@@ -45,12 +64,46 @@ public class MultiFileRecordReader implements DataReader<DataRecord> {
     /** 入力ファイルが格納されているディレクトリのベースパス名 */
     private String dataFileBasePathName;
 
+    /** 並列読み込みを行うワーカスレッド数 */
+    private int parallelism = 1;
+
+    /** 並列読み込み時に、ワーカスレッドが解析したレコードを保持するキューの上限 */
+    private int queueCapacity = 10000;
+
+    /** 並列読み込み時に、ワーカスレッドが解析したレコードを保持するキュー */
+    private BlockingQueue<DataRecord> queue;
+
+    /** 並列読み込み時のワーカスレッド */
+    private ExecutorService workers;
+
+    /** 並列読み込み時に、読み込みが完了していないファイル数 */
+    private final AtomicInteger remainingFiles = new AtomicInteger();
+
+    /** 並列読み込み時に、ワーカスレッドで発生した例外 */
+    private final AtomicReference<RuntimeException> workerFailure = new AtomicReference<>();
+
+    /** 並列読み込み時に、{@link #hasNext(ExecutionContext)}でキューから取り出し、まだ返却していないレコード */
+    private DataRecord nextRecord;
+
     /**
      * {@inheritDoc}
      * <p/>
      * 次のレコードが存在しない場合は、次のファイルを開き対象とする。
      */
-    public synchronized DataRecord read(ExecutionContext ctx) {
+    public DataRecord read(ExecutionContext ctx) {
+        if (parallelism > 1) {
+            return readParallel();
+        }
+        return readSerial(ctx);
+    }
+
+    /**
+     * ファイルを1つずつ順に読み込み、次のレコードを返却する。
+     *
+     * @param ctx 実行コンテキスト
+     * @return 次のレコード(レコードが存在しない場合はnull)
+     */
+    private synchronized DataRecord readSerial(ExecutionContext ctx) {
         if (reader == null) {
             fileIndex = 0;
             createFileReaders();
@@ -98,7 +151,20 @@ public class MultiFileRecordReader implements DataReader<DataRecord> {
      * 次のレコードが存在しない場合には、次のファイルを開く。
      * 読み込むファイルがこれ以上存在しない場合にfalseを返却する。
      */
-    public synchronized boolean hasNext(ExecutionContext ctx) {
+    public boolean hasNext(ExecutionContext ctx) {
+        if (parallelism > 1) {
+            return hasNextParallel();
+        }
+        return hasNextSerial(ctx);
+    }
+
+    /**
+     * ファイルを1つずつ順に読み込む場合に、次のレコードが存在するか否かを判定する。
+     *
+     * @param ctx 実行コンテキスト
+     * @return 次のレコードが存在する場合はtrue
+     */
+    private synchronized boolean hasNextSerial(ExecutionContext ctx) {
         if (reader == null) {
             createFileReaders();
             reader = fileReaders.get(fileIndex++);
@@ -116,8 +182,21 @@ public class MultiFileRecordReader implements DataReader<DataRecord> {
     /**
      * {@inheritDoc}
      * 全てのファイルリソースの解放処理を行う。
+     * <p/>
+     * 並列読み込み中のワーカスレッドが存在する場合は、ワーカスレッドを停止してから解放処理を行う。
      */
     public void close(ExecutionContext ctx) {
+        if (workers != null) {
+            workers.shutdownNow();
+            try {
+                workers.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (fileReaders == null) {
+            return;
+        }
         RuntimeException firstException = null;
         for (DataReader<DataRecord> fileReader : fileReaders) {
             try {
@@ -134,6 +213,152 @@ public class MultiFileRecordReader implements DataReader<DataRecord> {
         }
     }
 
+    /**
+     * 並列読み込み時に、次のレコードを返却する。
+     * <p/>
+     * {@link #hasNext(ExecutionContext)}で取り出したレコードが存在する場合は、そのレコードを返却する。
+     *
+     * @return 次のレコード(レコードが存在しない場合はnull)
+     */
+    private synchronized DataRecord readParallel() {
+        startWorkers();
+        DataRecord record = nextRecord;
+        if (record != null) {
+            nextRecord = null;
+            return record;
+        }
+        return takeParallel();
+    }
+
+    /**
+     * 並列読み込み時に、次のレコードが存在するか否かを判定する。
+     * <p/>
+     * 判定のためにキューから取り出したレコードは、次の{@link #read(ExecutionContext)}で返却する。
+     *
+     * @return 次のレコードが存在する場合はtrue
+     */
+    private synchronized boolean hasNextParallel() {
+        startWorkers();
+        if (nextRecord == null) {
+            nextRecord = takeParallel();
+        }
+        return nextRecord != null;
+    }
+
+    /**
+     * 並列読み込み時に、キューから次のレコードを取り出す。
+     * <p/>
+     * キューにレコードが存在しない場合は、ワーカスレッドがレコードを追加するか、全てのファイルの読み込みが完了するまで待機する。
+     * ワーカスレッドは、例外を保持してから読み込み中のファイル数を減算するため、
+     * 全ファイルの読み込み完了を検知した後に例外の有無を再確認することで、例外を見逃さない。
+     *
+     * @return 次のレコード(レコードが存在しない場合はnull)
+     */
+    private DataRecord takeParallel() {
+        try {
+            while (true) {
+                rethrowWorkerFailure();
+                // 全ファイルの読み込み完了後は、キューにレコードが追加されることはない。
+                boolean finished = remainingFiles.get() == 0;
+                if (finished) {
+                    rethrowWorkerFailure();
+                    return queue.poll();
+                }
+                DataRecord record = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (record != null) {
+                    return record;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the next record.", e);
+        }
+    }
+
+    /**
+     * 並列読み込みのワーカスレッドを起動する。
+     * <p/>
+     * ファイル毎に1つのタスクを登録し、{@link #parallelism}個のワーカスレッドで実行する。
+     * 既に起動済みの場合は何もしない。
+     */
+    private synchronized void startWorkers() {
+        if (workers != null) {
+            return;
+        }
+        createFileReaders();
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        remainingFiles.set(fileReaders.size());
+        final AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.min(parallelism, fileReaders.size()), runnable -> {
+            Thread thread = new Thread(runnable, "MultiFileRecordReader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < fileReaders.size(); i++) {
+            final DataReader<DataRecord> fileReader = fileReaders.get(i);
+            final String file = fileList.get(i);
+            workers.execute(() -> readFile(file, fileReader));
+        }
+        workers.shutdown();
+    }
+
+    /**
+     * ワーカスレッドで1ファイル分のレコードを読み込み、キューに追加する。
+     *
+     * @param file ファイル名
+     * @param fileReader ファイルを読み込むリーダ
+     */
+    private void readFile(String file, DataReader<DataRecord> fileReader) {
+        ExecutionContext workerContext = new ExecutionContext();
+        try {
+            while (fileReader.hasNext(workerContext)) {
+                queue.put(fileReader.read(workerContext));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOG.logWarn("failed to read the file. file = [" + file + ']', e);
+            workerFailure.compareAndSet(null, e);
+        } finally {
+            remainingFiles.decrementAndGet();
+        }
+    }
+
+    /**
+     * ワーカスレッドで例外が発生していた場合は、呼び出し元のスレッドで再送出する。
+     */
+    private void rethrowWorkerFailure() {
+        RuntimeException failure = workerFailure.get();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * 並列読み込みを行うワーカスレッド数を設定する。
+     * <p/>
+     * 2以上を設定した場合は、並列読み込みモードで動作する。
+     * ワーカスレッド数が読み込み対象のファイル数より多い場合は、ファイル数分のワーカスレッドを使用する。
+     * なお、本設定値を省略した場合は1(ファイルを1つずつ順に読み込む)となる。
+     *
+     * @param parallelism ワーカスレッド数
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 並列読み込み時に、解析済みのレコードを保持するキューの上限を設定する。
+     * <p/>
+     * キューが上限に達した場合、ワーカスレッドは呼び出し元がレコードを取り出すまで待機する。
+     * なお、本設定値を省略した場合は10000となる。
+     *
+     * @param queueCapacity キューの上限
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
     /**
      * フォーマット定義ファイルを設定する。
      *
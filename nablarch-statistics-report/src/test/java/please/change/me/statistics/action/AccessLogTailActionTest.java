@@ -0,0 +1,127 @@
+package please.change.me.statistics.action;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link AccessLogTailAction}のテストクラス。
+ */
+public class AccessLogTailActionTest extends StatisticsToolTestSupport {
+
+    /** ターゲットクラスのクラス名 */
+    private static final String ACTION_CLASS_NAME = "AccessLogTailAction";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File accessLog;
+
+    private File summaryDir;
+
+    private File stateDir;
+
+    @Before
+    public void setUp() throws Exception {
+        File accessLogDir = temporaryFolder.newFolder("access-log");
+        accessLog = new File(accessLogDir, "access.log");
+        summaryDir = temporaryFolder.newFolder("tail-summary");
+        stateDir = temporaryFolder.newFolder("state");
+        System.setProperty("access-log.dir", accessLogDir.getAbsolutePath());
+        System.setProperty("request-info-tail-summary.dir", "file:" + summaryDir.getAbsolutePath());
+        System.setProperty("aggregate-state.dir", "file:" + stateDir.getAbsolutePath());
+        System.setProperty("tail.poll-interval", "10");
+        System.setProperty("tail.max-duration", "1");
+        System.setProperty("tail.minute-retention", "3");
+    }
+
+    /**
+     * 時間及び分単位の集計結果CSVが出力されること。
+     * <p/>
+     * 再実行した場合は、チェックポイント以降に追記された終了ログのみが集計に追加されること。
+     */
+    @Test
+    public void testTail() throws Exception {
+        append(endLog("10:00", 200) + "\texecution_time = [100]\n"
+                + endLog("10:01", 200) + "\texecution_time = [2000]\n");
+        assertThat(executeBatchAction(ACTION_CLASS_NAME), is(0));
+
+        assertThat(new File(stateDir, "ACCESS_LOG_TAIL_CHECKPOINT.bin").exists(), is(true));
+        List<String> hour = readLines("REQUEST_INFO_SUMMARY_HOUR_11.csv");
+        assertThat(hour.size(), is(2));
+        assertThat(hour.get(1).startsWith("\"RGH6AAR402\",\"10\",\"11\",\"2\",\"1\","), is(true));
+        List<String> minute = readLines("REQUEST_INFO_SUMMARY_MINUTE_11.csv");
+        assertThat(minute.size(), is(3));
+        assertThat(minute.get(1).startsWith("\"RGH6AAR402\",\"1000\",\"11\",\"1\",\"0\","), is(true));
+        assertThat(minute.get(2).startsWith("\"RGH6AAR402\",\"1001\",\"11\",\"1\",\"1\","), is(true));
+
+        // 保持期間外となった分単位の集計結果は出力されない。
+        append(endLog("10:03", 200) + "\texecution_time = [300]\n");
+        assertThat(executeBatchAction(ACTION_CLASS_NAME), is(0));
+
+        hour = readLines("REQUEST_INFO_SUMMARY_HOUR_11.csv");
+        assertThat(hour.get(1).startsWith("\"RGH6AAR402\",\"10\",\"11\",\"3\",\"1\","), is(true));
+        minute = readLines("REQUEST_INFO_SUMMARY_MINUTE_11.csv");
+        assertThat(minute.size(), is(3));
+        assertThat(minute.get(1).startsWith("\"RGH6AAR402\",\"1001\","), is(true));
+        assertThat(minute.get(2).startsWith("\"RGH6AAR402\",\"1003\","), is(true));
+    }
+
+    /** 停止ファイルが作成された場合は、停止ファイルを削除して終了すること。 */
+    @Test
+    public void testStopFile() throws Exception {
+        File stopFile = new File(stateDir, "STOP");
+        assertThat(stopFile.createNewFile(), is(true));
+        System.setProperty("tail.max-duration", "0");
+        System.setProperty("tail.stop-file", stopFile.getAbsolutePath());
+        append(endLog("10:00", 200) + "\texecution_time = [100]\n");
+
+        assertThat(executeBatchAction(ACTION_CLASS_NAME), is(0));
+        assertThat(stopFile.exists(), is(false));
+        assertThat(readLines("REQUEST_INFO_SUMMARY_HOUR_11.csv").size(), is(2));
+    }
+
+    /**
+     * 集計結果CSVを読み込む。
+     *
+     * @param fileName ファイル名
+     * @return 集計結果CSVの行
+     * @throws Exception 例外
+     */
+    private List<String> readLines(String fileName) throws Exception {
+        return Files.readAllLines(new File(summaryDir, fileName).toPath(), Charset.forName("ms932"));
+    }
+
+    /**
+     * 終了ログの行を生成する。
+     *
+     * @param time ログ出力時刻(HH:mm)
+     * @param statusCode ステータスコード
+     * @return 終了ログの行
+     */
+    private static String endLog(String time, int statusCode) {
+        return "2012-09-10 " + time + ":00.000 -INFO- ACC process_name = [11] @@@@ END @@@@ rid = [RGH6AAR402]"
+                + " status_code = [" + statusCode + "]\n";
+    }
+
+    /**
+     * アクセスログに追記する。
+     *
+     * @param content 追記する内容
+     * @throws Exception 例外
+     */
+    private void append(String content) throws Exception {
+        Files.write(accessLog.toPath(), content.getBytes(Charset.defaultCharset()),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
@@ -5,6 +5,16 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 import please.change.me.statistics.MemoryLogWriter;
 
@@ -69,6 +79,30 @@ public class OnlineAccessLogParseActionTest extends StatisticsToolTestSupport {
 
     }
 
+    /**
+     * メトリクスファイルを出力する場合。
+     * <p/>
+     * フェーズ毎の処理時間、解析件数及びリクエスト情報の件数が出力されること。
+     */
+    @Test
+    public void testMetricsOutput() throws Exception {
+        String metricsDir = temporaryFolder.newFolder("metrics").getAbsolutePath();
+        System.setProperty("metrics.dir", "file:" + metricsDir);
+        System.setProperty("metrics.output", "true");
+        assertThat(executeBatchAction(ACTION_CLASS_NAME), is(0));
+
+        String metrics = readMetrics(metricsDir, "OnlineAccessLogParse");
+        assertThat(metrics, containsString("\"job\": \"OnlineAccessLogParse\""));
+        assertThat(Pattern.compile("\"phases\": \\{\"copy\": \\d+, \"parse\": \\d+}").matcher(metrics).find(),
+                is(true));
+        long requestInfos = Files.readAllLines(new File(onlineParseOutputDir, "REQUEST_INFO_20120910.csv").toPath(),
+                Charset.forName("ms932")).size();
+        assertThat(metricValue(metrics, "requestInfos"), is(requestInfos));
+        assertThat(metricValue(metrics, "endLogs"), is(requestInfos + metricValue(metrics, "skippedRequestIds")));
+        assertThat(metricValue(metrics, "bytesRead"),
+                is(new File("src/test/temp/online/log/online-access/access.log").length()));
+    }
+
     /**
      * 終了ログからプロセス名が抽出出来ない場合。
      * <p/>
@@ -173,5 +207,127 @@ public class OnlineAccessLogParseActionTest extends StatisticsToolTestSupport {
         assertThat(requestInfoFiles[0].length(), is(0L));
 
     }
-}
 
+    /**
+     * 直接集計する場合。
+     * <p/>
+     * 解析処理と集計処理を別々に実行した場合と同じリクエスト情報CSV及び集計結果CSVが出力されること。
+     */
+    @Test
+    public void testDirectAggregation() throws Exception {
+        // 解析処理と集計処理を別々に実行する。
+        String expectedSummaryDir = temporaryFolder.newFolder("expected-summary").getAbsolutePath();
+        System.setProperty("request-info-summary.dir", "file:" + expectedSummaryDir);
+        assertThat(executeBatchAction(ACTION_CLASS_NAME), is(0));
+        assertThat(executeBatchAction("RequestInfoAggregateAction"), is(0));
+
+        // 直接集計する。
+        String directParseOutputDir = temporaryFolder.newFolder("direct-parse-output").getAbsolutePath();
+        String summaryDir = temporaryFolder.newFolder("summary").getAbsolutePath();
+        System.setProperty("request-info.dir", "file:" + directParseOutputDir);
+        System.setProperty("request-info-summary.dir", "file:" + summaryDir);
+        System.setProperty("direct-aggregation", "true");
+        assertThat(executeBatchAction(ACTION_CLASS_NAME), is(0));
+
+        assertSameFiles(directParseOutputDir, onlineParseOutputDir);
+        assertSameFiles(summaryDir, expectedSummaryDir);
+    }
+
+    /**
+     * 直接集計し、リクエスト情報CSVを出力しない場合。
+     * <p/>
+     * 状態ファイルを使用しない場合は、当日分のリクエスト情報が翌日以降に集計されなくなるため、異常終了すること。
+     * 状態ファイルを使用する場合は、集計結果CSVと当日分の状態ファイルのみが出力され、
+     * 翌日の集計結果CSVにも、状態ファイルから当日分のリクエスト情報が集計されること。
+     */
+    @Test
+    public void testDirectAggregationWithoutRequestInfoOutput() throws Exception {
+        String summaryDir = temporaryFolder.newFolder("summary").getAbsolutePath();
+        File stateDir = temporaryFolder.newFolder("state");
+        System.setProperty("request-info-summary.dir", "file:" + summaryDir);
+        System.setProperty("aggregate-state.dir", "file:" + stateDir.getAbsolutePath());
+        System.setProperty("direct-aggregation", "true");
+        System.setProperty("request-info.output", "false");
+        assertThat(executeBatchAction(ACTION_CLASS_NAME), is(20));
+        assertThat(MemoryLogWriter.outputs.get(0), is(containsString(
+                "request info output can be disabled only if incremental aggregation is enabled.")));
+
+        System.setProperty("incremental-aggregation", "true");
+        assertThat(executeBatchAction(ACTION_CLASS_NAME), is(0));
+        assertThat(FileUtil.listFiles(onlineParseOutputDir, "^[^.]*").length, is(0));
+        assertThat(FileUtil.listFiles(summaryDir, "REQUEST_INFO_SUMMARY_DAY_*").length > 0, is(true));
+        assertThat(new File(stateDir, "REQUEST_INFO_STATE_REQUEST_INFO_20120910.csv.bin").exists(), is(true));
+
+        // 翌日に、アクセスログが空の状態で実行する。
+        String nextDaySummaryDir = temporaryFolder.newFolder("next-day-summary").getAbsolutePath();
+        System.setProperty("request-info-summary.dir", "file:" + nextDaySummaryDir);
+        System.setProperty("access-log.dir", "src/test/temp/online/log/error-input");
+        System.setProperty("access-log.name.pattern", "empty.log");
+        assertThat(executeBatchActionAt(ACTION_CLASS_NAME, "20120911010000"), is(0));
+        assertSameFiles(nextDaySummaryDir, summaryDir);
+    }
+
+    /**
+     * アクセスログをスナップショットとして読み込む場合。
+     * <p/>
+     * 作業ディレクトリにコピーせずに、コピーする場合と同じリクエスト情報CSVが出力されること。
+     */
+    @Test
+    public void testSnapshotRead() {
+        System.setProperty("access-log.snapshot-read", "true");
+        assertThat(executeBatchAction(ACTION_CLASS_NAME), is(0));
+
+        assertThat(FileUtil.listFiles(tempDir, "^[^.]*").length, is(0));
+        File[] requestInfoFiles = FileUtil.listFiles(onlineParseOutputDir, "^[^.]*");
+        assertThat(requestInfoFiles.length, is(1));
+        assertThat(requestInfoFiles[0], is(sameFile(
+                "please/change/me/statistics/action/expected/OnlineAccessLogParseActionTest-expected1.csv")));
+    }
+
+    /**
+     * gzipで圧縮されたアクセスログを含み、ファイル毎に並列に解析する場合。
+     * <p/>
+     * 圧縮されたアクセスログが展開したファイルを出力せずに解析され、
+     * リクエスト情報CSVが古いアクセスログ(ファイル名が長いもの)の順に出力されること。
+     */
+    @Test
+    public void testCompressedAccessLogParallel() throws Exception {
+        File accessLogDir = temporaryFolder.newFolder("access-log");
+        File accessLog = new File("src/test/temp/online/log/online-access/access.log");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(new File(accessLogDir, "access.log.1.gz")))) {
+            Files.copy(accessLog.toPath(), out);
+        }
+        Files.copy(accessLog.toPath(), new File(accessLogDir, "access.log").toPath());
+        System.setProperty("access-log.dir", accessLogDir.getAbsolutePath());
+        System.setProperty("access-log.snapshot-read", "true");
+        System.setProperty("access-log.parse.parallelism", "2");
+        assertThat(executeBatchAction(ACTION_CLASS_NAME), is(0));
+
+        assertThat(accessLogDir.list().length, is(2));
+        File[] requestInfoFiles = FileUtil.listFiles(onlineParseOutputDir, "^[^.]*");
+        assertThat(requestInfoFiles.length, is(1));
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            expected.addAll(Files.readAllLines(new File("src/test/resources/please/change/me/statistics/action/"
+                    + "expected/OnlineAccessLogParseActionTest-expected1.csv").toPath(), StandardCharsets.UTF_8));
+        }
+        assertThat(Files.readAllLines(requestInfoFiles[0].toPath(), Charset.forName("ms932")), is(expected));
+    }
+
+    /**
+     * ディレクトリ配下のファイルの内容が全て一致することを検証する。
+     *
+     * @param actualDir 実際のファイルのディレクトリ
+     * @param expectedDir 期待するファイルのディレクトリ
+     * @throws IOException ファイルの読み込みに失敗した場合
+     */
+    private static void assertSameFiles(String actualDir, String expectedDir) throws IOException {
+        File[] expectedFiles = FileUtil.listFiles(expectedDir, "^[^.]*");
+        assertThat(FileUtil.listFiles(actualDir, "^[^.]*").length, is(expectedFiles.length));
+        for (File expected : expectedFiles) {
+            File actual = new File(actualDir, expected.getName());
+            assertThat(expected.getName(), Files.readAllBytes(actual.toPath()),
+                    is(Files.readAllBytes(expected.toPath())));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package please.change.me.statistics.action;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nablarch.core.util.FileUtil;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link PartialAggregateMergeAction}のテストクラス。
+ */
+public class PartialAggregateMergeActionTest extends StatisticsToolTestSupport {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String outputDir;
+
+    private String partialDir;
+
+    @Before
+    public void setUp() throws Exception {
+        outputDir = temporaryFolder.newFolder("output").getAbsolutePath();
+        partialDir = temporaryFolder.newFolder("partial").getAbsolutePath();
+        System.setProperty("request-info-summary.dir", "file:" + outputDir);
+        System.setProperty("partial-aggregate.dir", "file:" + partialDir);
+    }
+
+    /**
+     * 各ノードの部分集計ファイルを合算した場合。
+     * <p/>
+     * 各ノードでは集計結果CSVは出力されず、合算後の集計結果CSVは、
+     * 全てのリクエスト情報を1つのディレクトリで集計した場合と同じとなること。
+     */
+    @Test
+    public void testMerge() throws Exception {
+        // 各リクエスト情報ファイルの行を、2つのノードに振り分ける。(ファイル名は同じ)
+        File node1 = temporaryFolder.newFolder("node1");
+        File node2 = temporaryFolder.newFolder("node2");
+        for (File file : FileUtil.listFiles("src/test/temp/online/summary/input1", "REQUEST_INFO_*")) {
+            List<String> lines1 = new ArrayList<>();
+            List<String> lines2 = new ArrayList<>();
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            for (int i = 0; i < lines.size(); i++) {
+                (i % 2 == 0 ? lines1 : lines2).add(lines.get(i));
+            }
+            Files.write(new File(node1, file.getName()).toPath(), lines1, StandardCharsets.UTF_8);
+            Files.write(new File(node2, file.getName()).toPath(), lines2, StandardCharsets.UTF_8);
+        }
+
+        System.setProperty("partial-aggregate.output", "true");
+        System.setProperty("request-info.dir", "file:" + node1.getAbsolutePath());
+        System.setProperty("partial-aggregate.node-name", "ap1");
+        assertThat(executeBatchAction("RequestInfoAggregateAction"), is(0));
+        System.setProperty("request-info.dir", "file:" + node2.getAbsolutePath());
+        System.setProperty("partial-aggregate.node-name", "ap2");
+        assertThat(executeBatchAction("RequestInfoAggregateAction"), is(0));
+
+        assertThat(new File(partialDir, "REQUEST_INFO_PARTIAL_ap1.bin").exists(), is(true));
+        assertThat(new File(partialDir, "REQUEST_INFO_PARTIAL_ap2.bin").exists(), is(true));
+        assertThat(FileUtil.listFiles(outputDir, "*").length, is(0));
+
+        System.setProperty("partial-aggregate.output", "false");
+        assertThat(executeBatchAction("PartialAggregateMergeAction"), is(0));
+
+        assertThat(new File(outputDir, "REQUEST_INFO_SUMMARY_YM_201209_11.csv"), is(sameFile(
+                "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-ym1-11.csv")));
+        assertThat(new File(outputDir, "REQUEST_INFO_SUMMARY_YM_201209_12.csv"), is(sameFile(
+                "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-ym1-12.csv")));
+        assertThat(new File(outputDir, "REQUEST_INFO_SUMMARY_DAY_11.csv"), is(sameFile(
+                "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-d1-11.csv")));
+        assertThat(new File(outputDir, "REQUEST_INFO_SUMMARY_DAY_12.csv"), is(sameFile(
+                "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-d1-12.csv")));
+        assertThat(new File(outputDir, "REQUEST_INFO_SUMMARY_HOUR_11.csv"), is(sameFile(
+                "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-h1-11.csv")));
+        assertThat(new File(outputDir, "REQUEST_INFO_SUMMARY_HOUR_12.csv"), is(sameFile(
+                "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-h1-12.csv")));
+    }
+}
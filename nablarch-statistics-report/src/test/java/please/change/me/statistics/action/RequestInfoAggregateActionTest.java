@@ -1,6 +1,13 @@
 package please.change.me.statistics.action;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -8,6 +15,11 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import nablarch.core.util.FileUtil;
+import please.change.me.statistics.MemoryLogWriter;
+import please.change.me.statistics.aggregate.RequestInfo;
+import please.change.me.statistics.aggregate.RequestInfoBinaryFile;
+
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -17,6 +29,9 @@ import static org.hamcrest.MatcherAssert.assertThat;
  * @author hisaaki sioiri
  */
 public class RequestInfoAggregateActionTest extends StatisticsToolTestSupport {
+
+    /** 状態ファイルが保存し直されたことを判別するために設定する更新日時 */
+    private static final long STATE_FILE_MARK = 946652400000L;
     
     @Rule
     public TemporaryFolder temporaryFolder = new TemporaryFolder();
@@ -87,5 +102,282 @@ public class RequestInfoAggregateActionTest extends StatisticsToolTestSupport {
                 "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-d2.csv")));
 
     }
-}
 
+    /**
+     * メトリクスファイルを出力する場合。
+     * <p/>
+     * フェーズ毎の処理時間、読み込んだリクエスト情報ファイルの数及びリクエスト情報の件数、集計セルの数が出力されること。
+     */
+    @Test
+    public void testMetricsOutput() throws Exception {
+        String inputDir = "src/test/temp/online/summary/input1";
+        String metricsDir = temporaryFolder.newFolder("metrics").getAbsolutePath();
+        System.setProperty("request-info.dir", "file:" + inputDir);
+        System.setProperty("metrics.dir", "file:" + metricsDir);
+        System.setProperty("metrics.output", "true");
+        assertThat(executeBatchAction("RequestInfoAggregateAction"), is(0));
+
+        String metrics = readMetrics(metricsDir, "RequestInfoAggregate");
+        assertThat(metrics, containsString("\"job\": \"RequestInfoAggregate\""));
+        assertThat(Pattern.compile("\"phases\": \\{\"aggregate\": \\d+, \"write\": \\d+}").matcher(metrics).find(),
+                is(true));
+        long requestInfos = 0;
+        long inputBytes = 0;
+        for (String name : Arrays.asList(
+                "REQUEST_INFO_20120831.csv", "REQUEST_INFO_20120910.csv", "REQUEST_INFO_20120911.csv")) {
+            File file = new File(inputDir, name);
+            requestInfos += Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size();
+            inputBytes += file.length();
+        }
+        assertThat(metricValue(metrics, "inputFiles"), is(3L));
+        assertThat(metricValue(metrics, "inputBytes"), is(inputBytes));
+        assertThat(metricValue(metrics, "requestInfos"), is(requestInfos));
+        assertThat(metricValue(metrics, "aggregateCells") > 0, is(true));
+        assertThat(metricValue(metrics, "spillRuns"), is(0L));
+    }
+
+    /**
+     * 状態ファイルを使用する場合。
+     * <p/>
+     * 初回は全てのリクエスト情報ファイルを集計して状態ファイルを保存し、
+     * 2回目以降は状態ファイルの集計結果を再利用して、同じ集計結果が出力されること。
+     */
+    @Test
+    public void testIncrementalAggregation() throws Exception {
+        File inputDir = temporaryFolder.newFolder("input");
+        for (File file : FileUtil.listFiles("src/test/temp/online/summary/input1", "REQUEST_INFO_*")) {
+            Files.copy(file.toPath(), new File(inputDir, file.getName()).toPath());
+        }
+        String stateDir = temporaryFolder.newFolder("state").getAbsolutePath();
+        System.setProperty("request-info.dir", "file:" + inputDir.getAbsolutePath());
+        System.setProperty("aggregate-state.dir", "file:" + stateDir);
+        System.setProperty("incremental-aggregation", "true");
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(executeBatchAction("RequestInfoAggregateAction"), is(0));
+
+            // 状態ファイルは、初回の実行時のみリクエスト情報ファイル毎に保存される。
+            assertThat(FileUtil.listFiles(stateDir, "REQUEST_INFO_STATE_*").length, is(3));
+
+            assertThat(new File(outputDir, "REQUEST_INFO_SUMMARY_YM_201209_11.csv"), is(sameFile(
+                    "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-ym1-11.csv")));
+            assertThat(new File(outputDir, "REQUEST_INFO_SUMMARY_DAY_12.csv"), is(sameFile(
+                    "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-d1-12.csv")));
+            assertThat(new File(outputDir, "REQUEST_INFO_SUMMARY_HOUR_11.csv"), is(sameFile(
+                    "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-h1-11.csv")));
+        }
+
+        // リクエスト情報ファイルが変更された場合は、状態ファイルは再作成される。
+        File changed = new File(inputDir, "REQUEST_INFO_20120831.csv");
+        changed.setLastModified(changed.lastModified() - 60000);
+        assertThat(executeBatchAction("RequestInfoAggregateAction"), is(0));
+        assertThat(FileUtil.listFiles(stateDir, "REQUEST_INFO_STATE_*").length, is(3));
+        assertThat(new File(outputDir, "REQUEST_INFO_SUMMARY_DAY_12.csv"), is(sameFile(
+                "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-d1-12.csv")));
+    }
+
+    /**
+     * 状態ファイルを使用して、日及び月をまたいで集計する場合。
+     * <p/>
+     * 日をまたいだ場合は、追加されたリクエスト情報ファイルのみが読み込まれること。
+     * 月をまたいだ場合は、集計期間外となったリクエスト情報ファイルの状態ファイルのみが削除され、
+     * 追加されたリクエスト情報ファイルのみが読み込まれること。
+     * いずれの場合も、状態ファイルを使用しない場合と同じ集計結果が出力されること。
+     * <p/>
+     * 読み込んだリクエスト情報ファイルの件数は、メトリクスファイルで検証する。
+     * また、読み込んだリクエスト情報ファイルの状態ファイルは保存し直されるため、
+     * 既存の状態ファイルの更新日時が変わらないことでも、読み込まれていないことを検証する。
+     */
+    @Test
+    public void testIncrementalAggregationAcrossDayAndMonth() throws Exception {
+        File inputDir = temporaryFolder.newFolder("input");
+        String stateDir = temporaryFolder.newFolder("state").getAbsolutePath();
+        String metricsDir = temporaryFolder.newFolder("metrics").getAbsolutePath();
+        System.setProperty("request-info.dir", "file:" + inputDir.getAbsolutePath());
+        System.setProperty("aggregate-state.dir", "file:" + stateDir);
+        System.setProperty("metrics.dir", "file:" + metricsDir);
+        System.setProperty("metrics.output", "true");
+        System.setProperty("incremental-aggregation", "true");
+
+        // 初回(2012/09/10)は、集計期間内の全てのリクエスト情報ファイルを読み込む。
+        copyRequestInfoFile(inputDir, "REQUEST_INFO_20120831.csv");
+        copyRequestInfoFile(inputDir, "REQUEST_INFO_20120910.csv");
+        assertThat(executeBatchActionAt("RequestInfoAggregateAction", "20120910010000"), is(0));
+        assertThat(metricValue(readMetrics(metricsDir, "RequestInfoAggregate"), "inputFiles"), is(2L));
+        assertThat(listStateFiles(stateDir), is(Arrays.asList(
+                "REQUEST_INFO_STATE_REQUEST_INFO_20120831.csv.bin",
+                "REQUEST_INFO_STATE_REQUEST_INFO_20120910.csv.bin")));
+
+        // 日をまたいだ場合(2012/09/11)は、追加されたリクエスト情報ファイルのみを読み込む。
+        copyRequestInfoFile(inputDir, "REQUEST_INFO_20120911.csv");
+        markStateFiles(stateDir);
+        assertThat(executeBatchActionAt("RequestInfoAggregateAction", "20120911010000"), is(0));
+        String metrics = readMetrics(metricsDir, "RequestInfoAggregate");
+        assertThat(metricValue(metrics, "inputFiles"), is(1L));
+        assertThat(metricValue(metrics, "requestInfos"), is(332L));
+        assertThat(listStateFiles(stateDir), is(Arrays.asList(
+                "REQUEST_INFO_STATE_REQUEST_INFO_20120831.csv.bin",
+                "REQUEST_INFO_STATE_REQUEST_INFO_20120910.csv.bin",
+                "REQUEST_INFO_STATE_REQUEST_INFO_20120911.csv.bin")));
+        assertThat(listMarkedStateFiles(stateDir), is(Arrays.asList(
+                "REQUEST_INFO_STATE_REQUEST_INFO_20120831.csv.bin",
+                "REQUEST_INFO_STATE_REQUEST_INFO_20120910.csv.bin")));
+        assertSameResult(inputDir, "20120911010000");
+
+        // 月をまたいだ場合(2012/10/01)は、集計期間外となった2012/08/31の状態ファイルのみを削除し、
+        // 追加されたリクエスト情報ファイルのみを読み込む。
+        Files.write(new File(inputDir, "REQUEST_INFO_20121001.csv").toPath(), Arrays.asList(
+                "\"2012\",\"10\",\"1\",\"0\",\"11\",\"RGH6AAR302\",\"1200\",\"200\"",
+                "\"2012\",\"10\",\"1\",\"0\",\"11\",\"RGH6AAR402\",\"150\",\"200\"",
+                "\"2012\",\"10\",\"1\",\"1\",\"12\",\"RGH6AAR402\",\"130\",\"500\""),
+                StandardCharsets.UTF_8);
+        markStateFiles(stateDir);
+        assertThat(executeBatchActionAt("RequestInfoAggregateAction", "20121001010000"), is(0));
+        metrics = readMetrics(metricsDir, "RequestInfoAggregate");
+        assertThat(metricValue(metrics, "inputFiles"), is(1L));
+        assertThat(metricValue(metrics, "requestInfos"), is(3L));
+        assertThat(listStateFiles(stateDir), is(Arrays.asList(
+                "REQUEST_INFO_STATE_REQUEST_INFO_20120910.csv.bin",
+                "REQUEST_INFO_STATE_REQUEST_INFO_20120911.csv.bin",
+                "REQUEST_INFO_STATE_REQUEST_INFO_20121001.csv.bin")));
+        assertThat(listMarkedStateFiles(stateDir), is(Arrays.asList(
+                "REQUEST_INFO_STATE_REQUEST_INFO_20120910.csv.bin",
+                "REQUEST_INFO_STATE_REQUEST_INFO_20120911.csv.bin")));
+        assertSameResult(inputDir, "20121001010000");
+    }
+
+    /**
+     * テストデータのリクエスト情報ファイルをコピーする。
+     *
+     * @param inputDir コピー先のディレクトリ
+     * @param fileName リクエスト情報ファイルのファイル名
+     */
+    private static void copyRequestInfoFile(File inputDir, String fileName) throws Exception {
+        Files.copy(new File("src/test/temp/online/summary/input1", fileName).toPath(),
+                new File(inputDir, fileName).toPath());
+    }
+
+    /**
+     * 状態ファイルのファイル名を、ファイル名順に取得する。
+     *
+     * @param stateDir 状態ファイルの格納先ディレクトリ
+     * @return 状態ファイルのファイル名
+     */
+    private static List<String> listStateFiles(String stateDir) {
+        List<String> names = new ArrayList<>();
+        for (File file : FileUtil.listFiles(stateDir, "REQUEST_INFO_STATE_*")) {
+            names.add(file.getName());
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * 状態ファイルの更新日時を、保存し直されたことを判別するための日時に変更する。
+     *
+     * @param stateDir 状態ファイルの格納先ディレクトリ
+     */
+    private static void markStateFiles(String stateDir) {
+        for (File file : FileUtil.listFiles(stateDir, "REQUEST_INFO_STATE_*")) {
+            assertThat(file.setLastModified(STATE_FILE_MARK), is(true));
+        }
+    }
+
+    /**
+     * {@link #markStateFiles(String)}の後に保存し直されていない状態ファイルのファイル名を、ファイル名順に取得する。
+     *
+     * @param stateDir 状態ファイルの格納先ディレクトリ
+     * @return 保存し直されていない状態ファイルのファイル名
+     */
+    private static List<String> listMarkedStateFiles(String stateDir) {
+        List<String> names = new ArrayList<>();
+        for (File file : FileUtil.listFiles(stateDir, "REQUEST_INFO_STATE_*")) {
+            if (file.lastModified() == STATE_FILE_MARK) {
+                names.add(file.getName());
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * 状態ファイルを使用せずに全てのリクエスト情報ファイルを集計し、集計結果CSVが同じ内容となることを検証する。
+     *
+     * @param inputDir リクエスト情報ファイルの格納先ディレクトリ
+     * @param systemDate システム日時
+     */
+    private void assertSameResult(File inputDir, String systemDate) throws Exception {
+        String expectedDir = temporaryFolder.newFolder().getAbsolutePath();
+        System.setProperty("request-info-summary.dir", "file:" + expectedDir);
+        System.setProperty("incremental-aggregation", "false");
+        System.setProperty("metrics.output", "false");
+        try {
+            assertThat(executeBatchActionAt("RequestInfoAggregateAction", systemDate), is(0));
+        } finally {
+            System.setProperty("request-info-summary.dir", "file:" + outputDir);
+            System.setProperty("incremental-aggregation", "true");
+            System.setProperty("metrics.output", "true");
+        }
+
+        File[] expectedFiles = FileUtil.listFiles(expectedDir, "REQUEST_INFO_SUMMARY_*");
+        assertThat(expectedFiles.length > 0, is(true));
+        for (File expected : expectedFiles) {
+            assertThat(expected.getName(), Files.readAllBytes(new File(outputDir, expected.getName()).toPath()),
+                    is(Files.readAllBytes(expected.toPath())));
+        }
+    }
+
+    /**
+     * バイナリ形式のリクエスト情報ファイルが含まれる場合。
+     * <p/>
+     * リクエスト情報CSVのみの場合と同じ集計結果が出力されること。
+     */
+    @Test
+    public void testBinaryRequestInfoFile() throws Exception {
+        File inputDir = temporaryFolder.newFolder("input");
+        for (File file : FileUtil.listFiles("src/test/temp/online/summary/input1", "REQUEST_INFO_*")) {
+            if (!file.getName().equals("REQUEST_INFO_20120910.csv")) {
+                Files.copy(file.toPath(), new File(inputDir, file.getName()).toPath());
+                continue;
+            }
+            // 1ファイルのみバイナリ形式に変換する。
+            String binaryName = file.getName().replace(".csv", RequestInfoBinaryFile.SUFFIX);
+            try (RequestInfoBinaryFile.Writer writer = RequestInfoBinaryFile.openWriter(
+                    new File(inputDir, binaryName))) {
+                for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                    String[] fields = line.replace("\"", "").split(",");
+                    writer.write(new RequestInfo(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                            Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), 0, fields[4], fields[5],
+                            Integer.parseInt(fields[6]), Integer.parseInt(fields[7])));
+                }
+            }
+        }
+        System.setProperty("request-info.dir", "file:" + inputDir.getAbsolutePath());
+        assertThat(executeBatchAction("RequestInfoAggregateAction"), is(0));
+
+        assertThat(new File(outputDir, "REQUEST_INFO_SUMMARY_YM_201209_11.csv"), is(sameFile(
+                "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-ym1-11.csv")));
+        assertThat(new File(outputDir, "REQUEST_INFO_SUMMARY_DAY_11.csv"), is(sameFile(
+                "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-d1-11.csv")));
+        assertThat(new File(outputDir, "REQUEST_INFO_SUMMARY_DAY_12.csv"), is(sameFile(
+                "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-d1-12.csv")));
+        assertThat(new File(outputDir, "REQUEST_INFO_SUMMARY_HOUR_12.csv"), is(sameFile(
+                "please/change/me/statistics/action/expected/RequestInfoAggregateActionTest-h1-12.csv")));
+    }
+
+    /**
+     * リクエスト情報CSVを集計対象として、分単位の集計結果CSVを出力する場合。
+     * <p/>
+     * リクエスト情報CSVは分を保持しないため、集計結果CSVを出力せずに異常終了すること。
+     */
+    @Test
+    public void testMinuteSummaryWithCsvRequestInfo() {
+        System.setProperty("request-info.dir", "file:src/test/temp/online/summary/input1");
+        System.setProperty("summary.minute", "true");
+        assertThat(executeBatchAction("RequestInfoAggregateAction"), is(20));
+
+        assertThat(MemoryLogWriter.outputs.get(0), is(containsString(
+                "five-minute, minute and peak summaries require binary request info files.")));
+        assertThat(FileUtil.listFiles(outputDir, "REQUEST_INFO_SUMMARY_*").length, is(0));
+    }
+}
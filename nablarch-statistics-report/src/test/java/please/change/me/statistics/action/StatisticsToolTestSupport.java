@@ -6,7 +6,12 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import org.hamcrest.Description;
 import org.hamcrest.TypeSafeMatcher;
 import org.junit.After;
@@ -23,6 +28,9 @@ import nablarch.fw.launcher.CommandLine;
 import nablarch.fw.launcher.Main;
 import please.change.me.statistics.MemoryLogWriter;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
 /**
  * 統計情報ツールの自動テストサポートクラス。
  *
@@ -57,8 +65,31 @@ public abstract class StatisticsToolTestSupport {
      * @return バッチアクションから返された終了コード
      */
     protected static int executeBatchAction(String actionClassName) {
+        return executeBatchAction(actionClassName, "statistics-batch-for-test.xml");
+    }
+
+    /**
+     * システム日時を指定して、ターゲットクラスのバッチアクションを実行する。
+     *
+     * @param actionClassName 実行対象のバッチアクションクラス名
+     * @param systemDate システム日時(yyyyMMddHHmmss形式)
+     * @return バッチアクションから返された終了コード
+     */
+    protected static int executeBatchActionAt(String actionClassName, String systemDate) {
+        System.setProperty("system-date", systemDate);
+        return executeBatchAction(actionClassName, "statistics-batch-for-date-test.xml");
+    }
+
+    /**
+     * コンポーネント設定ファイルを指定して、ターゲットクラスのバッチアクションを実行する。
+     *
+     * @param actionClassName 実行対象のバッチアクションクラス名
+     * @param diConfig コンポーネント設定ファイル
+     * @return バッチアクションから返された終了コード
+     */
+    private static int executeBatchAction(String actionClassName, String diConfig) {
         CommandLine commandLine = new CommandLine(
-                "-diConfig", "statistics-batch-for-test.xml",
+                "-diConfig", diConfig,
                 "-requestPath", actionClassName ,
                 "-userId", "statistics-user");
         return Main.execute(commandLine);
@@ -99,6 +130,37 @@ public abstract class StatisticsToolTestSupport {
         }
     }
 
+    /**
+     * メトリクスファイルの内容を取得する。
+     * <p/>
+     * 次回の実行のメトリクスファイルと区別するため、取得後にメトリクスファイルを削除する。
+     *
+     * @param metricsDir メトリクスファイルの格納先ディレクトリ
+     * @param jobName バッチアクションの名前
+     * @return メトリクスファイルの内容
+     * @throws IOException 読み込みに失敗した場合
+     */
+    protected static String readMetrics(String metricsDir, String jobName) throws IOException {
+        File[] files = FileUtil.listFiles(metricsDir, "STATISTICS_METRICS_" + jobName + "_*.json");
+        assertThat(files.length, is(1));
+        String metrics = new String(Files.readAllBytes(files[0].toPath()), StandardCharsets.UTF_8);
+        FileUtil.deleteFile(files[0]);
+        return metrics;
+    }
+
+    /**
+     * メトリクスファイルの内容から、数値の計測値を取得する。
+     *
+     * @param metrics メトリクスファイルの内容
+     * @param name 計測値の名前
+     * @return 計測値
+     */
+    protected static long metricValue(String metrics, String name) {
+        Matcher matcher = Pattern.compile('"' + Pattern.quote(name) + "\": (\\d+)").matcher(metrics);
+        assertThat(name, matcher.find(), is(true));
+        return Long.parseLong(matcher.group(1));
+    }
+
     /**
      * ファイルの内容が同じかどうかを比較するMatcherを返す。
      *
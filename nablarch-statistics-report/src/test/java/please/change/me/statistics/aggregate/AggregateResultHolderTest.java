@@ -0,0 +1,116 @@
+package please.change.me.statistics.aggregate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import please.change.me.statistics.action.AggregateUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link AggregateResultHolder}のテストクラス。
+ */
+public class AggregateResultHolderTest {
+
+    /** 集計結果がキー順(リクエストID、集計基準値、プロセス名、集計単位の順)に保持されること。 */
+    @Test
+    public void testOrder() {
+        AggregateResultHolder sut = new AggregateResultHolder(new IntArrayAggregatorFactory());
+        sut.add("REQ02", "p1", AggregateUnit.DAY, 1, 10, false);
+        sut.add("REQ01", "p2", AggregateUnit.HOUR, 3, 20, false);
+        sut.add("REQ01", "p1", AggregateUnit.DAY, 3, 30, true);
+        sut.add("REQ01", "p1", AggregateUnit.DAY, 3, 40, true);
+        sut.add("REQ01", "p1", AggregateUnit.YEAR_MONTH, 201209, 50, false);
+
+        Iterator<Map.Entry<AggregateKey, Aggregator>> it = sut.getAggregateResults().entrySet().iterator();
+        assertKey(it.next(), "REQ01", 3, "p1", AggregateUnit.DAY, 2);
+        assertKey(it.next(), "REQ01", 3, "p2", AggregateUnit.HOUR, 1);
+        assertKey(it.next(), "REQ02", 1, "p1", AggregateUnit.DAY, 1);
+        assertThat(it.hasNext(), is(false));
+
+        assertThat(sut.getYmAggregateResults().size(), is(1));
+        assertKey(sut.getYmAggregateResults().entrySet().iterator().next(),
+                "REQ01", 201209, "p1", AggregateUnit.YEAR_MONTH, 1);
+        assertThat(sut.getProcessNames().size(), is(2));
+        assertThat(sut.getProcessNames().contains("p1"), is(true));
+        assertThat(sut.getProcessNames().contains("p2"), is(true));
+    }
+
+    /** スレッド毎に集計した結果を合算した結果が、1つのインスタンスで集計した結果と一致すること。 */
+    @Test
+    public void testMerge() {
+        AggregateResultHolder expected = new AggregateResultHolder(new IntArrayAggregatorFactory());
+        List<AggregateResultHolder> partials = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            partials.add(new AggregateResultHolder(new IntArrayAggregatorFactory()));
+        }
+
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            String requestId = "REQ" + random.nextInt(20);
+            String processName = "p" + random.nextInt(3);
+            AggregateUnit unit = AggregateUnit.values()[random.nextInt(AggregateUnit.values().length)];
+            int unitValue = random.nextInt(24);
+            int time = random.nextInt(3000);
+            boolean thresholdOver = time > 2000;
+            expected.add(requestId, processName, unit, unitValue, time, thresholdOver);
+            partials.get(i % partials.size()).add(requestId, processName, unit, unitValue, time, thresholdOver);
+        }
+
+        AggregateResultHolder sut = partials.get(0);
+        for (AggregateResultHolder partial : partials.subList(1, partials.size())) {
+            sut.merge(partial);
+        }
+
+        assertThat(sut.getProcessNames(), is(expected.getProcessNames()));
+        assertSameResults(sut.getAggregateResults(), expected.getAggregateResults());
+        assertSameResults(sut.getYmAggregateResults(), expected.getYmAggregateResults());
+    }
+
+    /**
+     * 集計結果のキーと件数を検証する。
+     *
+     * @param entry 集計結果
+     * @param requestId 期待するリクエストID
+     * @param unitValue 期待する集計基準値
+     * @param processName 期待するプロセス名
+     * @param unit 期待する集計単位
+     * @param requestCount 期待するリクエスト数
+     */
+    private static void assertKey(Map.Entry<AggregateKey, Aggregator> entry, String requestId, int unitValue,
+            String processName, AggregateUnit unit, int requestCount) {
+        assertThat(entry.getKey().getRequestId(), is(requestId));
+        assertThat(entry.getKey().getAggregateUnitValue(), is(unitValue));
+        assertThat(entry.getKey().getProcessName(), is(processName));
+        assertThat(entry.getKey().getAggregateUnit(), is(unit));
+        assertThat(entry.getValue().getRequestCount(), is(requestCount));
+    }
+
+    /**
+     * 集計結果が一致することを検証する。
+     *
+     * @param actual 実際の集計結果
+     * @param expected 期待する集計結果
+     */
+    private static void assertSameResults(Map<AggregateKey, Aggregator> actual,
+            Map<AggregateKey, Aggregator> expected) {
+        assertThat(actual.size(), is(expected.size()));
+        Iterator<Map.Entry<AggregateKey, Aggregator>> actualIt = actual.entrySet().iterator();
+        for (Map.Entry<AggregateKey, Aggregator> e : expected.entrySet()) {
+            Map.Entry<AggregateKey, Aggregator> a = actualIt.next();
+            assertThat(a.getKey().compareTo(e.getKey()), is(0));
+            assertThat(a.getValue().getRequestCount(), is(e.getValue().getRequestCount()));
+            assertThat(a.getValue().getThresholdOverCount(), is(e.getValue().getThresholdOverCount()));
+            assertThat(a.getValue().getAverageTime(), is(e.getValue().getAverageTime()));
+            assertThat(a.getValue().getMaxExecutionTime(), is(e.getValue().getMaxExecutionTime()));
+            assertThat(a.getValue().getMedianTime(), is(e.getValue().getMedianTime()));
+            assertThat(a.getValue().getPercentileTime(99), is(e.getValue().getPercentileTime(99)));
+        }
+    }
+}
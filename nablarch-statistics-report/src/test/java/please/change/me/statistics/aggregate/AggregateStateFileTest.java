@@ -0,0 +1,165 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import please.change.me.statistics.action.AggregateUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link AggregateStateFile}のテストクラス。
+ */
+public class AggregateStateFileTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /** 状態ファイルから読み込んだ集計結果が、出力した集計結果と一致すること。 */
+    @Test
+    public void testWriteAndRead() throws Exception {
+        assertWriteAndRead(new IntArrayAggregatorFactory());
+        assertWriteAndRead(new ListAggregatorFactory());
+        assertWriteAndRead(new HistogramAggregatorFactory());
+    }
+
+    /** 集計元ファイルが変更された場合や、集計オブジェクトが異なる場合は再利用できないこと。 */
+    @Test
+    public void testIsValid() throws Exception {
+        File source = temporaryFolder.newFile("REQUEST_INFO_20120910.csv");
+        Files.write(source.toPath(), "2012,9,10,1,p1,REQ01,100,200\n".getBytes("UTF-8"));
+        File file = new File(temporaryFolder.getRoot(), "state.bin");
+        AggregateResultHolder holder = createHolder(new IntArrayAggregatorFactory(), 1);
+        AggregateStateFile.write(file, "aggregator", Collections.singletonList(source), holder);
+
+        Map<String, File> files = new HashMap<>();
+        files.put(source.getName(), source);
+        AggregateStateFile sut = AggregateStateFile.open(file);
+        assertThat(sut.getSourceFileNames(), is(Collections.singletonList(source.getName())));
+        assertThat(sut.isValid("aggregator", files), is(true));
+        assertThat(sut.isValid("other", files), is(false));
+        assertThat(sut.isValid("aggregator", Collections.<String, File>emptyMap()), is(false));
+
+        Files.write(source.toPath(), "2012,9,10,1,p1,REQ01,100,200\n2012,9,10,1,p1,REQ01,200,200\n"
+                .getBytes("UTF-8"));
+        assertThat(sut.isValid("aggregator", files), is(false));
+    }
+
+    /**
+     * 集計元ファイルがサイズ及び最終更新日時を変えずに書き換えられた場合も、再利用できないこと。
+     * <p/>
+     * チェックサムの対象外となる中間部分のみが書き換えられた場合は検出できないこと。(仕様上の制約)
+     */
+    @Test
+    public void testIsValidContentChanged() throws Exception {
+        File source = temporaryFolder.newFile("REQUEST_INFO_20120911.csv");
+        byte[] content = new byte[AggregateStateFile.CHECKSUM_SAMPLE_SIZE * 3];
+        Arrays.fill(content, (byte) '0');
+        Files.write(source.toPath(), content);
+        long lastModified = source.lastModified();
+        File file = new File(temporaryFolder.getRoot(), "state.bin");
+        AggregateStateFile.write(file, "aggregator", Collections.singletonList(source),
+                createHolder(new IntArrayAggregatorFactory(), 1));
+
+        Map<String, File> files = new HashMap<>();
+        files.put(source.getName(), source);
+        AggregateStateFile sut = AggregateStateFile.open(file);
+        assertThat(sut.isValid("aggregator", files), is(true));
+
+        // 末尾を書き換える。
+        content[content.length - 1] = '1';
+        Files.write(source.toPath(), content);
+        source.setLastModified(lastModified);
+        assertThat(sut.isValid("aggregator", files), is(false));
+
+        // 中間のみを書き換える。
+        content[content.length - 1] = '0';
+        content[AggregateStateFile.CHECKSUM_SAMPLE_SIZE + 1] = '1';
+        Files.write(source.toPath(), content);
+        source.setLastModified(lastModified);
+        assertThat(sut.isValid("aggregator", files), is(true));
+    }
+
+    /** 状態ファイルの形式ではない場合は、例外が送出されること。 */
+    @Test(expected = IOException.class)
+    public void testOpenInvalidFile() throws Exception {
+        File file = temporaryFolder.newFile("invalid.bin");
+        Files.write(file.toPath(), "invalid state file".getBytes("UTF-8"));
+        AggregateStateFile.open(file);
+    }
+
+    /**
+     * 状態ファイルに出力し、読み込んだ集計結果が一致することを検証する。
+     *
+     * @param factory 集計オブジェクトのファクトリ
+     * @throws IOException 入出力に失敗した場合
+     */
+    private void assertWriteAndRead(AggregatorFactory factory) throws IOException {
+        AggregateResultHolder expected = createHolder(factory, 3);
+        File file = temporaryFolder.newFile();
+        AggregateStateFile.write(file, "aggregator", Collections.<File>emptyList(), expected);
+
+        AggregateResultHolder actual = new AggregateResultHolder(factory);
+        AggregateStateFile.open(file).readInto(actual, factory);
+
+        assertThat(actual.getProcessNames(), is(expected.getProcessNames()));
+        assertSameResults(actual.getYmAggregateResults(), expected.getYmAggregateResults());
+        assertSameResults(actual.getAggregateResults(), expected.getAggregateResults());
+    }
+
+    /**
+     * 集計結果を生成する。
+     *
+     * @param factory 集計オブジェクトのファクトリ
+     * @param seed 乱数のシード
+     * @return 集計結果
+     */
+    private static AggregateResultHolder createHolder(AggregatorFactory factory, long seed) {
+        AggregateResultHolder holder = new AggregateResultHolder(factory);
+        Random random = new Random(seed);
+        for (int i = 0; i < 5000; i++) {
+            int time = random.nextInt(20000);
+            String requestId = "REQ" + random.nextInt(10);
+            String processName = "p" + random.nextInt(2);
+            holder.add(requestId, processName, AggregateUnit.YEAR_MONTH, 201209, time, time > 10000);
+            holder.add(requestId, processName, AggregateUnit.DAY, random.nextInt(31) + 1, time, time > 10000);
+            holder.add(requestId, processName, AggregateUnit.HOUR, random.nextInt(24), time, time > 10000);
+        }
+        return holder;
+    }
+
+    /**
+     * 集計結果が一致することを検証する。
+     *
+     * @param actual 実際の集計結果
+     * @param expected 期待する集計結果
+     */
+    private static void assertSameResults(Map<AggregateKey, Aggregator> actual,
+            Map<AggregateKey, Aggregator> expected) {
+        assertThat(actual.size(), is(expected.size()));
+        Iterator<Map.Entry<AggregateKey, Aggregator>> actualIt = actual.entrySet().iterator();
+        for (Map.Entry<AggregateKey, Aggregator> e : expected.entrySet()) {
+            Map.Entry<AggregateKey, Aggregator> a = actualIt.next();
+            assertThat(a.getKey().compareTo(e.getKey()), is(0));
+            assertThat(a.getValue().getRequestCount(), is(e.getValue().getRequestCount()));
+            assertThat(a.getValue().getThresholdOverCount(), is(e.getValue().getThresholdOverCount()));
+            assertThat(a.getValue().getAverageTime(), is(e.getValue().getAverageTime()));
+            assertThat(a.getValue().getMaxExecutionTime(), is(e.getValue().getMaxExecutionTime()));
+            assertThat(a.getValue().getMedianTime(), is(e.getValue().getMedianTime()));
+            assertThat(a.getValue().getPercentileTime(1), is(e.getValue().getPercentileTime(1)));
+            assertThat(a.getValue().getPercentileTime(99), is(e.getValue().getPercentileTime(99)));
+        }
+    }
+}
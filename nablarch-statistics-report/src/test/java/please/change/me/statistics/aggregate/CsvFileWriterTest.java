@@ -0,0 +1,77 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link CsvFileWriter}のテストクラス。
+ */
+public class CsvFileWriterTest {
+
+    /** リクエスト情報CSVのフォーマット定義ファイル(utf-8、LF、囲み文字あり) */
+    private static final File LAYOUT_FILE = new File("src/test/resources/format/requestInfo.fmt");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * フォーマット定義ファイルの文字エンコーディング、区切り文字、囲み文字及び改行コードに従って出力されること。
+     * 値に含まれる囲み文字はエスケープされること。
+     */
+    @Test
+    public void testWrite() throws Exception {
+        CsvFileWriter.Layout layout = new CsvFileWriter.Layout(LAYOUT_FILE);
+        assertThat(layout.getFieldNames().length, is(8));
+
+        File file = temporaryFolder.newFile("REQUEST_INFO_20120910.csv");
+        try (CsvFileWriter sut = new CsvFileWriter(layout, file)) {
+            sut.writeNumber(2012);
+            sut.writeNumber(-9);
+            sut.writeString("プロセス\"1");
+            sut.writeString("");
+            sut.endRecord();
+            sut.writeNumber(Integer.MIN_VALUE);
+            sut.writeNumber(0);
+            sut.endRecord();
+        }
+
+        assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8),
+                is("\"2012\",\"-9\",\"プロセス\"\"1\",\"\"\n\"-2147483648\",\"0\"\n"));
+    }
+
+    /** 出力先のバッファを超える行や、バッファより大きい行が、欠落や順序の入れ替わりなく出力されること。 */
+    @Test
+    public void testWriteLargerThanBuffer() throws Exception {
+        CsvFileWriter.Layout layout = new CsvFileWriter.Layout(LAYOUT_FILE);
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            large.append((char) ('a' + i % 26));
+        }
+
+        File file = temporaryFolder.newFile("large.csv");
+        StringBuilder expected = new StringBuilder();
+        try (CsvFileWriter sut = new CsvFileWriter(layout, file)) {
+            for (int i = 0; i < 10000; i++) {
+                sut.writeNumber(i);
+                sut.writeString("REQ01");
+                sut.endRecord();
+                expected.append('"').append(i).append("\",\"REQ01\"\n");
+                if (i == 5000) {
+                    sut.writeString(large.toString());
+                    sut.endRecord();
+                    expected.append('"').append(large).append("\"\n");
+                }
+            }
+        }
+
+        assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), is(expected.toString()));
+    }
+}
@@ -0,0 +1,124 @@
+package please.change.me.statistics.aggregate;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link HistogramAggregator}のテストクラス。
+ */
+public class HistogramAggregatorTest {
+
+    /** 精度ビット数未満の処理時間は、正確な値が算出されること。 */
+    @Test
+    public void testExactRange() {
+        HistogramAggregator sut = new HistogramAggregator(7);
+        for (int i = 1; i <= 100; i++) {
+            sut.addRequestData(i, i > 95);
+        }
+        assertThat(sut.getRequestCount(), is(100));
+        assertThat(sut.getThresholdOverCount(), is(5));
+        assertThat(sut.getAverageTime(), is(50));
+        assertThat(sut.getMaxExecutionTime(), is(100));
+        assertThat(sut.getMedianTime(), is(50));
+        assertThat(sut.getPercentileTime(90), is(90));
+        assertThat(sut.getPercentileTime(99), is(99));
+        assertThat(sut.getPercentileTime(100), is(100));
+    }
+
+    /**
+     * 処理時間が指定値以下のリクエスト数が、精度ビット数未満の指定値では正確な値、
+     * それ以上の指定値では精度ビット数から求まる誤差の範囲内の値となること。
+     */
+    @Test
+    public void testRequestCountWithin() {
+        int precisionBits = 7;
+        HistogramAggregator sut = new HistogramAggregator(precisionBits);
+        ListAggregator exact = new ListAggregator();
+        Random random = new Random(5);
+        for (int i = 0; i < 100000; i++) {
+            int time = random.nextInt(20000);
+            sut.addRequestData(time, false);
+            exact.addRequestData(time, false);
+        }
+        for (int time = 0; time < 1 << precisionBits; time++) {
+            assertThat("time = " + time, sut.getRequestCountWithin(time), is(exact.getRequestCountWithin(time)));
+        }
+        double error = Math.pow(2, -precisionBits);
+        for (int time : new int[] {200, 500, 1000, 2000, 5000, 10000}) {
+            int actual = sut.getRequestCountWithin(time);
+            assertTrue("time = " + time + ", actual = " + actual,
+                    actual >= exact.getRequestCountWithin((int) (time * (1 - error)))
+                            && actual <= exact.getRequestCountWithin((int) (time * (1 + error))));
+        }
+        assertThat(sut.getRequestCountWithin(-1), is(0));
+        assertThat(sut.getRequestCountWithin(20000), is(100000));
+    }
+
+    /** パーセンタイル値の相対誤差が、精度ビット数から求まる上限以内であること。 */
+    @Test
+    public void testErrorBound() {
+        int precisionBits = 7;
+        HistogramAggregator sut = new HistogramAggregator(precisionBits);
+        ListAggregator exact = new ListAggregator();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int time = (int) Math.exp(random.nextDouble() * 14);
+            sut.addRequestData(time, false);
+            exact.addRequestData(time, false);
+        }
+        double bound = 1.0 / (1 << precisionBits);
+        for (double percentile : new double[] {1, 25, 50, 90, 95, 99, 99.9, 100}) {
+            int expected = exact.getPercentileTime(percentile);
+            int actual = sut.getPercentileTime(percentile);
+            assertTrue("percentile = " + percentile + ", expected = " + expected + ", actual = " + actual,
+                    Math.abs(actual - expected) <= expected * bound);
+        }
+        assertThat(sut.getMaxExecutionTime(), is(exact.getMaxExecutionTime()));
+        assertThat(sut.getAverageTime(), is(exact.getAverageTime()));
+    }
+
+    /** 合算した結果が、全ての処理時間を1つの集計オブジェクトに追加した結果と一致すること。 */
+    @Test
+    public void testMerge() {
+        HistogramAggregator all = new HistogramAggregator(5);
+        HistogramAggregator first = new HistogramAggregator(5);
+        HistogramAggregator second = new HistogramAggregator(5);
+        for (int i = 0; i < 1000; i++) {
+            int time = i * 37 % 5000;
+            all.addRequestData(time, time > 1000);
+            (i % 2 == 0 ? first : second).addRequestData(time, time > 1000);
+        }
+        first.merge(second);
+        assertThat(first.getRequestCount(), is(all.getRequestCount()));
+        assertThat(first.getThresholdOverCount(), is(all.getThresholdOverCount()));
+        assertThat(first.getAverageTime(), is(all.getAverageTime()));
+        assertThat(first.getMaxExecutionTime(), is(all.getMaxExecutionTime()));
+        for (double percentile : new double[] {10, 50, 90, 99}) {
+            assertThat(first.getPercentileTime(percentile), is(all.getPercentileTime(percentile)));
+        }
+    }
+
+    /** 実装クラス、精度ビット数が異なる集計オブジェクトは合算できないこと。 */
+    @Test
+    public void testMergeDifferentAggregator() {
+        HistogramAggregator sut = new HistogramAggregator(7);
+        try {
+            sut.merge(new ListAggregator());
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("can not merge different aggregator."));
+        }
+        try {
+            sut.merge(new HistogramAggregator(8));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("can not merge histogram of different precision."));
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link IntArrayAggregator}のテストクラス。
+ */
+public class IntArrayAggregatorTest {
+
+    /** 集計結果が{@link ListAggregator}と一致すること。(クイックセレクトで算出する場合) */
+    @Test
+    public void testSameAsListAggregatorWithSelection() {
+        for (int size : new int[] {1, 2, 3, 10, 15, 16, 17, 1000, 100001}) {
+            assertSameResult(size, 1000000);
+        }
+    }
+
+    /** 集計結果が{@link ListAggregator}と一致すること。(計数ソートで算出する場合) */
+    @Test
+    public void testSameAsListAggregatorWithCountingSort() {
+        for (int size : new int[] {1, 2, 3, 100, 1000, 100000}) {
+            assertSameResult(size, 50);
+        }
+    }
+
+    /** 算出後に処理時間を追加した場合でも、追加後の値で算出されること。 */
+    @Test
+    public void testAddAfterCalculation() {
+        IntArrayAggregator sut = new IntArrayAggregator();
+        ListAggregator expected = new ListAggregator();
+        Random random = new Random(2);
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 100; j++) {
+                int time = random.nextInt(10000);
+                sut.addRequestData(time, false);
+                expected.addRequestData(time, false);
+            }
+            assertThat(sut.getMedianTime(), is(expected.getMedianTime()));
+            assertThat(sut.getPercentileTime(99), is(expected.getPercentileTime(99)));
+        }
+    }
+
+    /** 合算した結果が、全ての処理時間を1つの集計オブジェクトに追加した結果と一致すること。 */
+    @Test
+    public void testMerge() {
+        IntArrayAggregator first = new IntArrayAggregator();
+        IntArrayAggregator second = new IntArrayAggregator();
+        ListAggregator expected = new ListAggregator();
+        Random random = new Random(3);
+        for (int i = 0; i < 3001; i++) {
+            int time = random.nextInt(5000);
+            (i % 3 == 0 ? first : second).addRequestData(time, time > 4000);
+            expected.addRequestData(time, time > 4000);
+        }
+        // 合算前に算出しておいても、合算結果に影響しないこと。
+        second.getMedianTime();
+        first.merge(second);
+        assertThat(first.getRequestCount(), is(expected.getRequestCount()));
+        assertThat(first.getThresholdOverCount(), is(expected.getThresholdOverCount()));
+        assertThat(first.getAverageTime(), is(expected.getAverageTime()));
+        assertThat(first.getMaxExecutionTime(), is(expected.getMaxExecutionTime()));
+        assertThat(first.getMedianTime(), is(expected.getMedianTime()));
+        assertThat(first.getPercentileTime(95), is(expected.getPercentileTime(95)));
+    }
+
+    /** 処理時間が指定値以下のリクエスト数が、並び替えの前後で{@link ListAggregator}と一致すること。 */
+    @Test
+    public void testRequestCountWithin() {
+        IntArrayAggregator sut = new IntArrayAggregator();
+        ListAggregator expected = new ListAggregator();
+        Random random = new Random(4);
+        for (int i = 0; i < 1001; i++) {
+            int time = random.nextInt(3000);
+            sut.addRequestData(time, false);
+            expected.addRequestData(time, false);
+        }
+        for (int time : new int[] {-1, 0, 100, 999, 1000, 2999, 3000}) {
+            assertThat("time = " + time, sut.getRequestCountWithin(time), is(expected.getRequestCountWithin(time)));
+        }
+        // 並び替え後(二分探索で算出する場合)
+        sut.getMedianTime();
+        for (int time : new int[] {-1, 0, 100, 999, 1000, 2999, 3000}) {
+            assertThat("time = " + time, sut.getRequestCountWithin(time), is(expected.getRequestCountWithin(time)));
+        }
+        assertThat(sut.getRequestCountWithin(Integer.MAX_VALUE), is(1001));
+    }
+
+    /** ステータスコードの分類毎のリクエスト数が、合算及びバイナリ形式の入出力後も保持されること。 */
+    @Test
+    public void testStatusClassCount() throws Exception {
+        IntArrayAggregator first = new IntArrayAggregator();
+        first.addRequestData(10, false, 200);
+        first.addRequestData(20, false, 204);
+        first.addRequestData(30, false, 302);
+        first.addRequestData(40, false, 0);
+        IntArrayAggregator second = new IntArrayAggregator();
+        second.addRequestData(50, false, 404);
+        second.addRequestData(60, false, 503);
+        second.addRequestData(70, false, 599);
+        second.addRequestData(80, false, 600);
+        second.addRequestData(90, false);
+        first.merge(second);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        first.writeTo(new DataOutputStream(bytes));
+        IntArrayAggregator sut = new IntArrayAggregator();
+        sut.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(sut.getRequestCount(), is(9));
+        assertThat(sut.getStatusClassCount(1), is(0));
+        assertThat(sut.getStatusClassCount(2), is(2));
+        assertThat(sut.getStatusClassCount(3), is(1));
+        assertThat(sut.getStatusClassCount(4), is(1));
+        assertThat(sut.getStatusClassCount(5), is(2));
+        assertThat(sut.getMedianTime(), is(50));
+    }
+
+    /** ステータスコードの分類が範囲外の場合は、例外が送出されること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStatusClass() {
+        IntArrayAggregator sut = new IntArrayAggregator();
+        sut.addRequestData(10, false, 200);
+        sut.getStatusClassCount(6);
+    }
+
+    /**
+     * 処理時間を追加していない状態で算出した後に、処理時間を追加できること。
+     * (算出時に長さ0のチャンクに集約されるため、次のチャンクのサイズが0とならないこと)
+     */
+    @Test
+    public void testAddAfterEmptyCalculation() {
+        IntArrayAggregator sut = new IntArrayAggregator();
+        assertThat(sut.getMedianTime(), is(0));
+        assertThat(sut.getPercentileTime(99), is(0));
+        assertThat(sut.toArray().length, is(0));
+
+        ListAggregator expected = new ListAggregator();
+        for (int i = 0; i < 100; i++) {
+            int time = (i * 37) % 101;
+            sut.addRequestData(time, false);
+            expected.addRequestData(time, false);
+        }
+        assertThat(sut.getRequestCount(), is(100));
+        assertThat(sut.getMedianTime(), is(expected.getMedianTime()));
+        assertThat(sut.getPercentileTime(99), is(expected.getPercentileTime(99)));
+    }
+
+    /**
+     * ランダムな処理時間を追加し、{@link ListAggregator}と結果が一致することを検証する。
+     *
+     * @param size 件数
+     * @param bound 処理時間の上限
+     */
+    private static void assertSameResult(int size, int bound) {
+        Random random = new Random(size);
+        IntArrayAggregator sut = new IntArrayAggregator();
+        ListAggregator expected = new ListAggregator();
+        for (int i = 0; i < size; i++) {
+            int time = random.nextInt(bound);
+            sut.addRequestData(time, false);
+            expected.addRequestData(time, false);
+        }
+        assertThat("size = " + size, sut.getMedianTime(), is(expected.getMedianTime()));
+        for (double percentile : new double[] {0.1, 1, 50, 90, 95, 99, 99.9, 100}) {
+            assertThat("size = " + size + ", percentile = " + percentile,
+                    sut.getPercentileTime(percentile), is(expected.getPercentileTime(percentile)));
+        }
+        // 算出後も中央値が変わらないこと。
+        assertThat("size = " + size, sut.getMedianTime(), is(expected.getMedianTime()));
+    }
+}
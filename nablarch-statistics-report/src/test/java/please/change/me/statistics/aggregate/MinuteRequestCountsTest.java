@@ -0,0 +1,82 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link MinuteRequestCounts}のテストクラス。
+ */
+public class MinuteRequestCountsTest {
+
+    /**
+     * 区間を1分ずつずらして、リクエスト数が最大となる区間の開始時刻が算出されること。
+     * <p/>
+     * 区間は時間内に開始すればよく、次の時間のリクエストも含まれること。
+     */
+    @Test
+    public void testPeak() {
+        MinuteRequestCounts sut = new MinuteRequestCounts();
+        sut.add("p1", 20120911, 14 * 60 + 10, 5);
+        sut.add("p1", 20120911, 14 * 60 + 12, 4);
+        sut.add("p1", 20120911, 14 * 60 + 30, 7);
+        sut.add("p1", 20120911, 14 * 60 + 59, 3);
+        sut.add("p1", 20120911, 15 * 60 + 1, 6);
+
+        // 1分間: 14時30分の7件
+        assertThat(sut.getPeakStartMinute("p1", 20120911, 14, 1), is(14 * 60 + 30));
+        assertThat(sut.getRequestCount("p1", 20120911, 14 * 60 + 30, 1), is(7));
+        // 3分間: 14時10分～12分の9件と、14時59分～15時1分の9件(早い方)
+        assertThat(sut.getPeakStartMinute("p1", 20120911, 14, 3), is(14 * 60 + 10));
+        assertThat(sut.getRequestCount("p1", 20120911, 14 * 60 + 10, 3), is(9));
+        // 時間全体のリクエスト数
+        assertThat(sut.getRequestCount("p1", 20120911, 14 * 60, 60), is(19));
+        // リクエストが存在しない場合は、時間の先頭
+        assertThat(sut.getPeakStartMinute("p1", 20120912, 14, 5), is(14 * 60));
+        assertThat(sut.getRequestCount("p2", 20120911, 0, MinuteRequestCounts.MINUTES_PER_DAY), is(0));
+    }
+
+    /** 日付の終わりをまたぐ区間は、日付内のリクエスト数のみとなること。 */
+    @Test
+    public void testEndOfDay() {
+        MinuteRequestCounts sut = new MinuteRequestCounts();
+        sut.add("p1", 20120911, 23 * 60 + 58, 2);
+        sut.add("p1", 20120911, 23 * 60 + 59, 3);
+        sut.add("p1", 20120912, 0, 10);
+
+        // 23時50分以降に開始する区間は、全て23時58分及び59分の5件のみ(早い方)
+        assertThat(sut.getPeakStartMinute("p1", 20120911, 23, 10), is(23 * 60 + 50));
+        assertThat(sut.getRequestCount("p1", 20120911, 23 * 60 + 50, 10), is(5));
+        assertThat(sut.getRequestCount("p1", 20120911, 23 * 60 + 58, 10), is(5));
+    }
+
+    /** 合算及びバイナリ形式での出力、読み込みで、リクエスト数が加算されること。 */
+    @Test
+    public void testMergeAndWrite() throws Exception {
+        MinuteRequestCounts first = new MinuteRequestCounts();
+        first.add("p1", 20120911, 600, 1);
+        first.add("p2", 20120912, 601, 2);
+        MinuteRequestCounts second = new MinuteRequestCounts();
+        second.add("p1", 20120911, 600, 3);
+        second.add("p1", 20120913, 0, 4);
+        first.merge(second);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        first.writeTo(new DataOutputStream(bytes));
+        MinuteRequestCounts sut = new MinuteRequestCounts();
+        sut.add("p1", 20120911, 600, 10);
+        sut.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(sut.getRequestCount("p1", 20120911, 600, 1), is(14));
+        assertThat(sut.getRequestCount("p2", 20120912, 601, 1), is(2));
+        assertThat(sut.getRequestCount("p1", 20120913, 0, 1), is(4));
+        assertThat(sut.getProcessNames().size(), is(2));
+        assertThat(sut.getDates("p1").size(), is(2));
+    }
+}
@@ -0,0 +1,87 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link RequestInfoBinaryFile}のテストクラス。
+ */
+public class RequestInfoBinaryFileTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /** 複数のブロックにまたがるリクエスト情報が、出力した順に同じ値で読み込まれること。 */
+    @Test
+    public void testWriteAndRead() throws Exception {
+        Random random = new Random(1);
+        List<RequestInfo> expected = new ArrayList<>();
+        for (int i = 0; i < RequestInfoBinaryFile.BLOCK_SIZE * 2 + 10; i++) {
+            // 日時が前後するリクエスト情報や、日本語、負数も含める。
+            expected.add(new RequestInfo(2012 + random.nextInt(2), 1 + random.nextInt(12), 1 + random.nextInt(31),
+                    random.nextInt(24), random.nextInt(60), "P" + random.nextInt(3), "リクエスト" + random.nextInt(500),
+                    i == 0 ? -1 : random.nextInt(100000), i == 1 ? Integer.MAX_VALUE : 200));
+        }
+        File file = temporaryFolder.newFile("REQUEST_INFO_20120910.bin");
+        try (RequestInfoBinaryFile.Writer writer = RequestInfoBinaryFile.openWriter(file)) {
+            for (RequestInfo requestInfo : expected) {
+                writer.write(requestInfo);
+            }
+        }
+
+        try (RequestInfoBinaryFile.Reader reader = RequestInfoBinaryFile.openReader(file)) {
+            for (RequestInfo requestInfo : expected) {
+                assertSame(reader.read(), requestInfo);
+            }
+            assertThat(reader.read(), is(nullValue()));
+        }
+    }
+
+    /** リクエスト情報を出力していない場合は、終端のみが読み込まれること。 */
+    @Test
+    public void testEmpty() throws Exception {
+        File file = temporaryFolder.newFile("REQUEST_INFO_20120910.bin");
+        RequestInfoBinaryFile.openWriter(file).close();
+        try (RequestInfoBinaryFile.Reader reader = RequestInfoBinaryFile.openReader(file)) {
+            assertThat(reader.read(), is(nullValue()));
+        }
+    }
+
+    /** リクエスト情報ファイルの形式ではない場合は、例外が送出されること。 */
+    @Test(expected = IOException.class)
+    public void testUnsupportedFile() throws Exception {
+        File file = temporaryFolder.newFile("REQUEST_INFO_20120910.csv");
+        Files.write(file.toPath(), "\"2012\",\"9\",\"3\",\"16\",\"11\",\"RGH6AAR302\",\"44\",\"200\"\n".getBytes("UTF-8"));
+        RequestInfoBinaryFile.openReader(file);
+    }
+
+    /**
+     * リクエスト情報が一致することを検証する。
+     *
+     * @param actual 実際の値
+     * @param expected 期待値
+     */
+    private static void assertSame(RequestInfo actual, RequestInfo expected) {
+        assertThat(actual.getYear(), is(expected.getYear()));
+        assertThat(actual.getMonth(), is(expected.getMonth()));
+        assertThat(actual.getDay(), is(expected.getDay()));
+        assertThat(actual.getHour(), is(expected.getHour()));
+        assertThat(actual.getMinute(), is(expected.getMinute()));
+        assertThat(actual.getProcessName(), is(expected.getProcessName()));
+        assertThat(actual.getRequestId(), is(expected.getRequestId()));
+        assertThat(actual.getExecutionTime(), is(expected.getExecutionTime()));
+        assertThat(actual.getStatusCode(), is(expected.getStatusCode()));
+    }
+}
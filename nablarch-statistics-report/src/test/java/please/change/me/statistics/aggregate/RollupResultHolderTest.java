@@ -0,0 +1,248 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import please.change.me.statistics.action.AggregateUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link RollupResultHolder}のテストクラス。
+ */
+public class RollupResultHolderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * 集計セルから導出した集計結果が、リクエスト情報を集計単位毎に集計した結果と一致すること。
+     * <p/>
+     * スレッド毎に集計した集計セルを合算した場合も同じ結果となること。
+     */
+    @Test
+    public void testRollup() {
+        AggregateResultHolder expected = new AggregateResultHolder(new IntArrayAggregatorFactory());
+        List<RollupResultHolder> partials = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            partials.add(new RollupResultHolder(new IntArrayAggregatorFactory(),
+                    EnumSet.of(AggregateUnit.FIVE_MINUTES, AggregateUnit.MINUTE), true));
+        }
+
+        Random random = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            String requestId = "REQ" + random.nextInt(10);
+            String processName = "p" + random.nextInt(2);
+            int date = random.nextBoolean() ? 20120900 + 1 + random.nextInt(30) : 20121000 + 1 + random.nextInt(31);
+            int hour = random.nextInt(24);
+            int minute = random.nextInt(60);
+            int time = random.nextInt(3000);
+            boolean thresholdOver = time > 2000;
+            int statusCode = 200 + random.nextInt(4) * 100;
+
+            if (date / 100 == 201210) {
+                expected.add(requestId, processName, AggregateUnit.YEAR_MONTH, date / 100, time, thresholdOver,
+                        statusCode);
+            }
+            expected.add(requestId, processName, AggregateUnit.DAY, date % 100, time, thresholdOver, statusCode);
+            expected.add(requestId, processName, AggregateUnit.HOUR, hour, time, thresholdOver, statusCode);
+            expected.add(requestId, processName, AggregateUnit.FIVE_MINUTES, hour * 100 + minute / 5 * 5,
+                    time, thresholdOver, statusCode);
+            expected.add(requestId, processName, AggregateUnit.MINUTE, hour * 100 + minute,
+                    time, thresholdOver, statusCode);
+            partials.get(i % partials.size()).add(requestId, processName, date, hour, minute, time,
+                    thresholdOver, statusCode);
+        }
+
+        RollupResultHolder cells = partials.get(0);
+        for (RollupResultHolder partial : partials.subList(1, partials.size())) {
+            cells.merge(partial);
+        }
+        AggregateResultHolder sut = new AggregateResultHolder(new IntArrayAggregatorFactory());
+        cells.rollupInto(sut, ym -> ym == 201210);
+
+        assertThat(sut.getProcessNames(), is(expected.getProcessNames()));
+        assertSameResults(sut.getAggregateResults(), expected.getAggregateResults());
+        assertSameResults(sut.getYmAggregateResults(), expected.getYmAggregateResults());
+
+        // 1分毎のリクエスト数の合計は、リクエスト情報の件数となること。
+        MinuteRequestCounts counts = sut.getMinuteRequestCounts();
+        int total = 0;
+        for (String processName : counts.getProcessNames()) {
+            for (int date : counts.getDates(processName)) {
+                total += counts.getRequestCount(processName, date, 0, MinuteRequestCounts.MINUTES_PER_DAY);
+            }
+        }
+        assertThat(total, is(20000));
+    }
+
+    /**
+     * 集計セル数の上限を超えて集計セルをランに退避した場合も、上限なしの場合と同じ集計結果を導出できること。
+     * <p/>
+     * リクエストID毎に導出した場合は、リクエストIDの昇順に、1つのリクエストIDの集計結果のみが渡されること。
+     * 導出後は、ランが削除されること。
+     */
+    @Test
+    public void testSpill() throws Exception {
+        File spillDirectory = temporaryFolder.newFolder("spill");
+        RollupResultHolder unbounded = fill(0, null);
+        RollupResultHolder spilled = fill(50, spillDirectory);
+        assertThat(spillDirectory.list().length > 1, is(true));
+
+        AggregateResultHolder expected = new AggregateResultHolder(new IntArrayAggregatorFactory());
+        unbounded.rollupInto(expected, ym -> ym == 201210);
+        AggregateResultHolder sut = new AggregateResultHolder(new IntArrayAggregatorFactory());
+        spilled.rollupInto(sut, ym -> ym == 201210);
+
+        assertThat(sut.getProcessNames(), is(expected.getProcessNames()));
+        assertSameResults(sut.getAggregateResults(), expected.getAggregateResults());
+        assertSameResults(sut.getYmAggregateResults(), expected.getYmAggregateResults());
+        assertThat(spillDirectory.list().length, is(0));
+
+        AggregateResultHolder merged = new AggregateResultHolder(new IntArrayAggregatorFactory());
+        List<String> requestIds = new ArrayList<>();
+        fill(50, spillDirectory).rollupEach(ym -> ym == 201210, results -> {
+            String requestId = results.getAggregateResults().keySet().iterator().next().getRequestId();
+            for (AggregateKey key : results.getAggregateResults().keySet()) {
+                assertThat(key.getRequestId(), is(requestId));
+            }
+            requestIds.add(requestId);
+            merged.merge(results);
+        });
+        assertThat(requestIds.size(), is(10));
+        for (int i = 1; i < requestIds.size(); i++) {
+            assertThat(requestIds.get(i - 1).compareTo(requestIds.get(i)) < 0, is(true));
+        }
+        assertSameResults(merged.getAggregateResults(), expected.getAggregateResults());
+        assertSameResults(merged.getYmAggregateResults(), expected.getYmAggregateResults());
+        assertThat(spillDirectory.list().length, is(0));
+    }
+
+    /**
+     * ランの数が同時に開くランの最大数を超える場合も、段階的にマージして上限なしの場合と同じ集計結果を導出できること。
+     * <p/>
+     * 導出後は、途中でマージしたランも含めて削除されること。
+     */
+    @Test
+    public void testSpillMoreRunsThanFanIn() throws Exception {
+        File spillDirectory = temporaryFolder.newFolder("spill");
+        RollupResultHolder spilled = fill(20, spillDirectory);
+        assertThat(spilled.getRunCount() > RollupResultHolder.MAX_FAN_IN * 2, is(true));
+
+        AggregateResultHolder expected = new AggregateResultHolder(new IntArrayAggregatorFactory());
+        fill(0, null).rollupInto(expected, ym -> ym == 201210);
+        AggregateResultHolder sut = new AggregateResultHolder(new IntArrayAggregatorFactory());
+        spilled.rollupInto(sut, ym -> ym == 201210);
+
+        assertThat(sut.getProcessNames(), is(expected.getProcessNames()));
+        assertSameResults(sut.getAggregateResults(), expected.getAggregateResults());
+        assertSameResults(sut.getYmAggregateResults(), expected.getYmAggregateResults());
+        assertThat(spilled.getRunCount(), is(0));
+        assertThat(spillDirectory.list().length, is(0));
+    }
+
+    /**
+     * スレッド毎の集計を模して、3つのインスタンスに集計した集計セルを合算する。
+     *
+     * @param cellLimit 集計セル数の上限
+     * @param spillDirectory ランの格納先ディレクトリ
+     * @return 合算した集計セル
+     */
+    private static RollupResultHolder fill(int cellLimit, File spillDirectory) {
+        List<RollupResultHolder> partials = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            partials.add(new RollupResultHolder(new IntArrayAggregatorFactory(),
+                    EnumSet.of(AggregateUnit.FIVE_MINUTES), false, cellLimit, spillDirectory));
+        }
+        Random random = new Random(2);
+        for (int i = 0; i < 5000; i++) {
+            int time = random.nextInt(3000);
+            partials.get(i % partials.size()).add("REQ" + random.nextInt(10), "p" + random.nextInt(2),
+                    20121001 + random.nextInt(31), random.nextInt(24), random.nextInt(60),
+                    time, time > 2000, 200);
+        }
+        RollupResultHolder cells = partials.get(0);
+        cells.merge(partials.get(1));
+        cells.merge(partials.get(2));
+        return cells;
+    }
+
+    /** 5分、分単位を導出しない場合は、時間単位の集計セルのみで集計し、1分毎のリクエスト数は集計しないこと。 */
+    @Test
+    public void testHourOnly() {
+        RollupResultHolder cells = new RollupResultHolder(new HistogramAggregatorFactory(),
+                EnumSet.noneOf(AggregateUnit.class), false);
+        cells.add("REQ01", "p1", 20120911, 14, 7, 100, false, 200);
+        cells.add("REQ01", "p1", 20120912, 14, 59, 300, false, 200);
+        cells.add("REQ01", "p1", 20120912, 15, 0, 500, true, 500);
+
+        AggregateResultHolder sut = new AggregateResultHolder(new HistogramAggregatorFactory());
+        cells.rollupInto(sut, ym -> true);
+
+        Iterator<Map.Entry<AggregateKey, Aggregator>> it = sut.getAggregateResults().entrySet().iterator();
+        assertKey(it.next(), 11, AggregateUnit.DAY, 1);
+        assertKey(it.next(), 12, AggregateUnit.DAY, 2);
+        assertKey(it.next(), 14, AggregateUnit.HOUR, 2);
+        assertKey(it.next(), 15, AggregateUnit.HOUR, 1);
+        assertThat(it.hasNext(), is(false));
+        assertKey(sut.getYmAggregateResults().entrySet().iterator().next(), 201209, AggregateUnit.YEAR_MONTH, 3);
+        assertThat(sut.getMinuteRequestCounts().isEmpty(), is(true));
+    }
+
+    /** 時刻の集計単位値が、集計単位毎の形式となること。 */
+    @Test
+    public void testUnitValueOf() {
+        assertThat(RollupResultHolder.unitValueOf(AggregateUnit.HOUR, 14, 7), is(14));
+        assertThat(RollupResultHolder.unitValueOf(AggregateUnit.FIVE_MINUTES, 14, 7), is(1405));
+        assertThat(RollupResultHolder.unitValueOf(AggregateUnit.FIVE_MINUTES, 14, 59), is(1455));
+        assertThat(RollupResultHolder.unitValueOf(AggregateUnit.MINUTE, 14, 7), is(1407));
+    }
+
+    /**
+     * 集計結果のキーと件数を検証する。
+     *
+     * @param entry 集計結果
+     * @param unitValue 期待する集計基準値
+     * @param unit 期待する集計単位
+     * @param requestCount 期待するリクエスト数
+     */
+    private static void assertKey(Map.Entry<AggregateKey, Aggregator> entry, int unitValue, AggregateUnit unit,
+            int requestCount) {
+        assertThat(entry.getKey().getAggregateUnitValue(), is(unitValue));
+        assertThat(entry.getKey().getAggregateUnit(), is(unit));
+        assertThat(entry.getValue().getRequestCount(), is(requestCount));
+    }
+
+    /**
+     * 集計結果が一致することを検証する。
+     *
+     * @param actual 実際の集計結果
+     * @param expected 期待する集計結果
+     */
+    private static void assertSameResults(Map<AggregateKey, Aggregator> actual,
+            Map<AggregateKey, Aggregator> expected) {
+        assertThat(actual.size(), is(expected.size()));
+        Iterator<Map.Entry<AggregateKey, Aggregator>> actualIt = actual.entrySet().iterator();
+        for (Map.Entry<AggregateKey, Aggregator> e : expected.entrySet()) {
+            Map.Entry<AggregateKey, Aggregator> a = actualIt.next();
+            assertThat(a.getKey().equals(e.getKey()), is(true));
+            assertThat(a.getValue().getRequestCount(), is(e.getValue().getRequestCount()));
+            assertThat(a.getValue().getThresholdOverCount(), is(e.getValue().getThresholdOverCount()));
+            assertThat(a.getValue().getAverageTime(), is(e.getValue().getAverageTime()));
+            assertThat(a.getValue().getMaxExecutionTime(), is(e.getValue().getMaxExecutionTime()));
+            assertThat(a.getValue().getMedianTime(), is(e.getValue().getMedianTime()));
+            assertThat(a.getValue().getPercentileTime(99), is(e.getValue().getPercentileTime(99)));
+            assertThat(a.getValue().getStatusClassCount(5), is(e.getValue().getStatusClassCount(5)));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package please.change.me.statistics.aggregate;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import please.change.me.statistics.action.AggregateUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link SummaryCsvWriter}のテストクラス。
+ */
+public class SummaryCsvWriterTest {
+
+    /** 集計結果CSVのフォーマット定義ファイル */
+    private static final File LAYOUT_FILE = new File("src/test/resources/format/requestInfoAggregate.fmt");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * フォーマット定義ファイルの項目順、文字エンコーディング、囲み文字及び改行コードに従って、
+     * プロセス名及び集計単位毎の集計結果CSVに出力されること。
+     */
+    @Test
+    public void testWrite() throws Exception {
+        File day = new File(temporaryFolder.getRoot(), "REQUEST_INFO_SUMMARY_DAY_P1.csv");
+        File hour = new File(temporaryFolder.getRoot(), "REQUEST_INFO_SUMMARY_HOUR_P1.csv");
+        Map<String, String> title = new HashMap<>();
+        title.put("requestId", "リクエストID");
+        title.put("aggregateUnitValue", "日");
+        title.put("p90", "出力されない項目");
+
+        try (SummaryCsvWriter sut = new SummaryCsvWriter(LAYOUT_FILE)) {
+            sut.open("P1", AggregateUnit.DAY, day, title);
+            sut.open("P1", AggregateUnit.HOUR, hour, new HashMap<>());
+            sut.write(new AggregateKey("REQ\"01", "P1", AggregateUnit.DAY, 10), aggregator(100, 2000, 300));
+            sut.write(new AggregateKey("REQ\"01", "P1", AggregateUnit.HOUR, 0), aggregator(5));
+            sut.write(new AggregateKey("REQ02", "P1", AggregateUnit.DAY, 31), aggregator(Integer.MAX_VALUE));
+        }
+
+        assertThat(read(day), is("\"リクエストID\",\"日\",\"\",\"\",\"\",\"\",\"\",\"\"\r\n"
+                + "\"REQ\"\"01\",\"10\",\"P1\",\"3\",\"1\",\"800\",\"300\",\"2000\"\r\n"
+                + "\"REQ02\",\"31\",\"P1\",\"1\",\"1\",\"2147483647\",\"2147483647\",\"2147483647\"\r\n"));
+        assertThat(read(hour), is("\"\",\"\",\"\",\"\",\"\",\"\",\"\",\"\"\r\n"
+                + "\"REQ\"\"01\",\"0\",\"P1\",\"1\",\"0\",\"5\",\"5\",\"5\"\r\n"));
+    }
+
+    /**
+     * パーセンタイル値、処理時間が指定値以下のリクエスト数及びステータスコードの分類毎のリクエスト数が、
+     * フォーマット定義ファイルに定義された項目順に出力されること。
+     */
+    @Test
+    public void testDetailFields() throws Exception {
+        File day = new File(temporaryFolder.getRoot(), "REQUEST_INFO_SUMMARY_DAY_P1.csv");
+        Aggregator aggregator = new ListAggregator();
+        aggregator.addRequestData(100, false, 200);
+        aggregator.addRequestData(150, false, 302);
+        aggregator.addRequestData(600, false, 404);
+        aggregator.addRequestData(12000, true, 500);
+
+        try (SummaryCsvWriter sut = new SummaryCsvWriter(
+                new File("src/main/resources/format/requestInfoAggregateDetail.fmt"))) {
+            assertThat(sut.getFieldNames().length, is(23));
+            sut.open("P1", AggregateUnit.DAY, day, new HashMap<>());
+            sut.write(new AggregateKey("REQ01", "P1", AggregateUnit.DAY, 1), aggregator);
+        }
+
+        String[] lines = read(day).split("\r\n");
+        assertThat(lines[1], is("\"REQ01\",\"1\",\"P1\",\"4\",\"1\",\"3212\",\"375\",\"12000\""
+                + ",\"12000\",\"12000\",\"12000\",\"12000\""
+                + ",\"1\",\"2\",\"2\",\"3\",\"3\",\"3\",\"3\""
+                + ",\"1\",\"1\",\"1\",\"1\""));
+    }
+
+    /** 項目名から、処理時間が指定値以下のリクエスト数の処理時間が取得できること。 */
+    @Test
+    public void testWithinThresholdOf() {
+        assertThat(SummaryCsvWriter.withinThresholdOf("within1000"), is(1000));
+        assertThat(SummaryCsvWriter.withinThresholdOf("within0"), is(0));
+        assertThat(SummaryCsvWriter.withinThresholdOf("within"), is(-1));
+        assertThat(SummaryCsvWriter.withinThresholdOf("within1s"), is(-1));
+        assertThat(SummaryCsvWriter.withinThresholdOf("p99"), is(-1));
+    }
+
+    /** 開いていない集計結果CSVに出力した場合は、例外が送出されること。 */
+    @Test(expected = IllegalStateException.class)
+    public void testNotOpened() throws Exception {
+        try (SummaryCsvWriter sut = new SummaryCsvWriter(LAYOUT_FILE)) {
+            sut.open("P1", AggregateUnit.DAY, temporaryFolder.newFile("day.csv"), new HashMap<>());
+            sut.write(new AggregateKey("REQ01", "P2", AggregateUnit.DAY, 1), aggregator(1));
+        }
+    }
+
+    /**
+     * 処理時間を集計した集計オブジェクトを生成する。(閾値は1000とする)
+     *
+     * @param executionTimes 処理時間
+     * @return 集計オブジェクト
+     */
+    private static Aggregator aggregator(int... executionTimes) {
+        Aggregator aggregator = new ListAggregator();
+        for (int executionTime : executionTimes) {
+            aggregator.addRequestData(executionTime, executionTime > 1000);
+        }
+        return aggregator;
+    }
+
+    /**
+     * 集計結果CSVを読み込む。
+     *
+     * @param file 集計結果CSV
+     * @return 内容
+     * @throws Exception 読み込みに失敗した場合
+     */
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), Charset.forName("ms932"));
+    }
+}
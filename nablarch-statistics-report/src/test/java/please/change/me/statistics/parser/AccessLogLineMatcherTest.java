@@ -0,0 +1,110 @@
+package please.change.me.statistics.parser;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link AccessLogLineMatcher}のテストクラス。
+ */
+public class AccessLogLineMatcherTest {
+
+    /** 検証に使用する行 */
+    private static final String[] LINES = {
+            "2012-09-10 16:58:02.505 -INFO- ACC [1] process_name = [P1] @@@@ END @@@@ rid = [RGH6AAR402]"
+                    + " status_code = [200] execution_time = [15]",
+            "process_name = [p1] process_name = [P2] rid = [] rid = [R1] status_code = [2x0] status_code = [404]",
+            "rid = [R1 status_code = [500",
+            "status_code = [200] rid = [R1] process_name = [process_name = [P3]]",
+            "\texecution_time = [120]",
+            "@@@@ BEGIN @@@@ rid = [R1]",
+            "",
+    };
+
+    /** 固定文字列のパターンで抽出した結果が、項目毎の正規表現で抽出した結果と同じであること。 */
+    @Test
+    public void testSameAsRegex() {
+        OnlineStatisticsDefinition definition = createDefinition("process_name = \\[([A-Z0-9]+)\\]");
+        AccessLogLineMatcher sut = AccessLogLineMatcher.compile(definition);
+        for (String line : LINES) {
+            assertSameAsRegex(sut, definition, line);
+        }
+    }
+
+    /** 固定文字列のパターンに変換できない正規表現は、正規表現で抽出されること。 */
+    @Test
+    public void testNotLiteralPattern() {
+        OnlineStatisticsDefinition definition = createDefinition("process_name\\s*=\\s*\\[([A-Z0-9]+)\\]");
+        definition.setEndLogPattern("@@@@ (END|FINISH) @@@@");
+        AccessLogLineMatcher sut = AccessLogLineMatcher.compile(definition);
+        for (String line : LINES) {
+            assertSameAsRegex(sut, definition, line);
+        }
+        assertThat(sut.isEndLog("@@@@ FINISH @@@@"), is(true));
+        assertThat(sut.extract("process_name=[P9]").getProcessName(), is("P9"));
+    }
+
+    /** 終了ログの判定及び後続の行からの処理時間の抽出ができること。 */
+    @Test
+    public void testEndLogAndExecutionTime() {
+        AccessLogLineMatcher sut = AccessLogLineMatcher.compile(createDefinition("process_name = \\[([A-Z0-9]+)\\]"));
+        assertThat(sut.isEndLog(LINES[0]), is(true));
+        assertThat(sut.isEndLog(LINES[5]), is(false));
+        assertThat(sut.findExecutionTime(LINES[4]), is("120"));
+        assertThat(sut.findExecutionTime(LINES[5]), is(nullValue()));
+    }
+
+    /**
+     * 項目毎の正規表現で抽出した結果と同じであることを検証する。
+     *
+     * @param sut テスト対象
+     * @param definition 設定値
+     * @param line 行
+     */
+    private static void assertSameAsRegex(AccessLogLineMatcher sut, OnlineStatisticsDefinition definition,
+            String line) {
+        AccessLogLineMatcher.Fields fields = sut.extract(line);
+        assertThat(line, sut.isEndLog(line), is(definition.getEndLogPattern().matcher(line).find()));
+        assertThat(line, fields.getRequestId(), is(find(definition.getFindRequestIdPattern(), line)));
+        assertThat(line, fields.getProcessName(), is(find(definition.getFindProcessNamePattern(), line)));
+        assertThat(line, fields.getStatusCode(), is(find(definition.getFindStatusCodePattern(), line)));
+        assertThat(line, fields.getExecutionTime(), is(find(definition.getFindExecutionTimePattern(), line)));
+        assertThat(line, sut.findExecutionTime(line), is(fields.getExecutionTime()));
+    }
+
+    /**
+     * 正規表現で値を抽出する。
+     *
+     * @param pattern 正規表現
+     * @param line 行
+     * @return 抽出した値
+     */
+    private static String find(Pattern pattern, String line) {
+        Matcher matcher = pattern.matcher(line);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * テスト用の設定値を生成する。
+     *
+     * @param processNamePattern プロセス名を抽出するための正規表現
+     * @return 設定値
+     */
+    private static OnlineStatisticsDefinition createDefinition(String processNamePattern) {
+        OnlineStatisticsDefinition definition = new OnlineStatisticsDefinition();
+        definition.setEndLogPattern("@@@@ END @@@@");
+        definition.setFindRequestIdPattern("rid = \\[([^\\]]+)\\]");
+        definition.setFindProcessNamePattern(processNamePattern);
+        definition.setFindStatusCodePattern("status_code = \\[([0-9]+)\\]");
+        definition.setFindExecutionTimePattern("execution_time = \\[([0-9]+)\\]");
+        definition.setAccessLogEncoding("UTF-8");
+        return definition;
+    }
+}
@@ -0,0 +1,170 @@
+package please.change.me.statistics.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import please.change.me.statistics.exception.LogParseException;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link AccessLogSnapshot}のテストクラス。
+ */
+public class AccessLogSnapshotTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /** 取得後の追記及び書き込み途中の最終行は、スナップショットに含まれないこと。 */
+    @Test
+    public void testAppend() throws Exception {
+        File file = temporaryFolder.newFile("access.log");
+        write(file, "line1\nline2\nline3");
+
+        try (AccessLogSnapshot sut = AccessLogSnapshot.take(file)) {
+            assertThat(sut.getSize(), is(12L));
+            Files.write(file.toPath(), "-continued\nline4\n".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+            assertThat(read(sut), is("line1\nline2\n"));
+        }
+    }
+
+    /** 取得後にリネームによりローテーションされた場合も、取得時点の内容を読み込めること。 */
+    @Test
+    public void testRotate() throws Exception {
+        File file = temporaryFolder.newFile("access.log");
+        write(file, "old1\nold2\n");
+
+        try (AccessLogSnapshot sut = AccessLogSnapshot.take(file)) {
+            assertThat(file.renameTo(new File(temporaryFolder.getRoot(), "access.log.1")), is(true));
+            write(file, "new1\n");
+            assertThat(read(sut), is("old1\nold2\n"));
+
+            try (AccessLogSnapshot current = AccessLogSnapshot.take(file)) {
+                if (sut.getFileKey() != null) {
+                    assertThat(sut.getFileKey().equals(current.getFileKey()), is(false));
+                }
+                assertThat(read(current), is("new1\n"));
+            }
+        }
+    }
+
+    /** 取得後に切り詰められた場合は、例外が送出されること。 */
+    @Test
+    public void testTruncate() throws Exception {
+        File file = temporaryFolder.newFile("access.log");
+        write(file, "line1\nline2\n");
+
+        try (AccessLogSnapshot sut = AccessLogSnapshot.take(file)) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(0);
+            }
+            try {
+                sut.newInputStream();
+                fail("LogParseException must be thrown.");
+            } catch (LogParseException e) {
+                assertThat(e.getMessage(), containsString("access log was truncated after snapshot."));
+            }
+        }
+    }
+
+    /** 取得後に切り詰められ、スナップショットのサイズを超えて追記された場合も、例外が送出されること。 */
+    @Test
+    public void testTruncateAndRegrow() throws Exception {
+        File file = temporaryFolder.newFile("access.log");
+        write(file, "2026-10-01 10:00:00.000 line1\n2026-10-01 10:00:01.000 line2\n");
+
+        try (AccessLogSnapshot sut = AccessLogSnapshot.take(file)) {
+            // copytruncate後に、スナップショットより多くの行が追記された状態
+            write(file, "2026-10-01 10:00:02.000 line3\n2026-10-01 10:00:03.000 line4\n"
+                    + "2026-10-01 10:00:04.000 line5\n");
+            try {
+                sut.newInputStream();
+                fail("LogParseException must be thrown.");
+            } catch (LogParseException e) {
+                assertThat(e.getMessage(), containsString("access log was truncated after snapshot."));
+            }
+        }
+    }
+
+    /** 読み込み中に切り詰められた場合は、終端に達した時点で例外が送出されること。 */
+    @Test
+    public void testTruncateWhileReading() throws Exception {
+        File file = temporaryFolder.newFile("access.log");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append("2026-10-01 10:00:00.000 line").append(i).append('\n');
+        }
+        write(file, content.toString());
+
+        try (AccessLogSnapshot sut = AccessLogSnapshot.take(file);
+             InputStream in = sut.newInputStream()) {
+            byte[] buffer = new byte[100];
+            assertThat(in.read(buffer), is(100));
+
+            write(file, content.toString().replace("2026-10-01", "2026-10-02"));
+            try {
+                while (in.read(buffer) >= 0) {
+                    // 終端まで読み込む。
+                }
+                fail("LogParseException must be thrown.");
+            } catch (LogParseException e) {
+                assertThat(e.getMessage(), containsString("access log was truncated after snapshot."));
+            }
+        }
+    }
+
+    /** 改行を含まないファイルのスナップショットは空となること。 */
+    @Test
+    public void testNoCompleteLine() throws Exception {
+        File file = temporaryFolder.newFile("access.log");
+        write(file, "writing");
+
+        try (AccessLogSnapshot sut = AccessLogSnapshot.take(file)) {
+            assertThat(sut.getSize(), is(0L));
+            assertThat(read(sut), is(""));
+        }
+    }
+
+    /**
+     * ファイルに書き込む。
+     *
+     * @param file ファイル
+     * @param content 内容
+     * @throws Exception 例外
+     */
+    private static void write(File file, String content) throws Exception {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * スナップショットの内容を読み込む。
+     *
+     * @param snapshot スナップショット
+     * @return 内容
+     * @throws Exception 例外
+     */
+    private static String read(AccessLogSnapshot snapshot) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = snapshot.newInputStream()) {
+            byte[] buffer = new byte[3];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,158 @@
+package please.change.me.statistics.parser;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link AccessLogTailer}のテストクラス。
+ */
+public class AccessLogTailerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /** 追記された終了ログのみが通知され、書き込み途中の行及び処理時間が未出力の終了ログは次回に通知されること。 */
+    @Test
+    public void testAppend() throws Exception {
+        AccessLogTailer sut = new AccessLogTailer(createDefinition());
+        File file = temporaryFolder.newFile("access.log");
+
+        append(file, endLog("10:00", "REQ01", 200) + "\texecution_time = [10]\n"
+                + endLog("10:01", "REQ01", 500));
+        assertThat(poll(sut, file), is(Collections.singletonList("10:0 REQ01 10 200")));
+
+        append(file, "\tstart_time = [2012-09-10 10:01:00.000]\n\texecution_");
+        assertThat(poll(sut, file), is(Collections.<String>emptyList()));
+
+        append(file, "time = [20]\n" + endLog("10:02", "OTHER", 200) + "\texecution_time = [30]\n");
+        assertThat(poll(sut, file), is(Collections.singletonList("10:1 REQ01 20 500")));
+        assertThat(poll(sut, file), is(Collections.<String>emptyList()));
+    }
+
+    /** リネームによりローテーションされた場合、ローテーション前のファイルの残りと新しいファイルが読み込まれること。 */
+    @Test
+    public void testRotate() throws Exception {
+        AccessLogTailer sut = new AccessLogTailer(createDefinition());
+        File file = temporaryFolder.newFile("access.log");
+        append(file, endLog("10:00", "REQ01", 200) + "\texecution_time = [10]\n");
+        assertThat(poll(sut, file), is(Collections.singletonList("10:0 REQ01 10 200")));
+
+        append(file, endLog("10:01", "REQ01", 200) + "\texecution_time = [20]\n");
+        File rotated = new File(temporaryFolder.getRoot(), "access.log.1");
+        assertThat(file.renameTo(rotated), is(true));
+        append(file, endLog("10:02", "REQ01", 200) + "\texecution_time = [30]\n");
+
+        assertThat(poll(sut, rotated, file), is(Arrays.asList("10:1 REQ01 20 200", "10:2 REQ01 30 200")));
+        assertThat(sut.getPositions().size(), is(2));
+
+        // ローテーション前のファイルが削除された場合は、追跡対象から除外される。
+        assertThat(poll(sut, file), is(Collections.<String>emptyList()));
+        assertThat(sut.getPositions().size(), is(1));
+    }
+
+    /** 切り詰められた場合は、先頭から読み込み直すこと。 */
+    @Test
+    public void testTruncate() throws Exception {
+        AccessLogTailer sut = new AccessLogTailer(createDefinition());
+        File file = temporaryFolder.newFile("access.log");
+        append(file, endLog("10:00", "REQ01", 200) + "\texecution_time = [10]\n");
+        assertThat(poll(sut, file).size(), is(1));
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+        }
+        append(file, endLog("10:05", "REQ01", 200) + "\texecution_time = [5]\n");
+        assertThat(poll(sut, file), is(Collections.singletonList("10:5 REQ01 5 200")));
+    }
+
+    /** 復元した読み込み位置以降が読み込まれ、処理時間が未出力だった終了ログは重複せずに通知されること。 */
+    @Test
+    public void testRestore() throws Exception {
+        OnlineStatisticsDefinition definition = createDefinition();
+        AccessLogTailer sut = new AccessLogTailer(definition);
+        File file = temporaryFolder.newFile("access.log");
+        append(file, endLog("10:00", "REQ01", 200) + "\texecution_time = [10]\n"
+                + endLog("10:01", "REQ01", 200));
+        assertThat(poll(sut, file).size(), is(1));
+
+        AccessLogTailer restored = new AccessLogTailer(definition);
+        restored.restore(sut.getPositions());
+        append(file, "\texecution_time = [20]\n");
+        assertThat(poll(restored, file), is(Collections.singletonList("10:1 REQ01 20 200")));
+    }
+
+    /**
+     * アクセスログに追記された内容を読み込み、通知されたリクエスト情報を文字列のリストで返却する。
+     *
+     * @param sut テスト対象
+     * @param files アクセスログ
+     * @return 通知されたリクエスト情報
+     */
+    private static List<String> poll(AccessLogTailer sut, File... files) {
+        List<String> result = new ArrayList<>();
+        sut.poll(files, info -> result.add(info.getHour() + ":" + info.getMinute() + ' '
+                + info.getRequestId() + ' ' + info.getExecutionTime() + ' ' + info.getStatusCode()));
+        return result;
+    }
+
+    /**
+     * 終了ログの行を生成する。
+     *
+     * @param time ログ出力時刻(HH:mm)
+     * @param requestId リクエストID
+     * @param statusCode ステータスコード
+     * @return 終了ログの行
+     */
+    private static String endLog(String time, String requestId, int statusCode) {
+        return "2012-09-10 " + time + ":00.000 -INFO- ACC process_name = [P1] @@@@ END @@@@ rid = ["
+                + requestId + "] status_code = [" + statusCode + "]\n";
+    }
+
+    /**
+     * ファイルに追記する。
+     *
+     * @param file ファイル
+     * @param content 追記する内容
+     * @throws Exception 例外
+     */
+    private static void append(File file, String content) throws Exception {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * テスト用の設定値を生成する。
+     *
+     * @return 設定値
+     */
+    private static OnlineStatisticsDefinition createDefinition() {
+        OnlineStatisticsDefinition definition = new OnlineStatisticsDefinition();
+        definition.setEndLogPattern("@@@@ END @@@@");
+        definition.setIncludeRequestIdList(Collections.singletonList("REQ01"));
+        definition.setFindRequestIdPattern("rid = \\[([^\\]]+)\\]");
+        definition.setFindProcessNamePattern("process_name = \\[([A-Z0-9]+)\\]");
+        definition.setFindStatusCodePattern("status_code = \\[([0-9]+)\\]");
+        definition.setFindExecutionTimePattern("execution_time = \\[([0-9]+)\\]");
+        definition.setLogOutputDateTimeStartPosition(0);
+        definition.setLogOutputDateTimeEndPosition(23);
+        definition.setLogOutputDateTimeFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        definition.setAccessLogEncoding("UTF-8");
+        return definition;
+    }
+}
@@ -0,0 +1,97 @@
+package please.change.me.statistics.parser;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link LogDateTimeParser}のテストクラス。
+ */
+public class LogDateTimeParserTest {
+
+    /** 固定位置から変換した結果が、SimpleDateFormatで解析した結果と同じであること。 */
+    @Test
+    public void testSameAsSimpleDateFormat() throws Exception {
+        Random random = new Random(1);
+        for (String format : new String[] {"yyyy-MM-dd HH:mm:ss.SSS", "yyyy-MM-dd hh:mm:ss.SSS", "yyyyMMddHHmmss"}) {
+            LogDateTimeParser sut = new LogDateTimeParser(format);
+            for (int i = 0; i < 10000; i++) {
+                String text = String.format("%04d-%02d-%02d %02d:%02d:%02d.%03d",
+                        2000 + random.nextInt(30), 1 + random.nextInt(12), 1 + random.nextInt(28),
+                        random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1000));
+                if (format.length() == 14) {
+                    text = text.replaceAll("[^0-9]", "").substring(0, 14);
+                }
+                assertSame(sut, format, text);
+            }
+        }
+    }
+
+    /** 範囲外の値や不正な値は、SimpleDateFormat(lenientモード)と同じく解析されること。 */
+    @Test
+    public void testLenient() throws Exception {
+        LogDateTimeParser sut = new LogDateTimeParser("yyyy-MM-dd hh:mm:ss.SSS");
+        assertSame(sut, "yyyy-MM-dd hh:mm:ss.SSS", "2012-09-10 12:30:00.000");
+        assertSame(sut, "yyyy-MM-dd hh:mm:ss.SSS", "2012-09-10 16:58:02.505");
+        assertSame(sut, "yyyy-MM-dd hh:mm:ss.SSS", "2012-09-10 24:00:00.000");
+        assertSame(sut, "yyyy-MM-dd hh:mm:ss.SSS", "2012-09-31 10:00:00.000");
+        assertSame(sut, "yyyy-MM-dd hh:mm:ss.SSS", "2012-02-29 10:00:60.000");
+        assertSame(sut, "yyyy-MM-dd hh:mm:ss.SSS", "2012-13-01 10:00:00.000");
+        assertSame(sut, "yyyy-MM-dd hh:mm:ss.SSS", "2012-9-10 10:00:00.000");
+
+        try {
+            sut.parse("2012/09/10 10:00:00.000", 0, 23);
+            fail();
+        } catch (ParseException e) {
+            // OK
+        }
+    }
+
+    /** 秒までが同じログ出力日時は、直前の解析結果が再利用されること。 */
+    @Test
+    public void testSameSecond() throws Exception {
+        LogDateTimeParser sut = new LogDateTimeParser("yyyy-MM-dd HH:mm:ss.SSS");
+        sut.parse("xx2012-09-10 16:58:02.505 -INFO-", 2, 25);
+        sut.parse("2012-09-10 16:58:02.999 -INFO-", 0, 23);
+        assertThat(sut.getMinute(), is(58));
+
+        sut.parse("2012-09-10 16:59:02.999", 0, 23);
+        assertThat(sut.getMinute(), is(59));
+    }
+
+    /** 固定位置から変換できない書式は、SimpleDateFormatで解析されること。 */
+    @Test
+    public void testUnsupportedFormat() throws Exception {
+        LogDateTimeParser sut = new LogDateTimeParser("yyyy/M/d H:mm:ss");
+        assertSame(sut, "yyyy/M/d H:mm:ss", "2012/9/10 16:58:02");
+        assertSame(sut, "yyyy/M/d H:mm:ss", "2012/9/10 16:59:02");
+        assertSame(sut, "yyyy/M/d H:mm:ss", "2012/9/10 7:59:02");
+    }
+
+    /**
+     * SimpleDateFormatで解析した結果と同じであることを検証する。
+     *
+     * @param sut テスト対象
+     * @param format 書式
+     * @param text 解析対象の文字列
+     * @throws Exception 例外
+     */
+    private static void assertSame(LogDateTimeParser sut, String format, String text) throws Exception {
+        Calendar expected = Calendar.getInstance();
+        expected.setTime(new SimpleDateFormat(format).parse(text));
+        sut.parse(text, 0, text.length());
+        String message = format + ' ' + text;
+        assertThat(message, sut.getYear(), is(expected.get(Calendar.YEAR)));
+        assertThat(message, sut.getMonth(), is(expected.get(Calendar.MONTH) + 1));
+        assertThat(message, sut.getDay(), is(expected.get(Calendar.DATE)));
+        assertThat(message, sut.getHour(), is(expected.get(Calendar.HOUR_OF_DAY)));
+        assertThat(message, sut.getMinute(), is(expected.get(Calendar.MINUTE)));
+    }
+}
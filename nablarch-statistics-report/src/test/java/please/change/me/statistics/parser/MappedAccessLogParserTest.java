@@ -0,0 +1,267 @@
+package please.change.me.statistics.parser;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import please.change.me.statistics.action.settings.OnlineStatisticsDefinition;
+import please.change.me.statistics.aggregate.RequestInfo;
+import please.change.me.statistics.exception.LogParseException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link MappedAccessLogParser}のテストクラス。
+ */
+public class MappedAccessLogParserTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /** テスト用のアクセスログから、{@link RegexAccessLogParser}と同じリクエスト情報が抽出されること。 */
+    @Test
+    public void testSameAsRegexParser() throws Exception {
+        OnlineStatisticsDefinition definition = createDefinition("RGH6AAR402");
+        File file = new File("src/test/temp/online/log/online-access/access.log");
+        assertThat(parse(new MappedAccessLogParser(definition, 1024), file),
+                is(parse(new RegexAccessLogParser(definition), file)));
+    }
+
+    /**
+     * 行がマッピングする範囲の境界をまたぐ場合や改行コードがCRLFの場合でも、
+     * {@link RegexAccessLogParser}と同じリクエスト情報が抽出されること。
+     */
+    @Test
+    public void testSmallMapSize() throws Exception {
+        OnlineStatisticsDefinition definition = createDefinition("REQ01", "REQ02");
+        for (String lineSeparator : Arrays.asList("\n", "\r\n")) {
+            File file = temporaryFolder.newFile();
+            Files.write(file.toPath(), createLog(500, lineSeparator).getBytes(StandardCharsets.UTF_8));
+
+            List<String> expected = parse(new RegexAccessLogParser(definition), file);
+            assertThat(expected.size() > 0, is(true));
+            for (int mapSize : Arrays.asList(7, 64, 1000, MappedAccessLogParser.DEFAULT_MAP_SIZE)) {
+                assertThat(parse(new MappedAccessLogParser(definition, mapSize), file), is(expected));
+            }
+        }
+    }
+
+    /** スナップショットを解析した場合、取得後に追記された終了ログは抽出されないこと。 */
+    @Test
+    public void testSnapshot() throws Exception {
+        OnlineStatisticsDefinition definition = createDefinition("REQ01", "REQ02");
+        File file = temporaryFolder.newFile();
+        String log = createLog(100, "\n");
+        Files.write(file.toPath(), log.getBytes(StandardCharsets.UTF_8));
+        List<String> expected = parse(new RegexAccessLogParser(definition), file);
+
+        try (AccessLogSnapshot snapshot = AccessLogSnapshot.take(file)) {
+            Files.write(file.toPath(), log.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            for (AccessLogParser parser : Arrays.asList(
+                    new RegexAccessLogParser(definition), new MappedAccessLogParser(definition, 64))) {
+                List<String> actual = new ArrayList<>();
+                parser.parse(snapshot, info -> actual.add(toString(info)));
+                assertThat(actual, is(expected));
+            }
+        }
+    }
+
+    /** 処理時間が終了ログの行に存在する場合や、最終行が改行で終わっていない場合も抽出されること。 */
+    @Test
+    public void testExecutionTimeInEndLog() throws Exception {
+        OnlineStatisticsDefinition definition = createDefinition("REQ01");
+        File file = temporaryFolder.newFile();
+        String log = "2012-09-10 01:00:00.000 -INFO- ACC process_name = [P1] @@@@ END @@@@ rid = [REQ01]"
+                + " status_code = [200] execution_time = [10]\n"
+                + "2012-09-10 02:00:00.000 -INFO- ACC process_name = [P2] @@@@ END @@@@ rid = [REQ01]"
+                + " status_code = [404]\n"
+                + "\texecution_time = [20]";
+        Files.write(file.toPath(), log.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(parse(new MappedAccessLogParser(definition, 16), file), is(Arrays.asList(
+                "2012/9/10 1 P1 REQ01 10 200",
+                "2012/9/10 2 P2 REQ01 20 404")));
+    }
+
+    /** 終了ログに必須の項目が存在しない場合は、{@link RegexAccessLogParser}と同じ例外が送出されること。 */
+    @Test
+    public void testRequiredFieldNotFound() throws Exception {
+        OnlineStatisticsDefinition definition = createDefinition("REQ01");
+        assertParseError(definition, "2012-09-10 01:00:00.000 @@@@ END @@@@ status_code = [200]\n",
+                "online access log parse error. REQUEST_ID was not found in end log.");
+        assertParseError(definition, "2012-09-10 01:00:00.000 @@@@ END @@@@ rid = [REQ01]\n",
+                "online access log parse error. STATUS_CODE was not found in end log.");
+        assertParseError(definition, "2012-09-10 01:00:00.000 @@@@ END @@@@ rid = [REQ01] status_code = [200]\n"
+                + "\tend_time = [2012-09-10 01:00:00.000]\n",
+                "online access log parse error. EXECUTION_TIME was not found in end log.");
+    }
+
+    /**
+     * 解析件数が計上されること。
+     * <p/>
+     * 本クラスは行単位に読み込まないため、行数は計上されないこと。
+     */
+    @Test
+    public void testCounters() throws Exception {
+        OnlineStatisticsDefinition definition = createDefinition("REQ01", "REQ02");
+        File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), createLog(100, "\n").getBytes(StandardCharsets.UTF_8));
+
+        AccessLogParseCounters regexCounters = new AccessLogParseCounters();
+        AccessLogParser regexParser = new RegexAccessLogParser(definition);
+        regexParser.setCounters(regexCounters);
+        int extracted = parse(regexParser, file).size();
+        assertThat(regexCounters.getLines(), is(500L));
+        assertThat(regexCounters.getEndLogs(), is(100L));
+        assertThat(regexCounters.getSkippedRequestIds(), is(100L - extracted));
+
+        AccessLogParseCounters mappedCounters = new AccessLogParseCounters();
+        AccessLogParser mappedParser = new MappedAccessLogParser(definition, 64);
+        mappedParser.setCounters(mappedCounters);
+        assertThat(parse(mappedParser, file).size(), is(extracted));
+        assertThat(mappedCounters.getLines(), is(0L));
+        assertThat(mappedCounters.getEndLogs(), is(100L));
+        assertThat(mappedCounters.getSkippedRequestIds(), is(100L - extracted));
+    }
+
+    /** 本クラスで使用できない設定値の場合は、例外が送出されること。 */
+    @Test
+    public void testUnsupportedDefinition() throws Exception {
+        OnlineStatisticsDefinition definition = createDefinition("REQ01");
+        definition.setAccessLogEncoding("Windows-31J");
+        assertUnsupported(definition);
+
+        definition = createDefinition("REQ01");
+        definition.setEndLogPattern("END|ERROR");
+        assertUnsupported(definition);
+
+        definition = createDefinition("REQ01");
+        definition.setFindRequestIdPattern("rid = \\[(.+)\\]");
+        assertUnsupported(definition);
+
+        definition = createDefinition("REQ01");
+        definition.setFindStatusCodePattern("status_code = [0-9]+");
+        assertUnsupported(definition);
+    }
+
+    /**
+     * 解析処理の例外を検証する。
+     *
+     * @param definition 設定値
+     * @param log アクセスログの内容
+     * @param message 例外の原因のメッセージ
+     * @throws Exception 例外
+     */
+    private void assertParseError(OnlineStatisticsDefinition definition, String log, String message)
+            throws Exception {
+        File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), log.getBytes(StandardCharsets.UTF_8));
+        try {
+            parse(new MappedAccessLogParser(definition, 1024), file);
+            fail("LogParseException must be thrown.");
+        } catch (LogParseException e) {
+            assertThat(e.getMessage(), is("failed to read access log file. file = [" + file.getAbsolutePath() + ']'));
+            assertThat(e.getCause().getMessage(), is(message));
+        }
+    }
+
+    /**
+     * 設定値が使用できないことを検証する。
+     *
+     * @param definition 設定値
+     */
+    private static void assertUnsupported(OnlineStatisticsDefinition definition) {
+        try {
+            new MappedAccessLogParser(definition, 1024);
+            fail("IllegalArgumentException must be thrown.");
+        } catch (IllegalArgumentException e) {
+            // OK
+        }
+    }
+
+    /**
+     * アクセスログを解析し、抽出したリクエスト情報を文字列のリストで返却する。
+     *
+     * @param parser パーサ
+     * @param file アクセスログ
+     * @return 抽出したリクエスト情報
+     */
+    private static List<String> parse(AccessLogParser parser, File file) {
+        List<String> result = new ArrayList<>();
+        parser.parse(file, info -> result.add(toString(info)));
+        return result;
+    }
+
+    /**
+     * リクエスト情報を比較用の文字列に変換する。
+     *
+     * @param info リクエスト情報
+     * @return 比較用の文字列
+     */
+    private static String toString(RequestInfo info) {
+        return info.getYear() + "/" + info.getMonth() + '/' + info.getDay() + ' ' + info.getHour() + ' '
+                + info.getProcessName() + ' ' + info.getRequestId() + ' ' + info.getExecutionTime() + ' '
+                + info.getStatusCode();
+    }
+
+    /**
+     * テスト用のアクセスログを生成する。
+     * <p/>
+     * 処理対象外のリクエストIDの終了ログ、開始ログ及びマルチバイト文字を含む行を混在させる。
+     *
+     * @param count 終了ログの件数
+     * @param lineSeparator 改行コード
+     * @return アクセスログの内容
+     */
+    private static String createLog(int count, String lineSeparator) {
+        Random random = new Random(1);
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            String time = String.format("2012-09-%02d %02d:%02d:00.000", random.nextInt(10) + 1,
+                    random.nextInt(24), random.nextInt(60));
+            String requestId = "REQ0" + (random.nextInt(3) + 1);
+            log.append(time).append(" -INFO- ACC process_name = [P").append(random.nextInt(3))
+                    .append("] @@@@ BEGIN @@@@ rid = [").append(requestId).append(']').append(lineSeparator);
+            log.append(time).append(" -INFO- ACC メッセージ").append(i).append(lineSeparator);
+            log.append(time).append(" -INFO- ACC process_name = [P").append(random.nextInt(3))
+                    .append("] @@@@ END @@@@ rid = [").append(requestId).append("] uid = [ユーザ]")
+                    .append(" status_code = [").append(random.nextBoolean() ? 200 : 500).append(']')
+                    .append(lineSeparator);
+            log.append("\tstart_time     = [").append(time).append(']').append(lineSeparator);
+            log.append("\texecution_time = [").append(random.nextInt(100000)).append(']').append(lineSeparator);
+        }
+        return log.toString();
+    }
+
+    /**
+     * テスト用の設定値を生成する。
+     *
+     * @param includeRequestIds 抽出対象のリクエストID
+     * @return 設定値
+     */
+    private static OnlineStatisticsDefinition createDefinition(String... includeRequestIds) {
+        OnlineStatisticsDefinition definition = new OnlineStatisticsDefinition();
+        definition.setEndLogPattern("@@@@ END @@@@");
+        definition.setIncludeRequestIdList(Arrays.asList(includeRequestIds));
+        definition.setFindRequestIdPattern("rid = \\[([^\\]]+)\\]");
+        definition.setFindProcessNamePattern("process_name = \\[([A-Z0-9]+)\\]");
+        definition.setFindStatusCodePattern("status_code = \\[([0-9]+)\\]");
+        definition.setFindExecutionTimePattern("execution_time = \\[([0-9]+)\\]");
+        definition.setLogOutputDateTimeStartPosition(0);
+        definition.setLogOutputDateTimeEndPosition(23);
+        definition.setLogOutputDateTimeFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        definition.setAccessLogEncoding("UTF-8");
+        return definition;
+    }
+}
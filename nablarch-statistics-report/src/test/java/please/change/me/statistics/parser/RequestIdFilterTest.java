@@ -0,0 +1,45 @@
+package please.change.me.statistics.parser;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link RequestIdFilter}のテストクラス。
+ */
+public class RequestIdFilterTest {
+
+    /** 前方一致を無効にした場合は、全てのリクエストIDを完全一致で判定すること。 */
+    @Test
+    public void testExact() {
+        RequestIdFilter sut = RequestIdFilter.of(Arrays.asList("RW11AC0101", "RW11*"), false);
+        assertThat(sut.accept("RW11AC0101"), is(true));
+        assertThat(sut.accept("RW11*"), is(true));
+        assertThat(sut.accept("RW11AC0102"), is(false));
+        assertThat(sut.accept("RW11"), is(false));
+    }
+
+    /** 前方一致を有効にした場合は、末尾が「*」のリクエストIDを前方一致で判定すること。 */
+    @Test
+    public void testPrefix() {
+        RequestIdFilter sut = RequestIdFilter.of(Arrays.asList("RW11AC0101", "RW12*", "RW13AB*"), true);
+        assertThat(sut.accept("RW11AC0101"), is(true));
+        assertThat(sut.accept("RW11AC0102"), is(false));
+        assertThat(sut.accept("RW12"), is(true));
+        assertThat(sut.accept("RW12AC0101"), is(true));
+        assertThat(sut.accept("RW13AB0101"), is(true));
+        assertThat(sut.accept("RW13AC0101"), is(false));
+        assertThat(sut.accept("RW1"), is(false));
+    }
+
+    /** 「*」のみの場合は、全てのリクエストIDが抽出対象となること。 */
+    @Test
+    public void testAll() {
+        RequestIdFilter sut = RequestIdFilter.of(Arrays.asList("*"), true);
+        assertThat(sut.accept(""), is(true));
+        assertThat(sut.accept("RW11AC0101"), is(true));
+    }
+}
@@ -1,6 +1,8 @@
 package please.change.me.statistics.reader;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -202,6 +204,73 @@ public class MultiFileRecordReaderTest {
         // 6レコード目は存在しない
         assertThat(reader.read(context), is(nullValue()));
     }
-}
 
+    /**
+     * 並列読み込みモードの場合。
+     * <p/>
+     * 全てのファイルのレコードが読み込まれ、同一ファイル内のレコードはファイル内の順序で返却されること。
+     */
+    @Test
+    public void testParallelRead() {
+        ExecutionContext context = new ExecutionContext();
+        MultiFileRecordReader reader = new MultiFileRecordReader();
+
+        List<String> fileSet = new ArrayList<>();
+        fileSet.add("test2.csv");
+        fileSet.add("test1.csv");
+        reader.setFileList("input", fileSet);
+        reader.setLayoutFile("format", "layout1");
+        reader.setParallelism(2);
+        reader.setQueueCapacity(1);
+
+        List<String> records = new ArrayList<>();
+        while (reader.hasNext(context)) {
+            DataRecord record = reader.read(context);
+            assertThat(record, is(notNullValue()));
+            records.add(record.getString("item1") + ',' + record.getString("item2") + ',' + record.getString("item3"));
+        }
+        assertThat(reader.read(context), is(nullValue()));
+        reader.close(context);
+
+        // ファイル間の順序は不定のため、ソートして全レコードが過不足なく読み込まれたことを確認する。
+        List<String> sorted = new ArrayList<>(records);
+        Collections.sort(sorted);
+        assertThat(sorted, is(Arrays.asList("1,2,3", "1,2,3", "4,5,6", "4,5,6", "7,8,9")));
 
+        // test2.csvのレコード(7,8,9を含む)は、ファイル内の順序で返却されること。
+        assertThat(records.indexOf("7,8,9") > records.lastIndexOf("4,5,6"), is(true));
+        assertThat(records.indexOf("4,5,6") > records.indexOf("1,2,3"), is(true));
+        assertThat(records.lastIndexOf("4,5,6") > records.lastIndexOf("1,2,3"), is(true));
+    }
+
+    /**
+     * 並列読み込みモードで、ワーカスレッドでの読み込みに失敗した場合。
+     * <p/>
+     * 他のファイルの読み込みが正常に完了しても、読み込みの終了とはせずに例外が送出されること。
+     */
+    @Test
+    public void testParallelReadFailure() {
+        for (int i = 0; i < 20; i++) {
+            ExecutionContext context = new ExecutionContext();
+            MultiFileRecordReader reader = new MultiFileRecordReader();
+
+            List<String> fileSet = new ArrayList<>();
+            fileSet.add("test1.csv");
+            fileSet.add("notFound.csv");
+            reader.setFileList("input", fileSet);
+            reader.setLayoutFile("format", "layout1");
+            reader.setParallelism(2);
+
+            try {
+                while (reader.hasNext(context)) {
+                    reader.read(context);
+                }
+                fail("must throw the exception of the worker thread.");
+            } catch (RuntimeException e) {
+                // ワーカスレッドで発生した例外が送出されること。
+            } finally {
+                reader.close(context);
+            }
+        }
+    }
+}